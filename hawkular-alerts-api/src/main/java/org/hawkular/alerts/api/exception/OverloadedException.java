@@ -0,0 +1,51 @@
+/*
+ * Copyright 2015 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.api.exception;
+
+/**
+ * Indicates that incoming data or events were not accepted because the ingestion pipeline is overloaded.
+ * Clients should retry the request after {@link #getRetryAfter()} seconds.
+ *
+ * A request rejected by the ingestion policy is considered a client overload, a request that could not be accepted
+ * while waiting for capacity is considered a server side saturation, see {@link #isUnavailable()}.
+ */
+public class OverloadedException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final int retryAfter;
+    private final boolean unavailable;
+
+    public OverloadedException(String message, int retryAfter, boolean unavailable) {
+        super(message);
+        this.retryAfter = retryAfter;
+        this.unavailable = unavailable;
+    }
+
+    /**
+     * @return seconds the client should wait before retrying the request
+     */
+    public int getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * @return true if the server is saturated (503), false if the request was rejected by the ingestion policy (429)
+     */
+    public boolean isUnavailable() {
+        return unavailable;
+    }
+}
@@ -66,12 +66,12 @@ public class CompareConditionEval extends ConditionEval {
     }
 
     public CompareConditionEval(CompareCondition condition, Data data1, Data data2) {
-        super(Type.COMPARE, condition.match(Double.valueOf(data1.getValue()), Double.valueOf(data2.getValue())),
+        super(Type.COMPARE, condition.match(data1.getNumericValue(), data2.getNumericValue()),
                 ((data1.getTimestamp() > data1.getTimestamp()) ? data1.getTimestamp() : data2.getTimestamp()),
                 data1.getContext());
         this.condition = condition;
-        this.value1 = Double.valueOf(data1.getValue());
-        this.value2 = Double.valueOf(data2.getValue());
+        this.value1 = data1.getNumericValue();
+        this.value2 = data2.getNumericValue();
         this.context2 = data2.getContext();
     }
 
@@ -53,9 +53,9 @@ public class ThresholdRangeConditionEval extends ConditionEval {
     }
 
     public ThresholdRangeConditionEval(ThresholdRangeCondition condition, Data data) {
-        super(Type.RANGE, condition.match(Double.valueOf(data.getValue())), data.getTimestamp(), data.getContext());
+        super(Type.RANGE, condition.match(data.getNumericValue()), data.getTimestamp(), data.getContext());
         this.condition = condition;
-        this.value = Double.valueOf(data.getValue());
+        this.value = data.getNumericValue();
     }
 
     public ThresholdRangeCondition getCondition() {
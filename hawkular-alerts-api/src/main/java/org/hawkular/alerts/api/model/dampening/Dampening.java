@@ -29,6 +29,7 @@ import java.util.Set;
 import org.hawkular.alerts.api.model.condition.ConditionEval;
 import org.hawkular.alerts.api.model.trigger.Match;
 import org.hawkular.alerts.api.model.trigger.Mode;
+import org.hawkular.alerts.api.util.EngineClock;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
@@ -438,7 +439,7 @@ public class Dampening implements Serializable {
         }
 
         // If we had previously started our time and now have exceeded our time limit then we must start over
-        long now = System.currentTimeMillis();
+        long now = EngineClock.currentTimeMillis();
         if (type == Type.RELAXED_TIME && trueEvalsStartTime != 0L) {
             if ((now - trueEvalsStartTime) > evalTimeSetting) {
                 reset();
@@ -18,8 +18,11 @@ package org.hawkular.alerts.api.model.data;
 
 import java.io.Serializable;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 
@@ -45,6 +48,21 @@ public class Data implements Comparable<Data>, Serializable {
 
     public static final String SOURCE_NONE = "_none_";
 
+    /**
+     * Kind of single value of a datum. The value is classified once, when it is set, so condition evaluations do not
+     * parse it again.
+     */
+    public enum ValueType {
+        NONE, NUMERIC, AVAILABILITY, STRING
+    }
+
+    private static final Set<String> AVAILABILITY_VALUES = new HashSet<>();
+    static {
+        for (AvailabilityType type : AvailabilityType.values()) {
+            AVAILABILITY_VALUES.add(type.name());
+        }
+    }
+
     @ApiModelProperty(value = "Tenant id owner of this data.",
             position = 0,
             allowableValues = "Tenant is overwritten from Hawkular-Tenant HTTP header parameter request")
@@ -76,6 +94,14 @@ public class Data implements Comparable<Data>, Serializable {
     @JsonInclude(Include.NON_EMPTY)
     protected String value;
 
+    /** Classification of value, null if not classified yet (i.e. after java deserialization) */
+    @JsonIgnore
+    private transient ValueType valueType;
+
+    /** value parsed as a primitive double, only meaningful for ValueType.NUMERIC */
+    @JsonIgnore
+    private transient double numericValue;
+
     /** [FUTURE]
      * For multi-value condition types. Null otherwise. See the condition type for expected key-value information.
      * Note: if and when we need this we may want to get rid of the 'value' field and roll the single-value case
@@ -167,26 +193,35 @@ public class Data implements Comparable<Data>, Serializable {
         this.source = isEmpty(source) ? SOURCE_NONE : source;
         this.id = id;
         this.timestamp = (timestamp <= 0) ? System.currentTimeMillis() : timestamp;
-        this.value = value;
+        setValue(value);
         this.context = context;
     }
 
     public static Data forNumeric(String tenantId, String id, long timestamp, Double value) {
-        return new Data(tenantId, null, id, timestamp, String.valueOf(value));
+        return withNumericValue(new Data(tenantId, null, id, timestamp, String.valueOf(value)), value);
     }
 
     public static Data forNumeric(String tenantId, String source, String id, long timestamp, Double value) {
-        return new Data(tenantId, source, id, timestamp, String.valueOf(value));
+        return withNumericValue(new Data(tenantId, source, id, timestamp, String.valueOf(value)), value);
     }
 
     public static Data forNumeric(String tenantId, String id, long timestamp, Double value,
             Map<String, String> context) {
-        return new Data(tenantId, null, id, timestamp, String.valueOf(value), null, context);
+        return withNumericValue(new Data(tenantId, null, id, timestamp, String.valueOf(value), null, context), value);
     }
 
     public static Data forNumeric(String tenantId, String source, String id, long timestamp, Double value,
             Map<String, String> context) {
-        return new Data(tenantId, source, id, timestamp, String.valueOf(value), null, context);
+        return withNumericValue(new Data(tenantId, source, id, timestamp, String.valueOf(value), null, context),
+                value);
+    }
+
+    private static Data withNumericValue(Data data, Double value) {
+        if (value != null) {
+            data.valueType = ValueType.NUMERIC;
+            data.numericValue = value;
+        }
+        return data;
     }
 
     public static Data forString(String tenantId, String id, long timestamp, String value) {
@@ -271,6 +306,78 @@ public class Data implements Comparable<Data>, Serializable {
 
     public void setValue(String value) {
         this.value = value;
+        this.valueType = null;
+        classifyValue();
+    }
+
+    /**
+     * @return the kind of the single value of this datum
+     */
+    @JsonIgnore
+    public ValueType getValueType() {
+        if (valueType == null) {
+            classifyValue();
+        }
+        return valueType;
+    }
+
+    /**
+     * @return true if the value is a valid numeric value
+     */
+    @JsonIgnore
+    public boolean isNumeric() {
+        return getValueType() == ValueType.NUMERIC;
+    }
+
+    /**
+     * The numeric value is parsed once, when the value is set.
+     *
+     * @return the value as a primitive double
+     * @throws NumberFormatException if the value is not numeric, as <code>Double.parseDouble(getValue())</code>
+     * @throws NullPointerException if the value is null, as <code>Double.parseDouble(getValue())</code>
+     */
+    @JsonIgnore
+    public double getNumericValue() {
+        if (getValueType() != ValueType.NUMERIC) {
+            // Not numeric, let the parser report the failure
+            return Double.parseDouble(value);
+        }
+        return numericValue;
+    }
+
+    private void classifyValue() {
+        ValueType type = ValueType.STRING;
+        if (isEmpty(value)) {
+            type = ValueType.NONE;
+        } else if (maybeNumeric(value)) {
+            try {
+                numericValue = Double.parseDouble(value);
+                type = ValueType.NUMERIC;
+            } catch (NumberFormatException e) {
+                // Not numeric
+            }
+        } else if (isAvailability(value)) {
+            type = ValueType.AVAILABILITY;
+        }
+        valueType = type;
+    }
+
+    /*
+        Cheap check to avoid the cost of a NumberFormatException on most of the non numeric values.
+     */
+    private static boolean maybeNumeric(String s) {
+        char c = s.charAt(0);
+        if (c == '+' || c == '-') {
+            if (s.length() == 1) {
+                return false;
+            }
+            c = s.charAt(1);
+        }
+        return (c >= '0' && c <= '9') || c == '.' || c == 'N' || c == 'I' || Character.isWhitespace(c);
+    }
+
+    private static boolean isAvailability(String s) {
+        return AVAILABILITY_VALUES.contains(s);
     }
 
     public Map<String, String> getContext() {
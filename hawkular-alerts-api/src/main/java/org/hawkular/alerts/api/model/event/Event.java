@@ -27,6 +27,7 @@ import org.hawkular.alerts.api.model.condition.ConditionEval;
 import org.hawkular.alerts.api.model.dampening.Dampening;
 import org.hawkular.alerts.api.model.data.Data;
 import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.api.util.EngineClock;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
@@ -256,7 +257,7 @@ public class Event implements Comparable<Event>, Serializable {
         this.dampening = dampening;
         this.evalSets = evalSets;
 
-        this.ctime = System.currentTimeMillis();
+        this.ctime = EngineClock.currentTimeMillis();
 
         this.id = trigger.getId() + "-" + this.ctime + "-" + UUID.randomUUID();
         this.dataSource = trigger.getSource();
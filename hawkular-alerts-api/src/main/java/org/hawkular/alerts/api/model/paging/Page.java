@@ -36,14 +36,31 @@ import java.util.stream.Stream;
  * @since 0.0.1
  */
 public final class Page<T> implements List<T> {
+    /**
+     * Total size of cursor paged results read without counting the overall results.
+     */
+    public static final long UNKNOWN_TOTAL_SIZE = -1;
+
     private final List<T> wrapped;
     private final PageContext pageContext;
     private final long totalSize;
+    private final String nextCursor;
 
     public Page(List<T> wrapped, PageContext pageContext, long totalSize) {
+        this(wrapped, pageContext, totalSize, null);
+    }
+
+    /**
+     * @param wrapped the elements of the page
+     * @param pageContext the position of the page in the overall results
+     * @param totalSize the total number of results or {@link #UNKNOWN_TOTAL_SIZE}
+     * @param nextCursor the continuation token of the next page, null if this is the last page
+     */
+    public Page(List<T> wrapped, PageContext pageContext, long totalSize, String nextCursor) {
         this.wrapped = wrapped;
         this.pageContext = pageContext;
         this.totalSize = totalSize;
+        this.nextCursor = nextCursor;
     }
 
     /**
@@ -54,12 +71,19 @@ public final class Page<T> implements List<T> {
     }
 
     /**
-     * @return the total number of results of which this page is a subset of
+     * @return the total number of results of which this page is a subset of, or {@link #UNKNOWN_TOTAL_SIZE}
      */
     public long getTotalSize() {
         return totalSize;
     }
 
+    /**
+     * @return the continuation token of the next page of a cursor paged result, null if there are no more pages
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
     @Override
     public boolean add(T t) {
         throw new UnsupportedOperationException();
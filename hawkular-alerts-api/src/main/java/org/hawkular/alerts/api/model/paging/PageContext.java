@@ -30,6 +30,7 @@ public class PageContext {
     private final int pageSize;
     private final int pageNumber;
     private final List<Order> order;
+    private final String cursor;
 
     public PageContext(int pageNumber, int pageSize, Order... orders) {
         if (orders.length == 0) {
@@ -40,11 +41,26 @@ public class PageContext {
         List<Order> tmp = new ArrayList<>();
         Collections.addAll(tmp, orders);
         this.order = Collections.unmodifiableList(tmp);
+        this.cursor = null;
     }
 
     public PageContext(int pageNumber, int pageSize, Iterable<Order> orders) {
+        this(pageNumber, pageSize, null, orders);
+    }
+
+    /**
+     * @param pageSize the number of the elements on the page
+     * @param cursor the continuation token of the page, empty for the first page
+     * @param orders the ordering of the results required
+     */
+    public PageContext(int pageSize, String cursor, Iterable<Order> orders) {
+        this(0, pageSize, cursor, orders);
+    }
+
+    private PageContext(int pageNumber, int pageSize, String cursor, Iterable<Order> orders) {
         this.pageNumber = pageSize >= 0 ? pageNumber : 0;
         this.pageSize = pageSize;
+        this.cursor = cursor;
         List<Order> tmp = new ArrayList<>();
         orders.forEach(tmp::add);
         if (tmp.size() == 0) {
@@ -113,6 +129,23 @@ public class PageContext {
         return order;
     }
 
+    /**
+     * A cursor paged context locates the page by the continuation token returned with the previous page instead of
+     * by its page number. An empty cursor represents the first page.
+     *
+     * @return the continuation token of the page, null if the page is located by its page number
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    /**
+     * @return true if the page is located by a continuation token
+     */
+    public boolean isCursorPaged() {
+        return cursor != null;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -120,7 +153,8 @@ public class PageContext {
 
         PageContext that = (PageContext) o;
 
-        return pageSize == that.pageSize && pageNumber == that.pageNumber && this.order.equals(that.order);
+        return pageSize == that.pageSize && pageNumber == that.pageNumber && this.order.equals(that.order)
+                && (cursor == null ? that.cursor == null : cursor.equals(that.cursor));
 
     }
 
@@ -133,7 +167,7 @@ public class PageContext {
 
     @Override public String toString() {
         return "PagingState[" + "order=" + order + ", pageNumber=" + pageNumber + ", pageSize=" +
-                pageSize + ']';
+                pageSize + (cursor != null ? ", cursor=" + cursor : "") + ']';
     }
 
 }
@@ -69,15 +69,29 @@ public final class Pager extends PageContext {
         super(pageNumber, pageSize, orders);
     }
 
+    /**
+     * @param pageSize the number of the elements on the page
+     * @param cursor   the continuation token returned with the previous page, empty for the first page
+     * @param orders   the ordering of the results required
+     */
+    public Pager(int pageSize, String cursor, Iterable<Order> orders) {
+        super(pageSize, cursor, orders);
+    }
+
     /**
      * If this is a limited pager ({@link #isLimited()}), returns the pager pointing to the next page of the results.
      *
      * If this is an unlimited pager, then simply returns this very pager because there can be no other page of the
      * results.
      *
+     * Cursor paged pagers locate the next page with the {@link Page#getNextCursor()} of the current page.
+     *
      * @return a new pager instance
      */
     public Pager nextPage() {
+        if (isCursorPaged()) {
+            throw new IllegalStateException("Next page of a cursor paged result is located by Page.getNextCursor()");
+        }
         if (getPageSize() >= 0) {
             return new Pager(getPageNumber() + 1, getPageSize(), getOrder());
         } else {
@@ -106,6 +120,7 @@ public final class Pager extends PageContext {
         private int pageNumber;
         private int pageSize;
         private List<Order> order = new ArrayList<>();
+        private String cursor;
 
         private Builder() {
         }
@@ -120,6 +135,11 @@ public final class Pager extends PageContext {
             return this;
         }
 
+        public Builder withCursor(String cursor) {
+            this.cursor = cursor;
+            return this;
+        }
+
         public Builder orderBy(String field, Order.Direction direction) {
             order.add(Order.by(field, direction));
             return this;
@@ -139,7 +159,7 @@ public final class Pager extends PageContext {
         }
 
         public Pager build() {
-            return new Pager(pageNumber, pageSize, order);
+            return cursor != null ? new Pager(pageSize, cursor, order) : new Pager(pageNumber, pageSize, order);
         }
     }
 }
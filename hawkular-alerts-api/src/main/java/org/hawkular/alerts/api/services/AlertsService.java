@@ -223,6 +223,7 @@ public interface AlertsService {
      * Send data into the alerting system for evaluation.
      *
      * @param data Not Null.  The data to be evaluated by the alerting engine.
+     * @throws org.hawkular.alerts.api.exception.OverloadedException if the data is not accepted due to overload.
      * @throws Exception any problem.
      */
     void sendData(Collection<Data> data) throws Exception;
@@ -241,6 +242,7 @@ public interface AlertsService {
      * The event sent are not persisted into the alerts engine.
      *
      * @param events Not null. The events to be evaluated by the alerting engine.
+     * @throws org.hawkular.alerts.api.exception.OverloadedException if the events are not accepted due to overload.
      * @throws Exception
      */
     void sendEvents(Collection<Event> events) throws Exception;
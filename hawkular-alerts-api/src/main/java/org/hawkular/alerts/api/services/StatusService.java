@@ -49,4 +49,21 @@ public interface StatusService {
      * @return Map with currentNode and members information for distributed scenarios
      */
     Map<String, String> getDistributedStatus();
+
+    /**
+     * Show additional information about the alerts engine, like the rules cycles executed and the latency of the
+     * evaluated data. Keys are prefixed with "engine.".
+     *
+     * @return Map with the engine status
+     */
+    Map<String, String> getEngineStatus();
+
+    /**
+     * Show the hot-path metrics of the alerts engine, like the pending data, the firing times of the rules or the
+     * persistence latency. Histograms are reported by count, mean, max and percentiles. Times are in microseconds.
+     * Keys are prefixed with "metrics.".
+     *
+     * @return Map with the engine metrics
+     */
+    Map<String, String> getMetrics();
 }
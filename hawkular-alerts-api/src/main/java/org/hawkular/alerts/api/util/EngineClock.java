@@ -0,0 +1,48 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.api.util;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Current time used by the alerting engine on time based evaluations: dampening periods and timeouts, missing data
+ * intervals and the creation time of generated events and alerts.
+ *
+ * It is the system clock by default. A replay of recorded data sets a simulated clock, so the evaluations follow the
+ * timestamps of the replayed data instead of the wall clock.
+ */
+public final class EngineClock {
+
+    private static volatile LongSupplier clock = System::currentTimeMillis;
+
+    private EngineClock() {
+    }
+
+    /**
+     * @return the current time in milliseconds
+     */
+    public static long currentTimeMillis() {
+        return clock.getAsLong();
+    }
+
+    /**
+     * @param clock source of the current time in milliseconds, null restores the system clock
+     */
+    public static void setClock(LongSupplier clock) {
+        EngineClock.clock = clock == null ? System::currentTimeMillis : clock;
+    }
+}
@@ -21,6 +21,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
 import java.util.EnumSet;
@@ -1565,4 +1566,38 @@ public class JsonTest {
         assertEquals(2, trigger2.getActions().size());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void jsonTypedDataTest() throws Exception {
+        String str = "{\"id\":\"test\",\"timestamp\":1,\"value\":10.45}";
+        Data nData = objectMapper.readValue(str, Data.class);
+        assertEquals(Data.ValueType.NUMERIC, nData.getValueType());
+        assertTrue(nData.isNumeric());
+        assertEquals(10.45, nData.getNumericValue(), 0.0);
+
+        String output = objectMapper.writeValueAsString(nData);
+        assertFalse(output, output.contains("numeric"));
+        assertFalse(output, output.contains("valueType"));
+
+        str = "{\"id\":\"test\",\"timestamp\":1,\"value\":\"DOWN\"}";
+        Data aData = objectMapper.readValue(str, Data.class);
+        assertEquals(Data.ValueType.AVAILABILITY, aData.getValueType());
+        assertFalse(aData.isNumeric());
+
+        str = "{\"id\":\"test\",\"timestamp\":1,\"value\":\"-test-value\"}";
+        Data sData = objectMapper.readValue(str, Data.class);
+        assertEquals(Data.ValueType.STRING, sData.getValueType());
+        try {
+            sData.getNumericValue();
+            fail("-test-value should not be numeric");
+        } catch (NumberFormatException e) {
+            // Expected
+        }
+
+        Data tData = Data.forNumeric(TEST_TENANT, "test", 1, 25.5);
+        assertEquals(25.5, tData.getNumericValue(), 0.0);
+        tData.setValue("NaN");
+        assertTrue(Double.isNaN(tData.getNumericValue()));
+        tData.setValue(null);
+        assertEquals(Data.ValueType.NONE, tData.getValueType());
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.hawkular.alerts.engine.impl.CassWritePlanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Write throughput of a bulk persistence of alerts: the previous LOGGED batches of consecutive statements, mixing
+ * the partitions of all the tables written, against the partition aware UNLOGGED batches of the
+ * {@link CassWritePlanner}.
+ *
+ * The writes are sent to a local stand-in of the Cassandra session, that serves at most <code>capacity</code>
+ * requests at a time and completes each request after a modelled latency: a base round trip plus a cost per row,
+ * plus a cost per partition written by a LOGGED batch for the batchlog and the coordinator fan out. Only the
+ * relative cost of both strategies is meaningful.
+ *
+ * Each alert writes the statements of CassAlertsServiceImpl.addAlerts() and of its Event.
+ *
+ * <pre>
+ *     java -jar hawkular-alerts-benchmarks/target/benchmarks.jar CassWriteBenchmark -p alerts=1000
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CassWriteBenchmark {
+
+    public enum Strategy {
+        LOGGED, PLANNER
+    }
+
+    @Param({ "LOGGED", "PLANNER" })
+    Strategy strategy;
+
+    @Param({ "10", "1000" })
+    int alerts;
+
+    @Param({ "1", "10" })
+    int tenants;
+
+    @Param({ "10" })
+    int batchSize;
+
+    @Param({ "32" })
+    int maxInFlight;
+
+    /**
+     * Requests served at a time by the stand-in cluster.
+     */
+    @Param({ "8" })
+    int capacity;
+
+    /**
+     * Modelled latency of a request, in microseconds.
+     */
+    @Param({ "200" })
+    int requestLatency;
+
+    /**
+     * Modelled cost of a row, in microseconds.
+     */
+    @Param({ "5" })
+    int rowLatency;
+
+    /**
+     * Modelled cost of each partition of a LOGGED batch, in microseconds.
+     */
+    @Param({ "50" })
+    int loggedPartitionLatency;
+
+    ExecutorService cluster;
+    Session session;
+    List<Write> writes;
+
+    /*
+        statement -> (table, partition key)
+     */
+    Map<Statement, List<Object>> partitions;
+
+    @Setup
+    public void setup() {
+        cluster = Executors.newFixedThreadPool(capacity, r -> {
+            Thread t = new Thread(r, "stand-in-cluster");
+            t.setDaemon(true);
+            return t;
+        });
+        session = standIn();
+        writes = new ArrayList<>();
+        for (int i = 0; i < alerts; i++) {
+            String tenantId = "tenant-" + (i % tenants);
+            writes.add(new Write("alerts", tenantId));
+            writes.add(new Write("alerts_triggers", tenantId));
+            writes.add(new Write("alerts_ctimes", tenantId));
+            writes.add(new Write("alerts_stimes", tenantId));
+            writes.add(new Write("tags", tenantId, "ALERT", "app"));
+            writes.add(new Write("events", tenantId));
+            writes.add(new Write("events_categories", tenantId, "ALERT"));
+            writes.add(new Write("events_ctimes", tenantId));
+            writes.add(new Write("events_triggers", tenantId));
+            writes.add(new Write("tags", tenantId, "EVENT", "app"));
+        }
+        partitions = new IdentityHashMap<>();
+        writes.forEach(w -> partitions.put(w.statement, w.partition()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        cluster.shutdown();
+    }
+
+    @Benchmark
+    public int write() throws Exception {
+        switch (strategy) {
+            case LOGGED:
+                // As CassAlertsServiceImpl did before the write planner
+                List<ResultSetFuture> futures = new ArrayList<>();
+                BatchStatement batch = new BatchStatement(BatchStatement.Type.LOGGED);
+                for (Write w : writes) {
+                    batch.add(w.statement);
+                    if (batch.size() > batchSize) {
+                        futures.add(session.executeAsync(batch));
+                        batch = new BatchStatement(BatchStatement.Type.LOGGED);
+                    }
+                }
+                if (batch.size() > 0) {
+                    futures.add(session.executeAsync(batch));
+                }
+                Futures.allAsList(futures).get();
+                return futures.size();
+            default:
+                CassWritePlanner planner = new CassWritePlanner(session, batchSize, maxInFlight);
+                for (Write w : writes) {
+                    planner.add(w.table, w.statement, w.partitionKey);
+                }
+                planner.execute();
+                return planner.getPartitions();
+        }
+    }
+
+    private Session standIn() {
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getName().equals("executeAsync") && args[0] instanceof Statement) {
+                Statement statement = (Statement) args[0];
+                SettableFuture<Object> future = SettableFuture.create();
+                long latency = latency(statement);
+                cluster.execute(() -> {
+                    LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(latency));
+                    future.set(null);
+                });
+                return resultSetFuture(future);
+            }
+            throw new UnsupportedOperationException(method.getName());
+        };
+        return (Session) Proxy.newProxyInstance(Session.class.getClassLoader(), new Class[] { Session.class },
+                handler);
+    }
+
+    private long latency(Statement statement) {
+        if (!(statement instanceof BatchStatement)) {
+            return requestLatency + rowLatency;
+        }
+        BatchStatement batch = (BatchStatement) statement;
+        long latency = requestLatency + (long) rowLatency * batch.size();
+        if (Strategy.LOGGED == strategy) {
+            Set<List<Object>> written = new HashSet<>();
+            for (Statement s : batch.getStatements()) {
+                written.add(partitions.get(s));
+            }
+            latency += (long) loggedPartitionLatency * written.size();
+        }
+        return latency;
+    }
+
+    private static ResultSetFuture resultSetFuture(SettableFuture<Object> future) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getDeclaringClass().isInstance(future)) {
+                try {
+                    return method.invoke(future, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+            throw new UnsupportedOperationException(method.getName());
+        };
+        return (ResultSetFuture) Proxy.newProxyInstance(ResultSetFuture.class.getClassLoader(),
+                new Class[] { ResultSetFuture.class }, handler);
+    }
+
+    static class Write {
+        String table;
+        Object[] partitionKey;
+        Statement statement;
+
+        Write(String table, Object... partitionKey) {
+            this.table = table;
+            this.partitionKey = partitionKey;
+            this.statement = new SimpleStatement("INSERT INTO " + table);
+        }
+
+        List<Object> partition() {
+            List<Object> partition = new ArrayList<>();
+            partition.add(table);
+            partition.addAll(Arrays.asList(partitionKey));
+            return partition;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.alerts.api.model.trigger.Match;
+import org.hawkular.alerts.benchmarks.RulesEngineFixture.Cycle;
+import org.hawkular.alerts.benchmarks.RulesEngineFixture.DampeningType;
+import org.hawkular.alerts.benchmarks.RulesEngineFixture.EngineType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rules cycles for each condition type of the ConditionMatch rules, by number of triggers and data per cycle.
+ *
+ * An operation is a full rules cycle (RulesEngine.fire()) on the samples of all the dataIds of the triggers, so
+ * ops/s is the number of cycles per second. The input of each cycle is prepared out of the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConditionBenchmark {
+
+    @Param({ "THRESHOLD", "RANGE", "COMPARE", "AVAILABILITY", "STRING", "RATE", "NELSON", "MISSING", "EVENT",
+            "EXTERNAL" })
+    ConditionType conditionType;
+
+    @Param({ "10", "100", "1000" })
+    int triggers;
+
+    /**
+     * Samples of each dataId per cycle.
+     */
+    @Param({ "1", "10" })
+    int dataPerCycle;
+
+    @Param({ "DROOLS" })
+    EngineType engine;
+
+    RulesEngineFixture fixture;
+    Cycle cycle;
+
+    @Setup(Level.Trial)
+    public void load() {
+        fixture = new RulesEngineFixture(engine);
+        fixture.load(conditionType, triggers, 1, Match.ALL, DampeningType.DEFAULT);
+    }
+
+    @Setup(Level.Invocation)
+    public void prepareCycle() {
+        cycle = fixture.nextCycle(dataPerCycle);
+    }
+
+    @Benchmark
+    public int fire() {
+        return fixture.fire(cycle);
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        fixture.shutdown();
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.benchmarks;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.UUID;
+
+import org.hawkular.alerts.api.model.condition.AvailabilityCondition;
+import org.hawkular.alerts.api.model.condition.CompareCondition;
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.condition.EventCondition;
+import org.hawkular.alerts.api.model.condition.ExternalCondition;
+import org.hawkular.alerts.api.model.condition.MissingCondition;
+import org.hawkular.alerts.api.model.condition.NelsonCondition;
+import org.hawkular.alerts.api.model.condition.RateCondition;
+import org.hawkular.alerts.api.model.condition.StringCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdRangeCondition;
+import org.hawkular.alerts.api.model.data.AvailabilityType;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.trigger.Mode;
+
+/**
+ * Condition types evaluated by the ConditionMatch rules, with the condition and the matching input used on the
+ * benchmarks for each one. NELSON conditions match once their sample size is reached.
+ */
+public enum ConditionType {
+    THRESHOLD {
+        @Override
+        Condition condition(String tenantId, String triggerId, String dataId) {
+            return new ThresholdCondition(tenantId, triggerId, dataId, ThresholdCondition.Operator.LT, 10.0);
+        }
+
+        @Override
+        Collection<Data> data(String tenantId, String dataId, long timestamp, long sample) {
+            return Collections.singletonList(Data.forNumeric(tenantId, dataId, timestamp, 5.0));
+        }
+    },
+    RANGE {
+        @Override
+        Condition condition(String tenantId, String triggerId, String dataId) {
+            return new ThresholdRangeCondition(tenantId, triggerId, dataId,
+                    ThresholdRangeCondition.Operator.INCLUSIVE, ThresholdRangeCondition.Operator.INCLUSIVE,
+                    10.0, 15.0, true);
+        }
+
+        @Override
+        Collection<Data> data(String tenantId, String dataId, long timestamp, long sample) {
+            return Collections.singletonList(Data.forNumeric(tenantId, dataId, timestamp, 12.5));
+        }
+    },
+    COMPARE {
+        @Override
+        Condition condition(String tenantId, String triggerId, String dataId) {
+            return new CompareCondition(tenantId, triggerId, dataId, CompareCondition.Operator.LT, 1.0,
+                    dataId + "-2");
+        }
+
+        @Override
+        Collection<Data> data(String tenantId, String dataId, long timestamp, long sample) {
+            return Arrays.asList(Data.forNumeric(tenantId, dataId, timestamp, 5.0),
+                    Data.forNumeric(tenantId, dataId + "-2", timestamp, 10.0));
+        }
+    },
+    AVAILABILITY {
+        @Override
+        Condition condition(String tenantId, String triggerId, String dataId) {
+            return new AvailabilityCondition(tenantId, triggerId, dataId, AvailabilityCondition.Operator.DOWN);
+        }
+
+        @Override
+        Collection<Data> data(String tenantId, String dataId, long timestamp, long sample) {
+            return Collections.singletonList(Data.forAvailability(tenantId, dataId, timestamp,
+                    AvailabilityType.DOWN));
+        }
+    },
+    STRING {
+        @Override
+        Condition condition(String tenantId, String triggerId, String dataId) {
+            return new StringCondition(tenantId, triggerId, dataId, StringCondition.Operator.STARTS_WITH, "ERROR",
+                    false);
+        }
+
+        @Override
+        Collection<Data> data(String tenantId, String dataId, long timestamp, long sample) {
+            return Collections.singletonList(Data.forString(tenantId, dataId, timestamp,
+                    "ERROR connection refused"));
+        }
+    },
+    RATE {
+        @Override
+        Condition condition(String tenantId, String triggerId, String dataId) {
+            return new RateCondition(tenantId, triggerId, dataId, RateCondition.Direction.INCREASING,
+                    RateCondition.Period.SECOND, RateCondition.Operator.GT, 1.0);
+        }
+
+        @Override
+        Collection<Data> data(String tenantId, String dataId, long timestamp, long sample) {
+            // 10 units per second
+            return Collections.singletonList(Data.forNumeric(tenantId, dataId, timestamp, sample * 10.0));
+        }
+    },
+    NELSON {
+        @Override
+        Condition condition(String tenantId, String triggerId, String dataId) {
+            return new NelsonCondition(tenantId, triggerId, dataId);
+        }
+
+        @Override
+        Collection<Data> data(String tenantId, String dataId, long timestamp, long sample) {
+            // A steady series with a spike every 50 samples
+            double value = sample % 50 == 49 ? 100.0 : 10.0 + (sample % 5);
+            return Collections.singletonList(Data.forNumeric(tenantId, dataId, timestamp, value));
+        }
+    },
+    MISSING {
+        @Override
+        Condition condition(String tenantId, String triggerId, String dataId) {
+            /*
+                Each sample updates the MissingState of the condition and is evaluated as not missing. The missing
+                matches are produced by the AlertsEngine when a MissingState expires, out of the rules.
+             */
+            return new MissingCondition(tenantId, triggerId, dataId, SAMPLE_INTERVAL / 2);
+        }
+
+        @Override
+        Collection<Data> data(String tenantId, String dataId, long timestamp, long sample) {
+            return Collections.singletonList(Data.forNumeric(tenantId, dataId, timestamp, 1.0));
+        }
+    },
+    EVENT {
+        @Override
+        Condition condition(String tenantId, String triggerId, String dataId) {
+            return new EventCondition(tenantId, triggerId, dataId, "text == 'DOWN'");
+        }
+
+        @Override
+        Collection<Event> events(String tenantId, String dataId, long timestamp, long sample) {
+            return Collections.singletonList(new Event(tenantId, UUID.randomUUID().toString(), timestamp, dataId,
+                    "DEPLOYMENT", "DOWN"));
+        }
+    },
+    EXTERNAL {
+        @Override
+        Condition condition(String tenantId, String triggerId, String dataId) {
+            return new ExternalCondition(tenantId, triggerId, Mode.FIRING, dataId, "benchmark", "external");
+        }
+
+        @Override
+        Collection<Data> data(String tenantId, String dataId, long timestamp, long sample) {
+            return Collections.singletonList(Data.forString(tenantId, dataId, timestamp, "external"));
+        }
+    };
+
+    /**
+     * Time in milliseconds between two samples of the same dataId.
+     */
+    public static final long SAMPLE_INTERVAL = 1000L;
+
+    /**
+     * @return a FIRING condition that matches the input of this type
+     */
+    abstract Condition condition(String tenantId, String triggerId, String dataId);
+
+    /**
+     * @return the data of a sample, empty for condition types evaluated on events
+     */
+    Collection<Data> data(String tenantId, String dataId, long timestamp, long sample) {
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return the events of a sample, empty for condition types evaluated on data
+     */
+    Collection<Event> events(String tenantId, String dataId, long timestamp, long sample) {
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.engine.impl.DataCodec;
+import org.hawkular.alerts.engine.impl.PartitionManagerImpl.NotifyData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Encoding of the batches of Data and Events propagated across the cluster: the previous Java serialization of the
+ * collections against the {@link DataCodec}, with and without LZ4 compression.
+ *
+ * An operation encodes a batch, or encodes and decodes it on the round trip benchmark. The encoded size of a batch
+ * is printed on the setup of each trial.
+ *
+ * <pre>
+ *     java -jar hawkular-alerts-benchmarks/target/benchmarks.jar DataCodecBenchmark -p items=1000
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DataCodecBenchmark {
+
+    public enum Format {
+        JAVA, CODEC, CODEC_LZ4
+    }
+
+    public enum Payload {
+        DATA, EVENTS
+    }
+
+    @Param({ "JAVA", "CODEC", "CODEC_LZ4" })
+    Format format;
+
+    @Param({ "DATA", "EVENTS" })
+    Payload payload;
+
+    @Param({ "10", "1000" })
+    int items;
+
+    /**
+     * Distinct dataIds of the batch.
+     */
+    @Param({ "100" })
+    int dataIds;
+
+    DataCodec codec;
+    List<Data> data;
+    List<Event> events;
+    byte[] encoded;
+
+    @Setup
+    public void setup() throws IOException {
+        codec = new DataCodec(Format.CODEC_LZ4 == format ? 1 : 0);
+        data = new ArrayList<>(items);
+        events = new ArrayList<>(items);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < items; i++) {
+            String dataId = "host-" + (i % dataIds) + ".cpu.usage";
+            Map<String, String> context = new HashMap<>();
+            context.put("host", "host-" + (i % dataIds));
+            context.put("unit", "percent");
+            data.add(Data.forNumeric("tenant", "agent", dataId, now + i, (double) (i % 100), context));
+            Map<String, String> tags = new HashMap<>();
+            tags.put("app", "app-" + (i % dataIds));
+            events.add(new Event("tenant", UUID.randomUUID().toString(), now + i, "agent", dataId, "DEPLOYMENT",
+                    "DOWN", context, tags));
+        }
+        encoded = encode();
+        System.out.printf("%nEncoded size [format=%s, payload=%s, items=%s]: %s bytes%n", format, payload, items,
+                encoded.length);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        switch (format) {
+            case JAVA:
+                return serialize(Payload.DATA == payload ? new ArrayList<>(data) : new ArrayList<>(events));
+            default:
+                return Payload.DATA == payload ? codec.encodeData(data) : codec.encodeEvents(events);
+        }
+    }
+
+    @Benchmark
+    public Object roundTrip() throws Exception {
+        byte[] bytes = encode();
+        switch (format) {
+            case JAVA:
+                return new ObjectInputStream(new ByteArrayInputStream(bytes)).readObject();
+            default:
+                return Payload.DATA == payload ? codec.decodeData(bytes) : codec.decodeEvents(bytes);
+        }
+    }
+
+    /**
+     * The NotifyData envelope as sent to the other nodes, it uses the codec with the default configuration.
+     */
+    @Benchmark
+    public byte[] notifyData() throws IOException {
+        return serialize(Payload.DATA == payload ? new NotifyData(0, data, Data.class)
+                : new NotifyData(0, events, Event.class));
+    }
+
+    private static byte[] serialize(Object o) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(o);
+        }
+        return bytes.toByteArray();
+    }
+}
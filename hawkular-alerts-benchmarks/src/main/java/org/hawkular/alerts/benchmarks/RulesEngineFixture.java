@@ -0,0 +1,218 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.condition.ConditionEval;
+import org.hawkular.alerts.api.model.condition.MissingCondition;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Alert;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.trigger.Match;
+import org.hawkular.alerts.api.model.trigger.Mode;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.engine.impl.DroolsRulesEngineImpl;
+import org.hawkular.alerts.engine.impl.FastPathRulesEngineImpl;
+import org.hawkular.alerts.engine.impl.ShardedRulesEngineImpl;
+import org.hawkular.alerts.engine.service.RulesEngine;
+import org.hawkular.alerts.engine.util.MissingState;
+
+/**
+ * A RulesEngine loaded with benchmark triggers, and the inputs of its rules cycles.
+ *
+ * The rules engine is used directly, with the same globals that the AlertsEngine registers, so the benchmarks
+ * measure the rules evaluation without the ingestion and persistence stages. Each trigger has its own dataIds and
+ * all the conditions match the generated input, so each cycle evaluates the full condition and dampening path.
+ */
+public class RulesEngineFixture {
+
+    public static final String TENANT_ID = "benchmark-tenant";
+
+    public enum EngineType {
+        DROOLS, SHARDED,
+        /** Simple triggers evaluated out of the rules, on top of a single rules session */
+        FAST_PATH
+    }
+
+    public enum DampeningType {
+        /** The default dampening: each true evaluation fires */
+        DEFAULT,
+        /** 2 consecutive true evaluations */
+        STRICT,
+        /** 2 true evaluations out of 3 */
+        RELAXED_COUNT,
+        /** true evaluations during 10 seconds, with no false evaluation */
+        STRICT_TIME,
+        /** true evaluations during 10 seconds, fired by the timeout */
+        STRICT_TIMEOUT
+    }
+
+    private final RulesEngine rules;
+
+    private final List<Alert> alerts = new ArrayList<>();
+    private final List<Event> events = new ArrayList<>();
+    private final Set<Dampening> pendingTimeouts = new HashSet<>();
+    private final Map<Trigger, List<Set<ConditionEval>>> autoResolvedTriggers = new HashMap<>();
+    private final Set<Trigger> disabledTriggers = new HashSet<>();
+
+    private final List<MissingState> missingStates = new ArrayList<>();
+    private final List<String> dataIds = new ArrayList<>();
+    private ConditionType conditionType;
+    private long sample;
+    private long timestamp;
+
+    public RulesEngineFixture(EngineType engineType) {
+        switch (engineType) {
+            case SHARDED:
+                rules = new ShardedRulesEngineImpl(Runtime.getRuntime().availableProcessors());
+                break;
+            case FAST_PATH:
+                rules = new FastPathRulesEngineImpl(new DroolsRulesEngineImpl());
+                break;
+            default:
+                rules = new DroolsRulesEngineImpl();
+        }
+        rules.addGlobal("alerts", alerts);
+        rules.addGlobal("events", events);
+        rules.addGlobal("pendingTimeouts", pendingTimeouts);
+        rules.addGlobal("autoResolvedTriggers", autoResolvedTriggers);
+        rules.addGlobal("disabledTriggers", disabledTriggers);
+        // Samples start on the current time, as MissingStates and time dampenings are initialized to it
+        timestamp = System.currentTimeMillis();
+    }
+
+    /**
+     * Load the definitions of the triggers into the rules engine.
+     *
+     * @param conditionType type of all the conditions
+     * @param numTriggers number of triggers
+     * @param numConditions number of conditions per trigger, each one on its own dataId
+     * @param match firing match of the triggers
+     * @param dampeningType dampening of the triggers
+     */
+    public void load(ConditionType conditionType, int numTriggers, int numConditions, Match match,
+            DampeningType dampeningType) {
+        this.conditionType = conditionType;
+        List<Object> definitions = new ArrayList<>();
+        for (int i = 0; i < numTriggers; i++) {
+            String triggerId = "trigger-" + i;
+            Trigger trigger = new Trigger(TENANT_ID, triggerId, conditionType.name() + "-" + i);
+            trigger.setFiringMatch(match);
+            trigger.setEnabled(true);
+            definitions.add(trigger);
+            for (int j = 0; j < numConditions; j++) {
+                String dataId = "data-" + i + "-" + j;
+                Condition c = conditionType.condition(TENANT_ID, triggerId, dataId);
+                c.setConditionSetSize(numConditions);
+                c.setConditionSetIndex(j + 1);
+                definitions.add(c);
+                dataIds.add(dataId);
+                if (c instanceof MissingCondition) {
+                    MissingState missingState = new MissingState(trigger, (MissingCondition) c);
+                    missingStates.add(missingState);
+                    definitions.add(missingState);
+                }
+            }
+            Dampening d = dampening(dampeningType, triggerId);
+            if (d != null) {
+                definitions.add(d);
+            }
+        }
+        rules.addFacts(definitions);
+    }
+
+    private static Dampening dampening(DampeningType dampeningType, String triggerId) {
+        switch (dampeningType) {
+            case STRICT:
+                return Dampening.forStrict(TENANT_ID, triggerId, Mode.FIRING, 2);
+            case RELAXED_COUNT:
+                return Dampening.forRelaxedCount(TENANT_ID, triggerId, Mode.FIRING, 2, 3);
+            case STRICT_TIME:
+                return Dampening.forStrictTime(TENANT_ID, triggerId, Mode.FIRING, 10000L);
+            case STRICT_TIMEOUT:
+                return Dampening.forStrictTimeout(TENANT_ID, triggerId, Mode.FIRING, 10000L);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @param samplesPerCycle number of samples of each dataId in the cycle
+     * @return the input of the next rules cycle
+     */
+    public Cycle nextCycle(int samplesPerCycle) {
+        Cycle cycle = new Cycle();
+        for (int k = 0; k < samplesPerCycle; k++) {
+            sample++;
+            timestamp += ConditionType.SAMPLE_INTERVAL;
+            for (String dataId : dataIds) {
+                cycle.data.addAll(conditionType.data(TENANT_ID, dataId, timestamp, sample));
+                cycle.events.addAll(conditionType.events(TENANT_ID, dataId, timestamp, sample));
+            }
+        }
+        return cycle;
+    }
+
+    /**
+     * Run a rules cycle.
+     *
+     * @param cycle input of the cycle
+     * @return number of alerts generated
+     */
+    public int fire(Cycle cycle) {
+        // MissingStates are armed before each cycle, as the AlertsEngine does for the MissingStates touched by data
+        for (MissingState missingState : missingStates) {
+            rules.removeFact(missingState);
+            missingState.setTime(missingState.getPreviousTime() + 1);
+            rules.addFact(missingState);
+        }
+        if (!cycle.data.isEmpty()) {
+            rules.addData(cycle.data);
+        }
+        if (!cycle.events.isEmpty()) {
+            rules.addEvents(cycle.events);
+        }
+        rules.fire();
+        int numAlerts = alerts.size();
+        alerts.clear();
+        events.clear();
+        return numAlerts;
+    }
+
+    public void shutdown() {
+        rules.reset();
+        if (rules instanceof ShardedRulesEngineImpl) {
+            ((ShardedRulesEngineImpl) rules).shutdown();
+        } else if (rules instanceof FastPathRulesEngineImpl) {
+            ((FastPathRulesEngineImpl) rules).shutdown();
+        }
+    }
+
+    public static class Cycle {
+        final TreeSet<Data> data = new TreeSet<>();
+        final TreeSet<Event> events = new TreeSet<>();
+    }
+}
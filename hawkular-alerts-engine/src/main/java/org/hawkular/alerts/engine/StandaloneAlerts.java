@@ -33,17 +33,27 @@ import org.hawkular.alerts.engine.impl.CassActionsServiceImpl;
 import org.hawkular.alerts.engine.impl.CassAlertsServiceImpl;
 import org.hawkular.alerts.engine.impl.CassCluster;
 import org.hawkular.alerts.engine.impl.CassDefinitionsServiceImpl;
+import org.hawkular.alerts.engine.impl.DataCoalescing;
 import org.hawkular.alerts.engine.impl.DataDrivenGroupCacheManager;
 import org.hawkular.alerts.engine.impl.DroolsRulesEngineImpl;
+import org.hawkular.alerts.engine.impl.EngineMetrics;
 import org.hawkular.alerts.engine.impl.ExtensionsServiceImpl;
+import org.hawkular.alerts.engine.impl.FastPathRulesEngineImpl;
 import org.hawkular.alerts.engine.impl.IncomingDataManagerImpl;
+import org.hawkular.alerts.engine.impl.IngestionBackpressure;
 import org.hawkular.alerts.engine.impl.PartitionManagerImpl;
 import org.hawkular.alerts.engine.impl.PropertiesServiceImpl;
+import org.hawkular.alerts.engine.impl.ShardedRulesEngineImpl;
 import org.hawkular.alerts.engine.impl.StatusServiceImpl;
+import org.hawkular.alerts.engine.impl.TriggerCostEstimator;
+import org.hawkular.alerts.engine.impl.WorkingMemoryCheckpoint;
+import org.hawkular.alerts.engine.impl.WriteBehindPersistence;
+import org.hawkular.alerts.engine.service.RulesEngine;
 import org.hawkular.alerts.extensions.CepEngine;
 import org.hawkular.alerts.extensions.CepEngineImpl;
 import org.hawkular.alerts.extensions.EventsAggregationExtension;
 import org.hawkular.alerts.filter.CacheClient;
+import org.hawkular.alerts.properties.AlertProperties;
 import org.infinispan.manager.EmbeddedCacheManager;
 import org.jboss.logging.Logger;
 
@@ -71,12 +81,18 @@ public class StandaloneAlerts {
     private CassAlertsServiceImpl alerts;
     private CassDefinitionsServiceImpl definitions;
     private AlertsEngineImpl engine;
-    private DroolsRulesEngineImpl rules;
+    private RulesEngine rules;
     private PartitionManagerImpl partitionManager;
     private StatusServiceImpl status;
     private DataDrivenGroupCacheManager dataDrivenGroupCacheManager;
     private ExtensionsServiceImpl extensions;
     private IncomingDataManagerImpl incoming;
+    private IngestionBackpressure backpressure;
+    private WriteBehindPersistence writeBehind;
+    private WorkingMemoryCheckpoint checkpoint;
+    private DataCoalescing coalescing;
+    private TriggerCostEstimator costEstimator;
+    private EngineMetrics metrics;
     private CacheClient dataIdCache;
     private ActionsCacheManager actionsCacheManager;
     private PublishCacheManager publishCacheManager;
@@ -91,8 +107,32 @@ public class StandaloneAlerts {
         threadFactory = new AlertsThreadFactory();
         cassCluster = new CassCluster();
         actions = new CassActionsServiceImpl();
-        rules = new DroolsRulesEngineImpl();
+        backpressure = new IngestionBackpressure();
+        metrics = new EngineMetrics();
+        int shards = Integer.parseInt(AlertProperties.getProperty(RulesEngine.RULES_ENGINE_SHARDS,
+                RulesEngine.RULES_ENGINE_SHARDS_ENV, RulesEngine.RULES_ENGINE_SHARDS_DEFAULT));
+        if (shards > 1) {
+            ShardedRulesEngineImpl shardedRules = new ShardedRulesEngineImpl(shards);
+            shardedRules.setIngestionBackpressure(backpressure);
+            shardedRules.setMetrics(metrics);
+            rules = shardedRules;
+        } else {
+            DroolsRulesEngineImpl droolsRules = new DroolsRulesEngineImpl();
+            droolsRules.setIngestionBackpressure(backpressure);
+            droolsRules.setMetrics(metrics);
+            rules = droolsRules;
+        }
+        if (Boolean.parseBoolean(AlertProperties.getProperty(RulesEngine.RULES_ENGINE_FAST_PATH,
+                RulesEngine.RULES_ENGINE_FAST_PATH_ENV, RulesEngine.RULES_ENGINE_FAST_PATH_DEFAULT))) {
+            FastPathRulesEngineImpl fastPathRules = new FastPathRulesEngineImpl(rules);
+            fastPathRules.setMetrics(metrics);
+            rules = fastPathRules;
+        }
         engine = new AlertsEngineImpl();
+        writeBehind = new WriteBehindPersistence();
+        checkpoint = new WorkingMemoryCheckpoint();
+        coalescing = new DataCoalescing();
+        costEstimator = new TriggerCostEstimator();
         definitions = new CassDefinitionsServiceImpl();
         properties = new PropertiesServiceImpl();
         alerts = new CassAlertsServiceImpl();
@@ -132,6 +172,7 @@ public class StandaloneAlerts {
         alerts.setSession(session);
         alerts.setProperties(properties);
         alerts.setActionsService(actions);
+        alerts.setMetrics(metrics);
 
         alertsContext.setPartitionManager(partitionManager);
 
@@ -151,6 +192,14 @@ public class StandaloneAlerts {
         engine.setExecutor(executor);
         engine.setExtensionsService(extensions);
         engine.setAlertsService(alerts);
+        engine.setIngestionBackpressure(backpressure);
+        engine.setWriteBehind(writeBehind);
+        engine.setCheckpoint(checkpoint);
+        engine.setDataCoalescing(coalescing);
+        engine.setTriggerCostEstimator(costEstimator);
+        engine.setMetrics(metrics);
+
+        coalescing.setMetrics(metrics);
 
         incoming.setAlertsEngine(engine);
         incoming.setDataDrivenGroupCacheManager(dataDrivenGroupCacheManager);
@@ -158,6 +207,10 @@ public class StandaloneAlerts {
         incoming.setDefinitionsService(definitions);
         incoming.setExecutor(executor);
         incoming.setPartitionManager(partitionManager);
+        incoming.setIngestionBackpressure(backpressure);
+
+        writeBehind.setAlertsService(alerts);
+        writeBehind.setPartitionManager(partitionManager);
 
         partitionManager.setDefinitionsService(definitions);
 
@@ -170,7 +223,9 @@ public class StandaloneAlerts {
         publishCacheManager.setPublishCache(cacheManager.getCache("publish"));
 
         status.setPartitionManager(partitionManager);
+        status.setAlertsEngine(engine);
         status.setSession(session);
+        status.setMetrics(metrics);
 
         cepEngineImpl.setAlertsService(alerts);
         cepEngineImpl.setExecutor(executor);
@@ -191,6 +246,8 @@ public class StandaloneAlerts {
         actionsCacheManager.init();
         publishCacheManager.init();
         extensions.init();
+        writeBehind.init();
+        checkpoint.init();
         engine.initServices();
         eventsAggregationExtension.init();
     }
@@ -206,6 +263,12 @@ public class StandaloneAlerts {
     public static void stop() {
         if (instance != null) {
             instance.engine.shutdown();
+            instance.writeBehind.shutdown();
+            if (instance.rules instanceof ShardedRulesEngineImpl) {
+                ((ShardedRulesEngineImpl) instance.rules).shutdown();
+            } else if (instance.rules instanceof FastPathRulesEngineImpl) {
+                ((FastPathRulesEngineImpl) instance.rules).shutdown();
+            }
             instance.partitionManager.shutdown();
             instance.cassCluster.shutdown();
             instance.cacheManager.stop();
@@ -247,6 +310,13 @@ public class StandaloneAlerts {
         return instance.status;
     }
 
+    public static EngineMetrics getEngineMetrics() {
+        if (instance == null) {
+            init();
+        }
+        return instance.metrics;
+    }
+
     public class AlertsThreadFactory implements ThreadFactory {
         private int count = 0;
 
@@ -16,8 +16,11 @@
  */
 package org.hawkular.alerts.engine.impl;
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Auxiliary cache for AlertsEngine implementation.
@@ -28,25 +31,35 @@ import java.util.Set;
  * This scenario works on single or distributed deployments.
  * In distributed deployments this helps to avoid unnecessary processing.
  *
+ * Active dataIds are reference counted per tenant, and the dataIds of each trigger are indexed, so a trigger is removed
+ * without scanning the rest of entries. Lookups are lock free and do not allocate, as they are invoked per incoming
+ * Data and Event. Updates are serialized.
+ *
  * @author Jay Shaughnessy
  * @author Lucas Ponce
  */
 public class AlertsEngineCache {
 
     /**
-     * It represents the Triggers -> Conditions relation hold on this node.
+     * It represents the Triggers -> dataIds relation hold on this node, as tenantId -> triggerId -> dataIds.
      * A single dataId can be part of several triggers or even several conditions.
      */
-    private Set<DataEntry> activeDataEntries;
+    private final Map<String, Map<String, Set<String>>> triggerDataIds;
+
+    /**
+     * A cache of the dataIds hold, as tenantId -> dataId -> number of triggers using it.
+     * Used to filter if a data has a dataId on this node or not.
+     */
+    private final Map<String, Map<String, DataIdRef>> activeDataIds;
 
     /**
-     * A cache of the dataIds hold. Used to filter if a data has a dataId on this node or not.
+     * Incremented each time a dataId becomes active or inactive on this node.
      */
-    private Set<DataId> activeDataIds;
+    private volatile long version;
 
     public AlertsEngineCache() {
-        activeDataEntries = new HashSet<>();
-        activeDataIds = new HashSet<>();
+        triggerDataIds = new HashMap<>();
+        activeDataIds = new ConcurrentHashMap<>();
     }
 
     /**
@@ -58,7 +71,11 @@ public class AlertsEngineCache {
      *         false otherwise
      */
     public boolean isDataIdActive(String tenantId, String dataId) {
-        return tenantId != null && dataId != null && activeDataIds.contains(new DataId(tenantId, dataId));
+        if (tenantId == null || dataId == null) {
+            return false;
+        }
+        Map<String, DataIdRef> tenantDataIds = activeDataIds.get(tenantId);
+        return tenantDataIds != null && tenantDataIds.containsKey(dataId);
     }
 
     /**
@@ -66,12 +83,21 @@ public class AlertsEngineCache {
      *
      * @param dataEntry to register on this node
      */
-    public void add(DataEntry dataEntry) {
-        activeDataEntries.add(dataEntry);
-        DataId newDataId = new DataId(dataEntry.getTenantId(), dataEntry.getDataId());
-        if (!activeDataIds.contains(newDataId)) {
-            activeDataIds.add(newDataId);
+    public synchronized void add(DataEntry dataEntry) {
+        Set<String> dataIds = triggerDataIds
+                .computeIfAbsent(dataEntry.getTenantId(), t -> new HashMap<>())
+                .computeIfAbsent(dataEntry.getTriggerId(), t -> new HashSet<>(2));
+        if (dataIds.contains(dataEntry.getDataId())) {
+            return;
+        }
+        DataIdRef ref = activeDataIds
+                .computeIfAbsent(dataEntry.getTenantId(), t -> new ConcurrentHashMap<>())
+                .computeIfAbsent(dataEntry.getDataId(), DataIdRef::new);
+        if (ref.count++ == 0) {
+            version++;
         }
+        // The trigger references the interned dataId of the cache
+        dataIds.add(ref.dataId);
     }
 
     /**
@@ -79,47 +105,74 @@ public class AlertsEngineCache {
      *
      * @param triggerId to remove
      */
-    public void remove(String tenantId, String triggerId) {
+    public synchronized void remove(String tenantId, String triggerId) {
         if (tenantId == null) {
             throw new IllegalArgumentException("tenantId must be not null");
         }
         if (triggerId == null) {
             throw new IllegalArgumentException("triggerId must be not null");
         }
-        Set<DataEntry> dataEntriesToRemove = new HashSet<>();
-        activeDataEntries.stream().forEach(e -> {
-            if (e.getTenantId().equals(tenantId) && e.getTriggerId().equals(triggerId)) {
-                dataEntriesToRemove.add(e);
-            }
-        });
-        activeDataEntries.removeAll(dataEntriesToRemove);
-        Set<DataId> dataIdToCheck = new HashSet<>();
-        dataEntriesToRemove.stream().forEach(e -> {
-            dataIdToCheck.add(new DataId(e.getTenantId(), e.getDataId()));
-        });
-        Set<DataId> dataIdToRemove = new HashSet<>();
-        dataIdToCheck.stream().forEach(dataId -> {
-            boolean found = false;
-            for (DataEntry entry : activeDataEntries) {
-                DataId currentDataId = new DataId(entry.getTenantId(), entry.getDataId());
-                if (currentDataId.equals(dataId)) {
-                    found = true;
-                    break;
-                }
-            }
-            if (!found) {
-                dataIdToRemove.add(dataId);
+        Map<String, Set<String>> tenantTriggers = triggerDataIds.get(tenantId);
+        if (tenantTriggers == null) {
+            return;
+        }
+        Set<String> dataIds = tenantTriggers.remove(triggerId);
+        if (tenantTriggers.isEmpty()) {
+            triggerDataIds.remove(tenantId);
+        }
+        Map<String, DataIdRef> tenantDataIds = activeDataIds.get(tenantId);
+        if (dataIds == null || tenantDataIds == null) {
+            return;
+        }
+        for (String dataId : dataIds) {
+            DataIdRef ref = tenantDataIds.get(dataId);
+            if (ref != null && --ref.count <= 0) {
+                tenantDataIds.remove(dataId);
+                version++;
             }
-        });
-        activeDataIds.removeAll(dataIdToRemove);
+        }
+        if (tenantDataIds.isEmpty()) {
+            activeDataIds.remove(tenantId);
+        }
     }
 
     /**
      * Clear all cache entries.
      */
-    public void clear() {
-        activeDataEntries.clear();
+    public synchronized void clear() {
+        triggerDataIds.clear();
         activeDataIds.clear();
+        version++;
+    }
+
+    /**
+     * @return a number that changes each time the set of active dataIds changes
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return a copy of the active dataIds on this node, as tenantId -> dataIds
+     */
+    public synchronized Map<String, Set<String>> getActiveDataIds() {
+        Map<String, Set<String>> copy = new HashMap<>();
+        for (Map.Entry<String, Map<String, DataIdRef>> entry : activeDataIds.entrySet()) {
+            copy.put(entry.getKey(), new HashSet<>(entry.getValue().keySet()));
+        }
+        return copy;
+    }
+
+    /*
+        Interned dataId and the number of triggers using it, only modified under the cache lock.
+     */
+    private static class DataIdRef {
+        final String dataId;
+        int count;
+
+        DataIdRef(String dataId) {
+            this.dataId = dataId;
+        }
     }
 
     public static class DataId {
@@ -18,9 +18,12 @@ package org.hawkular.alerts.engine.impl;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -28,7 +31,14 @@ import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
 
 import org.hawkular.alerts.api.model.condition.CompareCondition;
 import org.hawkular.alerts.api.model.condition.Condition;
@@ -46,13 +56,16 @@ import org.hawkular.alerts.api.services.DataExtension;
 import org.hawkular.alerts.api.services.DefinitionsService;
 import org.hawkular.alerts.api.services.EventExtension;
 import org.hawkular.alerts.api.services.ExtensionsService;
+import org.hawkular.alerts.api.util.EngineClock;
 import org.hawkular.alerts.engine.impl.AlertsEngineCache.DataEntry;
+import org.hawkular.alerts.engine.impl.AlertsEngineCache.DataId;
 import org.hawkular.alerts.engine.service.AlertsEngine;
 import org.hawkular.alerts.engine.service.PartitionDataListener;
 import org.hawkular.alerts.engine.service.PartitionManager;
 import org.hawkular.alerts.engine.service.PartitionManager.Operation;
 import org.hawkular.alerts.engine.service.PartitionTriggerListener;
 import org.hawkular.alerts.engine.service.RulesEngine;
+import org.hawkular.alerts.engine.util.Histogram;
 import org.hawkular.alerts.engine.util.MissingState;
 import org.hawkular.alerts.log.MsgLogger;
 import org.hawkular.alerts.properties.AlertProperties;
@@ -83,22 +96,116 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
      */
     private static final String ENGINE_PERIOD = "hawkular-alerts.engine-period";
 
+    /*
+        ENGINE_BATCH_SIZE defined in number of pending datums or events.
+        A rules cycle is started as soon as pending data or pending events reach this size.
+        A value <= 0 disables this trigger.
+     */
+    private static final String ENGINE_BATCH_SIZE = "hawkular-alerts.engine-batch-size";
+    private static final String ENGINE_BATCH_SIZE_ENV = "HAWKULAR_ENGINE_BATCH_SIZE";
+    private static final String ENGINE_BATCH_SIZE_DEFAULT = "1000";
+
+    /*
+        ENGINE_MAX_LATENCY defined in milliseconds.
+        A rules cycle is started as soon as the oldest pending datum or event has waited this time.
+        A value <= 0 disables this trigger, then pending data is only evaluated on each ENGINE_PERIOD.
+     */
+    private static final String ENGINE_MAX_LATENCY = "hawkular-alerts.engine-max-latency";
+    private static final String ENGINE_MAX_LATENCY_ENV = "HAWKULAR_ENGINE_MAX_LATENCY";
+    private static final String ENGINE_MAX_LATENCY_DEFAULT = "500";
+
+    /*
+        Max time in milliseconds the rules thread waits for pending alerts to be persisted before auto-resolving them.
+        On timeout the auto-resolve is deferred to the next cycle, so the rules thread is never stalled for long.
+     */
+    private static final long WRITE_BEHIND_FLUSH_TIMEOUT = 200;
+
+    /*
+        Resolution in milliseconds and number of slots of the timing wheels used to track dampening timeouts and
+        MissingState deadlines. Deadlines further than a wheel revolution are supported, at the cost of one extra visit
+        per revolution.
+     */
+    private static final long TIMING_WHEEL_TICK = 100;
+    private static final int TIMING_WHEEL_SIZE = 1024;
+
+    /*
+        Number of facts inserted into the rules engine per batch on a bulk load of triggers.
+     */
+    private static final int LOAD_BATCH_SIZE = 10000;
+
+    /*
+        Min number of triggers of a tenant added on a partition change to fetch the definitions of the whole tenant,
+        instead of fetching the definitions trigger by trigger.
+     */
+    private static final int HANDOFF_TENANT_FETCH = 50;
+
+    /**
+     * Reason why a rules cycle is started.
+     */
+    public enum CycleTrigger {
+        /**
+         * Periodic cycle. Dampening timeouts and MissingStates are checked on it.
+         */
+        PERIOD,
+
+        /**
+         * Pending data or events reached the engine batch size.
+         */
+        BATCH_SIZE,
+
+        /**
+         * Oldest pending datum or event reached the engine max latency.
+         */
+        MAX_LATENCY
+    }
+
     private int delay;
     private int period;
+    private int batchSize;
+    private int maxLatency;
+
+    /*
+        Arrival time of the oldest pending datum or event, 0 if there is nothing pending.
+     */
+    private final AtomicLong pendingSince;
+    private final AtomicBoolean batchCycleRequested;
+    private volatile boolean cyclesEnabled;
+
+    /*
+        If false rules cycles are not scheduled on the wake up timer, the caller runs them with runCycle().
+     */
+    private boolean scheduledCycles = true;
+
+    private final Map<CycleTrigger, AtomicLong> cycles;
+    private volatile CycleTrigger lastCycleTrigger;
+    private volatile long lastCycleLatency;
+    private volatile long maxCycleLatency;
+    private volatile long lastCycleDuration;
+    private long publishedDataIdsVersion = -1;
 
-    private TreeSet<Data> pendingData;
-    private TreeSet<Event> pendingEvents;
+    private final IngestionBuffer<Data> pendingData;
+    private final IngestionBuffer<Event> pendingEvents;
 
     private final List<Alert> alerts;
     private final List<Event> events;
-    private final Set<Dampening> pendingTimeouts;
+    private final DampeningTimeouts pendingTimeouts;
     private final Map<Trigger, List<Set<ConditionEval>>> autoResolvedTriggers;
     private final Set<Trigger> disabledTriggers;
-    private final Set<MissingState> missingStates;
+    private final MissingStates missingStates;
 
     private final Timer wakeUpTimer;
     private TimerTask rulesTask;
 
+    /*
+        Phases timing of the last full reload, exposed on the engine status
+     */
+    private volatile Map<String, String> loadStatus = Collections.emptyMap();
+
+    /*
+        Phases timing of the last partition change, exposed on the engine status
+     */
+    private volatile Map<String, String> handoffStatus = Collections.emptyMap();
+
     /*
         All incoming Data and Events go through front-line global filtering (via IncomingDataManager)
         and therefore, in a non-distributed env the global filtering is equivalent to node-specific
@@ -126,20 +233,48 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
 
     private ExecutorService executor;
 
+    IngestionBackpressure backpressure;
+
+    WriteBehindPersistence writeBehind;
+
+    WorkingMemoryCheckpoint checkpoint;
+
+    DataCoalescing coalescing;
+
+    TriggerCostEstimator costEstimator;
+
+    private Histogram cycleTimes;
+    private Histogram alertsPerCycle;
+    private Histogram eventsPerCycle;
+    private Histogram autoResolveFlushTimes;
+    private LongAdder autoResolveDeferred;
+
     public AlertsEngineImpl() {
-        pendingData = new TreeSet<>();
-        pendingEvents = new TreeSet<>();
+        pendingData = new IngestionBuffer<>();
+        pendingEvents = new IngestionBuffer<>();
         alerts = new ArrayList<>();
         events = new ArrayList<>();
-        pendingTimeouts = new HashSet<>();
+        pendingTimeouts = new DampeningTimeouts(TIMING_WHEEL_TICK, TIMING_WHEEL_SIZE);
         autoResolvedTriggers = new HashMap<>();
         disabledTriggers = new HashSet<>();
-        missingStates = new HashSet<>();
+        missingStates = new MissingStates(TIMING_WHEEL_TICK, TIMING_WHEEL_SIZE);
+
+        pendingSince = new AtomicLong(0);
+        batchCycleRequested = new AtomicBoolean(false);
+        cyclesEnabled = false;
+        cycles = new EnumMap<>(CycleTrigger.class);
+        for (CycleTrigger trigger : CycleTrigger.values()) {
+            cycles.put(trigger, new AtomicLong(0));
+        }
 
         wakeUpTimer = new Timer("CassAlertsServiceImpl-Timer");
 
         delay = new Integer(AlertProperties.getProperty(ENGINE_DELAY, "1000"));
         period = new Integer(AlertProperties.getProperty(ENGINE_PERIOD, "2000"));
+        batchSize = new Integer(AlertProperties.getProperty(ENGINE_BATCH_SIZE, ENGINE_BATCH_SIZE_ENV,
+                ENGINE_BATCH_SIZE_DEFAULT));
+        maxLatency = new Integer(AlertProperties.getProperty(ENGINE_MAX_LATENCY, ENGINE_MAX_LATENCY_ENV,
+                ENGINE_MAX_LATENCY_DEFAULT));
         engineExtensions = Boolean.parseBoolean(AlertProperties.getProperty(ENGINE_EXTENSIONS, ENGINE_EXTENSIONS_ENV,
                 ENGINE_EXTENSIONS_DEFAULT));
     }
@@ -176,6 +311,58 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
         this.executor = executor;
     }
 
+    public void setIngestionBackpressure(IngestionBackpressure backpressure) {
+        this.backpressure = backpressure;
+    }
+
+    public void setDataCoalescing(DataCoalescing coalescing) {
+        this.coalescing = coalescing;
+    }
+
+    public void setTriggerCostEstimator(TriggerCostEstimator costEstimator) {
+        this.costEstimator = costEstimator;
+    }
+
+    public void setWriteBehind(WriteBehindPersistence writeBehind) {
+        this.writeBehind = writeBehind;
+    }
+
+    /**
+     * @param scheduledCycles false to disable the scheduling of rules cycles, used to drive the engine with
+     *                        {@link #runCycle()} on a simulated clock
+     */
+    public void setScheduledCycles(boolean scheduledCycles) {
+        this.scheduledCycles = scheduledCycles;
+    }
+
+    /**
+     * @return the period of the rules cycles in milliseconds
+     */
+    public int getPeriod() {
+        return period;
+    }
+
+    /**
+     * @return the number of pending datums or events that triggers a rules cycle, <= 0 if disabled
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setCheckpoint(WorkingMemoryCheckpoint checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    public void setMetrics(EngineMetrics metrics) {
+        metrics.gauge(EngineMetrics.ENGINE_PENDING_DATA, pendingData::size);
+        metrics.gauge(EngineMetrics.ENGINE_PENDING_EVENTS, pendingEvents::size);
+        cycleTimes = metrics.histogram(EngineMetrics.ENGINE_CYCLE_TIME);
+        alertsPerCycle = metrics.histogram(EngineMetrics.ENGINE_ALERTS_PER_CYCLE);
+        eventsPerCycle = metrics.histogram(EngineMetrics.ENGINE_EVENTS_PER_CYCLE);
+        autoResolveFlushTimes = metrics.histogram(EngineMetrics.ENGINE_AUTO_RESOLVE_FLUSH_TIME);
+        autoResolveDeferred = metrics.counter(EngineMetrics.ENGINE_AUTO_RESOLVE_DEFERRED);
+    }
+
     public void initServices() {
         try {
             distributed = partitionManager.isDistributed();
@@ -202,13 +389,23 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
     }
 
     public void shutdown() {
-        rulesTask.cancel();
+        cyclesEnabled = false;
+        if (rulesTask != null) {
+            rulesTask.cancel();
+        }
         wakeUpTimer.cancel();
+        if (checkpoint != null && checkpoint.isEnabled()) {
+            checkpoint();
+            checkpoint.shutdown();
+        }
     }
 
     @Override
     public void clear() {
-        rulesTask.cancel();
+        cyclesEnabled = false;
+        if (rulesTask != null) {
+            rulesTask.cancel();
+        }
 
         rules.clear();
 
@@ -220,22 +417,45 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
         autoResolvedTriggers.clear();
         disabledTriggers.clear();
         missingStates.clear();
+        if (coalescing != null) {
+            coalescing.clear();
+        }
+        pendingSince.set(0);
 
-        rulesTask = new RulesInvoker();
-        wakeUpTimer.schedule(rulesTask, delay, period);
+        if (scheduledCycles) {
+            rulesTask = new RulesInvoker(CycleTrigger.PERIOD);
+            wakeUpTimer.schedule(rulesTask, delay, period);
+        }
+        cyclesEnabled = true;
     }
 
     @Override
     public void reload() {
         log.debug("Start a full reload of the AlertsEngine");
+        cyclesEnabled = false;
         rules.reset();
         if (distributed) {
             alertsEngineCache.clear();
+            if (costEstimator != null) {
+                costEstimator.clear();
+            }
+        }
+        if (coalescing != null) {
+            coalescing.clear();
+        }
+        if (checkpoint != null) {
+            checkpoint.newSession();
         }
         if (rulesTask != null) {
             rulesTask.cancel();
         }
 
+        // The rules session is new, previous MissingStates and timeouts are not valid
+        pendingTimeouts.clear();
+        missingStates.clear();
+
+        Map<String, String> status = new HashMap<>();
+        long startLoad = System.currentTimeMillis();
         Collection<Trigger> triggers = null;
         try {
             triggers = definitions.getAllTriggers();
@@ -243,21 +463,28 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
             log.debug(e.getMessage(), e);
             msgLog.errorDefinitionsService("Triggers", e.getMessage());
         }
+        status.put("engine.load.fetchTriggersTime", String.valueOf(System.currentTimeMillis() - startLoad));
 
         if (triggers != null && !triggers.isEmpty()) {
-
-            triggers.stream().filter(Trigger::isLoadable).forEach(t -> {
+            if (distributed) {
                 /*
                     In distributed scenario a reload should delegate into the PartitionManager to load the trigger on
                     the node which belongs
                  */
-                if (distributed) {
-                    partitionManager.notifyTrigger(Operation.UPDATE, t.getTenantId(), t.getId());
-                } else {
-                    reloadTrigger(t);
-                }
-            });
+                triggers.stream().filter(Trigger::isLoadable).forEach(t ->
+                    partitionManager.notifyTrigger(Operation.UPDATE, t.getTenantId(), t.getId()));
+                status.put("engine.load.mode", "distributed");
+            } else {
+                bulkLoadTriggers(triggers, status);
+            }
+        }
+        if (!distributed && triggers != null && checkpoint != null && checkpoint.isEnabled()) {
+            // All the triggers are loaded, a checkpointed state not restored belongs to a removed trigger
+            checkpoint.removeUnclaimed();
         }
+        status.put("engine.load.totalTime", String.valueOf(System.currentTimeMillis() - startLoad));
+        loadStatus = status;
+        log.debugf("AlertsEngine reload %s", status);
 
         rules.addGlobal("log", log);
         rules.addGlobal("actions", actions);
@@ -267,8 +494,77 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
         rules.addGlobal("autoResolvedTriggers", autoResolvedTriggers);
         rules.addGlobal("disabledTriggers", disabledTriggers);
 
-        rulesTask = new RulesInvoker();
-        wakeUpTimer.schedule(rulesTask, delay, period);
+        if (scheduledCycles) {
+            rulesTask = new RulesInvoker(CycleTrigger.PERIOD);
+            wakeUpTimer.schedule(rulesTask, delay, period);
+        }
+        cyclesEnabled = true;
+    }
+
+    /*
+        Load the definitions of all triggers with two bulk queries, instead of two queries per trigger, then insert the
+        facts into the rules engine in large batches. If the bulk queries fail, triggers are loaded one by one.
+     */
+    private void bulkLoadTriggers(Collection<Trigger> triggers, Map<String, String> status) {
+        List<Trigger> loadable = triggers.stream().filter(Trigger::isLoadable).collect(Collectors.toList());
+        status.put("engine.load.triggers", String.valueOf(loadable.size()));
+        if (loadable.isEmpty()) {
+            return;
+        }
+
+        long startPhase = System.currentTimeMillis();
+        Collection<Condition> allConditions;
+        Collection<Dampening> allDampenings;
+        try {
+            // Conditions and dampenings are fetched in parallel when an executor is available
+            Future<Collection<Dampening>> futureDampenings = executor != null
+                    ? executor.submit(() -> definitions.getAllDampenings()) : null;
+            allConditions = definitions.getAllConditions();
+            allDampenings = futureDampenings != null ? futureDampenings.get() : definitions.getAllDampenings();
+        } catch (Exception e) {
+            log.debug(e.getMessage(), e);
+            msgLog.errorDefinitionsService("Conditions/Dampening", e.getMessage());
+            log.warnf("Bulk load of triggers failed, loading [%s] triggers one by one", loadable.size());
+            status.put("engine.load.mode", "perTrigger");
+            loadable.forEach(this::reloadTrigger);
+            return;
+        }
+        status.put("engine.load.mode", "bulk");
+        status.put("engine.load.fetchDefinitionsTime", String.valueOf(System.currentTimeMillis() - startPhase));
+
+        startPhase = System.currentTimeMillis();
+        Map<DataId, List<Condition>> conditionsByTrigger = new HashMap<>();
+        for (Condition c : allConditions) {
+            conditionsByTrigger.computeIfAbsent(new DataId(c.getTenantId(), c.getTriggerId()),
+                    k -> new ArrayList<>()).add(c);
+        }
+        Map<DataId, List<Dampening>> dampeningsByTrigger = new HashMap<>();
+        for (Dampening d : allDampenings) {
+            dampeningsByTrigger.computeIfAbsent(new DataId(d.getTenantId(), d.getTriggerId()),
+                    k -> new ArrayList<>()).add(d);
+        }
+        status.put("engine.load.groupTime", String.valueOf(System.currentTimeMillis() - startPhase));
+
+        startPhase = System.currentTimeMillis();
+        int numFacts = 0;
+        List<Object> batch = new ArrayList<>(LOAD_BATCH_SIZE);
+        for (Trigger trigger : loadable) {
+            DataId key = new DataId(trigger.getTenantId(), trigger.getId());
+            batch.addAll(triggerFacts(trigger,
+                    conditionsByTrigger.getOrDefault(key, Collections.emptyList()),
+                    dampeningsByTrigger.getOrDefault(key, Collections.emptyList()), true));
+            if (batch.size() >= LOAD_BATCH_SIZE) {
+                numFacts += batch.size();
+                rules.updateTriggers(null, batch);
+                batch = new ArrayList<>(LOAD_BATCH_SIZE);
+            }
+        }
+        if (!batch.isEmpty()) {
+            numFacts += batch.size();
+            rules.updateTriggers(null, batch);
+        }
+        status.put("engine.load.facts", String.valueOf(numFacts));
+        status.put("engine.load.insertTime", String.valueOf(System.currentTimeMillis() - startPhase));
     }
 
     @Override
@@ -352,7 +648,8 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
 
         // Look for the Trigger in the rules engine, if it is there then remove everything about it
         // Note that removeTrigger relies only on tenatId+triggerId.
-        removeTrigger(trigger);
+        // A trigger not present in the rules engine is restored from the checkpoint, if any
+        boolean restore = !removeTrigger(trigger);
 
         try {
             if (distributed) {
@@ -364,36 +661,7 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
                 Collection<Dampening> dampenings = definitions.getTriggerDampenings(trigger.getTenantId(),
                         trigger.getId(), null);
 
-                /*
-                    Cache dataId from conditions, Handle MissingCondition's MissingState
-                 */
-                for (Condition c : conditionSet) {
-                    if (distributed) {
-                        DataEntry entry = new DataEntry(c.getTenantId(), c.getTriggerId(), c.getDataId());
-                        alertsEngineCache.add(entry);
-                        if (Condition.Type.COMPARE == c.getType()) {
-                            String data2Id = ((CompareCondition) c).getData2Id();
-                            DataEntry entry2 = new DataEntry(c.getTenantId(), c.getTriggerId(), data2Id);
-                            alertsEngineCache.add(entry2);
-                        }
-                    }
-                    if (c instanceof MissingCondition) {
-                        // MissingState keeps a reference to the Trigger fact to check active trigger mode
-                        MissingState missingState = new MissingState(trigger, (MissingCondition) c);
-                        // MissingStates are modified inside the rules engine
-                        synchronized (missingStates) {
-                            missingStates.remove(missingState);
-                            missingStates.add(missingState);
-                            rules.addFact(missingState);
-                        }
-                    }
-                }
-
-                rules.addFact(trigger);
-                rules.addFacts(conditionSet);
-                if (!dampenings.isEmpty()) {
-                    rules.addFacts(dampenings);
-                }
+                rules.addFacts(triggerFacts(trigger, conditionSet, dampenings, restore));
             }
         } catch (Exception e) {
             log.debug(e.getMessage(), e);
@@ -401,6 +669,61 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
         }
     }
 
+    /*
+        Facts of a loadable trigger: its MissingStates, the Trigger, its Conditions and Dampenings.
+        The dataIds of the conditions are cached and the MissingStates are tracked as a side effect.
+        If restore is true, the checkpointed state of the trigger is applied and its stateful facts are added.
+     */
+    private List<Object> triggerFacts(Trigger trigger, Collection<Condition> conditionSet,
+            Collection<Dampening> dampenings, boolean restore) {
+        List<Object> facts = new ArrayList<>(conditionSet.size() + dampenings.size() + 1);
+        List<MissingState> triggerMissingStates = new ArrayList<>(0);
+        /*
+            Cache dataId from conditions, Handle MissingCondition's MissingState
+         */
+        for (Condition c : conditionSet) {
+            if (distributed) {
+                DataEntry entry = new DataEntry(c.getTenantId(), c.getTriggerId(), c.getDataId());
+                alertsEngineCache.add(entry);
+                if (Condition.Type.COMPARE == c.getType()) {
+                    String data2Id = ((CompareCondition) c).getData2Id();
+                    DataEntry entry2 = new DataEntry(c.getTenantId(), c.getTriggerId(), data2Id);
+                    alertsEngineCache.add(entry2);
+                }
+            }
+            if (c instanceof MissingCondition) {
+                // MissingState keeps a reference to the Trigger fact to check active trigger mode
+                triggerMissingStates.add(new MissingState(trigger, (MissingCondition) c));
+            }
+        }
+        List<Object> restoredFacts = Collections.emptyList();
+        if (restore && checkpoint != null) {
+            // Dampenings and MissingStates are restored in place
+            restoredFacts = checkpoint.restore(trigger, conditionSet, dampenings, triggerMissingStates);
+            for (Dampening d : dampenings) {
+                if (Dampening.Type.STRICT_TIMEOUT == d.getType() && d.getNumTrueEvals() > 0) {
+                    pendingTimeouts.add(d);
+                }
+            }
+        }
+        if (coalescing != null) {
+            coalescing.addTrigger(trigger, conditionSet);
+        }
+        if (distributed && costEstimator != null) {
+            costEstimator.addTrigger(trigger, conditionSet);
+        }
+        for (MissingState missingState : triggerMissingStates) {
+            // MissingStates are modified inside the rules engine
+            missingStates.add(missingState);
+            facts.add(missingState);
+        }
+        facts.add(trigger);
+        facts.addAll(conditionSet);
+        facts.addAll(dampenings);
+        facts.addAll(restoredFacts);
+        return facts;
+    }
+
     @Override
     public Trigger getLoadedTrigger(Trigger trigger) {
         if (null == trigger) {
@@ -434,54 +757,42 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
         }
     }
 
-    private void removeTrigger(Trigger trigger) {
+    /*
+        Return true if the trigger was present in the rules engine.
+     */
+    private boolean removeTrigger(Trigger trigger) {
         final String tenantId = trigger.getTenantId();
         final String triggerId = trigger.getId();
 
-        // If necessary, clean up working memory
-        if (null != rules.getFact(trigger)) {
-            // Remove the Trigger fact
-            rules.removeFact(trigger);
-
-            // Remove related facts
-            rules.removeFacts(f -> {
-                if (f instanceof Dampening) {
-                    return ((Dampening) f).getTenantId().equals(tenantId)
-                            && ((Dampening) f).getTriggerId().equals(triggerId);
-                } else if (f instanceof Condition) {
-                    return ((Condition) f).getTenantId().equals(tenantId) &&
-                            ((Condition) f).getTriggerId().equals(triggerId);
-                } else if (f instanceof MissingState) {
-                    return ((MissingState) f).getTenantId().equals(tenantId) &&
-                            ((MissingState) f).getTriggerId().equals(triggerId);
-                }
-                return false;
-            });
-        } else {
+        // If necessary, clean up working memory, the rules engine indexes the facts by trigger
+        boolean removed = !rules.removeTriggerFacts(tenantId, triggerId).isEmpty();
+        if (!removed) {
             if (log.isDebugEnabled()) {
                 log.debug("Trigger Fact not found. Nothing removed from rulebase " + trigger.toString());
             }
         }
 
+        removeTriggerState(tenantId, triggerId);
+        return removed;
+    }
+
+    private void removeTriggerState(String tenantId, String triggerId) {
         // Remove dataId associated from cache
         if (distributed) {
-            alertsEngineCache.remove(trigger.getTenantId(), trigger.getId());
-        }
-        // Remove any MissingState being managed for the trigger
-        synchronized (missingStates) {
-            Iterator<MissingState> it = missingStates.iterator();
-            while (it.hasNext()) {
-                MissingState missingState = it.next();
-                if (missingState.getTenantId().equals(trigger.getTenantId()) &&
-                        missingState.getTriggerId().equals(triggerId)) {
-                    it.remove();
-                }
+            alertsEngineCache.remove(tenantId, triggerId);
+            if (costEstimator != null) {
+                costEstimator.removeTrigger(tenantId, triggerId);
             }
         }
+        if (coalescing != null) {
+            coalescing.removeTrigger(tenantId, triggerId);
+        }
+        // Remove any MissingState being managed for the trigger
+        missingStates.removeTrigger(tenantId, triggerId);
     }
 
-    // We allow concurrent threads to make this call in order to process distributed data in parallel. We
-    // use synchronized blocks to protect pendingData.
+    // We allow concurrent threads to make this call in order to process distributed data in parallel.
+    // pendingData is a lock-free buffer, sorting is deferred to the rules cycle.
     @Override
     public void sendData(TreeSet<Data> data) {
         if (data == null) {
@@ -507,10 +818,16 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
             data = processDataExtensions(data);
         }
 
-        synchronized (pendingData) {
-            log.debugf("Adding [%s] to pendingData [%s]", data, pendingData);
-            pendingData.addAll(data);
+        if (data.isEmpty()) {
+            return;
+        }
+
+        log.debugf("Adding [%s] to pendingData", data);
+        int pendingSize = backpressure == null ? pendingData.addAll(data) : backpressure.offerData(pendingData, data);
+        if (pendingSize < 0) {
+            return;
         }
+        checkCycleTriggers(pendingSize);
     }
 
     private TreeSet<Data> filterIncomingDataForNode(TreeSet<Data> data) {
@@ -534,8 +851,8 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
         return data;
     }
 
-    // We allow concurrent threads to make this call in order to process distributed data in parallel. We
-    // use synchronized blocks to protect pendingEvents.
+    // We allow concurrent threads to make this call in order to process distributed data in parallel.
+    // pendingEvents is a lock-free buffer, sorting is deferred to the rules cycle.
     @Override
     public void sendEvents(TreeSet<Event> events) {
         if (events == null) {
@@ -561,9 +878,43 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
             events = processEventsExtensions(events);
         }
 
-        synchronized (pendingEvents) {
-            log.debugf("Adding [%s] to pendingEvents [%s]", events, pendingEvents);
-            pendingEvents.addAll(events);
+        if (events.isEmpty()) {
+            return;
+        }
+
+        log.debugf("Adding [%s] to pendingEvents", events);
+        int pendingSize = backpressure == null ? pendingEvents.addAll(events)
+                : backpressure.offerEvents(pendingEvents, events);
+        if (pendingSize < 0) {
+            return;
+        }
+        checkCycleTriggers(pendingSize);
+    }
+
+    /*
+        Start a rules cycle without waiting for the next period when pending items reach the batch size, or schedule
+        one to be started when the first pending item reaches the max latency.
+        Cycles run on the wakeUpTimer thread, so they never overlap with the periodic cycle.
+     */
+    private void checkCycleTriggers(int pendingSize) {
+        boolean firstPending = pendingSince.compareAndSet(0, System.currentTimeMillis());
+        if (!cyclesEnabled || !scheduledCycles) {
+            return;
+        }
+        if (batchSize > 0 && pendingSize >= batchSize && batchCycleRequested.compareAndSet(false, true)) {
+            scheduleCycle(CycleTrigger.BATCH_SIZE, 0);
+        }
+        if (maxLatency > 0 && firstPending) {
+            scheduleCycle(CycleTrigger.MAX_LATENCY, maxLatency);
+        }
+    }
+
+    private void scheduleCycle(CycleTrigger trigger, long cycleDelay) {
+        try {
+            wakeUpTimer.schedule(new RulesInvoker(trigger), cycleDelay);
+        } catch (IllegalStateException e) {
+            // Timer is cancelled on shutdown
+            log.debugf("Rules cycle [%s] not scheduled: %s", trigger, e.getMessage());
         }
     }
 
@@ -588,37 +939,79 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
         return events;
     }
 
-    private TreeSet<Data> getAndClearPendingData() {
-        TreeSet<Data> result;
-        synchronized (pendingData) {
-            result = pendingData;
-            pendingData = new TreeSet<>();
+    /**
+     * Run a periodic rules cycle on the caller thread. It is intended for engines without scheduled cycles.
+     */
+    public void runCycle() {
+        new RulesInvoker(CycleTrigger.PERIOD).run();
+    }
+
+    /*
+        Triggers are loaded one by one in distributed mode, the dataIds of the node are published at most once per
+        cycle, only if they have changed. The estimated costs of the triggers are published once per cost window.
+     */
+    private void publishNodeState() {
+        long version = alertsEngineCache.getVersion();
+        if (version != publishedDataIdsVersion) {
+            publishedDataIdsVersion = version;
+            partitionManager.notifyDataIds(alertsEngineCache.getActiveDataIds());
+        }
+        if (costEstimator != null && costEstimator.roll(System.currentTimeMillis())) {
+            partitionManager.notifyTriggerCosts(costEstimator.getCosts());
         }
-        return result;
+    }
+
+    /*
+        Sorting and deduplication of the pending items happen here, once per cycle, on the rules thread.
+     */
+    private TreeSet<Data> getAndClearPendingData() {
+        TreeSet<Data> data = backpressure == null ? pendingData.drain() : backpressure.drainData(pendingData);
+        return coalescing == null ? data : coalescing.coalesce(data);
     }
 
     private TreeSet<Event> getAndClearPendingEvents() {
-        TreeSet<Event> result;
-        synchronized (pendingEvents) {
-            result = pendingEvents;
-            pendingEvents = new TreeSet<>();
-        }
-        return result;
+        return backpressure == null ? pendingEvents.drain() : backpressure.drainEvents(pendingEvents);
     }
 
     private class RulesInvoker extends TimerTask {
+        private final CycleTrigger trigger;
+
+        RulesInvoker(CycleTrigger trigger) {
+            this.trigger = trigger;
+        }
+
         @Override
         public void run() {
+            if (CycleTrigger.BATCH_SIZE == trigger) {
+                batchCycleRequested.set(false);
+            }
+
+            if (distributed) {
+                publishNodeState();
+            }
+
             int numTimeouts = checkPendingTimeouts();
 
-            int numMissingEvals = checkMissingStates();
+            // MissingStates are checked on each period, only the expired ones or the ones touched by data are visited
+            int numMissingEvals = CycleTrigger.PERIOD == trigger ? checkMissingStates() : 0;
 
-            if (!pendingData.isEmpty() || !pendingEvents.isEmpty() || numTimeouts > 0 || numMissingEvals > 0) {
+            // Auto-resolves deferred by a previous cycle are retried even without new data
+            if (!pendingData.isEmpty() || !pendingEvents.isEmpty() || numTimeouts > 0 || numMissingEvals > 0
+                    || !autoResolvedTriggers.isEmpty()) {
+                long startCycle = System.currentTimeMillis();
+                long startCycleNanos = System.nanoTime();
+                long oldestPending = pendingSince.getAndSet(0);
                 TreeSet<Data> newData = getAndClearPendingData();
                 TreeSet<Event> newEvents = getAndClearPendingEvents();
+                if (distributed && costEstimator != null) {
+                    costEstimator.record(newData, newEvents);
+                }
+                if (backpressure != null) {
+                    backpressure.engineDrained();
+                }
 
-                log.debugf("Executing rules engine on %d datums, %d events, %d dampening timeouts.", newData.size(),
-                        newEvents.size(), numTimeouts);
+                log.debugf("Executing rules engine [%s] on %d datums, %d events, %d dampening timeouts.", trigger,
+                        newData.size(), newEvents.size(), numTimeouts);
 
                 try {
                     if (newData.isEmpty() && newEvents.isEmpty()) {
@@ -631,6 +1024,7 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
                         if (!newEvents.isEmpty()) {
                             rules.addEvents(newEvents);
                         }
+                        missingStates.touch(newData, newEvents);
 
                         // release to GC
                         newData = null;
@@ -639,18 +1033,29 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
                         rules.fire();
                     }
 
-                    alertsService.addAlerts(alerts);
-                    alerts.clear();
-                    alertsService.persistEvents(events);
-                    if (distributed && !events.isEmpty()) {
-                        /*
-                            Generated events on a node should be notified to other nodes for chained triggers
-                         */
-                        partitionManager.notifyEvents(new ArrayList<>(events));
+                    if (alertsPerCycle != null) {
+                        alertsPerCycle.record(alerts.size());
+                        eventsPerCycle.record(events.size());
+                    }
+                    if (writeBehind != null) {
+                        // Persistence and notification of generated events happen on the write-behind stage
+                        writeBehind.enqueue(alerts, events, distributed);
+                    } else {
+                        alertsService.addAlerts(alerts);
+                        alertsService.persistEvents(events);
+                        if (distributed && !events.isEmpty()) {
+                            /*
+                                Generated events on a node should be notified to other nodes for chained triggers
+                             */
+                            partitionManager.notifyEvents(new ArrayList<>(events));
+                        }
                     }
+                    alerts.clear();
                     events.clear();
                     handleDisabledTriggers();
-                    handleAutoResolvedTriggers();
+                    if (flushBeforeAutoResolve()) {
+                        handleAutoResolvedTriggers();
+                    }
 
                 } catch (Exception e) {
                     e.printStackTrace();
@@ -661,8 +1066,16 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
                 } finally {
                     alerts.clear();
                     events.clear();
+                    updateCycleStats(trigger, startCycle, oldestPending);
+                    if (cycleTimes != null) {
+                        cycleTimes.record((System.nanoTime() - startCycleNanos) / 1000);
+                    }
                 }
             }
+
+            if (checkpoint != null && checkpoint.isDue(System.currentTimeMillis())) {
+                checkpoint();
+            }
         }
 
         private int checkPendingTimeouts() {
@@ -670,36 +1083,81 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
                 return 0;
             }
 
-            long now = System.currentTimeMillis();
-            Set<Dampening> timeouts = null;
-            for (Dampening d : pendingTimeouts) {
-                if (now < d.getTrueEvalsStartTime() + d.getEvalTimeSetting()) {
-                    continue;
-                }
-
+            long now = EngineClock.currentTimeMillis();
+            int numTimeouts = 0;
+            for (Dampening d : pendingTimeouts.expire(now)) {
                 d.setSatisfied(true);
                 try {
                     if (log.isDebugEnabled()) {
                         log.debug("Dampening Timeout Hit! " + d.toString());
                     }
                     rules.updateFact(d);
-                    if (null == timeouts) {
-                        timeouts = new HashSet<>();
-                    }
-                    timeouts.add(d);
+                    numTimeouts++;
                 } catch (Exception e) {
                     log.error("Unable to update Dampening Fact on Timeout! " + d.toString(), e);
+                    pendingTimeouts.retry(d, now + TIMING_WHEEL_TICK);
                 }
-
             }
 
-            if (null == timeouts) {
-                return 0;
+            return numTimeouts;
+        }
+    }
+
+    /*
+        Capture the stateful facts of the rules engine, invoked between rules cycles.
+     */
+    private void checkpoint() {
+        try {
+            checkpoint.checkpoint(rules.getFacts(WorkingMemoryCheckpoint::isStateFact));
+        } catch (Exception e) {
+            log.debug(e.getMessage(), e);
+            log.errorf("Error on working memory checkpoint: %s", e.getMessage());
+        }
+    }
+
+    private void updateCycleStats(CycleTrigger trigger, long startCycle, long oldestPending) {
+        long endCycle = System.currentTimeMillis();
+        cycles.get(trigger).incrementAndGet();
+        lastCycleTrigger = trigger;
+        lastCycleDuration = endCycle - startCycle;
+        if (oldestPending > 0) {
+            lastCycleLatency = endCycle - oldestPending;
+            if (lastCycleLatency > maxCycleLatency) {
+                maxCycleLatency = lastCycleLatency;
             }
+        }
+        log.debugf("Rules cycle [%s] took [%s] ms, latency of oldest pending item [%s] ms", trigger,
+                lastCycleDuration, oldestPending > 0 ? lastCycleLatency : 0);
+    }
 
-            pendingTimeouts.removeAll(timeouts);
-            return timeouts.size();
+    @Override
+    public Map<String, String> getStatus() {
+        Map<String, String> status = new HashMap<>();
+        status.put("engine.batchSize", String.valueOf(batchSize));
+        status.put("engine.maxLatency", String.valueOf(maxLatency));
+        status.put("engine.period", String.valueOf(period));
+        for (Entry<CycleTrigger, AtomicLong> entry : cycles.entrySet()) {
+            status.put("engine.cycles." + entry.getKey().name(), String.valueOf(entry.getValue().get()));
+        }
+        CycleTrigger lastTrigger = lastCycleTrigger;
+        status.put("engine.lastCycleTrigger", lastTrigger == null ? "" : lastTrigger.name());
+        status.put("engine.lastCycleDuration", String.valueOf(lastCycleDuration));
+        status.put("engine.lastCycleLatency", String.valueOf(lastCycleLatency));
+        status.put("engine.maxCycleLatency", String.valueOf(maxCycleLatency));
+        status.put("engine.pendingData", String.valueOf(pendingData.size()));
+        status.put("engine.pendingEvents", String.valueOf(pendingEvents.size()));
+        if (backpressure != null) {
+            status.putAll(backpressure.getStatus());
         }
+        if (writeBehind != null) {
+            status.putAll(writeBehind.getStatus());
+        }
+        if (checkpoint != null && checkpoint.isEnabled()) {
+            status.putAll(checkpoint.getStatus());
+        }
+        status.putAll(loadStatus);
+        status.putAll(handoffStatus);
+        return status;
     }
 
     private void handleDisabledTriggers() {
@@ -717,6 +1175,29 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
         }
     }
 
+    /*
+        Alerts to be auto-resolved must be persisted before resolving them. The rules thread waits for the write-behind
+        stage up to WRITE_BEHIND_FLUSH_TIMEOUT, on timeout the auto-resolved triggers are kept for the next cycle.
+     */
+    private boolean flushBeforeAutoResolve() throws InterruptedException {
+        if (writeBehind == null || autoResolvedTriggers.isEmpty()) {
+            return true;
+        }
+        long start = System.nanoTime();
+        boolean flushed = writeBehind.flush(WRITE_BEHIND_FLUSH_TIMEOUT);
+        if (autoResolveFlushTimes != null) {
+            autoResolveFlushTimes.record((System.nanoTime() - start) / 1000);
+        }
+        if (!flushed) {
+            if (autoResolveDeferred != null) {
+                autoResolveDeferred.increment();
+            }
+            log.debugf("Write-behind not flushed in [%d] ms, auto-resolve of [%d] triggers deferred",
+                    WRITE_BEHIND_FLUSH_TIMEOUT, autoResolvedTriggers.size());
+        }
+        return flushed;
+    }
+
     private void handleAutoResolvedTriggers() {
         try {
             for (Entry<Trigger, List<Set<ConditionEval>>> entry : autoResolvedTriggers.entrySet()) {
@@ -748,18 +1229,34 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
         }
     }
 
+    /*
+        A MissingState is armed (time > previousTime) to be updated by the rules on the next incoming data, then the
+        rules disarm it (previousTime == time). Only the MissingStates touched by data since the last check need to be
+        armed again, and only the ones whose deadline has expired can match.
+     */
     private int checkMissingStates() {
         if (missingStates.isEmpty()) {
             return 0;
         }
 
+        long now = EngineClock.currentTimeMillis();
+        for (MissingState missingState : missingStates.drainTouched()) {
+            if (missingState.getPreviousTime() < missingState.getTime()) {
+                continue;
+            }
+            rules.removeFact(missingState);
+            missingState.setTime(Math.max(now, missingState.getPreviousTime() + 1));
+            rules.addFact(missingState);
+            missingStates.schedule(missingState, MissingStates.deadline(missingState));
+        }
+
         int numMatchingEvals = 0;
-        for (MissingState missingState : missingStates) {
+        for (MissingState missingState : missingStates.expire(now)) {
             if (missingState.getTriggerMode() != missingState.getTrigger().getMode()) {
+                missingStates.schedule(missingState, now + period);
                 continue;
             }
 
-            long now = System.currentTimeMillis();
             rules.removeFact(missingState);
             missingState.setTime(now);
             if (missingState.getCondition().match(missingState.getPreviousTime(), now)) {
@@ -769,8 +1266,11 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
                 missingState.setPreviousTime(now);
                 rules.addFact(eval);
                 numMatchingEvals++;
+                // Disarmed by the match, it will be armed again on the next check
+                missingStates.touch(missingState);
             }
             rules.addFact(missingState);
+            missingStates.schedule(missingState, MissingStates.deadline(missingState));
         }
 
         return numMatchingEvals;
@@ -780,8 +1280,8 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
         Data incoming from a different node.  This has already been globally filtered but not locally filtered.
         It does not need to be re-propagated.
 
-        We allow concurrent threads to make this call in order to process distributed data in parallel. We
-        use synchronized blocks to protect pendingData.
+        We allow concurrent threads to make this call in order to process distributed data in parallel.
+        pendingData is a lock-free buffer.
      */
     @Override
     public void onNewData(Collection<Data> data) {
@@ -792,8 +1292,8 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
         Events incoming from a different node.  This has already been globally filtered but not locally filtered.
         It does not need to be re-propagated.
 
-        We allow concurrent threads to make this call in order to process distributed data in parallel. We
-        use synchronized blocks to protect pendingEvents.
+        We allow concurrent threads to make this call in order to process distributed data in parallel.
+        pendingEvents is a lock-free buffer.
      */
     @Override
     public void onNewEvents(Collection<Event> events) {
@@ -842,37 +1342,206 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
 
         if (!pendingData.isEmpty() || !pendingEvents.isEmpty()) {
             if (!pendingData.isEmpty()) {
-                log.warn("Pending Data onPartitionChange: " + pendingData);
+                log.warn("Pending Data onPartitionChange: " + pendingData.snapshot());
             }
-            if (!!pendingEvents.isEmpty()) {
-                log.warn("Pending Events onPartitionChange: " + pendingData);
+            if (!pendingEvents.isEmpty()) {
+                log.warn("Pending Events onPartitionChange: " + pendingEvents.snapshot());
             }
         }
 
+        Map<String, String> status = new HashMap<>();
+        long startHandoff = System.currentTimeMillis();
+        status.put("engine.handoff.lastTime", String.valueOf(startHandoff));
+
         /*
-            Removing old triggers for this node
+            Removing old triggers for this node, in a single batch. Their evaluation state is handed off to the new
+            owners.
          */
-        for (Entry<String, List<String>> entry : removed.entrySet()) {
+        int numRemoved = 0;
+        if (!removed.isEmpty()) {
+            Collection<Object> removedFacts = rules.updateTriggers(removed, Collections.emptyList());
+            for (Entry<String, List<String>> entry : removed.entrySet()) {
+                String tenantId = entry.getKey();
+                numRemoved += entry.getValue().size();
+                entry.getValue().stream().forEach(triggerId -> removeTriggerState(tenantId, triggerId));
+            }
+            if (checkpoint != null) {
+                Map<String, Map<String, byte[]>> states = new HashMap<>();
+                for (Entry<DataId, byte[]> state : checkpoint.export(removedFacts).entrySet()) {
+                    states.computeIfAbsent(state.getKey().getTenantId(), t -> new HashMap<>())
+                            .put(state.getKey().getDataId(), state.getValue());
+                }
+                partitionManager.notifyTriggerStates(states);
+                status.put("engine.handoff.exportedStates", String.valueOf(states.values().stream()
+                        .mapToInt(Map::size).sum()));
+            }
+        }
+        status.put("engine.handoff.removed", String.valueOf(numRemoved));
+        status.put("engine.handoff.removeTime", String.valueOf(System.currentTimeMillis() - startHandoff));
+
+        /*
+            Loading new triggers for this node
+         */
+        if (!added.isEmpty()) {
+            bulkHandoffTriggers(added, status);
+        }
+        status.put("engine.handoff.duration", String.valueOf(System.currentTimeMillis() - startHandoff));
+        handoffStatus = status;
+        log.debugf("AlertsEngine partition change %s", status);
+    }
+
+    /*
+        Load the triggers added to this node on a partition change. The definitions are fetched in parallel, by tenant
+        for the tenants with many added triggers or else trigger by trigger, meanwhile the evaluation state of the
+        triggers is received from their previous owners. All facts are inserted in large batches.
+     */
+    private void bulkHandoffTriggers(Map<String, List<String>> added, Map<String, String> status) {
+        long startPhase = System.currentTimeMillis();
+        // Pending fetch -> triggers fetched
+        Map<Future<List<TriggerDefinitions>>, List<DataId>> fetches = new LinkedHashMap<>();
+        int numAdded = 0;
+        for (Entry<String, List<String>> entry : added.entrySet()) {
             String tenantId = entry.getKey();
-            entry.getValue().stream().forEach(triggerId -> {
-                Trigger removeTrigger = new Trigger(tenantId, triggerId, "to-remove-from-alerts-engine");
-                removeTrigger(removeTrigger);
-            });
+            numAdded += entry.getValue().size();
+            if (entry.getValue().size() >= HANDOFF_TENANT_FETCH) {
+                Set<String> triggerIds = new HashSet<>(entry.getValue());
+                addFetch(fetches, () -> fetchTenantDefinitions(tenantId, triggerIds),
+                        toDataIds(tenantId, entry.getValue()));
+            } else {
+                for (String triggerId : entry.getValue()) {
+                    addFetch(fetches, () -> fetchTriggerDefinitions(tenantId, triggerId),
+                            toDataIds(tenantId, Collections.singletonList(triggerId)));
+                }
+            }
         }
+        status.put("engine.handoff.added", String.valueOf(numAdded));
+
+        // The previous owners hand off the state while the definitions are fetched
+        long startState = System.currentTimeMillis();
+        int numStates = 0;
+        if (checkpoint != null) {
+            Map<DataId, byte[]> states = new HashMap<>();
+            for (Entry<String, Map<String, byte[]>> tenant : partitionManager.getTriggerStates(added).entrySet()) {
+                for (Entry<String, byte[]> state : tenant.getValue().entrySet()) {
+                    states.put(new DataId(tenant.getKey(), state.getKey()), state.getValue());
+                }
+            }
+            numStates = states.size();
+            checkpoint.handoff(states);
+        }
+        status.put("engine.handoff.receivedStates", String.valueOf(numStates));
+        status.put("engine.handoff.stateWaitTime", String.valueOf(System.currentTimeMillis() - startState));
+
+        List<TriggerDefinitions> definitionsList = new ArrayList<>(numAdded);
+        List<DataId> failed = new ArrayList<>();
+        for (Entry<Future<List<TriggerDefinitions>>, List<DataId>> fetch : fetches.entrySet()) {
+            try {
+                definitionsList.addAll(fetch.getKey().get());
+            } catch (Exception e) {
+                log.debug(e.getMessage(), e);
+                msgLog.errorDefinitionsService("Trigger/Conditions/Dampening", e.getMessage());
+                failed.addAll(fetch.getValue());
+            }
+        }
+        status.put("engine.handoff.fetchTime", String.valueOf(System.currentTimeMillis() - startPhase));
 
         /*
-            Reloading new triggers for this node
+            Facts of the added triggers are not expected on this node, any stale fact is replaced
          */
+        startPhase = System.currentTimeMillis();
+        rules.updateTriggers(added, Collections.emptyList());
         for (Entry<String, List<String>> entry : added.entrySet()) {
             String tenantId = entry.getKey();
-            entry.getValue().stream().forEach(triggerId -> {
-                reloadTrigger(tenantId, triggerId);
-            });
+            entry.getValue().stream().forEach(triggerId -> removeTriggerState(tenantId, triggerId));
+        }
+        int numFacts = 0;
+        List<Object> batch = new ArrayList<>(LOAD_BATCH_SIZE);
+        for (TriggerDefinitions definitions : definitionsList) {
+            batch.addAll(triggerFacts(definitions.trigger, definitions.conditions, definitions.dampenings, true));
+            if (batch.size() >= LOAD_BATCH_SIZE) {
+                numFacts += batch.size();
+                rules.updateTriggers(null, batch);
+                batch = new ArrayList<>(LOAD_BATCH_SIZE);
+            }
+        }
+        if (!batch.isEmpty()) {
+            numFacts += batch.size();
+            rules.updateTriggers(null, batch);
+        }
+        if (!failed.isEmpty()) {
+            log.warnf("Bulk handoff of [%s] triggers failed, loading them one by one", failed.size());
+            failed.forEach(t -> reloadTrigger(new Trigger(t.getTenantId(), t.getDataId(), "reload-trigger")));
+        }
+        status.put("engine.handoff.loaded", String.valueOf(definitionsList.size()));
+        status.put("engine.handoff.failed", String.valueOf(failed.size()));
+        status.put("engine.handoff.facts", String.valueOf(numFacts));
+        status.put("engine.handoff.insertTime", String.valueOf(System.currentTimeMillis() - startPhase));
+    }
+
+    private void addFetch(Map<Future<List<TriggerDefinitions>>, List<DataId>> fetches,
+            Callable<List<TriggerDefinitions>> fetch, List<DataId> triggers) {
+        FutureTask<List<TriggerDefinitions>> future = new FutureTask<>(fetch);
+        if (executor != null) {
+            executor.execute(future);
+        } else {
+            future.run();
+        }
+        fetches.put(future, triggers);
+    }
+
+    private List<DataId> toDataIds(String tenantId, List<String> triggerIds) {
+        return triggerIds.stream().map(triggerId -> new DataId(tenantId, triggerId)).collect(Collectors.toList());
+    }
+
+    private List<TriggerDefinitions> fetchTenantDefinitions(String tenantId, Set<String> triggerIds)
+            throws Exception {
+        Map<String, TriggerDefinitions> byTrigger = new HashMap<>();
+        for (Trigger trigger : definitions.getTriggers(tenantId, null, null)) {
+            if (triggerIds.contains(trigger.getId()) && trigger.isLoadable()) {
+                byTrigger.put(trigger.getId(), new TriggerDefinitions(trigger));
+            }
+        }
+        for (Condition c : definitions.getConditions(tenantId)) {
+            TriggerDefinitions triggerDefinitions = byTrigger.get(c.getTriggerId());
+            if (triggerDefinitions != null) {
+                triggerDefinitions.conditions.add(c);
+            }
+        }
+        for (Dampening d : definitions.getDampenings(tenantId)) {
+            TriggerDefinitions triggerDefinitions = byTrigger.get(d.getTriggerId());
+            if (triggerDefinitions != null) {
+                triggerDefinitions.dampenings.add(d);
+            }
         }
+        return new ArrayList<>(byTrigger.values());
+    }
+
+    private List<TriggerDefinitions> fetchTriggerDefinitions(String tenantId, String triggerId) throws Exception {
+        Trigger trigger = definitions.getTrigger(tenantId, triggerId);
+        if (trigger == null || !trigger.isLoadable()) {
+            return Collections.emptyList();
+        }
+        TriggerDefinitions triggerDefinitions = new TriggerDefinitions(trigger);
+        triggerDefinitions.conditions.addAll(definitions.getTriggerConditions(tenantId, triggerId, null));
+        triggerDefinitions.dampenings.addAll(definitions.getTriggerDampenings(tenantId, triggerId, null));
+        return Collections.singletonList(triggerDefinitions);
     }
 
     private boolean isEmpty(String s) {
         return null == s || s.trim().isEmpty();
     }
 
+    /*
+        Definitions of a trigger fetched on a partition change
+     */
+    private static class TriggerDefinitions {
+        private final Trigger trigger;
+        private final List<Condition> conditions = new ArrayList<>();
+        private final List<Dampening> dampenings = new ArrayList<>();
+
+        TriggerDefinitions(Trigger trigger) {
+            this.trigger = trigger;
+        }
+    }
+
 }
@@ -328,6 +328,9 @@ public class CassActionsServiceImpl implements ActionsService {
         if (isEmpty(tenantId)) {
             throw new IllegalArgumentException("TenantId must be not null");
         }
+        if (null != pager && pager.isCursorPaged()) {
+            throw new IllegalArgumentException("Cursor paging is not supported for actions");
+        }
         boolean thin = (null != criteria && criteria.isThin());
         boolean filter = (null != criteria && criteria.hasCriteria());
 
@@ -21,6 +21,7 @@ import static org.hawkular.alerts.engine.tags.ExpressionTagQueryParser.Expressio
 import static org.hawkular.alerts.engine.tags.ExpressionTagQueryParser.ExpressionTagResolver.NEQ;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
@@ -33,11 +34,14 @@ import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.stream.Collectors;
 
+import org.hawkular.alerts.api.exception.OverloadedException;
 import org.hawkular.alerts.api.json.JsonUtil;
 import org.hawkular.alerts.api.model.Severity;
 import org.hawkular.alerts.api.model.condition.ConditionEval;
+import org.hawkular.alerts.api.model.dampening.Dampening;
 import org.hawkular.alerts.api.model.data.Data;
 import org.hawkular.alerts.api.model.event.Alert;
 import org.hawkular.alerts.api.model.event.Alert.Status;
@@ -56,21 +60,30 @@ import org.hawkular.alerts.api.services.AlertsService;
 import org.hawkular.alerts.api.services.DefinitionsService;
 import org.hawkular.alerts.api.services.EventsCriteria;
 import org.hawkular.alerts.api.services.PropertiesService;
+import org.hawkular.alerts.cache.IspnCacheManager;
+import org.hawkular.alerts.engine.impl.CassCursorPager.IndexReader;
+import org.hawkular.alerts.engine.impl.CassQueryPlanner.Filter;
+import org.hawkular.alerts.engine.impl.CassQueryPlanner.Plan;
 import org.hawkular.alerts.engine.impl.IncomingDataManagerImpl.IncomingData;
 import org.hawkular.alerts.engine.impl.IncomingDataManagerImpl.IncomingEvents;
 import org.hawkular.alerts.engine.service.AlertsEngine;
 import org.hawkular.alerts.engine.service.IncomingDataManager;
 import org.hawkular.alerts.engine.tags.ExpressionTagQueryParser;
+import org.hawkular.alerts.engine.tags.TagIndex;
+import org.hawkular.alerts.engine.util.Histogram;
 import org.hawkular.alerts.log.MsgLogger;
 import org.jboss.logging.Logger;
 
 import com.datastax.driver.core.BatchStatement;
-import com.datastax.driver.core.BoundStatement;
 import com.datastax.driver.core.PreparedStatement;
 import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.util.concurrent.Futures;
 
 /**
@@ -95,12 +108,56 @@ public class CassAlertsServiceImpl implements AlertsService {
     private static final String BATCH_SIZE_ENV = "BATCH_SIZE";
     private static final String BATCH_SIZE_DEFAULT = "10";
 
+    /*
+        Max number of batches pending at a time on a bulk write of alerts or events.
+     */
+    private static final String BATCH_MAX_IN_FLIGHT = "hawkular-alerts.batch-max-in-flight";
+    private static final String BATCH_MAX_IN_FLIGHT_ENV = "BATCH_MAX_IN_FLIGHT";
+    private static final String BATCH_MAX_IN_FLIGHT_DEFAULT = "32";
+
+    /*
+        Max number of point lookups pending at a time on a read of alerts, events or index keys by a list of ids.
+     */
+    private static final String LOOKUP_MAX_IN_FLIGHT = "hawkular-alerts.lookup-max-in-flight";
+    private static final String LOOKUP_MAX_IN_FLIGHT_ENV = "LOOKUP_MAX_IN_FLIGHT";
+    private static final String LOOKUP_MAX_IN_FLIGHT_DEFAULT = "64";
+
+    /*
+        Resolve the tag queries on an in-memory tag index. The index is local to the node, so it is always disabled
+        on distributed mode, where the tags can be written from other nodes, and the tag queries are resolved on the
+        tags table.
+     */
+    private static final String TAGS_INDEX = "hawkular-alerts.tags-index";
+    private static final String TAGS_INDEX_ENV = "TAGS_INDEX";
+    private static final String TAGS_INDEX_DEFAULT = "true";
+
+    /*
+        Time in milliseconds the tags of a tenant are kept in the in-memory tag index before they are reloaded.
+     */
+    private static final String TAGS_INDEX_EXPIRATION = "hawkular-alerts.tags-index-expiration";
+    private static final String TAGS_INDEX_EXPIRATION_ENV = "TAGS_INDEX_EXPIRATION";
+    private static final String TAGS_INDEX_EXPIRATION_DEFAULT = "60000";
+
+    /*
+        Max number of ids and tag values held by the in-memory tag index over all the tenants. The tag queries of a
+        tenant that does not fit in the index are resolved on the tags table.
+     */
+    private static final String TAGS_INDEX_MAX_SIZE = "hawkular-alerts.tags-index-max-size";
+    private static final String TAGS_INDEX_MAX_SIZE_ENV = "TAGS_INDEX_MAX_SIZE";
+    private static final String TAGS_INDEX_MAX_SIZE_DEFAULT = "1000000";
+
     private static final MsgLogger msgLog = MsgLogger.LOGGER;
     private static final Logger log = Logger.getLogger(CassAlertsServiceImpl.class);
 
     private int criteriaNoQuerySize;
     private int batchSize;
+    private int batchMaxInFlight;
+    private int lookupMaxInFlight;
     private final BatchStatement.Type batchType = BatchStatement.Type.LOGGED;
+    private final CassQueryPlanner queryPlanner = new CassQueryPlanner();
+    private final CassBuckets buckets = new CassBuckets();
+    private boolean tagIndexEnabled;
+    private TagIndex tagIndex;
 
     AlertsEngine alertsEngine;
 
@@ -116,6 +173,9 @@ public class CassAlertsServiceImpl implements AlertsService {
 
     private ExecutorService executor;
 
+    private Histogram alertsPersistenceTimes;
+    private Histogram eventsPersistenceTimes;
+
     public CassAlertsServiceImpl() {
     }
 
@@ -124,6 +184,27 @@ public class CassAlertsServiceImpl implements AlertsService {
                 CRITERIA_NO_QUERY_SIZE_ENV, CRITERIA_NO_QUERY_SIZE_DEFAULT));
         batchSize = Integer.valueOf(properties.getProperty(BATCH_SIZE,
                 BATCH_SIZE_ENV, BATCH_SIZE_DEFAULT));
+        batchMaxInFlight = Integer.valueOf(properties.getProperty(BATCH_MAX_IN_FLIGHT,
+                BATCH_MAX_IN_FLIGHT_ENV, BATCH_MAX_IN_FLIGHT_DEFAULT));
+        lookupMaxInFlight = Integer.valueOf(properties.getProperty(LOOKUP_MAX_IN_FLIGHT,
+                LOOKUP_MAX_IN_FLIGHT_ENV, LOOKUP_MAX_IN_FLIGHT_DEFAULT));
+        tagIndex = new TagIndex(new TagIndex.Loader() {
+            @Override
+            public Collection<String> ids(String tenantId, String type) throws Exception {
+                return TagType.ALERT.name().equals(type) ? getAllAlertIds(tenantId) : getAllEventIds(tenantId);
+            }
+
+            @Override
+            public Map<String, Collection<String>> values(String tenantId, String type, String name)
+                    throws Exception {
+                return getIdsByTagValue(tenantId, type, name);
+            }
+        }, Long.valueOf(properties.getProperty(TAGS_INDEX_EXPIRATION, TAGS_INDEX_EXPIRATION_ENV,
+                TAGS_INDEX_EXPIRATION_DEFAULT)), Integer.valueOf(properties.getProperty(TAGS_INDEX_MAX_SIZE,
+                TAGS_INDEX_MAX_SIZE_ENV, TAGS_INDEX_MAX_SIZE_DEFAULT)));
+        tagIndexEnabled = !IspnCacheManager.isDistributed()
+                && Boolean.valueOf(properties.getProperty(TAGS_INDEX, TAGS_INDEX_ENV, TAGS_INDEX_DEFAULT));
+        log.infof("Tags index enabled [%s]", tagIndexEnabled);
     }
 
     public AlertsEngine getAlertsEngine() {
@@ -170,6 +251,11 @@ public class CassAlertsServiceImpl implements AlertsService {
         this.properties = properties;
     }
 
+    public void setMetrics(EngineMetrics metrics) {
+        alertsPersistenceTimes = metrics.histogram(EngineMetrics.PERSISTENCE_ALERTS_TIME);
+        eventsPersistenceTimes = metrics.histogram(EngineMetrics.PERSISTENCE_EVENTS_TIME);
+    }
+
     @Override
     public void addAlerts(Collection<Alert> alerts) throws Exception {
         if (alerts == null) {
@@ -187,42 +273,77 @@ public class CassAlertsServiceImpl implements AlertsService {
         PreparedStatement insertAlertStime = CassStatement.get(session, CassStatement.INSERT_ALERT_STIME);
         PreparedStatement insertTag = CassStatement.get(session, CassStatement.INSERT_TAG);
 
+        long start = System.nanoTime();
         try {
-            List<ResultSetFuture> futures = new ArrayList<>();
-            BatchStatement batch = new BatchStatement(batchType);
-            int i = 0;
-            for(Alert a : alerts) {
-                batch.add(insertAlert.bind(a.getTenantId(), a.getAlertId(), JsonUtil.toJson(a)));
-                batch.add(insertAlertTrigger.bind(a.getTenantId(), a.getAlertId(), a.getTriggerId()));
-                batch.add(insertAlertCtime.bind(a.getTenantId(), a.getAlertId(), a.getCtime()));
-                batch.add(insertAlertStime.bind(a.getTenantId(), a.getAlertId(), a.getCurrentLifecycle().getStime()));
-
+            // Every Alert has a corresponding Event, both are written on the same plan
+            CassWritePlanner writes = new CassWritePlanner(session, batchSize, batchMaxInFlight);
+            for (Alert a : alerts) {
+                String tenantId = a.getTenantId();
+                ObjectNode alertJson = JsonUtil.getMapper().valueToTree(a);
+                writes.add("alerts_by_id", insertAlert.bind(tenantId, a.getAlertId(),
+                        JsonUtil.getMapper().writeValueAsString(alertJson)), tenantId, a.getAlertId());
+                writes.add("alerts_triggers", insertAlertTrigger.bind(tenantId, a.getAlertId(), a.getTriggerId()),
+                        tenantId);
+                long ctimeBucket = CassBuckets.bucketOf(a.getCtime());
+                writes.add("alerts_ctimes_by_day", insertAlertCtime.bind(tenantId, ctimeBucket, a.getAlertId(),
+                        a.getCtime()), tenantId, ctimeBucket);
+                planBucket(writes, tenantId, CassBuckets.ALERTS_CTIMES, a.getCtime());
+                long stime = a.getCurrentLifecycle().getStime();
+                long stimeBucket = CassBuckets.bucketOf(stime);
+                writes.add("alerts_stimes_by_day", insertAlertStime.bind(tenantId, stimeBucket, a.getAlertId(),
+                        stime), tenantId, stimeBucket);
+                planBucket(writes, tenantId, CassBuckets.ALERTS_STIMES, stime);
                 a.getTags().entrySet().stream().forEach(tag -> {
-                    batch.add(insertTag.bind(a.getTenantId(), TagType.ALERT.name(),
-                            tag.getKey(), tag.getValue(), a.getId()));
+                    writes.add("tags", insertTag.bind(tenantId, TagType.ALERT.name(), tag.getKey(), tag.getValue(),
+                            a.getId()), tenantId, TagType.ALERT.name(), tag.getKey());
                 });
-                i += batch.size();
-                if (i > batchSize) {
-                    futures.add(session.executeAsync(batch));
-                    batch.clear();
-                    i = 0;
-                }
+
+                Event e = new Event(a);
+                planEvent(writes, e, toEventJson(e, alertJson));
             }
-            if (batch.size() > 0) {
-                futures.add(session.executeAsync(batch));
+            writes.execute();
+            for (Alert a : alerts) {
+                indexTags(TagType.ALERT, a);
+                indexTags(TagType.EVENT, a);
+            }
+            if (alertsPersistenceTimes != null) {
+                alertsPersistenceTimes.record((System.nanoTime() - start) / 1000);
             }
-            Futures.allAsList(futures).get();
 
         } catch (Exception e) {
+            buckets.reset();
+            tagIndex.reset();
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
         }
+    }
 
-        // Every Alert has a corresponding Event
-        List<Event> events = alerts.stream()
-                .map(Event::new)
-                .collect(Collectors.toList());
-        persistEvents(events);
+    /*
+        The Event of an Alert shares the trigger, dampening and evalSets of the Alert, the heaviest part of both
+        payloads, so they are serialized only once.
+     */
+    static String toEventJson(Event event, ObjectNode alertJson) throws JsonProcessingException {
+        Trigger trigger = event.getTrigger();
+        Dampening dampening = event.getDampening();
+        List<Set<ConditionEval>> evalSets = event.getEvalSets();
+        ObjectNode eventJson;
+        try {
+            event.setTrigger(null);
+            event.setDampening(null);
+            event.setEvalSets(null);
+            eventJson = JsonUtil.getMapper().valueToTree(event);
+        } finally {
+            event.setTrigger(trigger);
+            event.setDampening(dampening);
+            event.setEvalSets(evalSets);
+        }
+        for (String shared : Arrays.asList("trigger", "dampening", "evalSets")) {
+            JsonNode value = alertJson.get(shared);
+            if (value != null) {
+                eventJson.set(shared, value);
+            }
+        }
+        return JsonUtil.getMapper().writeValueAsString(eventJson);
     }
 
     @Override
@@ -236,45 +357,66 @@ public class CassAlertsServiceImpl implements AlertsService {
         if (log.isDebugEnabled()) {
             log.debug("Adding " + events.size() + " events");
         }
-        PreparedStatement insertEvent = CassStatement.get(session, CassStatement.INSERT_EVENT);
-        PreparedStatement insertEventCategory = CassStatement.get(session, CassStatement.INSERT_EVENT_CATEGORY);
-        PreparedStatement insertEventCtime = CassStatement.get(session, CassStatement.INSERT_EVENT_CTIME);
-        PreparedStatement insertEventTrigger = CassStatement.get(session, CassStatement.INSERT_EVENT_TRIGGER);
-        PreparedStatement insertTag = CassStatement.get(session, CassStatement.INSERT_TAG);
 
+        long start = System.nanoTime();
         try {
-            List<ResultSetFuture> futures = new ArrayList<>();
-            BatchStatement batch = new BatchStatement(batchType);
-            int i = 0;
+            CassWritePlanner writes = new CassWritePlanner(session, batchSize, batchMaxInFlight);
             for (Event e : events) {
-                batch.add(insertEvent.bind(e.getTenantId(), e.getId(), JsonUtil.toJson(e)));
-                batch.add(insertEventCategory.bind(e.getTenantId(), e.getCategory(), e.getId()));
-                batch.add(insertEventCtime.bind(e.getTenantId(), e.getCtime(), e.getId()));
-                if (null != e.getTrigger()) {
-                    batch.add(insertEventTrigger.bind(e.getTenantId(), e.getTrigger().getId(), e.getId()));
-                }
-                e.getTags().entrySet().stream().forEach(tag -> {
-                    batch.add(insertTag.bind(e.getTenantId(), TagType.EVENT.name(), tag.getKey(), tag.getValue(),
-                            e.getId()));
-                });
-                i += batch.size();
-                if (i > batchSize) {
-                    futures.add(session.executeAsync(batch));
-                    batch.clear();
-                    i = 0;
-                }
+                planEvent(writes, e, JsonUtil.toJson(e));
             }
-            if (batch.size() > 0) {
-                futures.add(session.executeAsync(batch));
+            writes.execute();
+            for (Event e : events) {
+                indexTags(TagType.EVENT, e);
+            }
+            if (eventsPersistenceTimes != null) {
+                eventsPersistenceTimes.record((System.nanoTime() - start) / 1000);
             }
-            Futures.allAsList(futures).get();
 
         } catch (Exception e) {
+            buckets.reset();
+            tagIndex.reset();
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
         }
     }
 
+    private void planEvent(CassWritePlanner writes, Event e, String json) {
+        PreparedStatement insertEvent = CassStatement.get(session, CassStatement.INSERT_EVENT);
+        PreparedStatement insertEventCategory = CassStatement.get(session, CassStatement.INSERT_EVENT_CATEGORY);
+        PreparedStatement insertEventCtime = CassStatement.get(session, CassStatement.INSERT_EVENT_CTIME);
+        PreparedStatement insertEventTrigger = CassStatement.get(session, CassStatement.INSERT_EVENT_TRIGGER);
+        PreparedStatement insertTag = CassStatement.get(session, CassStatement.INSERT_TAG);
+
+        String tenantId = e.getTenantId();
+        writes.add("events_by_id", insertEvent.bind(tenantId, e.getId(), json), tenantId, e.getId());
+        writes.add("events_categories", insertEventCategory.bind(tenantId, e.getCategory(), e.getId()), tenantId,
+                e.getCategory());
+        long ctimeBucket = CassBuckets.bucketOf(e.getCtime());
+        writes.add("events_ctimes_by_day", insertEventCtime.bind(tenantId, ctimeBucket, e.getCtime(), e.getId()),
+                tenantId, ctimeBucket);
+        planBucket(writes, tenantId, CassBuckets.EVENTS_CTIMES, e.getCtime());
+        if (null != e.getTrigger()) {
+            writes.add("events_triggers", insertEventTrigger.bind(tenantId, e.getTrigger().getId(), e.getId()),
+                    tenantId);
+        }
+        e.getTags().entrySet().stream().forEach(tag -> {
+            writes.add("tags", insertTag.bind(tenantId, TagType.EVENT.name(), tag.getKey(), tag.getValue(),
+                    e.getId()), tenantId, TagType.EVENT.name(), tag.getKey());
+        });
+    }
+
+    private void indexTags(TagType tagType, Event e) {
+        tagIndex.addIds(e.getTenantId(), tagType.name(), Collections.singletonList(e.getId()));
+        tagIndex.addTags(e.getTenantId(), tagType.name(), e.getId(), e.getTags());
+    }
+
+    private void planBucket(CassWritePlanner writes, String tenantId, String index, long time) {
+        Statement registerBucket = buckets.register(session, tenantId, index, time);
+        if (registerBucket != null) {
+            writes.add("index_buckets", registerBucket, tenantId, index);
+        }
+    }
+
     @Override
     public void addNote(String tenantId, String alertId, String user, String text) throws Exception {
         if (isEmpty(tenantId)) {
@@ -347,8 +489,12 @@ public class CassAlertsServiceImpl implements AlertsService {
                 futures.add(session.executeAsync(batch));
             }
             Futures.allAsList(futures).get();
+            for (Alert a : existingAlerts) {
+                tagIndex.addTags(tenantId, TagType.ALERT.name(), a.getId(), tags);
+            }
 
         } catch (Exception e) {
+            tagIndex.reset();
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
         }
@@ -390,8 +536,12 @@ public class CassAlertsServiceImpl implements AlertsService {
                 futures.add(session.executeAsync(batch));
             }
             Futures.allAsList(futures).get();
+            for (Event e : existingEvents) {
+                tagIndex.addTags(tenantId, TagType.EVENT.name(), e.getId(), tags);
+            }
 
         } catch (Exception e) {
+            tagIndex.reset();
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
         }
@@ -422,10 +572,14 @@ public class CassAlertsServiceImpl implements AlertsService {
             List<ResultSetFuture> futures = new ArrayList<>();
             BatchStatement batch = new BatchStatement(batchType);
             int i = 0;
+            Map<String, Map<String, String>> removed = new HashMap<>();
             for (Alert a : existingAlerts) {
+                Map<String, String> removedTags = new HashMap<>();
+                removed.put(a.getId(), removedTags);
                 tags.stream().forEach(tag -> {
                     if (a.getTags().containsKey(tag)) {
                         batch.add(deleteTag.bind(tenantId, TagType.ALERT.name(), tag, a.getTags().get(tag), a.getId()));
+                        removedTags.put(tag, a.getTags().get(tag));
                         a.removeTag(tag);
                     }
                 });
@@ -441,8 +595,11 @@ public class CassAlertsServiceImpl implements AlertsService {
                 futures.add(session.executeAsync(batch));
             }
             Futures.allAsList(futures).get();
+            removed.entrySet().forEach(r -> tagIndex.removeTags(tenantId, TagType.ALERT.name(), r.getKey(),
+                    r.getValue()));
 
         } catch (Exception e) {
+            tagIndex.reset();
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
         }
@@ -473,10 +630,14 @@ public class CassAlertsServiceImpl implements AlertsService {
             List<ResultSetFuture> futures = new ArrayList<>();
             BatchStatement batch = new BatchStatement(batchType);
             int i = 0;
+            Map<String, Map<String, String>> removed = new HashMap<>();
             for (Event e : existingEvents) {
+                Map<String, String> removedTags = new HashMap<>();
+                removed.put(e.getId(), removedTags);
                 tags.stream().forEach(tag -> {
                     if (e.getTags().containsKey(tag)) {
                         batch.add(deleteTag.bind(tenantId, TagType.EVENT.name(), tag, e.getTags().get(tag), e.getId()));
+                        removedTags.put(tag, e.getTags().get(tag));
                         e.removeTag(tag);
                     }
                 });
@@ -492,8 +653,11 @@ public class CassAlertsServiceImpl implements AlertsService {
                 futures.add(session.executeAsync(batch));
             }
             Futures.allAsList(futures).get();
+            removed.entrySet().forEach(r -> tagIndex.removeTags(tenantId, TagType.EVENT.name(), r.getKey(),
+                    r.getValue()));
 
         } catch (Exception e) {
+            tagIndex.reset();
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
         }
@@ -578,6 +742,57 @@ public class CassAlertsServiceImpl implements AlertsService {
         if (isEmpty(tenantIds)) {
             throw new IllegalArgumentException("TenantIds must be not null");
         }
+        if (pager != null && pager.isCursorPaged()) {
+            return getAlertsPage(tenantIds, criteria, pager);
+        }
+        List<Alert> alerts = fetchAlerts(tenantIds, criteria);
+        if (alerts.isEmpty()) {
+            return new Page<>(alerts, pager, 0);
+        } else {
+            return preparePage(alerts, pager);
+        }
+    }
+
+    /*
+        A cursor page of a query with only a ctime range is read from the clustering order of the ctime index, the
+        rest of queries are fetched and the cursor is applied on the sorted result.
+     */
+    private Page<Alert> getAlertsPage(Set<String> tenantIds, AlertsCriteria criteria, Pager pager) throws Exception {
+        CassCursorPager.isAscending(pager);
+        if (tenantIds.size() == 1 && onlyCTimeCriteria(criteria)) {
+            String tenantId = tenantIds.iterator().next();
+            boolean thin = (null != criteria && criteria.isThin());
+            IndexReader ctimes = CassCursorPager.ctimeIndex(session, buckets, CassBuckets.ALERTS_CTIMES, tenantId,
+                    "alertId", CassStatement.SELECT_ALERT_CTIME_TIES_ASC, CassStatement.SELECT_ALERT_CTIME_TIES_DESC,
+                    CassStatement.SELECT_ALERT_CTIME_PAGE_ASC, CassStatement.SELECT_ALERT_CTIME_PAGE_DESC);
+            try {
+                return CassCursorPager.readPage(ctimes, criteria == null ? null : criteria.getStartTime(),
+                        criteria == null ? null : criteria.getEndTime(), pager,
+                        ids -> fetchAlerts(tenantId, ids, thin));
+            } catch (Exception e) {
+                msgLog.errorDatabaseException(e.getMessage());
+                throw e;
+            }
+        }
+        return CassCursorPager.page(fetchAlerts(tenantIds, criteria), Alert::getCtime, Alert::getAlertId, pager);
+    }
+
+    /*
+        Point lookups of the alerts of a page, keeping the order of the ids.
+     */
+    private List<Alert> fetchAlerts(String tenantId, List<String> ids, boolean thin) throws Exception {
+        PreparedStatement select = CassStatement.get(session, CassStatement.SELECT_ALERT);
+        List<Alert> alerts = new ArrayList<>(ids.size());
+        for (ResultSet rs : lookup(select, tenantId, ids)) {
+            Row row = rs.one();
+            if (row != null) {
+                alerts.add(JsonUtil.fromJson(row.getString("payload"), Alert.class, thin));
+            }
+        }
+        return alerts;
+    }
+
+    private List<Alert> fetchAlerts(Set<String> tenantIds, AlertsCriteria criteria) throws Exception {
         List<Alert> alerts = new ArrayList<>();
         if (tenantIds.size() == 1) {
             alerts.addAll(getAlerts(tenantIds.iterator().next(), criteria));
@@ -604,11 +819,7 @@ public class CassAlertsServiceImpl implements AlertsService {
                 }
             });
         }
-        if (alerts.isEmpty()) {
-            return new Page<>(alerts, pager, 0);
-        } else {
-            return preparePage(alerts, pager);
-        }
+        return alerts;
     }
 
     private List<Alert> getAlerts(String tenantId, AlertsCriteria criteria) throws Exception {
@@ -620,136 +831,25 @@ public class CassAlertsServiceImpl implements AlertsService {
         }
 
         List<Alert> alerts = new ArrayList<>();
-        Set<String> alertIds = new HashSet<>();
-        boolean activeFilter = false;
 
         try {
             if (filter) {
                 /*
-                    Get alertIds explicitly added into the criteria. Start with these as there is no query involved
-                 */
-                if (criteria.hasAlertIdCriteria()) {
-                    Set<String> alertIdsFilteredByAlerts = filterByAlerts(criteria);
-                    if (activeFilter) {
-                        alertIds.retainAll(alertIdsFilteredByAlerts);
-                    } else {
-                        alertIds.addAll(alertIdsFilteredByAlerts);
-                    }
-                    if (alertIds.isEmpty()) {
-                        return alerts;
-                    }
-                    activeFilter = true;
-                }
-
-                /*
-                    Get alertIds via tagQuery
-                 */
-                if (criteria.hasTagQueryCriteria()) {
-                    Set<String> alertIdsFilteredByTagQuery = getIdsByTagQuery(tenantId, TagType.ALERT,
-                            criteria.getTagQuery());
-                    if (activeFilter) {
-                        alertIds.retainAll(alertIdsFilteredByTagQuery);
-                    } else {
-                        alertIds.addAll(alertIdsFilteredByTagQuery);
-                    }
-                    if (alertIds.isEmpty()) {
-                        return alerts;
-                    }
-                    activeFilter = true;
-                }
-
-                /*
-                    Get alertIds filtered by triggerIds clause
-                 */
-                if (criteria.hasTriggerIdCriteria()) {
-                    Set<String> alertIdsFilteredByTriggers = filterByTriggers(tenantId, criteria);
-                    if (activeFilter) {
-                        alertIds.retainAll(alertIdsFilteredByTriggers);
-                    } else {
-                        alertIds.addAll(alertIdsFilteredByTriggers);
-                    }
-                    if (alertIds.isEmpty()) {
-                        return alerts;
-                    }
-                    activeFilter = true;
-                }
-
-                /*
-                    Get alertIds filtered by time clause
-                 */
-                if (criteria.hasCTimeCriteria()) {
-                    Set<String> alertIdsFilteredByTime = filterByCTime(tenantId, criteria);
-                    if (activeFilter) {
-                        alertIds.retainAll(alertIdsFilteredByTime);
-                    } else {
-                        alertIds.addAll(alertIdsFilteredByTime);
-                    }
-                    if (alertIds.isEmpty()) {
-                        return alerts;
-                    }
-                    activeFilter = true;
-                }
-
-                /*
-                    Get alertIds filtered by resolved time clause
-                 */
-                if (criteria.hasResolvedTimeCriteria()) {
-                    Set<String> alertIdsFilteredByResolvedTime = filterByResolvedTime(tenantId, criteria);
-                    if (activeFilter) {
-                        alertIds.retainAll(alertIdsFilteredByResolvedTime);
-                    } else {
-                        alertIds.addAll(alertIdsFilteredByResolvedTime);
-                    }
-                    if (alertIds.isEmpty()) {
-                        return alerts;
-                    }
-                    activeFilter = true;
-                }
-
-                /*
-                    Get alertIds filtered by ack time clause
+                    The indexed filters are resolved by the query planner, starting by the most selective one.
+                    The filters not worth a query are checked on the fetched alerts.
                  */
-                if (criteria.hasAckTimeCriteria()) {
-                    Set<String> alertIdsFilteredByAckTime = filterByAckTime(tenantId, criteria);
-                    if (activeFilter) {
-                        alertIds.retainAll(alertIdsFilteredByAckTime);
-                    } else {
-                        alertIds.addAll(alertIdsFilteredByAckTime);
-                    }
-                    if (alertIds.isEmpty()) {
-                        return alerts;
-                    }
-                    activeFilter = true;
-                }
-
-                /*
-                    Get alertsIds filteres by status time clause
-                 */
-                if (criteria.hasStatusTimeCriteria()) {
-                    Set<String> alertIdsFilteredByStatusTime = filterByStatusTime(tenantId, criteria);
-                    if (activeFilter) {
-                        alertIds.retainAll(alertIdsFilteredByStatusTime);
-                    } else {
-                        alertIds.addAll(alertIdsFilteredByStatusTime);
+                List<Filter<String, Alert>> filters = alertsFilters(tenantId, criteria);
+                if (!filters.isEmpty()) {
+                    Plan<String, Alert> plan = queryPlanner.execute(filters, criteriaNoQuerySize);
+                    if (log.isDebugEnabled()) {
+                        log.debug("getAlerts filters: " + filters + " " + plan);
                     }
-                    if (alertIds.isEmpty()) {
+                    if (plan.getCandidates().isEmpty()) {
                         return alerts;
                     }
-                    activeFilter = true;
-                }
-
-                /*
-                    Below this point we filter manually  because the remaining filters have a low cardinality of
-                    values, and are not efficiently handled with database indexes and the intersection-based approach.
-                    Fetch the alerts now and proceed.
-                 */
-                if (activeFilter) {
                     PreparedStatement selectAlertsByTenantAndAlert = CassStatement
                             .get(session, CassStatement.SELECT_ALERT);
-                    List<ResultSetFuture> futures = alertIds.stream()
-                            .map(alertId -> session.executeAsync(selectAlertsByTenantAndAlert.bind(tenantId, alertId)))
-                            .collect(Collectors.toList());
-                    List<ResultSet> rsAlerts = Futures.allAsList(futures).get();
+                    List<ResultSet> rsAlerts = lookup(selectAlertsByTenantAndAlert, tenantId, plan.getCandidates());
                     rsAlerts.stream().forEach(r -> {
                         for (Row row : r) {
                             String payload = row.getString("payload");
@@ -757,6 +857,10 @@ public class CassAlertsServiceImpl implements AlertsService {
                             alerts.add(alert);
                         }
                     });
+                    plan.filter(alerts);
+                    if (alerts.isEmpty()) {
+                        return alerts;
+                    }
                 } else {
                     // This is the worst-case scenario of criteria featuring only manual filtering.  Generate a
                     // warning because clients should be discouraged from using such vague criteria.
@@ -765,6 +869,11 @@ public class CassAlertsServiceImpl implements AlertsService {
                     fetchAllAlerts(tenantId, thin, alerts);
                 }
 
+                /*
+                    Below this point we filter manually  because the remaining filters have a low cardinality of
+                    values, and are not efficiently handled with database indexes and the intersection-based approach.
+                 */
+
                 /*
                      filter by severities
                  */
@@ -799,15 +908,176 @@ public class CassAlertsServiceImpl implements AlertsService {
         return alerts;
     }
 
-    private void fetchAllAlerts(String tenantId, boolean thin, Collection<Alert> alerts) {
-        PreparedStatement selectAlertsByTenant = CassStatement.get(session,
-                CassStatement.SELECT_ALERTS_BY_TENANT);
-        ResultSet rsAlerts = session.execute(selectAlertsByTenant.bind(tenantId));
-        for (Row row : rsAlerts) {
-            String payload = row.getString("payload");
-            Alert alert = JsonUtil.fromJson(payload, Alert.class, thin);
-            alerts.add(alert);
-        }
+    /*
+        Indexed filters of an AlertsCriteria, in the default order of the query.
+     */
+    private List<Filter<String, Alert>> alertsFilters(String tenantId, AlertsCriteria criteria) {
+        List<Filter<String, Alert>> filters = new ArrayList<>();
+        if (criteria.hasAlertIdCriteria()) {
+            Set<String> alertIds = filterByAlerts(criteria);
+            filters.add(new Filter<String, Alert>("alertIds", alertIds.size(), alertIds::forEach)
+                    .withIdCheck(alertIds::contains));
+        }
+        if (criteria.hasTagQueryCriteria()) {
+            filters.add(tagQueryFilter(tenantId, TagType.ALERT, criteria.getTagQuery()));
+        }
+        if (criteria.hasTriggerIdCriteria()) {
+            Set<String> triggerIds = extractTriggerIds(tenantId, criteria);
+            filters.add(this.<Alert> keysFilter(tenantId, "alerts_triggers", CassStatement.SELECT_ALERT_TRIGGER,
+                    "alertId", triggerIds)
+                    .withItemsCheck(alerts -> alerts.removeIf(a -> !triggerIds.contains(a.getTriggerId()))));
+        }
+        if (criteria.hasCTimeCriteria()) {
+            Long start = criteria.getStartTime();
+            Long end = criteria.getEndTime();
+            filters.add(this.<Alert> alertsCtimesFilter(tenantId, start, end)
+                    .withItemsCheck(alerts -> alerts.removeIf(a -> !inRange(a.getCtime(), start, end))));
+        }
+        if (criteria.hasResolvedTimeCriteria()) {
+            filters.add(lifecycleFilter(tenantId, Status.RESOLVED, criteria.getStartResolvedTime(),
+                    criteria.getEndResolvedTime()));
+        }
+        if (criteria.hasAckTimeCriteria()) {
+            filters.add(lifecycleFilter(tenantId, Status.ACKNOWLEDGED, criteria.getStartAckTime(),
+                    criteria.getEndAckTime()));
+        }
+        if (criteria.hasStatusTimeCriteria()) {
+            Long start = criteria.getStartStatusTime();
+            Long end = criteria.getEndStatusTime();
+            filters.add(this.<Alert> rangeFilter(tenantId, "alerts_stimes", CassBuckets.ALERTS_STIMES, "alertId",
+                    "stime", start, end, CassStatement.SELECT_ALERT_STIME_START_END,
+                    CassStatement.SELECT_ALERT_STIME_START, CassStatement.SELECT_ALERT_STIME_END)
+                    .withItemsCheck(alerts -> alerts.removeIf(a -> a.getLifecycle().stream()
+                            .noneMatch(l -> inRange(l.getStime(), start, end)))));
+        }
+        return filters;
+    }
+
+    private Filter<String, Alert> lifecycleFilter(String tenantId, Status status, Long start, Long end) {
+        return this.<Alert> rangeFilter(tenantId, "alerts_lifecycle." + status.name(), CassBuckets.ALERTS_STIMES,
+                "alertId", "stime", start, end, CassStatement.SELECT_ALERT_LIFECYCLE_START_END,
+                CassStatement.SELECT_ALERT_LIFECYCLE_START, CassStatement.SELECT_ALERT_LIFECYCLE_END, status.name())
+                .withItemsCheck(alerts -> alerts.removeIf(a -> a.getLifecycle().stream()
+                        .noneMatch(l -> status == l.getStatus() && inRange(l.getStime(), start, end))));
+    }
+
+    /*
+        Filter by a list of keys of an index table, the rows returned per key are recorded for the estimations.
+     */
+    private <T> Filter<String, T> keysFilter(String tenantId, String index, String select, String idColumn,
+            Set<String> keys) {
+        return new Filter<>(index, queryPlanner.estimate(tenantId, index, keys), ids -> {
+            PreparedStatement selectByKey = CassStatement.get(session, select);
+            List<String> orderedKeys = new ArrayList<>(keys);
+            List<ResultSet> rsKeys = lookup(selectByKey, tenantId, orderedKeys);
+            for (int i = 0; i < orderedKeys.size(); i++) {
+                long rows = 0;
+                for (Row row : rsKeys.get(i)) {
+                    ids.accept(row.getString(idColumn));
+                    rows++;
+                }
+                queryPlanner.record(tenantId, index, orderedKeys.get(i), rows);
+            }
+        });
+    }
+
+    private <T> Filter<String, T> alertsCtimesFilter(String tenantId, Long start, Long end) {
+        return rangeFilter(tenantId, "alerts_ctimes", CassBuckets.ALERTS_CTIMES, "alertId", "ctime", start, end,
+                CassStatement.SELECT_ALERT_CTIME_START_END, CassStatement.SELECT_ALERT_CTIME_START,
+                CassStatement.SELECT_ALERT_CTIME_END);
+    }
+
+    private <T> Filter<String, T> eventsCtimesFilter(String tenantId, Long start, Long end) {
+        return rangeFilter(tenantId, "events_ctimes", CassBuckets.EVENTS_CTIMES, "id", "ctime", start, end,
+                CassStatement.SELECT_EVENT_CTIME_START_END, CassStatement.SELECT_EVENT_CTIME_START,
+                CassStatement.SELECT_EVENT_CTIME_END);
+    }
+
+    /*
+        Filter by a time range of a bucketed index table, the density of rows in time is recorded for the
+        estimations. Only the registered buckets touched by the range are read, in parallel. A range without start
+        and end reads the whole index of the tenant.
+     */
+    private <T> Filter<String, T> rangeFilter(String tenantId, String index, String bucketIndex, String idColumn,
+            String timeColumn, Long start, Long end, String selectStartEnd, String selectStart, String selectEnd,
+            Object... keys) {
+        return new Filter<>(index, queryPlanner.estimateRange(tenantId, index, start, end), ids -> {
+            List<Object> times = new ArrayList<>();
+            String select;
+            if (start != null && end != null) {
+                select = selectStartEnd;
+                times.add(start);
+                times.add(end);
+            } else if (end != null) {
+                select = selectEnd;
+                times.add(end);
+            } else {
+                select = selectStart;
+                times.add(start != null ? start : Long.MIN_VALUE);
+            }
+            PreparedStatement selectBucket = CassStatement.get(session, select);
+            List<ResultSetFuture> futures = new ArrayList<>();
+            for (Long bucket : buckets.buckets(session, tenantId, bucketIndex, start, end)) {
+                List<Object> values = new ArrayList<>(keys.length + times.size() + 2);
+                values.add(tenantId);
+                values.add(bucket);
+                values.addAll(Arrays.asList(keys));
+                values.addAll(times);
+                futures.add(session.executeAsync(selectBucket.bind(values.toArray())));
+            }
+            long rows = 0;
+            long first = Long.MAX_VALUE;
+            long last = Long.MIN_VALUE;
+            for (ResultSet rsTimes : Futures.allAsList(futures).get()) {
+                for (Row row : rsTimes) {
+                    long time = row.getLong(timeColumn);
+                    first = Math.min(first, time);
+                    last = Math.max(last, time);
+                    ids.accept(row.getString(idColumn));
+                    rows++;
+                }
+            }
+            queryPlanner.recordRange(tenantId, index, start, end, rows, first, last);
+        });
+    }
+
+    private <T extends Event> Filter<String, T> tagQueryFilter(String tenantId, TagType tagType, String tagQuery) {
+        String index = "tags." + tagType.name();
+        return new Filter<String, T>(index, queryPlanner.estimate(tenantId, index,
+                Collections.singleton(tagQuery)), ids -> {
+                    Set<String> tagged = getIdsByTagQuery(tenantId, tagType, tagQuery);
+                    queryPlanner.record(tenantId, index, tagQuery, tagged.size());
+                    tagged.forEach(ids);
+                }).withItemsCheck(items -> filterByTagQuery(tagQuery, items));
+    }
+
+    private static boolean onlyCTimeCriteria(AlertsCriteria criteria) {
+        return criteria == null || !(criteria.hasAlertIdCriteria()
+                || criteria.hasStatusCriteria()
+                || criteria.hasSeverityCriteria()
+                || criteria.hasTagQueryCriteria()
+                || criteria.hasTriggerIdCriteria()
+                || criteria.hasResolvedTimeCriteria()
+                || criteria.hasAckTimeCriteria()
+                || criteria.hasStatusTimeCriteria());
+    }
+
+    private static boolean onlyCTimeCriteria(EventsCriteria criteria) {
+        return criteria == null || !(criteria.hasEventIdCriteria()
+                || criteria.hasCategoryCriteria()
+                || criteria.hasTagQueryCriteria()
+                || criteria.hasTriggerIdCriteria());
+    }
+
+    private static boolean inRange(long time, Long start, Long end) {
+        return (start == null || time >= start) && (end == null || time <= end);
+    }
+
+    /*
+        The alerts are partitioned by id, so all the alerts of a tenant are read from the buckets of the ctime index
+     */
+    private void fetchAllAlerts(String tenantId, boolean thin, Collection<Alert> alerts) throws Exception {
+        alerts.addAll(fetchAlerts(tenantId, new ArrayList<>(getAllAlertIds(tenantId)), thin));
     }
 
     private Page<Alert> preparePage(List<Alert> alerts, Pager pager) {
@@ -862,30 +1132,6 @@ public class CassAlertsServiceImpl implements AlertsService {
         return result;
     }
 
-    private Set<String> filterByTriggers(String tenantId, AlertsCriteria criteria) throws Exception {
-        Set<String> result = Collections.emptySet();
-        Set<String> triggerIds = extractTriggerIds(tenantId, criteria);
-
-        if (triggerIds.size() > 0) {
-            PreparedStatement selectAlertsTriggers = CassStatement.get(session, CassStatement.SELECT_ALERT_TRIGGER);
-            List<ResultSetFuture> futures = triggerIds.stream()
-                    .map(triggerId -> session.executeAsync(selectAlertsTriggers.bind(tenantId, triggerId)))
-                    .collect(Collectors.toList());
-            List<ResultSet> rsAlertIdsByTriggerIds = Futures.allAsList(futures).get();
-
-            Set<String> alertIds = new HashSet<>();
-            rsAlertIdsByTriggerIds.stream().forEach(r -> {
-                for (Row row : r) {
-                    String alertId = row.getString("alertId");
-                    alertIds.add(alertId);
-                }
-            });
-            result = alertIds;
-        }
-
-        return result;
-    }
-
     private Set<String> extractTriggerIds(String tenantId, AlertsCriteria criteria) {
 
         boolean hasTriggerId = !isEmpty(criteria.getTriggerId());
@@ -909,37 +1155,6 @@ public class CassAlertsServiceImpl implements AlertsService {
         return triggerIds;
     }
 
-    private Set<String> filterByCTime(String tenantId, AlertsCriteria criteria) throws Exception {
-        Set<String> result = Collections.emptySet();
-
-        if (criteria.getStartTime() != null || criteria.getEndTime() != null) {
-            result = new HashSet<>();
-
-            BoundStatement boundCtime;
-            if (criteria.getStartTime() != null && criteria.getEndTime() != null) {
-                PreparedStatement selectAlertCTimeStartEnd = CassStatement.get(session,
-                        CassStatement.SELECT_ALERT_CTIME_START_END);
-                boundCtime = selectAlertCTimeStartEnd.bind(tenantId, criteria.getStartTime(),
-                        criteria.getEndTime());
-            } else if (criteria.getStartTime() != null) {
-                PreparedStatement selectAlertCTimeStart = CassStatement.get(session,
-                        CassStatement.SELECT_ALERT_CTIME_START);
-                boundCtime = selectAlertCTimeStart.bind(tenantId, criteria.getStartTime());
-            } else {
-                PreparedStatement selectAlertCTimeEnd = CassStatement.get(session,
-                        CassStatement.SELECT_ALERT_CTIME_END);
-                boundCtime = selectAlertCTimeEnd.bind(tenantId, criteria.getEndTime());
-            }
-
-            ResultSet rsAlertsCtimes = session.execute(boundCtime);
-            for (Row row : rsAlertsCtimes) {
-                String alertId = row.getString("alertId");
-                result.add(alertId);
-            }
-        }
-        return result;
-    }
-
     private void filterBySeverities(String tenantId, AlertsCriteria criteria, Collection<Alert> alerts)
             throws Exception {
         Set<Severity> severities = new HashSet<>();
@@ -982,37 +1197,6 @@ public class CassAlertsServiceImpl implements AlertsService {
         }
     }
 
-    private Set<String> filterByStatusTime(String tenantId, AlertsCriteria criteria) throws Exception {
-        Set<String> result = Collections.emptySet();
-
-        if (criteria.getStartStatusTime() != null || criteria.getEndStatusTime() != null) {
-            result = new HashSet<>();
-
-            BoundStatement boundStime;
-            if (criteria.getStartStatusTime() != null && criteria.getEndStatusTime() != null) {
-                PreparedStatement selectAlertSTimeStartEnd = CassStatement.get(session,
-                        CassStatement.SELECT_ALERT_STIME_START_END);
-                boundStime = selectAlertSTimeStartEnd.bind(tenantId, criteria.getStartStatusTime(),
-                        criteria.getEndStatusTime());
-            } else if (criteria.getStartStatusTime() != null) {
-                PreparedStatement selectAlertSTimeStart = CassStatement.get(session,
-                        CassStatement.SELECT_ALERT_STIME_START);
-                boundStime = selectAlertSTimeStart.bind(tenantId, criteria.getStartStatusTime());
-            } else {
-                PreparedStatement selectAlertSTimeEnd = CassStatement.get(session,
-                        CassStatement.SELECT_ALERT_STIME_END);
-                boundStime = selectAlertSTimeEnd.bind(tenantId, criteria.getEndStatusTime());
-            }
-
-            ResultSet rsAlertsStimes = session.execute(boundStime);
-            for (Row row : rsAlertsStimes) {
-                String alertId = row.getString("alertId");
-                result.add(alertId);
-            }
-        }
-        return result;
-    }
-
     private Set<String> filterByEvents(EventsCriteria criteria) {
         Set<String> result = Collections.emptySet();
         if (isEmpty(criteria.getEventIds())) {
@@ -1027,156 +1211,17 @@ public class CassAlertsServiceImpl implements AlertsService {
         return result;
     }
 
-    private Set<String> filterByResolvedTime(String tenantId, AlertsCriteria criteria) throws Exception {
-        Set<String> result = Collections.emptySet();
-
-        if (criteria.getStartResolvedTime() != null || criteria.getEndResolvedTime() != null) {
-            result = new HashSet<>();
-
-            BoundStatement boundLifecycleTime;
-            if (criteria.getStartResolvedTime() != null && criteria.getEndResolvedTime() != null) {
-                PreparedStatement selectAlertLifecycleStartEnd = CassStatement.get(session,
-                        CassStatement.SELECT_ALERT_LIFECYCLE_START_END);
-                boundLifecycleTime = selectAlertLifecycleStartEnd.bind(tenantId, Status.RESOLVED.name(),
-                        criteria.getStartResolvedTime(), criteria.getEndResolvedTime());
-            } else if (criteria.getStartResolvedTime() != null) {
-                PreparedStatement selectAlertLifecycleStart = CassStatement.get(session,
-                        CassStatement.SELECT_ALERT_LIFECYCLE_START);
-                boundLifecycleTime = selectAlertLifecycleStart.bind(tenantId, Status.RESOLVED.name(),
-                        criteria.getStartResolvedTime());
-            } else {
-                PreparedStatement selectAlertLifecycleEnd = CassStatement.get(session,
-                        CassStatement.SELECT_ALERT_LIFECYCLE_END);
-                boundLifecycleTime = selectAlertLifecycleEnd.bind(tenantId, criteria.getEndResolvedTime());
-            }
-
-            ResultSet rsAlertsLifecycleTimes = session.execute(boundLifecycleTime);
-            for (Row row : rsAlertsLifecycleTimes) {
-                String alertId = row.getString("alertId");
-                result.add(alertId);
-            }
-        }
-        return result;
-    }
-
-    private Set<String> filterByAckTime(String tenantId, AlertsCriteria criteria) throws Exception {
-        Set<String> result = Collections.emptySet();
-
-        if (criteria.getStartAckTime() != null || criteria.getEndAckTime() != null) {
-            result = new HashSet<>();
-
-            BoundStatement boundLifecycleTime;
-            if (criteria.getStartAckTime() != null && criteria.getEndAckTime() != null) {
-                PreparedStatement selectAlertLifecycleStartEnd = CassStatement.get(session,
-                        CassStatement.SELECT_ALERT_LIFECYCLE_START_END);
-                boundLifecycleTime = selectAlertLifecycleStartEnd.bind(tenantId, Status.ACKNOWLEDGED.name(),
-                        criteria.getStartAckTime(), criteria.getEndAckTime());
-            } else if (criteria.getStartAckTime() != null) {
-                PreparedStatement selectAlertLifecycleStart = CassStatement.get(session,
-                        CassStatement.SELECT_ALERT_LIFECYCLE_START);
-                boundLifecycleTime = selectAlertLifecycleStart.bind(tenantId, Status.ACKNOWLEDGED.name(),
-                        criteria.getStartAckTime());
-            } else {
-                PreparedStatement selectAlertLifecycleEnd = CassStatement.get(session,
-                        CassStatement.SELECT_ALERT_LIFECYCLE_END);
-                boundLifecycleTime = selectAlertLifecycleEnd.bind(tenantId, criteria.getEndAckTime());
-            }
-
-            ResultSet rsAlertsLifecycleTimes = session.execute(boundLifecycleTime);
-            for (Row row : rsAlertsLifecycleTimes) {
-                String alertId = row.getString("alertId");
-                result.add(alertId);
-            }
-        }
-        return result;
-    }
-
-    private Set<String> getIdsByTags(String tenantId, TagType tagType, Map<String, String> tags)
+    private Map<String, Collection<String>> getIdsByTagValue(String tenantId, String type, String tagName)
             throws Exception {
-        Set<String> ids = new HashSet<>();
-        List<ResultSetFuture> futures = new ArrayList<>();
+        Map<String, Collection<String>> idsByValue = new HashMap<>();
         PreparedStatement selectTagsByName = CassStatement.get(session, CassStatement.SELECT_TAGS_BY_NAME);
-        PreparedStatement selectTagsByNameAndValue = CassStatement.get(session,
-                CassStatement.SELECT_TAGS_BY_NAME_AND_VALUE);
-
-        for (Map.Entry<String, String> tag : tags.entrySet()) {
-            boolean nameOnly = "*".equals(tag.getValue());
-            BoundStatement bs = nameOnly ? selectTagsByName.bind(tenantId, tagType.name(), tag.getKey())
-                    : selectTagsByNameAndValue.bind(tenantId, tagType.name(), tag.getKey(), tag.getValue());
-            futures.add(session.executeAsync(bs));
+        for (Row row : session.execute(selectTagsByName.bind(tenantId, type, tagName))) {
+            idsByValue.computeIfAbsent(row.getString("value"), value -> new ArrayList<>()).add(row.getString("id"));
         }
-        List<ResultSet> rsTags = Futures.allAsList(futures).get();
-        rsTags.stream().forEach(r -> {
-            for (Row row : r) {
-                ids.add(row.getString("id"));
-            }
-        });
-        return ids;
+        return idsByValue;
     }
 
-    private static class TagValue {
-        private String tenantId;
-        private String tag;
-        private String value;
-        private String id;
-
-        public TagValue(String tenantId, String tag, String value, String id) {
-            this.tenantId = tenantId;
-            this.tag = tag;
-            this.value = value;
-            this.id = id;
-        }
-
-        public String getTenantId() {
-            return tenantId;
-        }
-
-        public String getTag() {
-            return tag;
-        }
-
-        public String getValue() {
-            return value;
-        }
-
-        public String getId() {
-            return id;
-        }
-
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (o == null || getClass() != o.getClass()) return false;
-
-            TagValue tagValue = (TagValue) o;
-
-            if (tenantId != null ? !tenantId.equals(tagValue.tenantId) : tagValue.tenantId != null) return false;
-            if (tag != null ? !tag.equals(tagValue.tag) : tagValue.tag != null) return false;
-            if (value != null ? !value.equals(tagValue.value) : tagValue.value != null) return false;
-            return id != null ? id.equals(tagValue.id) : tagValue.id == null;
-        }
-
-        @Override
-        public int hashCode() {
-            int result = tenantId != null ? tenantId.hashCode() : 0;
-            result = 31 * result + (tag != null ? tag.hashCode() : 0);
-            result = 31 * result + (value != null ? value.hashCode() : 0);
-            result = 31 * result + (id != null ? id.hashCode() : 0);
-            return result;
-        }
-    }
-
-    private Set<TagValue> getTagValueByTagName(String tenantId, TagType tagType, String tagName)
-        throws Exception {
-        Set<TagValue> tagValues = new HashSet<>();
-        PreparedStatement selectTagsByName = CassStatement.get(session, CassStatement.SELECT_TAGS_BY_NAME);
-        session.executeAsync(selectTagsByName.bind(tenantId, tagType.name(), tagName)).get().all() .forEach(r -> {
-            tagValues.add(new TagValue(tenantId, tagName, r.getString("value"), r.getString("id")));
-        });
-        return tagValues;
-    }
-
-    private boolean filterTagValue(String op, String regexps, String value) {
+    private static boolean filterTagValue(String op, String regexps, String value) {
         if (op.equals(EQ) || op.equals(NEQ)) {
             boolean matches;
             String regexp;
@@ -1206,34 +1251,68 @@ public class CassAlertsServiceImpl implements AlertsService {
         }
     }
 
+    /*
+        Tag queries are resolved on the in-memory tag index when it is enabled, the tags of a tenant are read from the
+        tags table only when the index is loaded. Otherwise, or if the tenant does not fit in the index, each term is
+        resolved with a read of the tags table.
+     */
     private Set<String> getIdsByTagQuery(String tenantId, TagType tagType, String tagQuery)
             throws Exception {
+        if (tagIndexEnabled) {
+            Set<String> ids = tagIndex.query(tenantId, tagType.name(), tagQuery,
+                    CassAlertsServiceImpl::filterTagValue);
+            if (ids != null) {
+                return ids;
+            }
+        }
         ExpressionTagQueryParser parser = new ExpressionTagQueryParser(tokens -> {
             Set<String> result = new HashSet<>();
             if (tokens != null) {
-                String tag;
-                Map<String, String> map = new HashMap<>();
                 if (tokens.size() == 1) {
                     // tag
-                    tag = tokens.get(0);
-                    map.put(tag, "*");
-                    Set<String> idsByTag = getIdsByTags(tenantId, tagType, map);
-                    result = idsByTag;
+                    getIdsByTagValue(tenantId, tagType.name(), tokens.get(0)).values().forEach(result::addAll);
                 } else if (tokens.size() == 2) {
                     // not tag
-                    tag = tokens.get(1);
-                    Set<String> allIds;
-                    if (TagType.ALERT.equals(tagType)) {
-                        allIds = getAllAlertIds(tenantId);
+                    result.addAll(TagType.ALERT == tagType ? getAllAlertIds(tenantId) : getAllEventIds(tenantId));
+                    getIdsByTagValue(tenantId, tagType.name(), tokens.get(1)).values().forEach(result::removeAll);
+                } else {
+                    String op;
+                    String regexp;
+                    if (tokens.size() == 3) {
+                        op = tokens.get(1);
+                        regexp = tokens.get(2);
                     } else {
-                        allIds = getAllEventIds(tenantId);
+                        // not in [array]
+                        op = tokens.get(1) + tokens.get(2);
+                        regexp = tokens.get(3);
                     }
-                    map.put(tag, "*");
-                    Set<String> idsByTag = getIdsByTags(tenantId, tagType, map);
-                    allIds.removeAll(idsByTag);
-                    result = allIds;
+                    getIdsByTagValue(tenantId, tagType.name(), tokens.get(0)).entrySet().stream()
+                            .filter(value -> filterTagValue(op, regexp, value.getKey()))
+                            .forEach(value -> result.addAll(value.getValue()));
+                }
+            }
+            return result;
+        });
+        return parser.resolve(tagQuery);
+    }
+
+    /*
+        Resolve a tagQuery on fetched items, with the same semantics than the query on the tags index.
+     */
+    static <T extends Event> void filterByTagQuery(String tagQuery, Collection<T> items) throws Exception {
+        ExpressionTagQueryParser parser = new ExpressionTagQueryParser(tokens -> {
+            Set<String> result = new HashSet<>();
+            if (tokens != null) {
+                if (tokens.size() == 1) {
+                    // tag
+                    String tag = tokens.get(0);
+                    items.stream().filter(i -> i.getTags().containsKey(tag)).forEach(i -> result.add(i.getId()));
+                } else if (tokens.size() == 2) {
+                    // not tag
+                    String tag = tokens.get(1);
+                    items.stream().filter(i -> !i.getTags().containsKey(tag)).forEach(i -> result.add(i.getId()));
                 } else {
-                    tag = tokens.get(0);
+                    String tag = tokens.get(0);
                     String op;
                     String regexp;
                     if (tokens.size() == 3) {
@@ -1244,32 +1323,26 @@ public class CassAlertsServiceImpl implements AlertsService {
                         op = tokens.get(1) + tokens.get(2);
                         regexp = tokens.get(3);
                     }
-                    Set<TagValue> tagValues = getTagValueByTagName(tenantId, tagType, tag);
-                    result = tagValues.stream()
-                            .filter(tagValue -> filterTagValue(op, regexp, tagValue.getValue()))
-                            .map(tagValue -> tagValue.getId())
-                            .collect(Collectors.toSet());
+                    items.stream()
+                            .filter(i -> i.getTags().containsKey(tag)
+                                    && filterTagValue(op, regexp, i.getTags().get(tag)))
+                            .forEach(i -> result.add(i.getId()));
                 }
             }
             return result;
         });
-        return parser.resolve(tagQuery);
+        Set<String> matched = parser.resolve(tagQuery);
+        items.removeIf(i -> !matched.contains(i.getId()));
     }
 
     private Set<String> getAllAlertIds(String tenantId) throws Exception {
-        Set<String> ids = new HashSet<>();
-        PreparedStatement selectAlertIdsByTenant = CassStatement.get(session, CassStatement.SELECT_ALERT_IDS_BY_TENANT);
-        ResultSetFuture future = session.executeAsync(selectAlertIdsByTenant.bind(tenantId));
-        future.get().all().stream().forEach(r -> ids.add(r.getString("alertId")));
-        return ids;
+        return new HashSet<>(queryPlanner.execute(Collections.singletonList(alertsCtimesFilter(tenantId, null, null)))
+                .getCandidates());
     }
 
     private Set<String> getAllEventIds(String tenantId) throws Exception {
-        Set<String> ids = new HashSet<>();
-        PreparedStatement selectEventIdsByTenant = CassStatement.get(session, CassStatement.SELECT_EVENT_IDS_BY_TENANT);
-        ResultSetFuture future = session.executeAsync(selectEventIdsByTenant.bind(tenantId));
-        future.get().all().stream().forEach(r -> ids.add(r.getString("id")));
-        return ids;
+        return new HashSet<>(queryPlanner.execute(Collections.singletonList(eventsCtimesFilter(tenantId, null, null)))
+                .getCandidates());
     }
 
     // The DB-Level filtering approach implemented below is a best-practice for dealing
@@ -1289,6 +1362,53 @@ public class CassAlertsServiceImpl implements AlertsService {
         if (isEmpty(tenantIds)) {
             throw new IllegalArgumentException("TenantIds must be not null");
         }
+        if (pager != null && pager.isCursorPaged()) {
+            return getEventsPage(tenantIds, criteria, pager);
+        }
+        List<Event> events = fetchEvents(tenantIds, criteria);
+        if (events.isEmpty()) {
+            return new Page<>(events, pager, 0);
+        } else {
+            return prepareEventsPage(events, pager);
+        }
+    }
+
+    /*
+        Same approach than getAlertsPage() over the events_ctimes index.
+     */
+    private Page<Event> getEventsPage(Set<String> tenantIds, EventsCriteria criteria, Pager pager) throws Exception {
+        CassCursorPager.isAscending(pager);
+        if (tenantIds.size() == 1 && onlyCTimeCriteria(criteria)) {
+            String tenantId = tenantIds.iterator().next();
+            boolean thin = (null != criteria && criteria.isThin());
+            IndexReader ctimes = CassCursorPager.ctimeIndex(session, buckets, CassBuckets.EVENTS_CTIMES, tenantId,
+                    "id", CassStatement.SELECT_EVENT_CTIME_TIES_ASC, CassStatement.SELECT_EVENT_CTIME_TIES_DESC,
+                    CassStatement.SELECT_EVENT_CTIME_PAGE_ASC, CassStatement.SELECT_EVENT_CTIME_PAGE_DESC);
+            try {
+                return CassCursorPager.readPage(ctimes, criteria == null ? null : criteria.getStartTime(),
+                        criteria == null ? null : criteria.getEndTime(), pager,
+                        ids -> fetchEvents(tenantId, ids, thin));
+            } catch (Exception e) {
+                msgLog.errorDatabaseException(e.getMessage());
+                throw e;
+            }
+        }
+        return CassCursorPager.page(fetchEvents(tenantIds, criteria), Event::getCtime, Event::getId, pager);
+    }
+
+    private List<Event> fetchEvents(String tenantId, List<String> ids, boolean thin) throws Exception {
+        PreparedStatement select = CassStatement.get(session, CassStatement.SELECT_EVENT);
+        List<Event> events = new ArrayList<>(ids.size());
+        for (ResultSet rs : lookup(select, tenantId, ids)) {
+            Row row = rs.one();
+            if (row != null) {
+                events.add(JsonUtil.fromJson(row.getString("payload"), Event.class, thin));
+            }
+        }
+        return events;
+    }
+
+    private List<Event> fetchEvents(Set<String> tenantIds, EventsCriteria criteria) throws Exception {
         List<Event> events = new ArrayList<>();
         if (tenantIds.size() == 1) {
             events.addAll(getEvents(tenantIds.iterator().next(), criteria));
@@ -1315,11 +1435,7 @@ public class CassAlertsServiceImpl implements AlertsService {
                 }
             });
         }
-        if (events.isEmpty()) {
-            return new Page<>(events, pager, 0);
-        } else {
-            return prepareEventsPage(events, pager);
-        }
+        return events;
     }
 
     private List<Event> getEvents(String tenantId, EventsCriteria criteria) throws Exception {
@@ -1333,158 +1449,30 @@ public class CassAlertsServiceImpl implements AlertsService {
         }
 
         List<Event> events = new ArrayList<>();
-        Set<String> eventIds = new HashSet<>();
-        boolean activeFilter = false;
 
         try {
             if (filter) {
                 /*
-                    Get eventIds explicitly added into the criteria. Start with these as there is no query involved
+                    The indexed filters are resolved by the query planner, starting by the most selective one.
+                    Event.category *may* have low cardinality, so although it is indexed, it is checked manually on
+                    the fetched events when the candidates are few or its query is not worth it.
                  */
-                if (criteria.hasEventIdCriteria()) {
-                    Set<String> idsFilteredByEvents = filterByEvents(criteria);
-                    if (activeFilter) {
-                        eventIds.retainAll(idsFilteredByEvents);
-                    } else {
-                        eventIds.addAll(idsFilteredByEvents);
-                    }
-                    if (eventIds.isEmpty()) {
-                        return events;
-                    }
-                    activeFilter = true;
-                }
-
-                /*
-                    Get eventIds via tagQuery
-                 */
-                if (criteria.hasTagQueryCriteria()) {
-                    Set<String> idsFilteredByTagQuery = getIdsByTagQuery(tenantId, TagType.EVENT,
-                            criteria.getTagQuery());
-                    if (activeFilter) {
-                        eventIds.retainAll(idsFilteredByTagQuery);
-                    } else {
-                        eventIds.addAll(idsFilteredByTagQuery);
-                    }
-                    if (eventIds.isEmpty()) {
-                        return events;
-                    }
-                    activeFilter = true;
-                }
-
-                /*
-                    Get eventIds filtered by triggerIds clause
-                 */
-                if (criteria.hasTriggerIdCriteria()) {
-                    Set<String> idsFilteredByTriggers = filterByTriggers(tenantId, criteria);
-                    if (activeFilter) {
-                        eventIds.retainAll(idsFilteredByTriggers);
-                    } else {
-                        eventIds.addAll(idsFilteredByTriggers);
-                    }
-                    if (eventIds.isEmpty()) {
-                        return events;
-                    }
-                    activeFilter = true;
-                }
-
-                /*
-                    Get eventtIds filtered by time clause
-                 */
-                if (criteria.hasCTimeCriteria()) {
-                    Set<String> idsFilteredByTime = filterByCTime(tenantId, criteria);
-                    if (activeFilter) {
-                        eventIds.retainAll(idsFilteredByTime);
-                    } else {
-                        eventIds.addAll(idsFilteredByTime);
-                    }
-                    if (eventIds.isEmpty()) {
-                        return events;
-                    }
-                    activeFilter = true;
-                }
-
-                /*
-                   Below this point we prefer manual filtering if the result set is small enough. If so, fetch the
-                   events now and filter manually. Otherwise, don't fetch and perform further filtering by query.
-                */
-                if (activeFilter && (eventIds.size() <= noQuerySize)) {
-                    fetchEvents(tenantId, eventIds, thin, events);
-                }
-
-                if (criteria.hasCategoryCriteria()) {
-                    if (events.isEmpty()) {
-                        // filter by query and intersection
-                        Set<String> idsFilteredByCategory = filterByCategories(tenantId, criteria);
-                        if (activeFilter) {
-                            eventIds.retainAll(idsFilteredByCategory);
-                        } else {
-                            eventIds.addAll(idsFilteredByCategory);
-                        }
-                        if (eventIds.isEmpty()) {
-                            return events;
-                        }
-                        activeFilter = true;
-
-                    } else {
-                        // filter manually
-                        filterByCategories(tenantId, criteria, events);
-                        if (events.isEmpty()) {
-                            return events;
-                        }
-                    }
+                List<Filter<String, Event>> filters = eventsFilters(tenantId, criteria);
+                Plan<String, Event> plan = queryPlanner.execute(filters, noQuerySize);
+                if (log.isDebugEnabled()) {
+                    log.debug("getEvents filters: " + filters + " " + plan);
                 }
-
-                /*
-                    If we have reached this point then we have at least 1 filtered eventId. If we have
-                    not already fetched the resulting events, do so now.
-                 */
-                if (events.isEmpty()) {
-                    fetchEvents(tenantId, eventIds, thin, events);
+                if (plan.getCandidates().isEmpty()) {
+                    return events;
                 }
+                fetchEvents(tenantId, plan.getCandidates(), thin, events);
+                plan.filter(events);
 
             } else {
                 /*
-                    Get all events for the tenant - We could pull all events and toss those outside the tenant
-                    but perhaps slightly better is to get the valid partitions and then concurrently query each...
-
-                PreparedStatement selectPartitionsEvents = CassStatement.get(session,
-                        CassStatement.SELECT_PARTITIONS_EVENTS);
-                PreparedStatement selectEventsByPartition = CassStatement.get(session,
-                        CassStatement.SELECT_EVENTS_BY_PARTITION);
-
-                Set<String> categories = new HashSet<>();
-                ResultSet rsPartitions = session.execute(selectPartitionsEvents.bind());
-                for (Row row : rsPartitions) {
-                    if (tenantId.equals(row.getString("tenantId"))) {
-                        categories.add(row.getString("category"));
-                    }
-                }
-
-                List<ResultSetFuture> futures = categories.stream().map(category ->
-                        session.executeAsync(selectEventsByPartition.bind(tenantId, category)))
-                        .collect(Collectors.toList());
-                List<ResultSet> rsEvents = Futures.allAsList(futures).get();
-                rsEvents.stream().forEach(r -> {
-                    for (Row row : r) {
-                        String payload = row.getString("payload");
-                        Event event = JsonUtil.fromJson(payload, Event.class, thin);
-                        events.add(event);
-                    }
-                });
-                 */
-
-                /*
-                Get all events - Single query
+                    Get all events for the tenant, the ids are read from the buckets of the ctime index
                  */
-                PreparedStatement selectEventsByTenant = CassStatement.get(session,
-                        CassStatement.SELECT_EVENTS_BY_TENANT);
-                ResultSet rsEvents = session.execute(selectEventsByTenant.bind(tenantId));
-                for (Row row : rsEvents) {
-                    String payload = row.getString("payload");
-                    Event event = JsonUtil.fromJson(payload, Event.class, thin);
-                    events.add(event);
-                }
-
+                fetchEvents(tenantId, getAllEventIds(tenantId), thin, events);
             }
         } catch (Exception e) {
             msgLog.errorDatabaseException(e.getMessage());
@@ -1498,10 +1486,7 @@ public class CassAlertsServiceImpl implements AlertsService {
             throws Exception {
         PreparedStatement selectEvent = CassStatement
                 .get(session, CassStatement.SELECT_EVENT);
-        List<ResultSetFuture> futures = eventIds.stream()
-                .map(id -> session.executeAsync(selectEvent.bind(tenantId, id)))
-                .collect(Collectors.toList());
-        List<ResultSet> rsEvents = Futures.allAsList(futures).get();
+        List<ResultSet> rsEvents = lookup(selectEvent, tenantId, eventIds);
         rsEvents.stream().forEach(r -> {
             for (Row row : r) {
                 String payload = row.getString("payload");
@@ -1511,6 +1496,34 @@ public class CassAlertsServiceImpl implements AlertsService {
         });
     }
 
+    /*
+        Point lookups by (tenantId, id) with at most lookupMaxInFlight queries pending at a time, the result sets keep
+        the order of the ids.
+     */
+    private List<ResultSet> lookup(PreparedStatement select, String tenantId, Collection<String> ids)
+            throws Exception {
+        Semaphore inFlight = new Semaphore(lookupMaxInFlight);
+        List<ResultSetFuture> futures = new ArrayList<>(ids.size());
+        try {
+            for (String id : ids) {
+                inFlight.acquire();
+                ResultSetFuture future;
+                try {
+                    future = session.executeAsync(select.bind(tenantId, id));
+                } catch (RuntimeException e) {
+                    inFlight.release();
+                    throw e;
+                }
+                future.addListener(inFlight::release, Runnable::run);
+                futures.add(future);
+            }
+        } finally {
+            // Failures are reported once all the lookups sent are completed
+            Futures.successfulAsList(futures).get();
+        }
+        return Futures.allAsList(futures).get();
+    }
+
     private Page<Event> prepareEventsPage(List<Event> events, Pager pager) {
         if (pager != null) {
             if (pager.getOrder() != null
@@ -1550,34 +1563,38 @@ public class CassAlertsServiceImpl implements AlertsService {
         }
     }
 
-    private Set<String> filterByTriggers(String tenantId, EventsCriteria criteria) throws Exception {
-        Set<String> result = Collections.emptySet();
-        Set<String> triggerIds = extractTriggerIds(tenantId, criteria);
-
-        if (triggerIds.size() > 0) {
-            PreparedStatement selectEventsTriggers = CassStatement.get(session, CassStatement.SELECT_EVENT_TRIGGER);
-
-            List<ResultSetFuture> futures = new ArrayList<>();
-            for (String triggerId : triggerIds) {
-                if (isEmpty(triggerId)) {
-                    continue;
-                }
-                futures.add(session.executeAsync(selectEventsTriggers.bind(tenantId, triggerId)));
-            }
-
-            List<ResultSet> rsIdsByTriggerIds = Futures.allAsList(futures).get();
-
-            Set<String> eventIds = new HashSet<>();
-            rsIdsByTriggerIds.stream().forEach(r -> {
-                for (Row row : r) {
-                    String eventId = row.getString("id");
-                    eventIds.add(eventId);
-                }
-            });
-            result = eventIds;
+    /*
+        Indexed filters of an EventsCriteria, in the default order of the query.
+     */
+    private List<Filter<String, Event>> eventsFilters(String tenantId, EventsCriteria criteria) {
+        List<Filter<String, Event>> filters = new ArrayList<>();
+        if (criteria.hasEventIdCriteria()) {
+            Set<String> eventIds = filterByEvents(criteria);
+            filters.add(new Filter<String, Event>("eventIds", eventIds.size(), eventIds::forEach)
+                    .withIdCheck(eventIds::contains));
         }
-
-        return result;
+        if (criteria.hasTagQueryCriteria()) {
+            filters.add(tagQueryFilter(tenantId, TagType.EVENT, criteria.getTagQuery()));
+        }
+        if (criteria.hasTriggerIdCriteria()) {
+            Set<String> triggerIds = extractTriggerIds(tenantId, criteria);
+            filters.add(this.<Event> keysFilter(tenantId, "events_triggers", CassStatement.SELECT_EVENT_TRIGGER,
+                    "id", triggerIds)
+                    .withItemsCheck(events -> events.removeIf(e -> null == e.getTrigger()
+                            || !triggerIds.contains(e.getTrigger().getId()))));
+        }
+        if (criteria.hasCTimeCriteria()) {
+            Long start = criteria.getStartTime();
+            Long end = criteria.getEndTime();
+            filters.add(this.<Event> eventsCtimesFilter(tenantId, start, end)
+                    .withItemsCheck(events -> events.removeIf(e -> !inRange(e.getCtime(), start, end))));
+        }
+        if (criteria.hasCategoryCriteria()) {
+            filters.add(this.<Event> keysFilter(tenantId, "events_categories", CassStatement.SELECT_EVENT_CATEGORY,
+                    "id", extractCategories(criteria))
+                    .withItemsCheck(events -> filterByCategories(tenantId, criteria, events)));
+        }
+        return filters;
     }
 
     private Set<String> extractTriggerIds(String tenantId, EventsCriteria criteria) {
@@ -1603,40 +1620,7 @@ public class CassAlertsServiceImpl implements AlertsService {
         return triggerIds;
     }
 
-    private Set<String> filterByCTime(String tenantId, EventsCriteria criteria) throws Exception {
-        Set<String> result = Collections.emptySet();
-
-        if (criteria.getStartTime() != null || criteria.getEndTime() != null) {
-            result = new HashSet<>();
-
-            BoundStatement boundCtime;
-            if (criteria.getStartTime() != null && criteria.getEndTime() != null) {
-                PreparedStatement selectEventCTimeStartEnd = CassStatement.get(session,
-                        CassStatement.SELECT_EVENT_CTIME_START_END);
-                boundCtime = selectEventCTimeStartEnd.bind(tenantId, criteria.getStartTime(),
-                        criteria.getEndTime());
-            } else if (criteria.getStartTime() != null) {
-                PreparedStatement selectEventCTimeStart = CassStatement.get(session,
-                        CassStatement.SELECT_EVENT_CTIME_START);
-                boundCtime = selectEventCTimeStart.bind(tenantId, criteria.getStartTime());
-            } else {
-                PreparedStatement selectEventCTimeEnd = CassStatement.get(session,
-                        CassStatement.SELECT_EVENT_CTIME_END);
-                boundCtime = selectEventCTimeEnd.bind(tenantId, criteria.getEndTime());
-            }
-
-            ResultSet rsIdsCtimes = session.execute(boundCtime);
-            for (Row row : rsIdsCtimes) {
-                String eventId = row.getString("id");
-                result.add(eventId);
-            }
-        }
-        return result;
-    }
-
-    private Set<String> filterByCategories(String tenantId, EventsCriteria criteria) throws Exception {
-        Set<String> result = Collections.emptySet();
-
+    private Set<String> extractCategories(EventsCriteria criteria) {
         Set<String> categories = new HashSet<>();
         if (isEmpty(criteria.getCategories())) {
             if (criteria.getCategory() != null) {
@@ -1645,37 +1629,12 @@ public class CassAlertsServiceImpl implements AlertsService {
         } else {
             categories.addAll(criteria.getCategories());
         }
-
-        if (categories.size() > 0) {
-            PreparedStatement selectEventCategory = CassStatement.get(session,
-                    CassStatement.SELECT_EVENT_CATEGORY);
-            List<ResultSetFuture> futures = categories.stream()
-                    .map(category -> session.executeAsync(selectEventCategory.bind(tenantId, category)))
-                    .collect(Collectors.toList());
-            List<ResultSet> rsAlertStatuses = Futures.allAsList(futures).get();
-
-            Set<String> eventIds = new HashSet<>();
-            rsAlertStatuses.stream().forEach(r -> {
-                for (Row row : r) {
-                    String eventId = row.getString("id");
-                    eventIds.add(eventId);
-                }
-            });
-            result = eventIds;
-        }
-        return result;
+        return categories;
     }
 
     private void filterByCategories(String tenantId, EventsCriteria criteria, Collection<Event> events)
             throws Exception {
-        Set<String> categories = new HashSet<>();
-        if (isEmpty(criteria.getCategories())) {
-            if (criteria.getCategory() != null) {
-                categories.add(criteria.getCategory());
-            }
-        } else {
-            categories.addAll(criteria.getCategories());
-        }
+        Set<String> categories = extractCategories(criteria);
 
         if (categories.size() > 0) {
             for (Iterator<Event> i = events.iterator(); i.hasNext();) {
@@ -1748,11 +1707,13 @@ public class CassAlertsServiceImpl implements AlertsService {
         for (Alert a : alertsToDelete) {
             String id = a.getAlertId();
             batch.add(deleteAlert.bind(tenantId, id));
-            batch.add(deleteAlertCtime.bind(tenantId, a.getCtime(), id));
+            batch.add(deleteAlertCtime.bind(tenantId, CassBuckets.bucketOf(a.getCtime()), a.getCtime(), id));
             batch.add(deleteAlertTrigger.bind(tenantId, a.getTriggerId(), id));
             a.getLifecycle().stream().forEach(l -> {
-                batch.add(deleteAlertLifecycle.bind(tenantId, l.getStatus().name(), l.getStime(), a.getAlertId()));
-                batch.add(deleteAlertStime.bind(tenantId, l.getStime(), a.getAlertId()));
+                long stimeBucket = CassBuckets.bucketOf(l.getStime());
+                batch.add(deleteAlertLifecycle.bind(tenantId, stimeBucket, l.getStatus().name(), l.getStime(),
+                        a.getAlertId()));
+                batch.add(deleteAlertStime.bind(tenantId, stimeBucket, l.getStime(), a.getAlertId()));
             });
             i += batch.size();
             if (i > batchSize) {
@@ -1765,6 +1726,8 @@ public class CassAlertsServiceImpl implements AlertsService {
             futures.add(session.executeAsync(batch));
         }
         Futures.allAsList(futures).get();
+        tagIndex.removeIds(tenantId, TagType.ALERT.name(),
+                alertsToDelete.stream().map(Alert::getAlertId).collect(Collectors.toList()));
 
         return alertsToDelete.size();
     }
@@ -1802,7 +1765,7 @@ public class CassAlertsServiceImpl implements AlertsService {
             String id = e.getId();
             batch.add(deleteEvent.bind(tenantId, id));
             batch.add(deleteEventCategory.bind(tenantId, e.getCategory(), id));
-            batch.add(deleteEventCTime.bind(tenantId, e.getCtime(), id));
+            batch.add(deleteEventCTime.bind(tenantId, CassBuckets.bucketOf(e.getCtime()), e.getCtime(), id));
             if (null != e.getTrigger()) {
                 batch.add(deleteEventTrigger.bind(tenantId, e.getTrigger().getId(), id));
             }
@@ -1817,6 +1780,8 @@ public class CassAlertsServiceImpl implements AlertsService {
             futures.add(session.executeAsync(batch));
         }
         Futures.allAsList(futures).get();
+        tagIndex.removeIds(tenantId, TagType.EVENT.name(),
+                eventsToDelete.stream().map(Event::getId).collect(Collectors.toList()));
 
         return eventsToDelete.size();
     }
@@ -1908,10 +1873,16 @@ public class CassAlertsServiceImpl implements AlertsService {
             List<ResultSetFuture> futures = new ArrayList<>();
             Alert.LifeCycle lifecycle = alert.getCurrentLifecycle();
             if (lifecycle != null) {
-                futures.add(session.executeAsync(insertAlertLifecycle.bind(alert.getTenantId(), alert.getAlertId(),
-                        lifecycle.getStatus().name(), lifecycle.getStime())));
-                futures.add(session.executeAsync(insertAlertStime.bind(alert.getTenantId(), alert.getAlertId(),
-                        lifecycle.getStime())));
+                long stimeBucket = CassBuckets.bucketOf(lifecycle.getStime());
+                futures.add(session.executeAsync(insertAlertLifecycle.bind(alert.getTenantId(), stimeBucket,
+                        alert.getAlertId(), lifecycle.getStatus().name(), lifecycle.getStime())));
+                futures.add(session.executeAsync(insertAlertStime.bind(alert.getTenantId(), stimeBucket,
+                        alert.getAlertId(), lifecycle.getStime())));
+                Statement registerBucket = buckets.register(session, alert.getTenantId(), CassBuckets.ALERTS_STIMES,
+                        lifecycle.getStime());
+                if (registerBucket != null) {
+                    futures.add(session.executeAsync(registerBucket));
+                }
             }
             futures.add(session.executeAsync(updateAlert.bind(JsonUtil.toJson(alert), alert.getTenantId(),
                     alert.getAlertId())));
@@ -1919,6 +1890,7 @@ public class CassAlertsServiceImpl implements AlertsService {
             Futures.allAsList(futures).get();
 
         } catch (Exception e) {
+            buckets.reset();
             msgLog.errorDatabaseException(e.getMessage());
             throw e;
         }
@@ -2006,7 +1978,12 @@ public class CassAlertsServiceImpl implements AlertsService {
             return;
         }
         persistEvents(events);
-        sendEvents(events);
+        try {
+            sendEvents(events);
+        } catch (OverloadedException e) {
+            // Events are already stored, rejecting the request would lead clients to store them twice
+            log.warnf("[%d] events persisted but not evaluated: %s", events.size(), e.getMessage());
+        }
     }
 
     @Override
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import org.jboss.logging.Logger;
+
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+
+/**
+ * Copy of the alerts and events stored in the tables partitioned only by tenantId (alerts, alerts_ctimes,
+ * alerts_stimes, alerts_lifecycle, events, events_ctimes) into the time bucketed tables of the 1.7.0 schema.
+ *
+ * The migration runs once, at startup after the schema update, and it is flagged as done in sys_config. The copy is
+ * idempotent, so an interrupted migration is restarted from the beginning on the next startup. The previous tables
+ * are not modified and they can be dropped once the migration is verified.
+ */
+public class CassBucketMigration {
+    private static final Logger log = Logger.getLogger(CassBucketMigration.class);
+
+    private static final String CONFIG_ID = "org.hawkular.alerts";
+    private static final String MIGRATED = "buckets-migrated";
+
+    /*
+        Rows read per page of the previous tables, and written per plan
+     */
+    private static final int FETCH_SIZE = 1000;
+    private static final int BATCH_SIZE = 100;
+    private static final int MAX_IN_FLIGHT = 32;
+
+    @FunctionalInterface
+    private interface Copy {
+        void copy(CassWritePlanner writes, Row row);
+    }
+
+    private final Session session;
+    private final String keyspace;
+    private final CassBuckets buckets = new CassBuckets();
+
+    public CassBucketMigration(Session session, String keyspace) {
+        this.session = session;
+        this.keyspace = keyspace;
+    }
+
+    public boolean isMigrated() {
+        Row row = session.execute("SELECT value FROM " + keyspace + ".sys_config "
+                + "WHERE config_id = '" + CONFIG_ID + "' AND name = '" + MIGRATED + "'").one();
+        return row != null && Boolean.parseBoolean(row.getString("value"));
+    }
+
+    public void migrate() throws Exception {
+        if (isMigrated()) {
+            return;
+        }
+        log.infof("Migrating alerts and events of keyspace %s to time bucketed tables", keyspace);
+        long start = System.currentTimeMillis();
+
+        PreparedStatement insertAlert = CassStatement.get(session, CassStatement.INSERT_ALERT);
+        PreparedStatement insertAlertCtime = CassStatement.get(session, CassStatement.INSERT_ALERT_CTIME);
+        PreparedStatement insertAlertStime = CassStatement.get(session, CassStatement.INSERT_ALERT_STIME);
+        PreparedStatement insertAlertLifecycle = CassStatement.get(session, CassStatement.INSERT_ALERT_LIFECYCLE);
+        PreparedStatement insertEvent = CassStatement.get(session, CassStatement.INSERT_EVENT);
+        PreparedStatement insertEventCtime = CassStatement.get(session, CassStatement.INSERT_EVENT_CTIME);
+
+        long rows = 0;
+        rows += copy("SELECT tenantId, alertId, payload FROM alerts", (writes, row) -> {
+            String tenantId = row.getString("tenantId");
+            String alertId = row.getString("alertId");
+            writes.add("alerts_by_id", insertAlert.bind(tenantId, alertId, row.getString("payload")), tenantId,
+                    alertId);
+        });
+        rows += copy("SELECT tenantId, alertId, ctime FROM alerts_ctimes", (writes, row) -> {
+            String tenantId = row.getString("tenantId");
+            long ctime = row.getLong("ctime");
+            long bucket = CassBuckets.bucketOf(ctime);
+            writes.add("alerts_ctimes_by_day", insertAlertCtime.bind(tenantId, bucket, row.getString("alertId"),
+                    ctime), tenantId, bucket);
+            register(writes, tenantId, CassBuckets.ALERTS_CTIMES, ctime);
+        });
+        rows += copy("SELECT tenantId, alertId, stime FROM alerts_stimes", (writes, row) -> {
+            String tenantId = row.getString("tenantId");
+            long stime = row.getLong("stime");
+            long bucket = CassBuckets.bucketOf(stime);
+            writes.add("alerts_stimes_by_day", insertAlertStime.bind(tenantId, bucket, row.getString("alertId"),
+                    stime), tenantId, bucket);
+            register(writes, tenantId, CassBuckets.ALERTS_STIMES, stime);
+        });
+        rows += copy("SELECT tenantId, alertId, status, stime FROM alerts_lifecycle", (writes, row) -> {
+            String tenantId = row.getString("tenantId");
+            long stime = row.getLong("stime");
+            long bucket = CassBuckets.bucketOf(stime);
+            writes.add("alerts_lifecycle_by_day", insertAlertLifecycle.bind(tenantId, bucket,
+                    row.getString("alertId"), row.getString("status"), stime), tenantId, bucket);
+            register(writes, tenantId, CassBuckets.ALERTS_STIMES, stime);
+        });
+        rows += copy("SELECT tenantId, id, payload FROM events", (writes, row) -> {
+            String tenantId = row.getString("tenantId");
+            String id = row.getString("id");
+            writes.add("events_by_id", insertEvent.bind(tenantId, id, row.getString("payload")), tenantId, id);
+        });
+        rows += copy("SELECT tenantId, id, ctime FROM events_ctimes", (writes, row) -> {
+            String tenantId = row.getString("tenantId");
+            long ctime = row.getLong("ctime");
+            long bucket = CassBuckets.bucketOf(ctime);
+            writes.add("events_ctimes_by_day", insertEventCtime.bind(tenantId, bucket, ctime, row.getString("id")),
+                    tenantId, bucket);
+            register(writes, tenantId, CassBuckets.EVENTS_CTIMES, ctime);
+        });
+
+        session.execute("INSERT INTO " + keyspace + ".sys_config (config_id, name, value) VALUES "
+                + "('" + CONFIG_ID + "', '" + MIGRATED + "', 'true')");
+        log.infof("Migrated %s rows to time bucketed tables in %s ms", rows, System.currentTimeMillis() - start);
+    }
+
+    private long copy(String select, Copy copy) throws Exception {
+        Statement selectAll = new SimpleStatement(select.replace(" FROM ", " FROM " + keyspace + "."))
+                .setFetchSize(FETCH_SIZE);
+        ResultSet rs = session.execute(selectAll);
+        CassWritePlanner writes = new CassWritePlanner(session, BATCH_SIZE, MAX_IN_FLIGHT);
+        long rows = 0;
+        for (Row row : rs) {
+            copy.copy(writes, row);
+            rows++;
+            if (writes.getStatements() >= FETCH_SIZE) {
+                writes.execute();
+                writes = new CassWritePlanner(session, BATCH_SIZE, MAX_IN_FLIGHT);
+            }
+        }
+        writes.execute();
+        return rows;
+    }
+
+    private void register(CassWritePlanner writes, String tenantId, String index, long time) {
+        Statement registerBucket = buckets.register(session, tenantId, index, time);
+        if (registerBucket != null) {
+            writes.add("index_buckets", registerBucket, tenantId, index);
+        }
+    }
+}
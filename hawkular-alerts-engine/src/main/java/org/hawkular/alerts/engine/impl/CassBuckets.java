@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+
+/**
+ * Time buckets of the alerts and events time indexes.
+ *
+ * The time indexes (alerts_ctimes_by_day, alerts_stimes_by_day, alerts_lifecycle_by_day, events_ctimes_by_day) are
+ * partitioned by (tenantId, bucket), where bucket is the start of the day of the indexed time, so the partitions of
+ * a busy tenant are bounded by the rows of a day.
+ *
+ * The buckets with rows are registered per tenant and index in the index_buckets table, so a time range query only
+ * reads the buckets it touches that have rows, and an open range does not need to scan every day since the epoch.
+ * The registrations already written are cached to register each bucket only once per node.
+ */
+public class CassBuckets {
+
+    public static final long BUCKET_SIZE = TimeUnit.DAYS.toMillis(1);
+
+    /*
+        Index names of the registered buckets, the alerts_lifecycle_by_day rows are always written together with
+        an alerts_stimes_by_day row, so both share the buckets of the stimes
+     */
+    public static final String ALERTS_CTIMES = "alerts_ctimes";
+    public static final String ALERTS_STIMES = "alerts_stimes";
+    public static final String EVENTS_CTIMES = "events_ctimes";
+
+    /*
+        Max number of cached registrations, the cache is reset when it is exceeded
+     */
+    static final int MAX_REGISTERED = 100000;
+
+    private final Set<String> registered = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param time a time in milliseconds
+     * @return the bucket of the time, times of the first partial bucket (i.e. Long.MIN_VALUE of open ranges) are
+     * mapped to Long.MIN_VALUE
+     */
+    public static long bucketOf(long time) {
+        long bucket = Math.floorDiv(time, BUCKET_SIZE);
+        return bucket <= Long.MIN_VALUE / BUCKET_SIZE - 1 ? Long.MIN_VALUE : bucket * BUCKET_SIZE;
+    }
+
+    /**
+     * The registration must be written with the index row, if the write fails the cache must be {@link #reset()}.
+     *
+     * @return the statement to register the bucket of a time, null if it is already registered
+     */
+    public Statement register(Session session, String tenantId, String index, long time) {
+        long bucket = bucketOf(time);
+        if (!registered.add(tenantId + "|" + index + "|" + bucket)) {
+            return null;
+        }
+        if (registered.size() > MAX_REGISTERED) {
+            registered.clear();
+        }
+        return CassStatement.get(session, CassStatement.INSERT_INDEX_BUCKET).bind(tenantId, index, bucket);
+    }
+
+    /**
+     * Forget the cached registrations, so the next writes register their buckets again.
+     */
+    public void reset() {
+        registered.clear();
+    }
+
+    /**
+     * @param start start of the time range (inclusive), null for no start
+     * @param end end of the time range (inclusive), null for no end
+     * @return the registered buckets of the tenant index overlapping the time range, in ascending order
+     */
+    public List<Long> buckets(Session session, String tenantId, String index, Long start, Long end) {
+        List<Long> buckets = new ArrayList<>();
+        long from = start == null ? Long.MIN_VALUE : bucketOf(start);
+        long to = end == null ? Long.MAX_VALUE : bucketOf(end);
+        if (from > to) {
+            return buckets;
+        }
+        for (Row row : session.execute(CassStatement.get(session, CassStatement.SELECT_INDEX_BUCKETS)
+                .bind(tenantId, index, from, to))) {
+            buckets.add(row.getLong("bucket"));
+        }
+        return buckets;
+    }
+}
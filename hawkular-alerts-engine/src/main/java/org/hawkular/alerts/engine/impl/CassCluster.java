@@ -307,8 +307,23 @@ public class CassCluster {
             log.errorf("Schema %s not created correctly", keyspace);
             initialized = false;
         } else {
-            initialized = true;
             log.infof("Done creating Schema for keyspace: %s", keyspace);
+            initialized = migrateBuckets();
+        }
+    }
+
+    /*
+        The data of the tables replaced by the time bucketed tables is copied once. The queries read only the time
+        bucketed tables, so a failed migration leaves the keyspace not initialized and it is retried on the next
+        startup.
+     */
+    private boolean migrateBuckets() {
+        try {
+            new CassBucketMigration(session, keyspace).migrate();
+            return true;
+        } catch (Exception e) {
+            log.errorf(e, "Failed migration to time bucketed tables of keyspace %s", keyspace);
+            return false;
         }
     }
 
@@ -0,0 +1,287 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+import org.hawkular.alerts.api.model.paging.Order;
+import org.hawkular.alerts.api.model.paging.Page;
+import org.hawkular.alerts.api.model.paging.PageContext;
+
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+
+/**
+ * Cursor based paging of alerts and events ordered by ctime.
+ *
+ * A page is located by a continuation token, the (ctime, id) of the last item of the previous page, instead of by
+ * its page number. The ctime index tables (alerts_ctimes_by_day, events_ctimes_by_day) are clustered by (ctime, id),
+ * so a page of a query without other criteria than a ctime range is read straight from the clustering order of the
+ * index:
+ *
+ * - The rows with the same ctime than the cursor and an id after it.
+ * - The rows with a ctime after the cursor, up to the page size, bucket by bucket in the order of the page.
+ *
+ * Only page size + 1 index rows are read (the extra row tells if there is a next page), and only the items of the
+ * page are fetched, so memory and latency are bounded by the page size and not by the size of the result.
+ *
+ * The rest of queries are resolved as usual and the cursor is applied on the sorted result, so the same
+ * continuation tokens are valid for any criteria.
+ */
+public class CassCursorPager {
+
+    public static final String CTIME = "ctime";
+
+    /**
+     * Position of an item in the (ctime, id) order.
+     */
+    public static class Cursor {
+        private final long ctime;
+        private final String id;
+
+        public Cursor(long ctime, String id) {
+            if (id == null) {
+                throw new IllegalArgumentException("Cursor id must be not null");
+            }
+            this.ctime = ctime;
+            this.id = id;
+        }
+
+        public long getCtime() {
+            return ctime;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * @return an url safe continuation token
+         */
+        public String encode() {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((ctime + ":" + id).getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * @param token continuation token returned by {@link #encode()}
+         * @return the cursor, null if the token is empty
+         * @throws IllegalArgumentException if the token is not valid
+         */
+        public static Cursor decode(String token) {
+            if (token == null || token.isEmpty()) {
+                return null;
+            }
+            try {
+                String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+                int separator = decoded.indexOf(':');
+                if (separator == -1) {
+                    throw new IllegalArgumentException("Invalid cursor " + token);
+                }
+                return new Cursor(Long.parseLong(decoded.substring(0, separator)),
+                        decoded.substring(separator + 1));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid cursor " + token, e);
+            }
+        }
+
+        int compareTo(long ctime, String id) {
+            int c = Long.compare(this.ctime, ctime);
+            return c != 0 ? c : this.id.compareTo(id);
+        }
+
+        @Override
+        public String toString() {
+            return "Cursor[ctime=" + ctime + ", id=" + id + "]";
+        }
+    }
+
+    /**
+     * Read of a ctime index in (ctime, id) order.
+     */
+    public interface IndexReader {
+
+        /**
+         * @return the rows with the given ctime and an id after the given one
+         */
+        List<Cursor> ties(long ctime, String id, boolean ascending, int limit) throws Exception;
+
+        /**
+         * @return the rows with a ctime in [from, to)
+         */
+        List<Cursor> range(long from, long to, boolean ascending, int limit) throws Exception;
+    }
+
+    /**
+     * Fetch of the items of a page, the items not found are skipped.
+     */
+    @FunctionalInterface
+    public interface Lookup<T> {
+        List<T> fetch(List<String> ids) throws Exception;
+    }
+
+    /**
+     * @return a reader of a ctime index table using the given statements (tenantId, bucket, ctime, id, limit) for
+     * the ties and (tenantId, bucket, from, to, limit) for the ranges
+     */
+    public static IndexReader ctimeIndex(Session session, CassBuckets buckets, String index, String tenantId,
+            String idColumn, String selectTiesAsc, String selectTiesDesc, String selectRangeAsc,
+            String selectRangeDesc) {
+        return new IndexReader() {
+            @Override
+            public List<Cursor> ties(long ctime, String id, boolean ascending, int limit) {
+                PreparedStatement select = CassStatement.get(session, ascending ? selectTiesAsc : selectTiesDesc);
+                return read(select.bind(tenantId, CassBuckets.bucketOf(ctime), ctime, id, limit));
+            }
+
+            @Override
+            public List<Cursor> range(long from, long to, boolean ascending, int limit) {
+                PreparedStatement select = CassStatement.get(session, ascending ? selectRangeAsc : selectRangeDesc);
+                List<Long> touched = buckets.buckets(session, tenantId, index, from, to - 1);
+                if (!ascending) {
+                    Collections.reverse(touched);
+                }
+                List<Cursor> keys = new ArrayList<>();
+                for (Long bucket : touched) {
+                    keys.addAll(read(select.bind(tenantId, bucket, from, to, limit - keys.size())));
+                    if (keys.size() >= limit) {
+                        break;
+                    }
+                }
+                return keys;
+            }
+
+            private List<Cursor> read(Statement statement) {
+                List<Cursor> keys = new ArrayList<>();
+                for (Row row : session.execute(statement)) {
+                    keys.add(new Cursor(row.getLong(CTIME), row.getString(idColumn)));
+                }
+                return keys;
+            }
+        };
+    }
+
+    /**
+     * @param pager a cursor paged context
+     * @return true if the page is ordered by ascending ctime, an unspecified order is descending ctime
+     * @throws IllegalArgumentException if the pager is not a valid cursor paged context
+     */
+    public static boolean isAscending(PageContext pager) {
+        if (!pager.isLimited() || pager.getPageSize() == 0) {
+            throw new IllegalArgumentException("Cursor paging requires a page size");
+        }
+        List<Order> order = pager.getOrder();
+        if (order.size() == 1 && !order.get(0).isSpecific()) {
+            return false;
+        }
+        if (order.size() != 1 || !CTIME.equals(order.get(0).getField())) {
+            throw new IllegalArgumentException("Cursor paging is only supported ordering by " + CTIME);
+        }
+        return order.get(0).isAscending();
+    }
+
+    /**
+     * Read a page from a ctime index and fetch its items.
+     *
+     * @param reader the ctime index
+     * @param start the start of the ctime range (inclusive), null for no start
+     * @param end the end of the ctime range (inclusive), null for no end
+     * @param pager a cursor paged context
+     * @param lookup the fetch of the items of the page
+     * @return the page, the total size is {@link Page#UNKNOWN_TOTAL_SIZE}
+     */
+    public static <T> Page<T> readPage(IndexReader reader, Long start, Long end, PageContext pager,
+            Lookup<T> lookup) throws Exception {
+        boolean ascending = isAscending(pager);
+        Cursor after = Cursor.decode(pager.getCursor());
+        int pageSize = pager.getPageSize();
+        int limit = pageSize + 1;
+
+        long from = start == null ? Long.MIN_VALUE : start;
+        long to = end == null || end == Long.MAX_VALUE ? Long.MAX_VALUE : end + 1;
+        List<Cursor> keys = new ArrayList<>(limit);
+        if (after != null) {
+            if (after.ctime >= from && after.ctime < to) {
+                keys.addAll(reader.ties(after.ctime, after.id, ascending, limit));
+            }
+            if (ascending) {
+                from = Math.max(from, after.ctime == Long.MAX_VALUE ? Long.MAX_VALUE : after.ctime + 1);
+            } else {
+                to = Math.min(to, after.ctime);
+            }
+        }
+        if (keys.size() < limit && from < to) {
+            keys.addAll(reader.range(from, to, ascending, limit - keys.size()));
+        }
+
+        String nextCursor = null;
+        if (keys.size() > pageSize) {
+            keys = keys.subList(0, pageSize);
+            nextCursor = keys.get(pageSize - 1).encode();
+        }
+        List<String> ids = new ArrayList<>(keys.size());
+        keys.forEach(k -> ids.add(k.id));
+        List<T> items = ids.isEmpty() ? new ArrayList<>() : lookup.fetch(ids);
+        return new Page<>(items, pager, Page.UNKNOWN_TOTAL_SIZE, nextCursor);
+    }
+
+    /**
+     * Cut a page of an already fetched result.
+     *
+     * @param items the whole result, it is sorted in place
+     * @param ctime the ctime of an item
+     * @param id the id of an item
+     * @param pager a cursor paged context
+     * @return the page, the total size is the size of the whole result
+     */
+    public static <T> Page<T> page(List<T> items, ToLongFunction<T> ctime, Function<T, String> id,
+            PageContext pager) {
+        boolean ascending = isAscending(pager);
+        Cursor after = Cursor.decode(pager.getCursor());
+        int pageSize = pager.getPageSize();
+
+        Comparator<T> order = Comparator.comparingLong(ctime).thenComparing(id);
+        items.sort(ascending ? order : order.reversed());
+
+        List<T> page = new ArrayList<>(pageSize);
+        String nextCursor = null;
+        for (T item : items) {
+            if (after != null) {
+                int c = after.compareTo(ctime.applyAsLong(item), id.apply(item));
+                if (ascending ? c >= 0 : c <= 0) {
+                    continue;
+                }
+            }
+            if (page.size() == pageSize) {
+                T last = page.get(pageSize - 1);
+                nextCursor = new Cursor(ctime.applyAsLong(last), id.apply(last)).encode();
+                break;
+            }
+            page.add(item);
+        }
+        return new Page<>(page, pager, items.size(), nextCursor);
+    }
+}
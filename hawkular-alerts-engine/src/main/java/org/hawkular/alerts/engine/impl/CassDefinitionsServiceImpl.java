@@ -795,6 +795,9 @@ public class CassDefinitionsServiceImpl implements DefinitionsService {
         if (isEmpty(tenantId)) {
             throw new IllegalArgumentException("TenantId must be not null");
         }
+        if (null != pager && pager.isCursorPaged()) {
+            throw new IllegalArgumentException("Cursor paging is not supported for triggers");
+        }
         boolean filter = (null != criteria && criteria.hasCriteria());
         boolean thin = (null != criteria && criteria.isThin()); // currently ignored, triggers have no thinned data
 
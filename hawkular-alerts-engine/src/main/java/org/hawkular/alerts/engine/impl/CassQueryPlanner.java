@@ -0,0 +1,346 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Cost based planner of the criteria queries resolved through the index tables (alerts and events).
+ *
+ * Each filter of a criteria is described by a {@link Filter}: an estimation of the number of index rows it matches,
+ * a scan of those rows, and optionally a check of the filter on the ids or on the fetched items. The planner scans
+ * the most selective filter to get the candidate ids, and then applies the rest of filters against the candidates,
+ * from the most to the least selective:
+ *
+ * - Filters that can be checked on the ids are applied in memory.
+ * - Filters whose scan is cheaper than the point lookups it could save, or without estimation, are applied by a
+ *   streaming intersection, the index rows not in the candidates are discarded as they are read.
+ * - The rest are deferred and checked on the items fetched by point lookups of the candidates.
+ *
+ * Only the candidates are kept in memory, the index rows of a broad filter are never materialized when a more
+ * selective one exists.
+ *
+ * The estimations are based on the rows returned by previous scans, cached per tenant and index key, and on the
+ * density of rows in time for the time indexes. A filter without estimation keeps the default order of the query.
+ */
+public class CassQueryPlanner {
+
+    public static final long UNKNOWN = Long.MAX_VALUE;
+
+    /*
+        A point lookup of an item costs about as much as scanning this number of index rows
+     */
+    static final long POINT_LOOKUP_COST = 10;
+
+    /*
+        Max number of cached estimations, the cache is reset when it is exceeded
+     */
+    static final int MAX_STATS = 100000;
+
+    private final Map<String, Long> keyStats = new ConcurrentHashMap<>();
+    private final Map<String, Density> rangeStats = new ConcurrentHashMap<>();
+
+    /**
+     * Scan of the index rows matching a filter.
+     */
+    @FunctionalInterface
+    public interface Scan<K> {
+        void scan(Consumer<K> ids) throws Exception;
+    }
+
+    /**
+     * Check of a filter on fetched items, it removes the items not matching the filter.
+     */
+    @FunctionalInterface
+    public interface ItemsCheck<T> {
+        void filter(Collection<T> items) throws Exception;
+    }
+
+    public static class Filter<K, T> {
+        private final String name;
+        private final long estimate;
+        private final Scan<K> scan;
+        private Predicate<K> idCheck;
+        private ItemsCheck<T> itemsCheck;
+
+        /**
+         * @param name of the filter, for logging
+         * @param estimate estimated number of index rows matched by the filter, or {@link #UNKNOWN}
+         * @param scan of the index rows matched by the filter
+         */
+        public Filter(String name, long estimate, Scan<K> scan) {
+            this.name = name;
+            this.estimate = estimate;
+            this.scan = scan;
+        }
+
+        /**
+         * @param idCheck check of the filter on an id, without any lookup
+         * @return this filter
+         */
+        public Filter<K, T> withIdCheck(Predicate<K> idCheck) {
+            this.idCheck = idCheck;
+            return this;
+        }
+
+        /**
+         * @param itemsCheck check of the filter on the fetched items
+         * @return this filter
+         */
+        public Filter<K, T> withItemsCheck(ItemsCheck<T> itemsCheck) {
+            this.itemsCheck = itemsCheck;
+            return this;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getEstimate() {
+            return estimate;
+        }
+
+        @Override
+        public String toString() {
+            return name + "[" + (estimate == UNKNOWN ? "?" : estimate) + "]";
+        }
+    }
+
+    /**
+     * Result of a plan: the candidate ids and the filters deferred to the fetched items.
+     */
+    public static class Plan<K, T> {
+        private final Set<K> candidates;
+        private final List<Filter<K, T>> deferred;
+        private final List<String> steps;
+
+        Plan(Set<K> candidates, List<Filter<K, T>> deferred, List<String> steps) {
+            this.candidates = candidates;
+            this.deferred = deferred;
+            this.steps = steps;
+        }
+
+        /**
+         * @return the ids matching the non deferred filters
+         */
+        public Set<K> getCandidates() {
+            return candidates;
+        }
+
+        /**
+         * Apply the deferred filters on the items fetched from the candidates.
+         *
+         * @param items fetched items, the ones not matching the deferred filters are removed
+         */
+        public void filter(Collection<T> items) throws Exception {
+            for (Filter<K, T> filter : deferred) {
+                if (items.isEmpty()) {
+                    return;
+                }
+                filter.itemsCheck.filter(items);
+            }
+        }
+
+        /**
+         * @return the steps of the plan, as "scan:", "check:", "intersect:" or "defer:" plus the filter name
+         */
+        public List<String> getSteps() {
+            return steps;
+        }
+
+        @Override
+        public String toString() {
+            return "Plan" + steps;
+        }
+    }
+
+    /**
+     * Plan and execute the index part of a query.
+     *
+     * @param filters of the query, in its default order
+     * @return the plan with the candidate ids, empty candidates if no item matches
+     * @throws Exception on any error scanning an index
+     */
+    public <K, T> Plan<K, T> execute(List<Filter<K, T>> filters) throws Exception {
+        return execute(filters, 0);
+    }
+
+    /**
+     * Plan and execute the index part of a query.
+     *
+     * @param filters of the query, in its default order
+     * @param noQuerySize number of candidates under which the filters that can be checked on the items are always
+     *                    deferred to the fetched items
+     * @return the plan with the candidate ids, empty candidates if no item matches
+     * @throws Exception on any error scanning an index
+     */
+    public <K, T> Plan<K, T> execute(List<Filter<K, T>> filters, int noQuerySize) throws Exception {
+        if (filters == null || filters.isEmpty()) {
+            throw new IllegalArgumentException("Filters must be not empty");
+        }
+        List<Filter<K, T>> ordered = new ArrayList<>(filters);
+        // Stable sort, filters without estimation keep the default order
+        ordered.sort(Comparator.comparingLong(Filter::getEstimate));
+
+        List<String> steps = new ArrayList<>();
+        List<Filter<K, T>> deferred = new ArrayList<>();
+        Filter<K, T> driving = ordered.get(0);
+        Set<K> candidates = new HashSet<>();
+        driving.scan.scan(candidates::add);
+        steps.add("scan:" + driving.name);
+
+        for (int i = 1; i < ordered.size(); i++) {
+            Filter<K, T> filter = ordered.get(i);
+            if (candidates.isEmpty()) {
+                break;
+            }
+            if (filter.idCheck != null) {
+                candidates.removeIf(filter.idCheck.negate());
+                steps.add("check:" + filter.name);
+            } else if (filter.itemsCheck == null || (candidates.size() > noQuerySize
+                    && (filter.estimate == UNKNOWN || filter.estimate <= candidates.size() * POINT_LOOKUP_COST))) {
+                Set<K> matched = new HashSet<>();
+                Set<K> current = candidates;
+                filter.scan.scan(id -> {
+                    if (current.contains(id)) {
+                        matched.add(id);
+                    }
+                });
+                candidates = matched;
+                steps.add("intersect:" + filter.name);
+            } else {
+                deferred.add(filter);
+                steps.add("defer:" + filter.name);
+            }
+        }
+        return new Plan<>(candidates, deferred, steps);
+    }
+
+    /**
+     * @param tenantId the tenant
+     * @param index the index table
+     * @param keys the keys of the index queried, or a single key describing the query
+     * @return the estimated number of rows, {@link #UNKNOWN} if any key has not been scanned before
+     */
+    public long estimate(String tenantId, String index, Collection<String> keys) {
+        long estimate = 0;
+        for (String key : keys) {
+            Long rows = keyStats.get(statsKey(tenantId, index, key));
+            if (rows == null) {
+                return UNKNOWN;
+            }
+            estimate += rows;
+        }
+        return estimate;
+    }
+
+    /**
+     * @param tenantId the tenant
+     * @param index the index table
+     * @param key the key of the index queried, or a key describing the query
+     * @param rows the number of rows returned by the index for the key
+     */
+    public void record(String tenantId, String index, String key, long rows) {
+        if (keyStats.size() >= MAX_STATS) {
+            keyStats.clear();
+        }
+        keyStats.put(statsKey(tenantId, index, key), rows);
+    }
+
+    /**
+     * @param tenantId the tenant
+     * @param index the time index table
+     * @param start the start of the time range, null for unbounded
+     * @param end the end of the time range, null for unbounded
+     * @return the estimated number of rows in the range, {@link #UNKNOWN} if the index has not been scanned before
+     */
+    public long estimateRange(String tenantId, String index, Long start, Long end) {
+        Density density = rangeStats.get(statsKey(tenantId, index, null));
+        if (density == null) {
+            return UNKNOWN;
+        }
+        long from = start == null ? density.first : Math.max(start, density.first);
+        long to = end == null ? Math.max(density.last, System.currentTimeMillis())
+                : Math.min(end, Math.max(density.last, System.currentTimeMillis()));
+        if (to < from) {
+            return 0;
+        }
+        return (long) Math.ceil(density.rowsPerMs * (to - from + 1));
+    }
+
+    /**
+     * Record a scan of a time index.
+     *
+     * @param tenantId the tenant
+     * @param index the time index table
+     * @param start the start of the time range scanned, null for unbounded
+     * @param end the end of the time range scanned, null for unbounded
+     * @param rows the number of rows returned
+     * @param first the lowest time of the rows returned
+     * @param last the highest time of the rows returned
+     */
+    public void recordRange(String tenantId, String index, Long start, Long end, long rows, long first,
+            long last) {
+        if (rangeStats.size() >= MAX_STATS) {
+            rangeStats.clear();
+        }
+        String key = statsKey(tenantId, index, null);
+        Density previous = rangeStats.get(key);
+        long from = start != null ? start : (rows > 0 ? first : (previous != null ? previous.first : 0));
+        long to = end != null ? end : (rows > 0 ? last : (previous != null ? previous.last : from));
+        if (to < from) {
+            return;
+        }
+        double rowsPerMs = (double) rows / (to - from + 1);
+        if (previous != null && rows > 0) {
+            first = Math.min(first, previous.first);
+            last = Math.max(last, previous.last);
+        } else if (rows == 0) {
+            if (previous == null) {
+                return;
+            }
+            first = previous.first;
+            last = previous.last;
+        }
+        rangeStats.put(key, new Density(rowsPerMs, first, last));
+    }
+
+    private static String statsKey(String tenantId, String index, String key) {
+        return tenantId + "|" + index + (key == null ? "" : "|" + key);
+    }
+
+    private static class Density {
+        private final double rowsPerMs;
+        private final long first;
+        private final long last;
+
+        Density(double rowsPerMs, long first, long last) {
+            this.rowsPerMs = rowsPerMs;
+            this.first = first;
+            this.last = last;
+        }
+    }
+}
@@ -90,6 +90,7 @@ public class CassStatement {
     public static final String INSERT_EVENT_CATEGORY;
     public static final String INSERT_EVENT_CTIME;
     public static final String INSERT_EVENT_TRIGGER;
+    public static final String INSERT_INDEX_BUCKET;
     public static final String INSERT_TAG;
     public static final String INSERT_TRIGGER;
     public static final String INSERT_TRIGGER_ACTIONS;
@@ -114,9 +115,12 @@ public class CassStatement {
     public static final String SELECT_ACTION_PLUGINS;
     public static final String SELECT_ALERT;
     public static final String SELECT_ALERT_CTIME_END;
+    public static final String SELECT_ALERT_CTIME_PAGE_ASC;
+    public static final String SELECT_ALERT_CTIME_PAGE_DESC;
     public static final String SELECT_ALERT_CTIME_START;
     public static final String SELECT_ALERT_CTIME_START_END;
-    public static final String SELECT_ALERT_IDS_BY_TENANT;
+    public static final String SELECT_ALERT_CTIME_TIES_ASC;
+    public static final String SELECT_ALERT_CTIME_TIES_DESC;
     public static final String SELECT_ALERT_LIFECYCLE_END;
     public static final String SELECT_ALERT_LIFECYCLE_START;
     public static final String SELECT_ALERT_LIFECYCLE_START_END;
@@ -124,7 +128,6 @@ public class CassStatement {
     public static final String SELECT_ALERT_STIME_START;
     public static final String SELECT_ALERT_STIME_START_END;
     public static final String SELECT_ALERT_TRIGGER;
-    public static final String SELECT_ALERTS_BY_TENANT;
     public static final String SELECT_CONDITION_ID;
     public static final String SELECT_CONDITIONS_ALL;
     public static final String SELECT_CONDITIONS_BY_TENANT;
@@ -134,11 +137,14 @@ public class CassStatement {
     public static final String SELECT_EVENT;
     public static final String SELECT_EVENT_CATEGORY;
     public static final String SELECT_EVENT_CTIME_END;
+    public static final String SELECT_EVENT_CTIME_PAGE_ASC;
+    public static final String SELECT_EVENT_CTIME_PAGE_DESC;
     public static final String SELECT_EVENT_CTIME_START;
     public static final String SELECT_EVENT_CTIME_START_END;
-    public static final String SELECT_EVENT_IDS_BY_TENANT;
+    public static final String SELECT_EVENT_CTIME_TIES_ASC;
+    public static final String SELECT_EVENT_CTIME_TIES_DESC;
     public static final String SELECT_EVENT_TRIGGER;
-    public static final String SELECT_EVENTS_BY_TENANT;
+    public static final String SELECT_INDEX_BUCKETS;
     //public static final String SELECT_EVENTS_BY_PARTITION;
     // public static final String SELECT_PARTITIONS_EVENTS;
     public static final String SELECT_PARTITIONS_TRIGGERS;
@@ -180,23 +186,23 @@ public class CassStatement {
                 "WHERE tenantId = ? AND alertId = ? AND actionPlugin = ? AND actionId = ? AND ctime = ?";
 
         DELETE_ACTION_HISTORY_CTIME = "DELETE FROM " + keyspace + ".actions_history_ctimes " +
-                "WHERE tenantId = ? AND ctime = ? AND actionPlugin = ? AND actionId = ? AND alertId = ?";
+                "WHERE tenantId = ? AND bucket = ? AND ctime = ? AND actionPlugin = ? AND actionId = ? AND alertId = ?";
 
         DELETE_ACTION_HISTORY_RESULT = "DELETE FROM " + keyspace + ".actions_history_results " +
                 "WHERE tenantId = ? AND result = ? AND actionPlugin = ? AND actionId = ? AND alertId = ? AND ctime = ?";
 
         DELETE_ACTION_PLUGIN = "DELETE FROM " + keyspace + ".action_plugins WHERE actionPlugin = ? ";
 
-        DELETE_ALERT = "DELETE FROM " + keyspace + ".alerts " + "WHERE tenantId = ? AND alertId = ? ";
+        DELETE_ALERT = "DELETE FROM " + keyspace + ".alerts_by_id " + "WHERE tenantId = ? AND alertId = ? ";
 
-        DELETE_ALERT_CTIME = "DELETE FROM " + keyspace + ".alerts_ctimes "
-                + "WHERE tenantId = ? AND ctime = ? AND alertId = ? ";
+        DELETE_ALERT_CTIME = "DELETE FROM " + keyspace + ".alerts_ctimes_by_day "
+                + "WHERE tenantId = ? AND bucket = ? AND ctime = ? AND alertId = ? ";
 
-        DELETE_ALERT_LIFECYCLE = "DELETE FROM " + keyspace + ".alerts_lifecycle "
-                + "WHERE tenantId = ? AND status = ? AND stime = ? AND alertId = ? ";
+        DELETE_ALERT_LIFECYCLE = "DELETE FROM " + keyspace + ".alerts_lifecycle_by_day "
+                + "WHERE tenantId = ? AND bucket = ? AND status = ? AND stime = ? AND alertId = ? ";
 
-        DELETE_ALERT_STIME = "DELETE FROM " + keyspace + ".alerts_stimes "
-                + "WHERE tenantId = ? AND stime = ? AND alertId = ? ";
+        DELETE_ALERT_STIME = "DELETE FROM " + keyspace + ".alerts_stimes_by_day "
+                + "WHERE tenantId = ? AND bucket = ? AND stime = ? AND alertId = ? ";
 
         DELETE_ALERT_TRIGGER = "DELETE FROM " + keyspace + ".alerts_triggers "
                 + "WHERE tenantId = ? AND triggerId = ? AND alertId = ? ";
@@ -211,10 +217,10 @@ public class CassStatement {
 
         DELETE_DAMPENINGS = "DELETE FROM " + keyspace + ".dampenings " + "WHERE tenantId = ? AND triggerId = ? ";
 
-        DELETE_EVENT = "DELETE FROM " + keyspace + ".events " + "WHERE tenantId = ? AND id = ? ";
+        DELETE_EVENT = "DELETE FROM " + keyspace + ".events_by_id " + "WHERE tenantId = ? AND id = ? ";
 
-        DELETE_EVENT_CTIME = "DELETE FROM " + keyspace + ".events_ctimes "
-                + "WHERE tenantId = ? AND ctime = ? AND id = ? ";
+        DELETE_EVENT_CTIME = "DELETE FROM " + keyspace + ".events_ctimes_by_day "
+                + "WHERE tenantId = ? AND bucket = ? AND ctime = ? AND id = ? ";
 
         DELETE_EVENT_CATEGORY = "DELETE FROM " + keyspace + ".events_categories "
                 + "WHERE tenantId = ? AND category = ? AND id = ? ";
@@ -259,16 +265,17 @@ public class CassStatement {
         INSERT_ACTION_PLUGIN_DEFAULT_PROPERTIES = "INSERT INTO " + keyspace + ".action_plugins "
                 + "(actionPlugin, properties, defaultProperties) VALUES (?, ?, ?) ";
 
-        INSERT_ALERT = "INSERT INTO " + keyspace + ".alerts " + "(tenantId, alertId, payload) VALUES (?, ?, ?) ";
+        INSERT_ALERT = "INSERT INTO " + keyspace + ".alerts_by_id "
+                + "(tenantId, alertId, payload) VALUES (?, ?, ?) ";
 
-        INSERT_ALERT_CTIME = "INSERT INTO " + keyspace + ".alerts_ctimes "
-                + "(tenantId, alertId, ctime) VALUES (?, ?, ?) ";
+        INSERT_ALERT_CTIME = "INSERT INTO " + keyspace + ".alerts_ctimes_by_day "
+                + "(tenantId, bucket, alertId, ctime) VALUES (?, ?, ?, ?) ";
 
-        INSERT_ALERT_LIFECYCLE = "INSERT INTO " + keyspace + ".alerts_lifecycle "
-                + "(tenantId, alertId, status, stime) VALUES (?, ?, ?, ?) ";
+        INSERT_ALERT_LIFECYCLE = "INSERT INTO " + keyspace + ".alerts_lifecycle_by_day "
+                + "(tenantId, bucket, alertId, status, stime) VALUES (?, ?, ?, ?, ?) ";
 
-        INSERT_ALERT_STIME = "INSERT INTO " + keyspace + ".alerts_stimes "
-                + "(tenantId, alertId, stime) VALUES (?, ?, ?) ";
+        INSERT_ALERT_STIME = "INSERT INTO " + keyspace + ".alerts_stimes_by_day "
+                + "(tenantId, bucket, alertId, stime) VALUES (?, ?, ?, ?) ";
 
         INSERT_ALERT_TRIGGER = "INSERT INTO " + keyspace + ".alerts_triggers "
                 + "(tenantId, alertId, triggerId) VALUES (?, ?, ?) ";
@@ -321,11 +328,11 @@ public class CassStatement {
                 + "(tenantId, triggerId, triggerMode, type, evalTrueSetting, evalTotalSetting, evalTimeSetting, "
                 + "dampeningId) VALUES (?, ?, ?, ?, ?, ?, ?, ?) ";
 
-        INSERT_EVENT = "INSERT INTO " + keyspace + ".events "
+        INSERT_EVENT = "INSERT INTO " + keyspace + ".events_by_id "
                 + "(tenantId, id, payload) VALUES (?, ?, ?) ";
 
-        INSERT_EVENT_CTIME = "INSERT INTO " + keyspace + ".events_ctimes "
-                + "(tenantId, ctime, id) VALUES (?, ?, ?) ";
+        INSERT_EVENT_CTIME = "INSERT INTO " + keyspace + ".events_ctimes_by_day "
+                + "(tenantId, bucket, ctime, id) VALUES (?, ?, ?, ?) ";
 
         INSERT_EVENT_CATEGORY = "INSERT INTO " + keyspace + ".events_categories "
                 + "(tenantId, category, id) VALUES (?, ?, ?) ";
@@ -333,6 +340,9 @@ public class CassStatement {
         INSERT_EVENT_TRIGGER = "INSERT INTO " + keyspace + ".events_triggers "
                 + "(tenantId, triggerId, id) VALUES (?, ?, ?) ";
 
+        INSERT_INDEX_BUCKET = "INSERT INTO " + keyspace + ".index_buckets "
+                + "(tenantId, indexName, bucket) VALUES (?, ?, ?) ";
+
         INSERT_TAG = "INSERT INTO " + keyspace + ".tags "
                 + "(tenantId, type, name, value, id) VALUES (?, ?, ?, ?, ?) ";
 
@@ -396,39 +406,51 @@ public class CassStatement {
         SELECT_ACTION_ID_BY_PLUGIN = "SELECT actionId FROM " + keyspace + ".actions_definitions "
                 + "WHERE tenantId = ? AND actionPlugin = ? ";
 
-        SELECT_ALERT = "SELECT payload FROM " + keyspace + ".alerts "
+        SELECT_ALERT = "SELECT payload FROM " + keyspace + ".alerts_by_id "
                 + "WHERE tenantId = ? AND alertId = ? ";
 
-        SELECT_ALERT_CTIME_END = "SELECT alertId FROM " + keyspace + ".alerts_ctimes "
-                + "WHERE tenantId = ? AND ctime <= ? ";
+        SELECT_ALERT_CTIME_END = "SELECT alertId, ctime FROM " + keyspace + ".alerts_ctimes_by_day "
+                + "WHERE tenantId = ? AND bucket = ? AND ctime <= ? ";
+
+        SELECT_ALERT_CTIME_START = "SELECT alertId, ctime FROM " + keyspace + ".alerts_ctimes_by_day "
+                + "WHERE tenantId = ? AND bucket = ? AND ctime >= ? ";
 
-        SELECT_ALERT_CTIME_START = "SELECT alertId FROM " + keyspace + ".alerts_ctimes "
-                + "WHERE tenantId = ? AND ctime >= ? ";
+        SELECT_ALERT_CTIME_START_END = "SELECT alertId, ctime FROM " + keyspace + ".alerts_ctimes_by_day "
+                + "WHERE tenantId = ? AND bucket = ? AND ctime >= ? AND ctime <= ? ";
 
-        SELECT_ALERT_CTIME_START_END = "SELECT alertId FROM " + keyspace + ".alerts_ctimes "
-                + "WHERE tenantId = ? AND ctime >= ? AND ctime <= ? ";
+        SELECT_ALERT_CTIME_PAGE_ASC = "SELECT alertId, ctime FROM " + keyspace + ".alerts_ctimes_by_day "
+                + "WHERE tenantId = ? AND bucket = ? AND ctime >= ? AND ctime < ? "
+                + "ORDER BY ctime ASC, alertId ASC LIMIT ? ";
 
-        SELECT_ALERT_IDS_BY_TENANT = "SELECT alertId FROM " + keyspace + ".alerts " + "WHERE tenantId = ? ";
+        SELECT_ALERT_CTIME_PAGE_DESC = "SELECT alertId, ctime FROM " + keyspace + ".alerts_ctimes_by_day "
+                + "WHERE tenantId = ? AND bucket = ? AND ctime >= ? AND ctime < ? "
+                + "ORDER BY ctime DESC, alertId DESC LIMIT ? ";
 
-        SELECT_ALERT_LIFECYCLE_END = "SELECT alertId FROM " + keyspace + ".alerts_lifecycle "
-                + "WHERE tenantId = ? AND status = ? AND stime <= ? ";
+        SELECT_ALERT_CTIME_TIES_ASC = "SELECT alertId, ctime FROM " + keyspace + ".alerts_ctimes_by_day "
+                + "WHERE tenantId = ? AND bucket = ? AND ctime = ? AND alertId > ? "
+                + "ORDER BY ctime ASC, alertId ASC LIMIT ? ";
 
-        SELECT_ALERT_LIFECYCLE_START = "SELECT alertId FROM " + keyspace + ".alerts_lifecycle "
-                + "WHERE tenantId = ? AND status = ? AND stime >= ? ";
+        SELECT_ALERT_CTIME_TIES_DESC = "SELECT alertId, ctime FROM " + keyspace + ".alerts_ctimes_by_day "
+                + "WHERE tenantId = ? AND bucket = ? AND ctime = ? AND alertId < ? "
+                + "ORDER BY ctime DESC, alertId DESC LIMIT ? ";
 
-        SELECT_ALERT_LIFECYCLE_START_END = "SELECT alertId FROM " + keyspace + ".alerts_lifecycle "
-                + "WHERE tenantId = ? AND status = ? AND stime >= ? AND stime <= ? ";
+        SELECT_ALERT_LIFECYCLE_END = "SELECT alertId, stime FROM " + keyspace + ".alerts_lifecycle_by_day "
+                + "WHERE tenantId = ? AND bucket = ? AND status = ? AND stime <= ? ";
 
-        SELECT_ALERT_STIME_END = "SELECT alertId FROM " + keyspace + ".alerts_stimes "
-                + "WHERE tenantId = ? AND stime <= ? ";
+        SELECT_ALERT_LIFECYCLE_START = "SELECT alertId, stime FROM " + keyspace + ".alerts_lifecycle_by_day "
+                + "WHERE tenantId = ? AND bucket = ? AND status = ? AND stime >= ? ";
 
-        SELECT_ALERT_STIME_START = "SELECT alertId FROM " + keyspace + ".alerts_stimes "
-                + "WHERE tenantId = ? AND stime >= ? ";
+        SELECT_ALERT_LIFECYCLE_START_END = "SELECT alertId, stime FROM " + keyspace + ".alerts_lifecycle_by_day "
+                + "WHERE tenantId = ? AND bucket = ? AND status = ? AND stime >= ? AND stime <= ? ";
 
-        SELECT_ALERT_STIME_START_END = "SELECT alertId FROM " + keyspace + ".alerts_stimes "
-                + "WHERE tenantId = ? AND stime >= ? AND stime <= ? ";
+        SELECT_ALERT_STIME_END = "SELECT alertId, stime FROM " + keyspace + ".alerts_stimes_by_day "
+                + "WHERE tenantId = ? AND bucket = ? AND stime <= ? ";
 
-        SELECT_ALERTS_BY_TENANT = "SELECT payload FROM " + keyspace + ".alerts " + "WHERE tenantId = ? ";
+        SELECT_ALERT_STIME_START = "SELECT alertId, stime FROM " + keyspace + ".alerts_stimes_by_day "
+                + "WHERE tenantId = ? AND bucket = ? AND stime >= ? ";
+
+        SELECT_ALERT_STIME_START_END = "SELECT alertId, stime FROM " + keyspace + ".alerts_stimes_by_day "
+                + "WHERE tenantId = ? AND bucket = ? AND stime >= ? AND stime <= ? ";
 
         SELECT_ALERT_TRIGGER = "SELECT alertId FROM " + keyspace + ".alerts_triggers "
                 + "WHERE tenantId = ? AND triggerId = ? ";
@@ -467,32 +489,46 @@ public class CassStatement {
                 + "FROM " + keyspace + ".dampenings "
                 + "WHERE tenantId = ? ";
 
-        SELECT_EVENT = "SELECT payload FROM " + keyspace + ".events "
+        SELECT_EVENT = "SELECT payload FROM " + keyspace + ".events_by_id "
                 + "WHERE tenantId = ? AND  id = ? ";
 
         SELECT_EVENT_CATEGORY = "SELECT id FROM " + keyspace + ".events_categories "
                 + "WHERE tenantId = ? AND category = ? ";
 
-        SELECT_EVENT_CTIME_END = "SELECT id FROM " + keyspace + ".events_ctimes "
-                + "WHERE tenantId = ? AND ctime <= ? ";
+        SELECT_EVENT_CTIME_END = "SELECT id, ctime FROM " + keyspace + ".events_ctimes_by_day "
+                + "WHERE tenantId = ? AND bucket = ? AND ctime <= ? ";
+
+        SELECT_EVENT_CTIME_START = "SELECT id, ctime FROM " + keyspace + ".events_ctimes_by_day "
+                + "WHERE tenantId = ? AND bucket = ? AND ctime >= ? ";
 
-        SELECT_EVENT_CTIME_START = "SELECT id FROM " + keyspace + ".events_ctimes "
-                + "WHERE tenantId = ? AND ctime >= ? ";
+        SELECT_EVENT_CTIME_START_END = "SELECT id, ctime FROM " + keyspace + ".events_ctimes_by_day "
+                + "WHERE tenantId = ? AND bucket = ? AND ctime >= ? AND ctime <= ? ";
 
-        SELECT_EVENT_CTIME_START_END = "SELECT id FROM " + keyspace + ".events_ctimes "
-                + "WHERE tenantId = ? AND ctime >= ? AND ctime <= ? ";
+        SELECT_EVENT_CTIME_PAGE_ASC = "SELECT id, ctime FROM " + keyspace + ".events_ctimes_by_day "
+                + "WHERE tenantId = ? AND bucket = ? AND ctime >= ? AND ctime < ? "
+                + "ORDER BY ctime ASC, id ASC LIMIT ? ";
 
-        SELECT_EVENT_IDS_BY_TENANT = "SELECT id FROM " + keyspace + ".events " +
-                "WHERE tenantId = ? ";
+        SELECT_EVENT_CTIME_PAGE_DESC = "SELECT id, ctime FROM " + keyspace + ".events_ctimes_by_day "
+                + "WHERE tenantId = ? AND bucket = ? AND ctime >= ? AND ctime < ? "
+                + "ORDER BY ctime DESC, id DESC LIMIT ? ";
+
+        SELECT_EVENT_CTIME_TIES_ASC = "SELECT id, ctime FROM " + keyspace + ".events_ctimes_by_day "
+                + "WHERE tenantId = ? AND bucket = ? AND ctime = ? AND id > ? "
+                + "ORDER BY ctime ASC, id ASC LIMIT ? ";
+
+        SELECT_EVENT_CTIME_TIES_DESC = "SELECT id, ctime FROM " + keyspace + ".events_ctimes_by_day "
+                + "WHERE tenantId = ? AND bucket = ? AND ctime = ? AND id < ? "
+                + "ORDER BY ctime DESC, id DESC LIMIT ? ";
 
         SELECT_EVENT_TRIGGER = "SELECT id FROM " + keyspace + ".events_triggers "
                 + "WHERE tenantId = ? AND triggerId = ? ";
 
+        SELECT_INDEX_BUCKETS = "SELECT bucket FROM " + keyspace + ".index_buckets "
+                + "WHERE tenantId = ? AND indexName = ? AND bucket >= ? AND bucket <= ? ";
+
         //SELECT_EVENTS_BY_PARTITION = "SELECT payload FROM " + keyspace + ".events "
         //        + "WHERE tenantId = ? AND category = ? ";
 
-        SELECT_EVENTS_BY_TENANT = "SELECT payload FROM " + keyspace + ".events " + "WHERE tenantId = ? ";
-
         // This is for use as a pre-query to gather all partitions to be subsequently queried. If the
         // partition key changes this should also change.
         // SELECT_PARTITIONS_EVENTS = "SELECT DISTINCT tenantid, category FROM " + keyspace + ".events ";
@@ -565,13 +601,13 @@ public class CassStatement {
         UPDATE_ACTION_PLUGIN_DEFAULT_PROPERTIES = "UPDATE " + keyspace + ".action_plugins " +
                 "SET properties = ?, defaultProperties = ? WHERE actionPlugin = ? ";
 
-        UPDATE_ALERT = "UPDATE " + keyspace + ".alerts SET payload = ? WHERE tenantId = ? AND alertId = ? ";
+        UPDATE_ALERT = "UPDATE " + keyspace + ".alerts_by_id SET payload = ? WHERE tenantId = ? AND alertId = ? ";
 
         UPDATE_DAMPENING_ID = "UPDATE " + keyspace + ".dampenings "
                 + "SET type = ?, evalTrueSetting = ?, evalTotalSetting = ?, evalTimeSetting = ? "
                 + "WHERE tenantId = ? AND triggerId = ? AND triggerMode = ? AND dampeningId = ? ";
 
-        UPDATE_EVENT = "UPDATE " + keyspace + ".events SET payload = ? WHERE tenantId = ? AND id = ? ";
+        UPDATE_EVENT = "UPDATE " + keyspace + ".events_by_id SET payload = ? WHERE tenantId = ? AND id = ? ";
 
         UPDATE_TRIGGER = "UPDATE " + keyspace + ".triggers "
                 + "SET autoDisable = ?, autoEnable = ?, autoResolve = ?, autoResolveAlerts = ?, autoResolveMatch = ?, "
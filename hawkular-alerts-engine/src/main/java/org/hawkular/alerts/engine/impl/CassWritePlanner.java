@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.Futures;
+
+/**
+ * Plan of the writes of a bulk persistence operation.
+ *
+ * Statements are grouped by table and partition key into UNLOGGED batches of at most <code>batchSize</code>
+ * statements. Each batch is applied by the replicas of a single partition as one mutation, without the batchlog of
+ * a LOGGED batch and without a coordinator fanning out the rows of many partitions across the ring. A group of a
+ * single statement is executed without a batch.
+ *
+ * Batches are executed concurrently, with at most <code>maxInFlight</code> batches pending at a time.
+ *
+ * A plan is not thread safe and it is executed once.
+ */
+public class CassWritePlanner {
+
+    private final Session session;
+    private final int batchSize;
+    private final int maxInFlight;
+
+    /*
+        (table, partition key) -> statements
+     */
+    private final Map<List<Object>, List<Statement>> partitions = new LinkedHashMap<>();
+    private int statements;
+
+    public CassWritePlanner(Session session, int batchSize, int maxInFlight) {
+        this.session = session;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    /**
+     * @param table the table written by the statement
+     * @param statement the statement
+     * @param partitionKey the values of the partition key of the row written, in the order of the table definition
+     */
+    public void add(String table, Statement statement, Object... partitionKey) {
+        List<Object> key = new ArrayList<>(partitionKey.length + 1);
+        key.add(table);
+        key.addAll(Arrays.asList(partitionKey));
+        partitions.computeIfAbsent(key, k -> new ArrayList<>()).add(statement);
+        statements++;
+    }
+
+    /**
+     * @return the number of statements planned
+     */
+    public int getStatements() {
+        return statements;
+    }
+
+    /**
+     * @return the number of partitions written by the plan
+     */
+    public int getPartitions() {
+        return partitions.size();
+    }
+
+    /**
+     * @return the statements to execute, batches or single statements, grouped by partition
+     */
+    public List<Statement> getBatches() {
+        List<Statement> batches = new ArrayList<>();
+        for (List<Statement> partition : partitions.values()) {
+            for (int i = 0; i < partition.size(); i += batchSize) {
+                List<Statement> group = partition.subList(i, Math.min(i + batchSize, partition.size()));
+                if (group.size() == 1) {
+                    batches.add(group.get(0));
+                } else {
+                    BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+                    batch.addAll(group);
+                    batches.add(batch);
+                }
+            }
+        }
+        return batches;
+    }
+
+    /**
+     * Execute the plan and wait for all its writes.
+     *
+     * @throws Exception if any write fails, the rest of writes are still executed
+     */
+    public void execute() throws Exception {
+        if (statements == 0) {
+            return;
+        }
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        List<ResultSetFuture> futures = new ArrayList<>();
+        try {
+            for (Statement batch : getBatches()) {
+                inFlight.acquire();
+                ResultSetFuture future;
+                try {
+                    future = session.executeAsync(batch);
+                } catch (RuntimeException e) {
+                    inFlight.release();
+                    throw e;
+                }
+                future.addListener(inFlight::release, Runnable::run);
+                futures.add(future);
+            }
+        } finally {
+            // Failures are reported once all the writes sent are completed
+            Futures.successfulAsList(futures).get();
+        }
+        Futures.allAsList(futures).get();
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.util.EngineClock;
+import org.hawkular.alerts.engine.util.TimingWheel;
+
+/**
+ * Set of STRICT_TIMEOUT Dampenings waiting for its timeout, used as the <code>pendingTimeouts</code> global of the
+ * rules. Every Dampening added by the rules is scheduled on a {@link TimingWheel} with its timeout deadline, and
+ * cancelled when the rules remove it, so the engine only visits the Dampenings whose timeout has expired.
+ */
+public class DampeningTimeouts extends AbstractSet<Dampening> {
+
+    private final TimingWheel<Dampening> wheel;
+
+    public DampeningTimeouts(long tickMs, int wheelSize) {
+        wheel = new TimingWheel<>(tickMs, wheelSize, EngineClock.currentTimeMillis());
+    }
+
+    @Override
+    public synchronized boolean add(Dampening d) {
+        boolean added = !wheel.contains(d);
+        wheel.schedule(d, deadline(d));
+        return added;
+    }
+
+    @Override
+    public synchronized boolean remove(Object o) {
+        return o instanceof Dampening && wheel.cancel((Dampening) o);
+    }
+
+    @Override
+    public synchronized boolean contains(Object o) {
+        return o instanceof Dampening && wheel.contains((Dampening) o);
+    }
+
+    @Override
+    public synchronized int size() {
+        return wheel.size();
+    }
+
+    @Override
+    public synchronized void clear() {
+        wheel.clear();
+    }
+
+    /*
+        Iterates over a snapshot, removals through the iterator are applied to the set.
+     */
+    @Override
+    public synchronized Iterator<Dampening> iterator() {
+        List<Dampening> snapshot = new ArrayList<>(wheel.keys());
+        Iterator<Dampening> it = snapshot.iterator();
+        return new Iterator<Dampening>() {
+            private Dampening current;
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Dampening next() {
+                current = it.next();
+                return current;
+            }
+
+            @Override
+            public void remove() {
+                DampeningTimeouts.this.remove(current);
+            }
+        };
+    }
+
+    /**
+     * Remove and return the Dampenings whose timeout has expired.
+     *
+     * @param now time in milliseconds
+     * @return Dampenings with an expired timeout
+     */
+    public synchronized List<Dampening> expire(long now) {
+        List<Dampening> expired = wheel.expire(now);
+        // The timeout start can move forward while the Dampening is scheduled, re-check it
+        for (Iterator<Dampening> it = expired.iterator(); it.hasNext();) {
+            Dampening d = it.next();
+            long deadline = deadline(d);
+            if (now < deadline) {
+                wheel.schedule(d, deadline);
+                it.remove();
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Schedule again a Dampening to be expired at <code>deadline</code>.
+     *
+     * @param d Dampening to schedule
+     * @param deadline time in milliseconds
+     */
+    public synchronized void retry(Dampening d, long deadline) {
+        wheel.schedule(d, deadline);
+    }
+
+    private long deadline(Dampening d) {
+        return d.getTrueEvalsStartTime() + d.getEvalTimeSetting();
+    }
+}
@@ -0,0 +1,349 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.hawkular.alerts.api.model.condition.CompareCondition;
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.engine.impl.AlertsEngineCache.DataId;
+import org.hawkular.alerts.properties.AlertProperties;
+import org.jboss.logging.Logger;
+
+/**
+ * Coalesces the data of a dataId received during a rules cycle before it reaches the rules engine.
+ *
+ * The rules engine processes one datum per dataId per firing, so a dataId reporting many samples in one engine period
+ * causes as many firings in the same cycle. Triggers that only care about the newest value, or a min/max/avg over the
+ * period, can coalesce those samples into one datum.
+ *
+ * The policy of a trigger is taken from its "dataCoalescing" context property, then from the tenant policy, then
+ * from the default policy. Conditions that need every sample (Rate, Nelson, Missing, External) always keep all the
+ * data of their dataIds, and a dataId is only coalesced when all the triggers using it on this node agree on the
+ * policy.
+ */
+public class DataCoalescing {
+    private final Logger log = Logger.getLogger(DataCoalescing.class);
+
+    /*
+        Policy applied to the triggers without a specific tenant or trigger policy:
+        keep-all, latest, min, max or avg.
+     */
+    private static final String DATA_COALESCING = "hawkular-alerts.data-coalescing";
+    private static final String DATA_COALESCING_ENV = "HAWKULAR_DATA_COALESCING";
+    private static final String DATA_COALESCING_DEFAULT = "keep-all";
+
+    /*
+        Policies per tenant, as a comma separated list of <tenantId>:<policy>.
+     */
+    private static final String DATA_COALESCING_TENANTS = "hawkular-alerts.data-coalescing-tenants";
+    private static final String DATA_COALESCING_TENANTS_ENV = "HAWKULAR_DATA_COALESCING_TENANTS";
+    private static final String DATA_COALESCING_TENANTS_DEFAULT = "";
+
+    /**
+     * Trigger context property with the policy of the trigger.
+     */
+    public static final String CONTEXT_POLICY = "dataCoalescing";
+
+    public enum Policy {
+        /**
+         * Every datum is processed.
+         */
+        KEEP_ALL,
+        /**
+         * Only the most recent datum of the cycle is processed.
+         */
+        LATEST,
+        /**
+         * Only the datum with the min value of the cycle is processed.
+         */
+        MIN,
+        /**
+         * Only the datum with the max value of the cycle is processed.
+         */
+        MAX,
+        /**
+         * A datum with the average value of the cycle, with the timestamp and context of the most recent datum.
+         */
+        AVG;
+
+        public static Policy fromString(String policy) {
+            return Policy.valueOf(policy.trim().toUpperCase().replace('-', '_'));
+        }
+    }
+
+    private final Policy defaultPolicy;
+    private final Map<String, Policy> tenantPolicies;
+
+    /*
+        (tenantId, triggerId) -> dataIds of the trigger and the policy requested for each one
+     */
+    private final Map<DataId, Map<String, Policy>> triggerPolicies = new HashMap<>();
+
+    /*
+        (tenantId, dataId) -> number of triggers requesting each policy, indexed by Policy.ordinal()
+     */
+    private final Map<DataId, int[]> dataIdPolicies = new HashMap<>();
+
+    /*
+        tenantId -> dataId -> policy, only for the dataIds that are coalesced. Lookups are lock free.
+     */
+    private final Map<String, Map<String, Policy>> coalesced = new ConcurrentHashMap<>();
+
+    private LongAdder coalescedData;
+
+    public DataCoalescing() {
+        this(Policy.fromString(AlertProperties.getProperty(DATA_COALESCING, DATA_COALESCING_ENV,
+                        DATA_COALESCING_DEFAULT)),
+                parseTenantPolicies(AlertProperties.getProperty(DATA_COALESCING_TENANTS, DATA_COALESCING_TENANTS_ENV,
+                        DATA_COALESCING_TENANTS_DEFAULT)));
+    }
+
+    public DataCoalescing(Policy defaultPolicy, Map<String, Policy> tenantPolicies) {
+        this.defaultPolicy = defaultPolicy == null ? Policy.KEEP_ALL : defaultPolicy;
+        this.tenantPolicies = tenantPolicies == null ? new HashMap<>() : new HashMap<>(tenantPolicies);
+    }
+
+    static Map<String, Policy> parseTenantPolicies(String tenantPolicies) {
+        Map<String, Policy> policies = new HashMap<>();
+        if (tenantPolicies == null || tenantPolicies.trim().isEmpty()) {
+            return policies;
+        }
+        for (String entry : tenantPolicies.split(",")) {
+            int separator = entry.lastIndexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Tenant policy must be <tenantId>:<policy> on [" + entry + "]");
+            }
+            policies.put(entry.substring(0, separator).trim(), Policy.fromString(entry.substring(separator + 1)));
+        }
+        return policies;
+    }
+
+    public void setMetrics(EngineMetrics metrics) {
+        coalescedData = metrics.counter(EngineMetrics.ENGINE_COALESCED_DATA);
+    }
+
+    /**
+     * Register the dataIds of a loaded trigger, replacing a previous registration of the same trigger.
+     *
+     * @param trigger the loaded trigger
+     * @param conditions the conditions of the trigger
+     */
+    public synchronized void addTrigger(Trigger trigger, Collection<Condition> conditions) {
+        removeTrigger(trigger.getTenantId(), trigger.getId());
+        Policy triggerPolicy = policyOf(trigger);
+        Map<String, Policy> policies = new HashMap<>();
+        for (Condition c : conditions) {
+            Policy policy = needsEverySample(c) ? Policy.KEEP_ALL : triggerPolicy;
+            policies.merge(c.getDataId(), policy, DataCoalescing::merge);
+            if (c instanceof CompareCondition) {
+                policies.merge(((CompareCondition) c).getData2Id(), policy, DataCoalescing::merge);
+            }
+        }
+        triggerPolicies.put(new DataId(trigger.getTenantId(), trigger.getId()), policies);
+        for (Map.Entry<String, Policy> entry : policies.entrySet()) {
+            update(trigger.getTenantId(), entry.getKey(), entry.getValue(), 1);
+        }
+    }
+
+    /**
+     * Unregister the dataIds of a trigger.
+     *
+     * @param tenantId the tenant of the trigger
+     * @param triggerId the trigger id
+     */
+    public synchronized void removeTrigger(String tenantId, String triggerId) {
+        Map<String, Policy> policies = triggerPolicies.remove(new DataId(tenantId, triggerId));
+        if (policies == null) {
+            return;
+        }
+        for (Map.Entry<String, Policy> entry : policies.entrySet()) {
+            update(tenantId, entry.getKey(), entry.getValue(), -1);
+        }
+    }
+
+    public synchronized void clear() {
+        triggerPolicies.clear();
+        dataIdPolicies.clear();
+        coalesced.clear();
+    }
+
+    /**
+     * @param tenantId the tenant of the data
+     * @param dataId the dataId
+     * @return the policy applied to the data of the dataId
+     */
+    public Policy getPolicy(String tenantId, String dataId) {
+        Map<String, Policy> tenantCoalesced = coalesced.get(tenantId);
+        Policy policy = tenantCoalesced == null ? null : tenantCoalesced.get(dataId);
+        return policy == null ? Policy.KEEP_ALL : policy;
+    }
+
+    /**
+     * @param data sorted data of a rules cycle
+     * @return the data with the samples of each dataId coalesced according to its policy
+     */
+    public TreeSet<Data> coalesce(TreeSet<Data> data) {
+        if (coalesced.isEmpty() || data.size() < 2) {
+            return data;
+        }
+        TreeSet<Data> result = new TreeSet<>();
+        List<Data> samples = new ArrayList<>();
+        Policy policy = Policy.KEEP_ALL;
+        for (Data d : data) {
+            if (!samples.isEmpty() && !d.same(samples.get(0))) {
+                coalesce(samples, policy, result);
+                samples.clear();
+            }
+            if (samples.isEmpty()) {
+                policy = getPolicy(d.getTenantId(), d.getId());
+            }
+            samples.add(d);
+        }
+        coalesce(samples, policy, result);
+        return result;
+    }
+
+    /*
+        Samples are sorted by timestamp.
+     */
+    private void coalesce(List<Data> samples, Policy policy, TreeSet<Data> result) {
+        if (samples.size() == 1 || policy == Policy.KEEP_ALL) {
+            result.addAll(samples);
+            return;
+        }
+        Data latest = samples.get(samples.size() - 1);
+        Data coalescedDatum = latest;
+        if (policy != Policy.LATEST && allNumeric(samples)) {
+            switch (policy) {
+                case MIN:
+                    for (Data d : samples) {
+                        if (d.getNumericValue() < coalescedDatum.getNumericValue()) {
+                            coalescedDatum = d;
+                        }
+                    }
+                    break;
+                case MAX:
+                    for (Data d : samples) {
+                        if (d.getNumericValue() > coalescedDatum.getNumericValue()) {
+                            coalescedDatum = d;
+                        }
+                    }
+                    break;
+                case AVG:
+                    double sum = 0;
+                    for (Data d : samples) {
+                        sum += d.getNumericValue();
+                    }
+                    coalescedDatum = Data.forNumeric(latest.getTenantId(), latest.getSource(), latest.getId(),
+                            latest.getTimestamp(), sum / samples.size(), latest.getContext());
+                    break;
+                default:
+                    break;
+            }
+        }
+        result.add(coalescedDatum);
+        if (log.isTraceEnabled()) {
+            log.tracef("Coalesced %s [%s] samples into %s", policy, samples.size(), coalescedDatum);
+        }
+        if (coalescedData != null) {
+            coalescedData.add(samples.size() - 1);
+        }
+    }
+
+    private static boolean allNumeric(List<Data> samples) {
+        for (Data d : samples) {
+            if (!d.isNumeric()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Policy policyOf(Trigger trigger) {
+        String contextPolicy = trigger.getContext() == null ? null : trigger.getContext().get(CONTEXT_POLICY);
+        if (contextPolicy != null) {
+            try {
+                return Policy.fromString(contextPolicy);
+            } catch (IllegalArgumentException e) {
+                log.warnf("Invalid %s [%s] on trigger [%s], using the tenant policy", CONTEXT_POLICY, contextPolicy,
+                        trigger.getId());
+            }
+        }
+        return tenantPolicies.getOrDefault(trigger.getTenantId(), defaultPolicy);
+    }
+
+    private static boolean needsEverySample(Condition c) {
+        switch (c.getType()) {
+            case RATE:
+            case NELSON:
+            case MISSING:
+            case EXTERNAL:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /*
+        Two conditions of a trigger on the same dataId with different needs keep all the data.
+     */
+    private static Policy merge(Policy p1, Policy p2) {
+        return p1 == p2 ? p1 : Policy.KEEP_ALL;
+    }
+
+    /*
+        A dataId is coalesced only if all the triggers using it request the same policy, other than KEEP_ALL.
+     */
+    private void update(String tenantId, String dataId, Policy policy, int delta) {
+        DataId key = new DataId(tenantId, dataId);
+        int[] counts = dataIdPolicies.computeIfAbsent(key, k -> new int[Policy.values().length]);
+        counts[policy.ordinal()] = Math.max(0, counts[policy.ordinal()] + delta);
+
+        Policy effective = null;
+        boolean used = false;
+        for (Policy p : Policy.values()) {
+            if (counts[p.ordinal()] > 0) {
+                effective = used ? Policy.KEEP_ALL : p;
+                used = true;
+            }
+        }
+        if (!used) {
+            dataIdPolicies.remove(key);
+        }
+        if (effective != null && effective != Policy.KEEP_ALL) {
+            coalesced.computeIfAbsent(tenantId, t -> new ConcurrentHashMap<>()).put(dataId, effective);
+        } else {
+            Map<String, Policy> tenantCoalesced = coalesced.get(tenantId);
+            if (tenantCoalesced != null) {
+                tenantCoalesced.remove(dataId);
+                if (tenantCoalesced.isEmpty()) {
+                    coalesced.remove(tenantId);
+                }
+            }
+        }
+    }
+}
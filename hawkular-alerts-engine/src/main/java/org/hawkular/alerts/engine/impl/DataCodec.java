@@ -0,0 +1,404 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.properties.AlertProperties;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+/**
+ * Compact binary codec for the Data and Events propagated across the nodes of the cluster.
+ *
+ * A batch is encoded as:
+ *
+ * <pre>
+ *   version (byte) | flags (byte) | [uncompressed length (varint), if LZ4] | body
+ *   body: count (varint) | items
+ * </pre>
+ *
+ * Strings are dictionary encoded per batch, so tenantIds, dataIds, sources and context keys are written once.
+ * Timestamps are written as zig-zag varint deltas from the previous item of the batch.
+ * Numeric Data values are written as 8 bytes doubles.
+ *
+ * Events with a Trigger, Dampening or evalSets (i.e. events generated by the engine) and Alerts are written with Java
+ * serialization inside the batch, as they hold the full definitions of the trigger.
+ *
+ * Bodies larger than the compression threshold are compressed with LZ4 if compression is enabled.
+ */
+public class DataCodec {
+
+    /*
+        Min size in bytes of an encoded body to be compressed with LZ4, <= 0 disables compression.
+     */
+    private static final String DATA_CODEC_COMPRESSION_THRESHOLD = "hawkular-alerts.data-codec-compression-threshold";
+    private static final String DATA_CODEC_COMPRESSION_THRESHOLD_ENV = "HAWKULAR_DATA_CODEC_COMPRESSION_THRESHOLD";
+    private static final String DATA_CODEC_COMPRESSION_THRESHOLD_DEFAULT = "1024";
+
+    public static final byte VERSION = 1;
+
+    private static final byte FLAG_LZ4 = 0x01;
+
+    private static final byte VALUE_STRING = 0;
+    private static final byte VALUE_NUMERIC = 1;
+
+    private static final byte EVENT_COMPACT = 0;
+    private static final byte EVENT_SERIALIZED = 1;
+
+    /*
+        String references: 0 for null, 1 for a new string followed by its bytes, n + 2 for the entry n of the
+        dictionary.
+     */
+    private static final int STRING_NULL = 0;
+    private static final int STRING_NEW = 1;
+
+    private final int compressionThreshold;
+    private final LZ4Compressor compressor;
+    private final LZ4FastDecompressor decompressor;
+
+    public DataCodec() {
+        this(Integer.parseInt(AlertProperties.getProperty(DATA_CODEC_COMPRESSION_THRESHOLD,
+                DATA_CODEC_COMPRESSION_THRESHOLD_ENV, DATA_CODEC_COMPRESSION_THRESHOLD_DEFAULT)));
+    }
+
+    /**
+     * @param compressionThreshold min size in bytes of an encoded body to be compressed, <= 0 to disable compression
+     */
+    public DataCodec(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+        LZ4Factory factory = LZ4Factory.fastestInstance();
+        this.compressor = factory.fastCompressor();
+        this.decompressor = factory.fastDecompressor();
+    }
+
+    public byte[] encodeData(Collection<Data> data) {
+        Writer writer = new Writer();
+        writer.writeVarint(data.size());
+        long previous = 0;
+        for (Data d : data) {
+            writer.writeString(d.getTenantId());
+            writer.writeString(d.getSource());
+            writer.writeString(d.getId());
+            writer.writeVarlong(zigZag(d.getTimestamp() - previous));
+            previous = d.getTimestamp();
+            if (isCompactNumeric(d)) {
+                writer.write(VALUE_NUMERIC);
+                writer.writeDouble(d.getNumericValue());
+            } else {
+                writer.write(VALUE_STRING);
+                writer.writeString(d.getValue());
+            }
+            writer.writeMap(d.getContext());
+        }
+        return envelope(writer);
+    }
+
+    public List<Data> decodeData(byte[] bytes) {
+        Reader reader = open(bytes);
+        int size = reader.readVarint();
+        List<Data> data = new ArrayList<>(size);
+        long previous = 0;
+        for (int i = 0; i < size; i++) {
+            String tenantId = reader.readString();
+            String source = reader.readString();
+            String id = reader.readString();
+            long timestamp = previous + unZigZag(reader.readVarlong());
+            previous = timestamp;
+            Data d;
+            if (reader.read() == VALUE_NUMERIC) {
+                d = Data.forNumeric(tenantId, source, id, timestamp, reader.readDouble());
+            } else {
+                d = Data.forString(tenantId, source, id, timestamp, reader.readString());
+            }
+            d.setContext(reader.readMap());
+            data.add(d);
+        }
+        return data;
+    }
+
+    public byte[] encodeEvents(Collection<Event> events) {
+        Writer writer = new Writer();
+        writer.writeVarint(events.size());
+        long previous = 0;
+        for (Event e : events) {
+            if (!isCompactEvent(e)) {
+                writer.write(EVENT_SERIALIZED);
+                writer.writeBytes(serialize(e));
+                continue;
+            }
+            writer.write(EVENT_COMPACT);
+            writer.writeString(e.getTenantId());
+            writer.writeString(e.getId());
+            writer.writeVarlong(zigZag(e.getCtime() - previous));
+            previous = e.getCtime();
+            writer.writeString(e.getDataSource());
+            writer.writeString(e.getDataId());
+            writer.writeString(e.getCategory());
+            writer.writeString(e.getText());
+            writer.writeMap(e.getContext());
+            writer.writeMap(e.getTags());
+        }
+        return envelope(writer);
+    }
+
+    public List<Event> decodeEvents(byte[] bytes) {
+        Reader reader = open(bytes);
+        int size = reader.readVarint();
+        List<Event> events = new ArrayList<>(size);
+        long previous = 0;
+        for (int i = 0; i < size; i++) {
+            if (reader.read() == EVENT_SERIALIZED) {
+                events.add((Event) deserialize(reader.readBytes()));
+                continue;
+            }
+            String tenantId = reader.readString();
+            String id = reader.readString();
+            long ctime = previous + unZigZag(reader.readVarlong());
+            previous = ctime;
+            String dataSource = reader.readString();
+            String dataId = reader.readString();
+            String category = reader.readString();
+            String text = reader.readString();
+            Map<String, String> context = reader.readMap();
+            Map<String, String> tags = reader.readMap();
+            events.add(new Event(tenantId, id, ctime, dataSource, dataId, category, text, context, tags));
+        }
+        return events;
+    }
+
+    /*
+        Numeric values are compact only if the value is the canonical representation of the double, so the decoded
+        Data has the same value string.
+     */
+    private static boolean isCompactNumeric(Data d) {
+        return d.isNumeric() && String.valueOf(d.getNumericValue()).equals(d.getValue());
+    }
+
+    private static boolean isCompactEvent(Event e) {
+        return e.getClass() == Event.class && e.getTrigger() == null && e.getDampening() == null
+                && e.getEvalSets() == null;
+    }
+
+    private byte[] envelope(Writer writer) {
+        byte[] body = writer.body.toByteArray();
+        boolean compress = compressionThreshold > 0 && body.length >= compressionThreshold;
+        Writer envelope = new Writer();
+        envelope.write(VERSION);
+        envelope.write(compress ? FLAG_LZ4 : 0);
+        if (compress) {
+            envelope.writeVarint(body.length);
+            byte[] compressed = compressor.compress(body);
+            envelope.body.write(compressed, 0, compressed.length);
+        } else {
+            envelope.body.write(body, 0, body.length);
+        }
+        return envelope.body.toByteArray();
+    }
+
+    private Reader open(byte[] bytes) {
+        Reader reader = new Reader(bytes, 0);
+        int version = reader.read();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported codec version [" + version + "]");
+        }
+        int flags = reader.read();
+        if ((flags & FLAG_LZ4) != 0) {
+            int length = reader.readVarint();
+            return new Reader(decompressor.decompress(bytes, reader.position, length), 0);
+        }
+        return reader;
+    }
+
+    private static long zigZag(long n) {
+        return (n << 1) ^ (n >> 63);
+    }
+
+    private static long unZigZag(long n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    private static byte[] serialize(Object o) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(o);
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Object deserialize(byte[] bytes) {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class Writer {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+        final Map<String, Integer> dictionary = new HashMap<>();
+
+        void write(int b) {
+            body.write(b);
+        }
+
+        void writeVarint(int n) {
+            writeVarlong(n & 0xFFFFFFFFL);
+        }
+
+        void writeVarlong(long n) {
+            while ((n & ~0x7FL) != 0) {
+                body.write((int) ((n & 0x7F) | 0x80));
+                n >>>= 7;
+            }
+            body.write((int) n);
+        }
+
+        void writeDouble(double d) {
+            long bits = Double.doubleToRawLongBits(d);
+            for (int i = 56; i >= 0; i -= 8) {
+                body.write((int) (bits >>> i));
+            }
+        }
+
+        void writeBytes(byte[] bytes) {
+            writeVarint(bytes.length);
+            body.write(bytes, 0, bytes.length);
+        }
+
+        void writeString(String s) {
+            if (s == null) {
+                writeVarint(STRING_NULL);
+                return;
+            }
+            Integer ref = dictionary.get(s);
+            if (ref != null) {
+                writeVarint(ref + 2);
+                return;
+            }
+            dictionary.put(s, dictionary.size());
+            writeVarint(STRING_NEW);
+            writeBytes(s.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /*
+            Size + 1, 0 for a null map.
+         */
+        void writeMap(Map<String, String> map) {
+            if (map == null) {
+                writeVarint(0);
+                return;
+            }
+            writeVarint(map.size() + 1);
+            for (Map.Entry<String, String> entry : map.entrySet()) {
+                writeString(entry.getKey());
+                writeString(entry.getValue());
+            }
+        }
+    }
+
+    private static class Reader {
+        final byte[] bytes;
+        int position;
+        final List<String> dictionary = new ArrayList<>();
+
+        Reader(byte[] bytes, int position) {
+            this.bytes = bytes;
+            this.position = position;
+        }
+
+        int read() {
+            return bytes[position++] & 0xFF;
+        }
+
+        int readVarint() {
+            return (int) readVarlong();
+        }
+
+        long readVarlong() {
+            long n = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = read();
+                n |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return n;
+        }
+
+        double readDouble() {
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+                bits = (bits << 8) | read();
+            }
+            return Double.longBitsToDouble(bits);
+        }
+
+        byte[] readBytes() {
+            int length = readVarint();
+            byte[] result = new byte[length];
+            System.arraycopy(bytes, position, result, 0, length);
+            position += length;
+            return result;
+        }
+
+        String readString() {
+            int ref = readVarint();
+            if (ref == STRING_NULL) {
+                return null;
+            }
+            if (ref == STRING_NEW) {
+                String s = new String(readBytes(), StandardCharsets.UTF_8);
+                dictionary.add(s);
+                return s;
+            }
+            return dictionary.get(ref - 2);
+        }
+
+        Map<String, String> readMap() {
+            int size = readVarint() - 1;
+            if (size < 0) {
+                return null;
+            }
+            Map<String, String> map = new LinkedHashMap<>(size * 2);
+            for (int i = 0; i < size; i++) {
+                map.put(readString(), readString());
+            }
+            return map;
+        }
+    }
+}
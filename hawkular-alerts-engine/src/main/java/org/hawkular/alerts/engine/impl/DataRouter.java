@@ -0,0 +1,140 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Routing table of the dataIds used by the triggers of each node of the cluster.
+ *
+ * Each node publishes the dataIds of the triggers it holds, so a node receiving data can send each datum only to the
+ * nodes that use it, instead of broadcasting all data to all nodes.
+ *
+ * Lookups are lock free, the table is rebuilt when a node publishes its dataIds.
+ */
+public class DataRouter {
+    private static final Integer[] NO_NODES = new Integer[0];
+
+    /*
+        node -> tenantId -> dataIds, as published by each node
+     */
+    private final Map<Integer, Map<String, Set<String>>> nodeDataIds = new HashMap<>();
+
+    /*
+        tenantId -> dataId -> nodes
+     */
+    private volatile Map<String, Map<String, Integer[]>> routes = Collections.emptyMap();
+
+    /**
+     * @param node the node publishing its dataIds
+     * @param dataIds tenantId -> dataIds used by the triggers of the node, null if the node holds no triggers
+     */
+    public synchronized void updateNode(Integer node, Map<String, Set<String>> dataIds) {
+        if (dataIds == null || dataIds.isEmpty()) {
+            if (nodeDataIds.remove(node) == null) {
+                return;
+            }
+        } else {
+            nodeDataIds.put(node, dataIds);
+        }
+        rebuild();
+    }
+
+    /**
+     * Remove the nodes that are no longer members of the cluster.
+     *
+     * @param members current nodes of the cluster
+     */
+    public synchronized void retainNodes(Collection<Integer> members) {
+        if (nodeDataIds.keySet().retainAll(members)) {
+            rebuild();
+        }
+    }
+
+    public synchronized void clear() {
+        nodeDataIds.clear();
+        routes = Collections.emptyMap();
+    }
+
+    /**
+     * @param tenantId the tenant of the data
+     * @param dataId the dataId
+     * @return the nodes holding triggers that use the dataId
+     */
+    public Integer[] getNodes(String tenantId, String dataId) {
+        Map<String, Integer[]> tenantRoutes = routes.get(tenantId);
+        Integer[] nodes = tenantRoutes == null ? null : tenantRoutes.get(dataId);
+        return nodes == null ? NO_NODES : nodes;
+    }
+
+    /**
+     * Group items by the nodes that use their dataIds.
+     *
+     * @param items data or events to route
+     * @param tenantId function to get the tenantId of an item
+     * @param dataId function to get the dataId of an item
+     * @param excludedNode a node that should not receive items, i.e. the current node, null to send to all
+     * @param unrouted the items with no route are added here, null to discard them
+     * @return node -> items to send to the node
+     */
+    public <T> Map<Integer, List<T>> route(Collection<T> items, Function<T, String> tenantId,
+            Function<T, String> dataId, Integer excludedNode, Collection<T> unrouted) {
+        Map<Integer, List<T>> routed = new HashMap<>();
+        for (T item : items) {
+            Integer[] nodes = getNodes(tenantId.apply(item), dataId.apply(item));
+            if (nodes.length == 0 && unrouted != null) {
+                unrouted.add(item);
+            }
+            for (Integer node : nodes) {
+                if (!node.equals(excludedNode)) {
+                    routed.computeIfAbsent(node, n -> new ArrayList<>()).add(item);
+                }
+            }
+        }
+        return routed;
+    }
+
+    private void rebuild() {
+        Map<String, Map<String, Set<Integer>>> byDataId = new HashMap<>();
+        for (Map.Entry<Integer, Map<String, Set<String>>> node : nodeDataIds.entrySet()) {
+            for (Map.Entry<String, Set<String>> tenant : node.getValue().entrySet()) {
+                Map<String, Set<Integer>> tenantRoutes = byDataId.computeIfAbsent(tenant.getKey(),
+                        t -> new HashMap<>());
+                for (String dataId : tenant.getValue()) {
+                    tenantRoutes.computeIfAbsent(dataId, d -> new HashSet<>(2)).add(node.getKey());
+                }
+            }
+        }
+        Map<String, Map<String, Integer[]>> newRoutes = new HashMap<>();
+        for (Map.Entry<String, Map<String, Set<Integer>>> tenant : byDataId.entrySet()) {
+            Map<String, Integer[]> tenantRoutes = new HashMap<>();
+            for (Map.Entry<String, Set<Integer>> dataId : tenant.getValue().entrySet()) {
+                tenantRoutes.put(dataId.getKey(), dataId.getValue().toArray(new Integer[dataId.getValue().size()]));
+            }
+            newRoutes.put(tenant.getKey(), tenantRoutes);
+        }
+        routes = newRoutes;
+    }
+}
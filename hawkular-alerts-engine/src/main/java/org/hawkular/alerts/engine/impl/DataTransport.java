@@ -0,0 +1,55 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.function.Consumer;
+
+import org.hawkular.alerts.engine.impl.PartitionManagerImpl.NotifyData;
+
+/**
+ * Direct channel used by the {@link PartitionManagerImpl} to send data and events to a specific node of the cluster.
+ */
+public interface DataTransport {
+
+    /**
+     * Register the receiver of the data and events sent to a node.
+     *
+     * @param node the node, as used on the partition
+     * @param receiver the receiver of the data and events of the node
+     */
+    void register(Integer node, Consumer<NotifyData> receiver);
+
+    /**
+     * @param node the node to unregister
+     */
+    void unregister(Integer node);
+
+    /**
+     * Send data or events to a node. Delivery is asynchronous and best effort, as the replicated cache it replaces.
+     *
+     * @param toNode the target node
+     * @param notifyData the data or events to send
+     */
+    void send(Integer toNode, NotifyData notifyData);
+
+    /**
+     * @return number of sends not delivered, because the target node was not found or the delivery failed
+     */
+    long getFailedSends();
+
+    void shutdown();
+}
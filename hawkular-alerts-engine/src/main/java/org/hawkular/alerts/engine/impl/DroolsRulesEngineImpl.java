@@ -16,9 +16,15 @@
  */
 package org.hawkular.alerts.engine.impl;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Predicate;
 
 import org.drools.core.event.DebugAgendaEventListener;
@@ -26,9 +32,14 @@ import org.drools.core.event.DebugRuleRuntimeEventListener;
 import org.hawkular.alerts.api.model.data.Data;
 import org.hawkular.alerts.api.model.event.Event;
 import org.hawkular.alerts.engine.service.RulesEngine;
+import org.hawkular.alerts.engine.util.Histogram;
 import org.hawkular.alerts.properties.AlertProperties;
 import org.jboss.logging.Logger;
 import org.kie.api.KieServices;
+import org.kie.api.event.rule.ObjectDeletedEvent;
+import org.kie.api.event.rule.ObjectInsertedEvent;
+import org.kie.api.event.rule.ObjectUpdatedEvent;
+import org.kie.api.event.rule.RuleRuntimeEventListener;
 import org.kie.api.runtime.KieContainer;
 import org.kie.api.runtime.KieSession;
 import org.kie.api.runtime.ObjectFilter;
@@ -58,15 +69,28 @@ public class DroolsRulesEngineImpl implements RulesEngine {
     private KieServices ks;
     private KieContainer kc;
     private KieSession kSession;
+    private final TriggerFactIndex triggerFacts = new TriggerFactIndex();
 
     TreeSet<Data> pendingData = new TreeSet<>();
     TreeSet<Event> pendingEvents = new TreeSet<>();
 
+    IngestionBackpressure backpressure;
+
+    private Histogram batchingTimes;
+    private Histogram firingTimes;
+    private Histogram fireCycles;
+    private LongAdder deferredData;
+    private LongAdder deferredEvents;
+    private LongAdder droppedData;
+    private LongAdder droppedEvents;
+    private FactTypeCounter factTypes;
+
     public DroolsRulesEngineImpl() {
         log.debug("Creating instance.");
         ks = KieServices.Factory.get();
         kc = ks.getKieClasspathContainer();
         kSession = kc.newKieSession(SESSION_NAME);
+        kSession.addEventListener(triggerFacts);
 
         if (log.isEnabled(Logger.Level.TRACE)) {
             kSession.addEventListener(new DebugAgendaEventListener());
@@ -84,6 +108,22 @@ public class DroolsRulesEngineImpl implements RulesEngine {
                         MIN_REPORTING_INTERVAL_EVENTS_DEFAULT));
     }
 
+    public void setIngestionBackpressure(IngestionBackpressure backpressure) {
+        this.backpressure = backpressure;
+    }
+
+    public void setMetrics(EngineMetrics metrics) {
+        batchingTimes = metrics.histogram(EngineMetrics.RULES_BATCHING_TIME);
+        firingTimes = metrics.histogram(EngineMetrics.RULES_FIRING_TIME);
+        fireCycles = metrics.histogram(EngineMetrics.RULES_FIRE_CYCLES);
+        deferredData = metrics.counter(EngineMetrics.RULES_DEFERRED_DATA);
+        deferredEvents = metrics.counter(EngineMetrics.RULES_DEFERRED_EVENTS);
+        droppedData = metrics.counter(EngineMetrics.RULES_INTERVAL_DROPPED_DATA);
+        droppedEvents = metrics.counter(EngineMetrics.RULES_INTERVAL_DROPPED_EVENTS);
+        factTypes = new FactTypeCounter(metrics);
+        kSession.addEventListener(factTypes);
+    }
+
     @Override
     public void addFact(Object fact) {
         if (fact instanceof Data || fact instanceof Event) {
@@ -163,6 +203,7 @@ public class DroolsRulesEngineImpl implements RulesEngine {
         int initialPendingEvents = pendingEvents.size();
         int fireCycle = 0;
         long startFiring = System.currentTimeMillis();
+        long startFiringNanos = System.nanoTime();
         while (!pendingData.isEmpty() || !pendingEvents.isEmpty()) {
             log.debugf("Firing rules... PendingData [%s] PendingEvents [%s]", initialPendingData,
                     initialPendingEvents);
@@ -181,6 +222,10 @@ public class DroolsRulesEngineImpl implements RulesEngine {
             kSession.fireAllRules();
             fireCycle++;
         }
+        if (firingTimes != null && fireCycle > 0) {
+            firingTimes.record((System.nanoTime() - startFiringNanos) / 1000);
+            fireCycles.record(fireCycle);
+        }
         long firingTime = System.currentTimeMillis() - startFiring;
         if (log.isDebugEnabled()) {
             log.debugf("Firing took [%s] ms", firingTime);
@@ -193,6 +238,7 @@ public class DroolsRulesEngineImpl implements RulesEngine {
 
     private void batchData() {
         long startBatching = System.currentTimeMillis();
+        long startBatchingNanos = System.nanoTime();
         TreeSet<Data> batchData = pendingData;
         pendingData = new TreeSet<>();
 
@@ -207,9 +253,15 @@ public class DroolsRulesEngineImpl implements RulesEngine {
             } else {
                 if ((d.getTimestamp() - previousData.getTimestamp()) < minReportingIntervalData) {
                     log.tracef("MinReportingInterval violation, prev: %s, removed: %s", previousData, d);
+                    if (droppedData != null) {
+                        droppedData.increment();
+                    }
                 } else {
                     pendingData.add(d);
                     log.tracef("Deferring data, keep: %s, defer: %s", previousData, d);
+                    if (deferredData != null) {
+                        deferredData.increment();
+                    }
                 }
             }
 
@@ -218,6 +270,13 @@ public class DroolsRulesEngineImpl implements RulesEngine {
             }
         }
 
+        if (backpressure != null) {
+            pendingData = backpressure.boundDeferredData(pendingData);
+        }
+
+        if (batchingTimes != null && !batchData.isEmpty()) {
+            batchingTimes.record((System.nanoTime() - startBatchingNanos) / 1000);
+        }
         long batchingTime = System.currentTimeMillis() - startBatching;
         log.debugf("Batching Data [%s] took [%s]", batchData.size(), batchingTime);
         if (batchingTime > PERF_BATCHING_THRESHOLD) {
@@ -228,6 +287,7 @@ public class DroolsRulesEngineImpl implements RulesEngine {
 
     private void batchEvents() {
         long startBatching = System.currentTimeMillis();
+        long startBatchingNanos = System.nanoTime();
         TreeSet<Event> batchEvents = pendingEvents;
         pendingEvents = new TreeSet<>();
 
@@ -242,9 +302,15 @@ public class DroolsRulesEngineImpl implements RulesEngine {
             } else {
                 if ((e.getCtime() - previousEvent.getCtime()) < minReportingIntervalEvents) {
                     log.tracef("MinReportingInterval violation, prev: %s, removed: %s", previousEvent, e);
+                    if (droppedEvents != null) {
+                        droppedEvents.increment();
+                    }
                 } else {
                     pendingEvents.add(e);
                     log.tracef("Deferring event, keep: %s, defer: %s", previousEvent, e);
+                    if (deferredEvents != null) {
+                        deferredEvents.increment();
+                    }
                 }
             }
         }
@@ -253,6 +319,13 @@ public class DroolsRulesEngineImpl implements RulesEngine {
             log.debugf("Deferring [%d] Event(s) to next firing !!", pendingEvents.size());
         }
 
+        if (backpressure != null) {
+            pendingEvents = backpressure.boundDeferredEvents(pendingEvents);
+        }
+
+        if (batchingTimes != null && !batchEvents.isEmpty()) {
+            batchingTimes.record((System.nanoTime() - startBatchingNanos) / 1000);
+        }
         long batchingTime = System.currentTimeMillis() - startBatching;
         log.debugf("Batching Events [%s] took [%s]", batchEvents.size(), batchingTime);
         if (batchingTime > PERF_BATCHING_THRESHOLD) {
@@ -285,6 +358,17 @@ public class DroolsRulesEngineImpl implements RulesEngine {
         return result;
     }
 
+    @Override
+    public Collection<Object> getFacts(Predicate<Object> factFilter) {
+        Collection<? extends Object> objects = kSession.getObjects(new ObjectFilter() {
+            @Override
+            public boolean accept(Object object) {
+                return factFilter.test(object);
+            }
+        });
+        return objects == null ? Collections.emptyList() : new ArrayList<>(objects);
+    }
+
     @Override
     public void removeFact(Object fact) {
         FactHandle factHandle = kSession.getFactHandle(fact);
@@ -350,6 +434,39 @@ public class DroolsRulesEngineImpl implements RulesEngine {
         }
     }
 
+    @Override
+    public Collection<Object> removeTriggerFacts(String tenantId, String triggerId) {
+        Collection<FactHandle> handles = triggerFacts.get(tenantId, triggerId);
+        List<Object> removed = new ArrayList<>(handles.size());
+        for (FactHandle h : handles) {
+            Object fact = kSession.getObject(h);
+            if (fact != null) {
+                if (log.isDebugEnabled()) {
+                    log.debugf("Delete %s", h);
+                }
+                kSession.delete(h);
+                removed.add(fact);
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public Collection<Object> updateTriggers(Map<String, ? extends Collection<String>> removed, Collection<?> added) {
+        List<Object> removedFacts = new ArrayList<>();
+        if (removed != null) {
+            for (Map.Entry<String, ? extends Collection<String>> entry : removed.entrySet()) {
+                for (String triggerId : entry.getValue()) {
+                    removedFacts.addAll(removeTriggerFacts(entry.getKey(), triggerId));
+                }
+            }
+        }
+        if (added != null && !added.isEmpty()) {
+            addFacts(added);
+        }
+        return removedFacts;
+    }
+
     @Override
     public void removeGlobal(String name) {
         if (log.isDebugEnabled()) {
@@ -362,6 +479,58 @@ public class DroolsRulesEngineImpl implements RulesEngine {
     public void reset() {
         log.debug("Reset session");
         kSession.dispose();
+        triggerFacts.clear();
         kSession = kc.newKieSession(SESSION_NAME);
+        kSession.addEventListener(triggerFacts);
+        if (factTypes != null) {
+            // Facts of the disposed session are not deleted one by one
+            factTypes.clear();
+            kSession.addEventListener(factTypes);
+        }
+    }
+
+    /*
+        Counts the facts in working memory per fact type on the shared "rules.facts.<Type>" gauges.
+     */
+    private static class FactTypeCounter implements RuleRuntimeEventListener {
+        private final EngineMetrics metrics;
+        private final Map<Class<?>, LongAdder[]> counts = new ConcurrentHashMap<>();
+
+        FactTypeCounter(EngineMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        /*
+            [0] facts of this session, [1] shared gauge of all sessions
+         */
+        private LongAdder[] counts(Object fact) {
+            return counts.computeIfAbsent(fact.getClass(), c -> new LongAdder[] { new LongAdder(),
+                    metrics.gauge(EngineMetrics.RULES_FACTS + "." + c.getSimpleName()) });
+        }
+
+        @Override
+        public void objectInserted(ObjectInsertedEvent event) {
+            LongAdder[] typeCounts = counts(event.getObject());
+            typeCounts[0].increment();
+            typeCounts[1].increment();
+        }
+
+        @Override
+        public void objectUpdated(ObjectUpdatedEvent event) {
+            // The type of a fact does not change
+        }
+
+        @Override
+        public void objectDeleted(ObjectDeletedEvent event) {
+            LongAdder[] typeCounts = counts(event.getOldObject());
+            typeCounts[0].decrement();
+            typeCounts[1].decrement();
+        }
+
+        void clear() {
+            for (LongAdder[] typeCounts : counts.values()) {
+                typeCounts[1].add(-typeCounts[0].sumThenReset());
+            }
+        }
     }
 }
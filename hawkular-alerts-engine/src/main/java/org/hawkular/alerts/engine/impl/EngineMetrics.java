@@ -0,0 +1,231 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.hawkular.alerts.engine.util.Histogram;
+
+/**
+ * Registry of the hot-path metrics of the alerting engine.
+ *
+ * Components resolve their metrics once, when the registry is set, and keep the references, so recording a value is
+ * just an increment on a {@link LongAdder} or a {@link Histogram}. Gauges backed by a {@link LongSupplier} are only
+ * evaluated when the metrics are read.
+ *
+ * Metric names are dot separated, i.e. "rules.firingTimeMicros". Times are recorded in microseconds.
+ * Metrics are exposed as a flat map with "metrics." prefixed keys, and in the Prometheus text format with
+ * "hawkular_alerts_" prefixed snake case names.
+ */
+public class EngineMetrics {
+
+    /*
+        Pending items on the engine buffers
+     */
+    public static final String ENGINE_PENDING_DATA = "engine.pendingData";
+    public static final String ENGINE_PENDING_EVENTS = "engine.pendingEvents";
+    public static final String ENGINE_COALESCED_DATA = "engine.coalescedData";
+
+    /*
+        Per rules cycle of the AlertsEngine
+     */
+    public static final String ENGINE_CYCLE_TIME = "engine.cycleTimeMicros";
+    public static final String ENGINE_ALERTS_PER_CYCLE = "engine.alertsPerCycle";
+    public static final String ENGINE_EVENTS_PER_CYCLE = "engine.eventsPerCycle";
+
+    /*
+        Waits of the rules thread for the write-behind stage before an auto-resolve, and auto-resolves deferred to the
+        next cycle because the wait timed out
+     */
+    public static final String ENGINE_AUTO_RESOLVE_FLUSH_TIME = "engine.autoResolveFlushTimeMicros";
+    public static final String ENGINE_AUTO_RESOLVE_DEFERRED = "engine.autoResolveDeferred";
+
+    /*
+        Per fire() of a rules session
+     */
+    public static final String RULES_BATCHING_TIME = "rules.batchingTimeMicros";
+    public static final String RULES_FIRING_TIME = "rules.firingTimeMicros";
+    public static final String RULES_FIRE_CYCLES = "rules.fireCycles";
+    public static final String RULES_DEFERRED_DATA = "rules.deferredData";
+    public static final String RULES_DEFERRED_EVENTS = "rules.deferredEvents";
+    public static final String RULES_INTERVAL_DROPPED_DATA = "rules.minReportingIntervalDroppedData";
+    public static final String RULES_INTERVAL_DROPPED_EVENTS = "rules.minReportingIntervalDroppedEvents";
+
+    /*
+        Facts in working memory are counted per fact type: "rules.facts.<Type>"
+     */
+    public static final String RULES_FACTS = "rules.facts";
+
+    /*
+        Triggers evaluated out of the rules sessions, and its condition evaluations
+     */
+    public static final String RULES_FAST_PATH_TRIGGERS = "rules.fastPathTriggers";
+    public static final String RULES_FAST_PATH_EVALS = "rules.fastPathEvals";
+
+    /*
+        Persistence of generated alerts and events
+     */
+    public static final String PERSISTENCE_ALERTS_TIME = "persistence.alertsTimeMicros";
+    public static final String PERSISTENCE_EVENTS_TIME = "persistence.eventsTimeMicros";
+
+    private static final String STATUS_PREFIX = "metrics.";
+    private static final String PROMETHEUS_PREFIX = "hawkular_alerts_";
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+    private enum Type {
+        COUNTER, GAUGE, HISTOGRAM
+    }
+
+    private static class Metric {
+        final Type type;
+        final LongAdder adder;
+        final LongSupplier supplier;
+        final Histogram histogram;
+
+        Metric(Type type, LongAdder adder, LongSupplier supplier, Histogram histogram) {
+            this.type = type;
+            this.adder = adder;
+            this.supplier = supplier;
+            this.histogram = histogram;
+        }
+
+        long value() {
+            return supplier != null ? supplier.getAsLong() : adder.sum();
+        }
+    }
+
+    private final ConcurrentMap<String, Metric> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * @param name of a monotonic counter
+     * @return the counter, created on first use
+     */
+    public LongAdder counter(String name) {
+        return metrics.computeIfAbsent(name, n -> new Metric(Type.COUNTER, new LongAdder(), null, null)).adder;
+    }
+
+    /**
+     * @param name of a gauge that can be incremented and decremented
+     * @return the gauge, created on first use
+     */
+    public LongAdder gauge(String name) {
+        return metrics.computeIfAbsent(name, n -> new Metric(Type.GAUGE, new LongAdder(), null, null)).adder;
+    }
+
+    /**
+     * Register a gauge evaluated on read, replacing a previous one with the same name.
+     *
+     * @param name of the gauge
+     * @param supplier of the gauge value
+     */
+    public void gauge(String name, LongSupplier supplier) {
+        metrics.put(name, new Metric(Type.GAUGE, null, supplier, null));
+    }
+
+    /**
+     * @param name of the histogram
+     * @return the histogram, created on first use
+     */
+    public Histogram histogram(String name) {
+        return metrics.computeIfAbsent(name, n -> new Metric(Type.HISTOGRAM, null, null, new Histogram())).histogram;
+    }
+
+    /**
+     * @return the metrics as a flat map, histograms are reported by count, mean, max and percentiles
+     */
+    public Map<String, String> getStatus() {
+        Map<String, String> status = new TreeMap<>();
+        for (Map.Entry<String, Metric> entry : metrics.entrySet()) {
+            String key = STATUS_PREFIX + entry.getKey();
+            Metric metric = entry.getValue();
+            if (metric.type == Type.HISTOGRAM) {
+                Histogram h = metric.histogram;
+                status.put(key + ".count", String.valueOf(h.getCount()));
+                status.put(key + ".mean", String.valueOf(Math.round(h.getMean() * 10) / 10.0));
+                status.put(key + ".max", String.valueOf(h.getMax()));
+                for (double p : PERCENTILES) {
+                    status.put(key + ".p" + percentileLabel(p), String.valueOf(h.getValueAtPercentile(p)));
+                }
+            } else {
+                status.put(key, String.valueOf(metric.value()));
+            }
+        }
+        return status;
+    }
+
+    /**
+     * @return the metrics in the Prometheus text exposition format, histograms are exposed as summaries
+     */
+    public String toPrometheus() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Metric> entry : new TreeMap<>(metrics).entrySet()) {
+            String name = prometheusName(entry.getKey());
+            Metric metric = entry.getValue();
+            switch (metric.type) {
+                case COUNTER:
+                    sb.append("# TYPE ").append(name).append(" counter\n");
+                    sb.append(name).append(' ').append(metric.value()).append('\n');
+                    break;
+                case GAUGE:
+                    sb.append("# TYPE ").append(name).append(" gauge\n");
+                    sb.append(name).append(' ').append(metric.value()).append('\n');
+                    break;
+                case HISTOGRAM:
+                    Histogram h = metric.histogram;
+                    sb.append("# TYPE ").append(name).append(" summary\n");
+                    for (double p : PERCENTILES) {
+                        sb.append(name).append("{quantile=\"").append(p / 100).append("\"} ")
+                                .append(h.getValueAtPercentile(p)).append('\n');
+                    }
+                    sb.append(name).append("_sum ").append(h.getSum()).append('\n');
+                    sb.append(name).append("_count ").append(h.getCount()).append('\n');
+                    break;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String percentileLabel(double p) {
+        return p == Math.floor(p) ? String.valueOf((long) p) : String.valueOf(p).replace(".", "");
+    }
+
+    /*
+        "rules.facts.Trigger" -> "hawkular_alerts_rules_facts_trigger"
+     */
+    static String prometheusName(String name) {
+        StringBuilder sb = new StringBuilder(PROMETHEUS_PREFIX);
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isUpperCase(c)) {
+                if (i > 0 && name.charAt(i - 1) != '.') {
+                    sb.append('_');
+                }
+                sb.append(Character.toLowerCase(c));
+            } else if (Character.isLetterOrDigit(c)) {
+                sb.append(c);
+            } else {
+                sb.append('_');
+            }
+        }
+        return sb.toString();
+    }
+}
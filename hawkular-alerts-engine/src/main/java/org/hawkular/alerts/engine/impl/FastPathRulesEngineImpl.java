@@ -0,0 +1,743 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+import org.hawkular.alerts.api.model.condition.AvailabilityCondition;
+import org.hawkular.alerts.api.model.condition.AvailabilityConditionEval;
+import org.hawkular.alerts.api.model.condition.CompareCondition;
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.condition.ConditionEval;
+import org.hawkular.alerts.api.model.condition.StringCondition;
+import org.hawkular.alerts.api.model.condition.StringConditionEval;
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdConditionEval;
+import org.hawkular.alerts.api.model.condition.ThresholdRangeCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdRangeConditionEval;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Alert;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.event.EventType;
+import org.hawkular.alerts.api.model.trigger.Mode;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.api.services.ActionsService;
+import org.hawkular.alerts.engine.impl.AlertsEngineCache.DataId;
+import org.hawkular.alerts.engine.service.RulesEngine;
+import org.hawkular.alerts.engine.util.MissingState;
+import org.hawkular.alerts.engine.util.NelsonData;
+import org.hawkular.alerts.properties.AlertProperties;
+import org.jboss.logging.Logger;
+
+/**
+ * An implementation of RulesEngine that evaluates the most common shape of trigger in plain Java, out of the rules
+ * session, and delegates the rest of triggers to another RulesEngine (i.e. {@link DroolsRulesEngineImpl} or
+ * {@link ShardedRulesEngineImpl}).
+ *
+ * A trigger is evaluated on the fast path when all its facts are added together (i.e. on a trigger load) and it has
+ * exactly one FIRING mode Threshold, ThresholdRange, Availability or String condition, it is not autoResolve and its
+ * dampening is not STRICT_TIMEOUT. These triggers are indexed by the dataId of its condition. Each Data is evaluated
+ * and dampened in place, following the semantics of the Threshold, ThresholdRange, Availability, String,
+ * DampenTrigger and AlertOnSatisfiedDampening rules.
+ *
+ * Any other operation on the facts of a fast path trigger (i.e. adding a MissingState or updating its dampening)
+ * moves the trigger with its current state to the delegate, so the rules keep handling the non trivial cases.
+ * Events generated on the fast path are also added to the delegate to keep chained triggers working.
+ *
+ * As the base implementation, this is invoked only by the AlertsEngine and is not invoked concurrently.
+ */
+public class FastPathRulesEngineImpl implements RulesEngine {
+    private final Logger log = Logger.getLogger(FastPathRulesEngineImpl.class);
+    private static final FastTrigger[] NO_TRIGGERS = new FastTrigger[0];
+
+    private final RulesEngine delegate;
+    private final int minReportingIntervalData;
+
+    /*
+        (tenantId, triggerId) -> fast path trigger
+     */
+    private final Map<DataId, FastTrigger> fastTriggers;
+
+    /*
+        (tenantId, dataId) -> fast path triggers with a condition on that dataId
+     */
+    private final Map<DataId, FastTrigger[]> fastDataIds;
+
+    /*
+        (tenantId, dataId) -> number of conditions of the delegate using that dataId
+     */
+    private final Map<DataId, Integer> delegatedDataIds;
+
+    private TreeSet<Data> pendingData;
+
+    private List<Alert> alerts;
+    private List<Event> events;
+    private ActionsService actions;
+    private Set<Trigger> disabledTriggers;
+
+    private LongAdder fastPathTriggers;
+    private LongAdder fastPathEvals;
+    private LongAdder droppedData;
+
+    public FastPathRulesEngineImpl(RulesEngine delegate) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate must be not null");
+        }
+        log.debugf("Creating instance delegating on [%s].", delegate.getClass().getSimpleName());
+        this.delegate = delegate;
+        fastTriggers = new HashMap<>();
+        fastDataIds = new HashMap<>();
+        delegatedDataIds = new HashMap<>();
+        pendingData = new TreeSet<>();
+
+        minReportingIntervalData = new Integer(
+                AlertProperties.getProperty(MIN_REPORTING_INTERVAL_DATA,
+                        MIN_REPORTING_INTERVAL_DATA_ENV,
+                        MIN_REPORTING_INTERVAL_DATA_DEFAULT));
+    }
+
+    public RulesEngine getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * @return number of triggers currently evaluated on the fast path
+     */
+    public int getNumFastPathTriggers() {
+        return fastTriggers.size();
+    }
+
+    public void setMetrics(EngineMetrics metrics) {
+        fastPathTriggers = metrics.gauge(EngineMetrics.RULES_FAST_PATH_TRIGGERS);
+        fastPathEvals = metrics.counter(EngineMetrics.RULES_FAST_PATH_EVALS);
+        droppedData = metrics.counter(EngineMetrics.RULES_INTERVAL_DROPPED_DATA);
+        fastPathTriggers.add(fastTriggers.size());
+    }
+
+    @Override
+    public void addGlobal(String name, Object global) {
+        setGlobal(name, global);
+        delegate.addGlobal(name, global);
+    }
+
+    @Override
+    public void removeGlobal(String name) {
+        setGlobal(name, null);
+        delegate.removeGlobal(name);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void setGlobal(String name, Object global) {
+        switch (name) {
+            case "alerts":
+                alerts = (List<Alert>) global;
+                break;
+            case "events":
+                events = (List<Event>) global;
+                break;
+            case "actions":
+                actions = (ActionsService) global;
+                break;
+            case "disabledTriggers":
+                disabledTriggers = (Set<Trigger>) global;
+                break;
+            default:
+                // Globals not used by the fast path
+        }
+    }
+
+    @Override
+    public void addFact(Object fact) {
+        if (fact instanceof Data || fact instanceof Event) {
+            throw new IllegalArgumentException(fact.toString());
+        }
+        DataId triggerKey = triggerKeyOf(fact);
+        if (triggerKey != null) {
+            moveToDelegate(triggerKey);
+        }
+        delegate.addFact(fact);
+        if (fact instanceof Condition) {
+            indexDelegated((Condition) fact, 1);
+        }
+    }
+
+    @Override
+    public void addFacts(Collection facts) {
+        List<Object> delegated = splitFacts(facts);
+        if (!delegated.isEmpty()) {
+            delegate.addFacts(delegated);
+        }
+    }
+
+    /*
+        Index the triggers that can be evaluated on the fast path and return the rest of facts, for the delegate.
+     */
+    private List<Object> splitFacts(Collection<?> facts) {
+        Map<DataId, List<Object>> factsByTrigger = new HashMap<>();
+        for (Object fact : facts) {
+            if (fact instanceof Data || fact instanceof Event) {
+                throw new IllegalArgumentException(fact.toString());
+            }
+            DataId triggerKey = triggerKeyOf(fact);
+            if (triggerKey != null) {
+                factsByTrigger.computeIfAbsent(triggerKey, k -> new ArrayList<>(3)).add(fact);
+            }
+        }
+        Set<DataId> indexed = new HashSet<>();
+        for (Map.Entry<DataId, List<Object>> entry : factsByTrigger.entrySet()) {
+            FastTrigger ft = fastTriggers.containsKey(entry.getKey()) ? null : toFastTrigger(entry.getValue());
+            if (ft != null && delegate.getFact(ft.trigger) == null) {
+                index(ft);
+                indexed.add(entry.getKey());
+            } else {
+                moveToDelegate(entry.getKey());
+            }
+        }
+        if (indexed.isEmpty()) {
+            List<Object> delegated = new ArrayList<>(facts);
+            indexDelegated(delegated, 1);
+            return delegated;
+        }
+        List<Object> delegated = new ArrayList<>(facts.size());
+        for (Object fact : facts) {
+            DataId triggerKey = triggerKeyOf(fact);
+            if (triggerKey == null || !indexed.contains(triggerKey)) {
+                delegated.add(fact);
+                if (fact instanceof Condition) {
+                    indexDelegated((Condition) fact, 1);
+                }
+            }
+        }
+        return delegated;
+    }
+
+    /*
+        Return a fast path trigger if the facts of a trigger have the fast path shape, null otherwise.
+     */
+    private FastTrigger toFastTrigger(List<Object> facts) {
+        Trigger trigger = null;
+        Condition condition = null;
+        Dampening dampening = null;
+        for (Object fact : facts) {
+            if (fact instanceof Trigger && trigger == null) {
+                trigger = (Trigger) fact;
+            } else if (fact instanceof Condition && condition == null) {
+                condition = (Condition) fact;
+            } else if (fact instanceof Dampening && dampening == null) {
+                dampening = (Dampening) fact;
+            } else {
+                return null;
+            }
+        }
+        if (trigger == null || condition == null
+                || trigger.getMode() != Mode.FIRING || trigger.isAutoResolve()
+                || condition.getTriggerMode() != Mode.FIRING || !isFastPath(condition.getType())) {
+            return null;
+        }
+        if (dampening == null) {
+            // As the ProvideDefaultDampening rule
+            dampening = Dampening.forStrict(trigger.getTenantId(), trigger.getId(), Mode.FIRING, 1);
+        } else if (dampening.getTriggerMode() != Mode.FIRING
+                || dampening.getType() == Dampening.Type.STRICT_TIMEOUT) {
+            return null;
+        }
+        return new FastTrigger(trigger, condition, dampening);
+    }
+
+    private static boolean isFastPath(Condition.Type type) {
+        switch (type) {
+            case THRESHOLD:
+            case RANGE:
+            case AVAILABILITY:
+            case STRING:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public Object getFact(Object fact) {
+        FastTrigger ft = fastTriggerOf(fact);
+        if (ft != null) {
+            Object result = ft.getFact(fact);
+            if (result != null) {
+                return result;
+            }
+        }
+        return delegate.getFact(fact);
+    }
+
+    @Override
+    public Collection<Object> getFacts(Predicate<Object> factFilter) {
+        List<Object> facts = new ArrayList<>(delegate.getFacts(factFilter));
+        for (FastTrigger ft : fastTriggers.values()) {
+            for (Object fact : ft.facts()) {
+                if (factFilter.test(fact)) {
+                    facts.add(fact);
+                }
+            }
+        }
+        return facts;
+    }
+
+    @Override
+    public void removeFact(Object fact) {
+        FastTrigger ft = fastTriggerOf(fact);
+        if (ft != null) {
+            if (fact instanceof Trigger) {
+                // Condition and dampening are orphans, as retracted by the rules
+                unindex(ft);
+                return;
+            }
+            moveToDelegate(ft);
+        }
+        if (fact instanceof Condition && delegate.getFact(fact) != null) {
+            indexDelegated((Condition) fact, -1);
+        }
+        delegate.removeFact(fact);
+    }
+
+    @Override
+    public void updateFact(Object fact) {
+        FastTrigger ft = fastTriggerOf(fact);
+        if (ft != null) {
+            moveToDelegate(ft);
+        }
+        delegate.updateFact(fact);
+    }
+
+    @Override
+    public void removeFacts(Collection facts) {
+        for (Object fact : facts) {
+            removeFact(fact);
+        }
+    }
+
+    @Override
+    public void removeFacts(Predicate<Object> factFilter) {
+        for (FastTrigger ft : new ArrayList<>(fastTriggers.values())) {
+            if (factFilter.test(ft.trigger)) {
+                unindex(ft);
+            } else if (factFilter.test(ft.condition) || factFilter.test(ft.dampening)) {
+                moveToDelegate(ft);
+            }
+        }
+        delegate.removeFacts(f -> {
+            boolean remove = factFilter.test(f);
+            if (remove && f instanceof Condition) {
+                indexDelegated((Condition) f, -1);
+            }
+            return remove;
+        });
+    }
+
+    @Override
+    public Collection<Object> removeTriggerFacts(String tenantId, String triggerId) {
+        FastTrigger ft = fastTriggers.get(new DataId(tenantId, triggerId));
+        if (ft != null) {
+            unindex(ft);
+            return ft.facts();
+        }
+        Collection<Object> removed = delegate.removeTriggerFacts(tenantId, triggerId);
+        indexDelegated(removed, -1);
+        return removed;
+    }
+
+    /*
+        Removals are applied first, so a reloaded trigger can move between the fast path and the delegate.
+     */
+    @Override
+    public Collection<Object> updateTriggers(Map<String, ? extends Collection<String>> removed, Collection<?> added) {
+        List<Object> removedFacts = new ArrayList<>();
+        Map<String, List<String>> delegatedRemoved = new HashMap<>();
+        if (removed != null) {
+            for (Map.Entry<String, ? extends Collection<String>> entry : removed.entrySet()) {
+                String tenantId = entry.getKey();
+                for (String triggerId : entry.getValue()) {
+                    FastTrigger ft = fastTriggers.get(new DataId(tenantId, triggerId));
+                    if (ft != null) {
+                        unindex(ft);
+                        removedFacts.addAll(ft.facts());
+                    } else {
+                        delegatedRemoved.computeIfAbsent(tenantId, t -> new ArrayList<>()).add(triggerId);
+                    }
+                }
+            }
+        }
+        if (!delegatedRemoved.isEmpty()) {
+            Collection<Object> delegatedFacts = delegate.updateTriggers(delegatedRemoved, null);
+            indexDelegated(delegatedFacts, -1);
+            removedFacts.addAll(delegatedFacts);
+        }
+        if (added != null && !added.isEmpty()) {
+            List<Object> delegatedAdded = splitFacts(added);
+            if (!delegatedAdded.isEmpty()) {
+                delegate.updateTriggers(null, delegatedAdded);
+            }
+        }
+        return removedFacts;
+    }
+
+    @Override
+    public void addData(TreeSet<Data> data) {
+        if (fastTriggers.isEmpty()) {
+            delegate.addData(data);
+            return;
+        }
+        TreeSet<Data> delegatedData = null;
+        for (Data d : data) {
+            DataId dataId = new DataId(d.getTenantId(), d.getId());
+            boolean fastPath = fastDataIds.containsKey(dataId);
+            if (fastPath) {
+                pendingData.add(d);
+            }
+            if (delegatedDataIds.containsKey(dataId)) {
+                if (delegatedData == null) {
+                    delegatedData = new TreeSet<>();
+                }
+                delegatedData.add(d);
+            } else if (!fastPath) {
+                log.tracef("Data without conditions, discarded: %s", d);
+            }
+        }
+        if (delegatedData != null) {
+            delegate.addData(delegatedData);
+        }
+    }
+
+    @Override
+    public void addEvents(TreeSet<Event> events) {
+        delegate.addEvents(events);
+    }
+
+    @Override
+    public void fire() {
+        if (!pendingData.isEmpty()) {
+            TreeSet<Event> generated = evaluate();
+            if (!generated.isEmpty()) {
+                delegate.addEvents(generated);
+            }
+        }
+        delegate.fire();
+    }
+
+    @Override
+    public void fireNoData() {
+        delegate.fireNoData();
+    }
+
+    /*
+        Evaluate the pending data on the fast path triggers. As the rules, the data of a dataId is processed oldest
+        first and data violating the minReportingInterval of the previous processed datum is removed.
+
+        Return the generated events used by conditions of the delegate.
+     */
+    private TreeSet<Event> evaluate() {
+        TreeSet<Data> batchData = pendingData;
+        pendingData = new TreeSet<>();
+        TreeSet<Event> generated = new TreeSet<>();
+
+        Data previousData = null;
+        FastTrigger[] triggers = NO_TRIGGERS;
+        for (Data d : batchData) {
+            if (d.same(previousData)) {
+                if ((d.getTimestamp() - previousData.getTimestamp()) < minReportingIntervalData) {
+                    log.tracef("MinReportingInterval violation, prev: %s, removed: %s", previousData, d);
+                    if (droppedData != null) {
+                        droppedData.increment();
+                    }
+                    continue;
+                }
+            } else {
+                triggers = fastDataIds.getOrDefault(new DataId(d.getTenantId(), d.getId()), NO_TRIGGERS);
+            }
+            previousData = d;
+            for (FastTrigger ft : triggers) {
+                if (!ft.removed && Objects.equals(d.getSource(), ft.trigger.getSource())) {
+                    evaluate(ft, d, generated);
+                }
+            }
+        }
+        return generated;
+    }
+
+    private void evaluate(FastTrigger ft, Data d, TreeSet<Event> generated) {
+        ConditionEval ce = ft.eval(d);
+        if (fastPathEvals != null) {
+            fastPathEvals.increment();
+        }
+        if (log.isDebugEnabled()) {
+            log.debugf("%s Eval: %s %s", ft.condition.getType(), (ce.isMatch() ? "Match!" : "no match"),
+                    ce.getLog());
+        }
+        Trigger t = ft.trigger;
+        Dampening dampening = ft.dampening;
+        dampening.perform(t.getMatch(), Collections.singleton(ce));
+        if (!dampening.isSatisfied()) {
+            return;
+        }
+
+        Event newEvent;
+        if (t.getEventType() == EventType.ALERT) {
+            if (log.isDebugEnabled()) {
+                log.debugf("Alert! Dampening Satisfied! %s", dampening.log());
+            }
+            newEvent = new Alert(t.getTenantId(), t, dampening, dampening.getSatisfyingEvals());
+            if (alerts != null) {
+                alerts.add((Alert) newEvent);
+            }
+        } else {
+            if (log.isDebugEnabled()) {
+                log.debugf("Event! Dampening Satisfied! %s", dampening.log());
+            }
+            newEvent = new Event(t.getTenantId(), t, dampening, dampening.getSatisfyingEvals());
+            if (events != null) {
+                events.add(newEvent);
+            }
+        }
+        if (delegatedDataIds.containsKey(new DataId(newEvent.getTenantId(), newEvent.getDataId()))) {
+            generated.add(newEvent);
+        }
+
+        if (actions != null) {
+            actions.send(t, newEvent);
+        }
+
+        dampening.reset();
+
+        if (t.isAutoDisable()) {
+            if (log.isDebugEnabled()) {
+                log.debugf("Setting Trigger Disabled! %s", t);
+            }
+            // As the rules, the autoDisable trigger handling will result in a trigger reload
+            if (disabledTriggers != null) {
+                disabledTriggers.add(t);
+            }
+            unindex(ft);
+        }
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+        clearFastPath();
+        delegatedDataIds.clear();
+    }
+
+    @Override
+    public void reset() {
+        delegate.reset();
+        clearFastPath();
+        delegatedDataIds.clear();
+        pendingData = new TreeSet<>();
+        alerts = null;
+        events = null;
+        actions = null;
+        disabledTriggers = null;
+    }
+
+    public void shutdown() {
+        if (delegate instanceof ShardedRulesEngineImpl) {
+            ((ShardedRulesEngineImpl) delegate).shutdown();
+        }
+    }
+
+    private void clearFastPath() {
+        for (FastTrigger ft : fastTriggers.values()) {
+            ft.removed = true;
+        }
+        if (fastPathTriggers != null) {
+            fastPathTriggers.add(-fastTriggers.size());
+        }
+        fastTriggers.clear();
+        fastDataIds.clear();
+    }
+
+    private void moveToDelegate(DataId triggerKey) {
+        FastTrigger ft = fastTriggers.get(triggerKey);
+        if (ft != null) {
+            moveToDelegate(ft);
+        }
+    }
+
+    /*
+        The trigger is moved with its current dampening, so the evaluation state is kept.
+     */
+    private void moveToDelegate(FastTrigger ft) {
+        log.debugf("Moving trigger %s out of the fast path", ft.trigger.getId());
+        unindex(ft);
+        delegate.addFacts(ft.facts());
+        indexDelegated(ft.condition, 1);
+    }
+
+    private void index(FastTrigger ft) {
+        fastTriggers.put(ft.triggerKey, ft);
+        FastTrigger[] triggers = fastDataIds.getOrDefault(ft.dataId, NO_TRIGGERS);
+        FastTrigger[] updated = Arrays.copyOf(triggers, triggers.length + 1);
+        updated[triggers.length] = ft;
+        fastDataIds.put(ft.dataId, updated);
+        if (fastPathTriggers != null) {
+            fastPathTriggers.increment();
+        }
+    }
+
+    /*
+        The index arrays are replaced, not modified, as they can be in use by an evaluation.
+     */
+    private void unindex(FastTrigger ft) {
+        if (ft.removed) {
+            return;
+        }
+        ft.removed = true;
+        fastTriggers.remove(ft.triggerKey);
+        FastTrigger[] triggers = fastDataIds.getOrDefault(ft.dataId, NO_TRIGGERS);
+        if (triggers.length <= 1) {
+            fastDataIds.remove(ft.dataId);
+        } else {
+            FastTrigger[] updated = new FastTrigger[triggers.length - 1];
+            int i = 0;
+            for (FastTrigger t : triggers) {
+                if (t != ft && i < updated.length) {
+                    updated[i++] = t;
+                }
+            }
+            fastDataIds.put(ft.dataId, updated);
+        }
+        if (fastPathTriggers != null) {
+            fastPathTriggers.decrement();
+        }
+    }
+
+    private void indexDelegated(Collection<?> facts, int delta) {
+        for (Object fact : facts) {
+            if (fact instanceof Condition) {
+                indexDelegated((Condition) fact, delta);
+            }
+        }
+    }
+
+    private void indexDelegated(Condition c, int delta) {
+        indexDelegated(new DataId(c.getTenantId(), c.getDataId()), delta);
+        if (c instanceof CompareCondition) {
+            indexDelegated(new DataId(c.getTenantId(), ((CompareCondition) c).getData2Id()), delta);
+        }
+    }
+
+    private void indexDelegated(DataId dataId, int delta) {
+        delegatedDataIds.compute(dataId, (k, count) -> {
+            int updated = (count == null ? 0 : count) + delta;
+            return updated > 0 ? updated : null;
+        });
+    }
+
+    private FastTrigger fastTriggerOf(Object fact) {
+        if (fastTriggers.isEmpty()) {
+            return null;
+        }
+        DataId triggerKey = triggerKeyOf(fact);
+        return triggerKey == null ? null : fastTriggers.get(triggerKey);
+    }
+
+    /*
+        Return the (tenantId, triggerId) of a trigger related fact, null if the fact is not related to a trigger.
+     */
+    private static DataId triggerKeyOf(Object fact) {
+        if (fact instanceof Trigger) {
+            return new DataId(((Trigger) fact).getTenantId(), ((Trigger) fact).getId());
+        } else if (fact instanceof Condition) {
+            return new DataId(((Condition) fact).getTenantId(), ((Condition) fact).getTriggerId());
+        } else if (fact instanceof Dampening) {
+            return new DataId(((Dampening) fact).getTenantId(), ((Dampening) fact).getTriggerId());
+        } else if (fact instanceof MissingState) {
+            return new DataId(((MissingState) fact).getTenantId(), ((MissingState) fact).getTriggerId());
+        } else if (fact instanceof ConditionEval) {
+            return new DataId(((ConditionEval) fact).getTenantId(), ((ConditionEval) fact).getTriggerId());
+        } else if (fact instanceof NelsonData) {
+            Condition c = ((NelsonData) fact).getCondition();
+            return new DataId(c.getTenantId(), c.getTriggerId());
+        }
+        return null;
+    }
+
+    /*
+        A trigger evaluated on the fast path, with its only condition and its dampening.
+     */
+    private static class FastTrigger {
+        final Trigger trigger;
+        final Condition condition;
+        final Dampening dampening;
+        final DataId triggerKey;
+        final DataId dataId;
+        boolean removed = false;
+
+        FastTrigger(Trigger trigger, Condition condition, Dampening dampening) {
+            this.trigger = trigger;
+            this.condition = condition;
+            this.dampening = dampening;
+            this.triggerKey = new DataId(trigger.getTenantId(), trigger.getId());
+            this.dataId = new DataId(condition.getTenantId(), condition.getDataId());
+        }
+
+        ConditionEval eval(Data d) {
+            switch (condition.getType()) {
+                case THRESHOLD:
+                    return new ThresholdConditionEval((ThresholdCondition) condition, d);
+                case RANGE:
+                    return new ThresholdRangeConditionEval((ThresholdRangeCondition) condition, d);
+                case AVAILABILITY:
+                    return new AvailabilityConditionEval((AvailabilityCondition) condition, d);
+                case STRING:
+                    return new StringConditionEval((StringCondition) condition, d);
+                default:
+                    throw new IllegalStateException("Condition not supported on fast path: " + condition);
+            }
+        }
+
+        Object getFact(Object fact) {
+            if (trigger.equals(fact)) {
+                return trigger;
+            } else if (condition.equals(fact)) {
+                return condition;
+            } else if (dampening.equals(fact)) {
+                return dampening;
+            }
+            return null;
+        }
+
+        List<Object> facts() {
+            List<Object> facts = new ArrayList<>(3);
+            facts.add(trigger);
+            facts.add(condition);
+            facts.add(dampening);
+            return facts;
+        }
+    }
+}
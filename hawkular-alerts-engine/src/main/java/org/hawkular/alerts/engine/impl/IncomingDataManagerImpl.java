@@ -21,6 +21,7 @@ import java.util.Iterator;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.hawkular.alerts.api.model.data.Data;
 import org.hawkular.alerts.api.model.event.Event;
@@ -55,6 +56,8 @@ public class IncomingDataManagerImpl implements IncomingDataManager {
 
     CacheClient dataIdCache;
 
+    IngestionBackpressure backpressure;
+
     public void setExecutor(ExecutorService executor) {
         this.executor = executor;
     }
@@ -79,6 +82,10 @@ public class IncomingDataManagerImpl implements IncomingDataManager {
         this.dataIdCache = dataIdCache;
     }
 
+    public void setIngestionBackpressure(IngestionBackpressure backpressure) {
+        this.backpressure = backpressure;
+    }
+
     public void init() {
         try {
             minReportingIntervalData = new Integer(
@@ -100,16 +107,52 @@ public class IncomingDataManagerImpl implements IncomingDataManager {
 
     @Override
     public void bufferData(IncomingData incomingData) {
-        executor.submit(() -> {
-            processData(incomingData);
-        });
+        if (backpressure == null) {
+            executor.submit(() -> {
+                processData(incomingData);
+            });
+            return;
+        }
+        Collection<Data> admitted = backpressure.admitData(incomingData.getIncomingData());
+        IncomingData admittedData = admitted == incomingData.getIncomingData() ? incomingData
+                : new IncomingData(admitted, incomingData.isRaw());
+        try {
+            executor.submit(() -> {
+                try {
+                    processData(admittedData);
+                } finally {
+                    backpressure.release(admitted.size());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            backpressure.release(admitted.size());
+            throw e;
+        }
     }
 
     @Override
     public void bufferEvents(IncomingEvents incomingEvents) {
-        executor.submit(() -> {
-            processEvents(incomingEvents);
-        });
+        if (backpressure == null) {
+            executor.submit(() -> {
+                processEvents(incomingEvents);
+            });
+            return;
+        }
+        Collection<Event> admitted = backpressure.admitEvents(incomingEvents.getIncomingEvents());
+        IncomingEvents admittedEvents = admitted == incomingEvents.getIncomingEvents() ? incomingEvents
+                : new IncomingEvents(admitted, incomingEvents.isRaw());
+        try {
+            executor.submit(() -> {
+                try {
+                    processEvents(admittedEvents);
+                } finally {
+                    backpressure.release(admitted.size());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            backpressure.release(admitted.size());
+            throw e;
+        }
     }
 
     private void processData(IncomingData incomingData) {
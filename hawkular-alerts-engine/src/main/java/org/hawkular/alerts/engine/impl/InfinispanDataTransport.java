@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.hawkular.alerts.engine.impl.PartitionManagerImpl.NotifyData;
+import org.infinispan.Cache;
+import org.infinispan.distexec.DefaultExecutorService;
+import org.infinispan.distexec.DistributedExecutorService;
+import org.infinispan.remoting.transport.Address;
+import org.jboss.logging.Logger;
+
+/**
+ * {@link DataTransport} based on the Infinispan distributed executor, data is sent only to the target member of the
+ * cluster instead of being replicated to all members.
+ *
+ * Nodes are represented on the partition by the Address.hashCode of the member.
+ */
+public class InfinispanDataTransport implements DataTransport {
+    private final Logger log = Logger.getLogger(InfinispanDataTransport.class);
+
+    /*
+        Receivers of the nodes running on this JVM, the delivery task looks up the target node receiver on arrival.
+     */
+    private static final Map<Integer, Consumer<NotifyData>> RECEIVERS = new ConcurrentHashMap<>();
+
+    private final Cache cache;
+    private final DistributedExecutorService executor;
+    private final AtomicLong failedSends = new AtomicLong();
+
+    public InfinispanDataTransport(Cache cache) {
+        this.cache = cache;
+        this.executor = new DefaultExecutorService(cache);
+    }
+
+    @Override
+    public void register(Integer node, Consumer<NotifyData> receiver) {
+        RECEIVERS.put(node, receiver);
+    }
+
+    @Override
+    public void unregister(Integer node) {
+        RECEIVERS.remove(node);
+    }
+
+    @Override
+    public void send(Integer toNode, NotifyData notifyData) {
+        Address target = null;
+        for (Address member : cache.getCacheManager().getMembers()) {
+            if (member.hashCode() == toNode) {
+                target = member;
+                break;
+            }
+        }
+        if (target == null) {
+            failedSends.incrementAndGet();
+            log.debugf("Node [%s] is not a member, discarding [%s]", toNode, notifyData);
+            return;
+        }
+        try {
+            executor.submit(target, new Delivery(toNode, notifyData)).attachListener(future -> {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    failed(toNode, notifyData, e.getCause());
+                }
+            });
+        } catch (RuntimeException e) {
+            failed(toNode, notifyData, e);
+        }
+    }
+
+    @Override
+    public long getFailedSends() {
+        return failedSends.get();
+    }
+
+    private void failed(Integer toNode, NotifyData notifyData, Throwable t) {
+        failedSends.incrementAndGet();
+        log.warnf("Failed delivery to node [%s] of [%s]: %s", toNode, notifyData, t);
+    }
+
+    @Override
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /*
+        Task executed on the target member.
+     */
+    private static class Delivery implements Callable<Void>, Serializable {
+        private final Integer toNode;
+        private final NotifyData notifyData;
+
+        Delivery(Integer toNode, NotifyData notifyData) {
+            this.toNode = toNode;
+            this.notifyData = notifyData;
+        }
+
+        @Override
+        public Void call() throws Exception {
+            Consumer<NotifyData> receiver = RECEIVERS.get(toNode);
+            if (receiver != null) {
+                receiver.accept(notifyData);
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,405 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import static org.hawkular.alerts.engine.service.IncomingDataManager.ENGINE_MAX_PENDING;
+import static org.hawkular.alerts.engine.service.IncomingDataManager.ENGINE_MAX_PENDING_DEFAULT;
+import static org.hawkular.alerts.engine.service.IncomingDataManager.ENGINE_MAX_PENDING_ENV;
+import static org.hawkular.alerts.engine.service.IncomingDataManager.INCOMING_MAX_IN_FLIGHT;
+import static org.hawkular.alerts.engine.service.IncomingDataManager.INCOMING_MAX_IN_FLIGHT_DEFAULT;
+import static org.hawkular.alerts.engine.service.IncomingDataManager.INCOMING_MAX_IN_FLIGHT_ENV;
+import static org.hawkular.alerts.engine.service.IncomingDataManager.INGESTION_BLOCK_TIMEOUT;
+import static org.hawkular.alerts.engine.service.IncomingDataManager.INGESTION_BLOCK_TIMEOUT_DEFAULT;
+import static org.hawkular.alerts.engine.service.IncomingDataManager.INGESTION_BLOCK_TIMEOUT_ENV;
+import static org.hawkular.alerts.engine.service.IncomingDataManager.INGESTION_POLICY;
+import static org.hawkular.alerts.engine.service.IncomingDataManager.INGESTION_POLICY_DEFAULT;
+import static org.hawkular.alerts.engine.service.IncomingDataManager.INGESTION_POLICY_ENV;
+import static org.hawkular.alerts.engine.service.IncomingDataManager.INGESTION_RETRY_AFTER;
+import static org.hawkular.alerts.engine.service.IncomingDataManager.INGESTION_RETRY_AFTER_DEFAULT;
+import static org.hawkular.alerts.engine.service.IncomingDataManager.INGESTION_RETRY_AFTER_ENV;
+import static org.hawkular.alerts.engine.service.IncomingDataManager.RULES_ENGINE_MAX_DEFERRED;
+import static org.hawkular.alerts.engine.service.IncomingDataManager.RULES_ENGINE_MAX_DEFERRED_DEFAULT;
+import static org.hawkular.alerts.engine.service.IncomingDataManager.RULES_ENGINE_MAX_DEFERRED_ENV;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+import org.hawkular.alerts.api.exception.OverloadedException;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.properties.AlertProperties;
+import org.jboss.logging.Logger;
+
+/**
+ * Bounds the number of datums and events held on each ingestion stage and applies the overload policy.
+ *
+ * Stages are:
+ * - Incoming: datums and events accepted by the IncomingDataManager and not yet processed by its executor.
+ * - Engine: datums and events pending on the AlertsEngine for the next rules cycle.
+ * - Deferred: datums and events deferred by the RulesEngine to subsequent firings of a cycle.
+ *
+ * Overload on the incoming stage is signalled to the caller with an {@link OverloadedException}. The engine and
+ * deferred stages run asynchronously, items not accepted there are shed and counted per tenant.
+ *
+ * Under the drop-oldest policy the engine stage accepts items over its max pending size up to a hard cap of
+ * {@link #DROP_OLDEST_HARD_CAP_FACTOR} times that size. The buffer is compacted by the rules thread when it is drained,
+ * producers never re-queue items, so the items of a dataId are always evaluated in time order.
+ *
+ * A batch larger than the bound of a stage takes the whole capacity of the stage, so it is accepted once the stage is
+ * empty instead of being rejected on every retry.
+ */
+public class IngestionBackpressure {
+    private final Logger log = Logger.getLogger(IngestionBackpressure.class);
+
+    static final int DROP_OLDEST_HARD_CAP_FACTOR = 2;
+
+    public enum Policy {
+        /**
+         * Items not fitting on a stage are rejected.
+         */
+        REJECT,
+        /**
+         * Items not fitting on a stage are compacted keeping only the most recent item per dataId.
+         */
+        DROP_OLDEST,
+        /**
+         * Producers wait for capacity up to the block timeout, and are rejected after it.
+         */
+        BLOCK;
+
+        public static Policy fromString(String policy) {
+            return Policy.valueOf(policy.trim().toUpperCase().replace('-', '_'));
+        }
+    }
+
+    private final Policy policy;
+    private final int incomingMaxInFlight;
+    private final int engineMaxPending;
+    private final int engineHardCap;
+    private final int rulesEngineMaxDeferred;
+    private final long blockTimeout;
+    private final int retryAfter;
+
+    private final Semaphore incomingPermits;
+    private volatile boolean engineSaturated = false;
+
+    private final Map<String, LongAdder> shedData = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> shedEvents = new ConcurrentHashMap<>();
+
+    public IngestionBackpressure() {
+        this(Policy.fromString(AlertProperties.getProperty(INGESTION_POLICY, INGESTION_POLICY_ENV,
+                        INGESTION_POLICY_DEFAULT)),
+                Integer.parseInt(AlertProperties.getProperty(INCOMING_MAX_IN_FLIGHT, INCOMING_MAX_IN_FLIGHT_ENV,
+                        INCOMING_MAX_IN_FLIGHT_DEFAULT)),
+                Integer.parseInt(AlertProperties.getProperty(ENGINE_MAX_PENDING, ENGINE_MAX_PENDING_ENV,
+                        ENGINE_MAX_PENDING_DEFAULT)),
+                Integer.parseInt(AlertProperties.getProperty(RULES_ENGINE_MAX_DEFERRED, RULES_ENGINE_MAX_DEFERRED_ENV,
+                        RULES_ENGINE_MAX_DEFERRED_DEFAULT)),
+                Long.parseLong(AlertProperties.getProperty(INGESTION_BLOCK_TIMEOUT, INGESTION_BLOCK_TIMEOUT_ENV,
+                        INGESTION_BLOCK_TIMEOUT_DEFAULT)),
+                Integer.parseInt(AlertProperties.getProperty(INGESTION_RETRY_AFTER, INGESTION_RETRY_AFTER_ENV,
+                        INGESTION_RETRY_AFTER_DEFAULT)));
+    }
+
+    public IngestionBackpressure(Policy policy, int incomingMaxInFlight, int engineMaxPending,
+            int rulesEngineMaxDeferred, long blockTimeout, int retryAfter) {
+        this.policy = policy;
+        this.incomingMaxInFlight = incomingMaxInFlight;
+        this.engineMaxPending = engineMaxPending;
+        this.engineHardCap = (int) Math.min(Integer.MAX_VALUE, (long) engineMaxPending * DROP_OLDEST_HARD_CAP_FACTOR);
+        this.rulesEngineMaxDeferred = rulesEngineMaxDeferred;
+        this.blockTimeout = blockTimeout;
+        this.retryAfter = retryAfter;
+        this.incomingPermits = incomingMaxInFlight > 0 ? new Semaphore(incomingMaxInFlight) : null;
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Admit data on the incoming stage. Admitted data must be released with {@link #release(int)} once processed.
+     *
+     * @param data incoming data
+     * @return the admitted data, it can be a compacted collection under the drop-oldest policy
+     * @throws OverloadedException if the data is not admitted
+     */
+    public Collection<Data> admitData(Collection<Data> data) {
+        return admit(data, Data::same, Data::getTenantId, shedData, "data");
+    }
+
+    /**
+     * Admit events on the incoming stage. Admitted events must be released with {@link #release(int)} once processed.
+     *
+     * @param events incoming events
+     * @return the admitted events, it can be a compacted collection under the drop-oldest policy
+     * @throws OverloadedException if the events are not admitted
+     */
+    public Collection<Event> admitEvents(Collection<Event> events) {
+        return admit(events, Event::same, Event::getTenantId, shedEvents, "events");
+    }
+
+    private <T extends Comparable<? super T>> Collection<T> admit(Collection<T> items, BiPredicate<T, T> same,
+            Function<T, String> tenantOf, Map<String, LongAdder> shed, String type) {
+        if (policy == Policy.REJECT && engineSaturated) {
+            shed(items, tenantOf, shed);
+            throw new OverloadedException("Engine is saturated, " + type + " rejected", retryAfter, true);
+        }
+        if (incomingPermits == null || items.isEmpty()) {
+            return items;
+        }
+        int size = items.size();
+        switch (policy) {
+            case BLOCK:
+                boolean acquired = false;
+                try {
+                    acquired = incomingPermits.tryAcquire(permits(size), blockTimeout, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (!acquired) {
+                    shed(items, tenantOf, shed);
+                    throw new OverloadedException("Timeout waiting for capacity, " + size + " " + type + " rejected",
+                            retryAfter, true);
+                }
+                return items;
+            case DROP_OLDEST:
+                if (incomingPermits.tryAcquire(permits(size))) {
+                    return items;
+                }
+                List<T> dropped = new ArrayList<>();
+                TreeSet<T> latest = IngestionBuffer.keepLatest(new TreeSet<>(items), same, dropped);
+                shed(dropped, tenantOf, shed);
+                if (incomingPermits.tryAcquire(permits(latest.size()))) {
+                    return latest;
+                }
+                shed(latest, tenantOf, shed);
+                throw new OverloadedException("Too many in-flight items, " + size + " " + type + " rejected",
+                        retryAfter, false);
+            default:
+                if (incomingPermits.tryAcquire(permits(size))) {
+                    return items;
+                }
+                shed(items, tenantOf, shed);
+                throw new OverloadedException("Too many in-flight items, " + size + " " + type + " rejected",
+                        retryAfter, false);
+        }
+    }
+
+    /**
+     * Release items admitted on the incoming stage.
+     *
+     * @param size number of admitted items processed
+     */
+    public void release(int size) {
+        if (incomingPermits != null && size > 0) {
+            incomingPermits.release(permits(size));
+        }
+    }
+
+    /*
+        A batch larger than the incoming bound takes all the permits, it could never acquire one per item
+     */
+    private int permits(int size) {
+        return Math.min(size, incomingMaxInFlight);
+    }
+
+    /**
+     * Add data to the engine pending buffer applying the policy if the engine stage is full.
+     *
+     * @param buffer engine pending buffer
+     * @param data data to add
+     * @return the size of the buffer after the add, or -1 if the data was shed
+     */
+    public int offerData(IngestionBuffer<Data> buffer, TreeSet<Data> data) {
+        return offer(buffer, data, Data::same, Data::getTenantId, shedData);
+    }
+
+    /**
+     * Add events to the engine pending buffer applying the policy if the engine stage is full.
+     *
+     * @param buffer engine pending buffer
+     * @param events events to add
+     * @return the size of the buffer after the add, or -1 if the events were shed
+     */
+    public int offerEvents(IngestionBuffer<Event> buffer, TreeSet<Event> events) {
+        return offer(buffer, events, Event::same, Event::getTenantId, shedEvents);
+    }
+
+    private <T extends Comparable<? super T>> int offer(IngestionBuffer<T> buffer, TreeSet<T> items,
+            BiPredicate<T, T> same, Function<T, String> tenantOf, Map<String, LongAdder> shed) {
+        // A batch larger than the engine bound waits for an empty buffer
+        int needed = Math.min(items.size(), engineMaxPending);
+        if (engineMaxPending <= 0 || buffer.size() + needed <= engineMaxPending) {
+            return buffer.addAll(items);
+        }
+        switch (policy) {
+            case BLOCK:
+                if (buffer.awaitCapacity(needed, engineMaxPending, blockTimeout)) {
+                    return buffer.addAll(items);
+                }
+                log.debugf("Engine pending buffer is full, shedding [%d] items", items.size());
+                shed(items, tenantOf, shed);
+                return -1;
+            case DROP_OLDEST:
+                // The batch is compacted by itself, the buffer is compacted by the consumer on drain
+                List<T> dropped = new ArrayList<>();
+                TreeSet<T> latest = IngestionBuffer.keepLatest(items, same, dropped);
+                shed(dropped, tenantOf, shed);
+                int size = buffer.addAll(latest, engineHardCap);
+                if (size < 0) {
+                    log.debugf("Engine pending buffer reached its hard cap, shedding [%d] items", latest.size());
+                    shed(latest, tenantOf, shed);
+                }
+                return size;
+            default:
+                log.debugf("Engine pending buffer is full, shedding [%d] items", items.size());
+                engineSaturated = true;
+                shed(items, tenantOf, shed);
+                return -1;
+        }
+    }
+
+    /**
+     * Drain the engine pending data. Under the drop-oldest policy, if the buffer exceeds the engine max pending size
+     * only the most recent datum per dataId is kept.
+     *
+     * @param buffer engine pending buffer, drained only by the rules thread
+     * @return the data for the rules cycle
+     */
+    public TreeSet<Data> drainData(IngestionBuffer<Data> buffer) {
+        return drain(buffer, Data::same, Data::getTenantId, shedData);
+    }
+
+    /**
+     * Drain the engine pending events. Under the drop-oldest policy, if the buffer exceeds the engine max pending
+     * size only the most recent event per dataId is kept.
+     *
+     * @param buffer engine pending buffer, drained only by the rules thread
+     * @return the events for the rules cycle
+     */
+    public TreeSet<Event> drainEvents(IngestionBuffer<Event> buffer) {
+        return drain(buffer, Event::same, Event::getTenantId, shedEvents);
+    }
+
+    private <T extends Comparable<? super T>> TreeSet<T> drain(IngestionBuffer<T> buffer, BiPredicate<T, T> same,
+            Function<T, String> tenantOf, Map<String, LongAdder> shed) {
+        if (policy != Policy.DROP_OLDEST || engineMaxPending <= 0 || buffer.size() <= engineMaxPending) {
+            return buffer.drain();
+        }
+        List<T> dropped = new ArrayList<>();
+        TreeSet<T> latest = buffer.drainLatest(same, dropped);
+        log.debugf("Engine pending items exceeding [%d], shedding [%d] items", engineMaxPending, dropped.size());
+        shed(dropped, tenantOf, shed);
+        return latest;
+    }
+
+    /**
+     * Notify the engine pending buffers were drained by a rules cycle.
+     */
+    public void engineDrained() {
+        engineSaturated = false;
+    }
+
+    public boolean isEngineSaturated() {
+        return engineSaturated;
+    }
+
+    /**
+     * Bound the data deferred by the rules engine keeping only the most recent datum per dataId when the deferred
+     * stage is full.
+     *
+     * @param deferred data deferred by the rules engine, sorted by its natural ordering
+     * @return the data to defer
+     */
+    public TreeSet<Data> boundDeferredData(TreeSet<Data> deferred) {
+        return boundDeferred(deferred, Data::same, Data::getTenantId, shedData);
+    }
+
+    /**
+     * Bound the events deferred by the rules engine keeping only the most recent event per dataId when the deferred
+     * stage is full.
+     *
+     * @param deferred events deferred by the rules engine, sorted by its natural ordering
+     * @return the events to defer
+     */
+    public TreeSet<Event> boundDeferredEvents(TreeSet<Event> deferred) {
+        return boundDeferred(deferred, Event::same, Event::getTenantId, shedEvents);
+    }
+
+    private <T> TreeSet<T> boundDeferred(TreeSet<T> deferred, BiPredicate<T, T> same, Function<T, String> tenantOf,
+            Map<String, LongAdder> shed) {
+        if (rulesEngineMaxDeferred <= 0 || deferred.size() <= rulesEngineMaxDeferred) {
+            return deferred;
+        }
+        List<T> dropped = new ArrayList<>();
+        TreeSet<T> latest = IngestionBuffer.keepLatest(deferred, same, dropped);
+        log.debugf("Deferred items exceeding [%d], shedding [%d] items", rulesEngineMaxDeferred, dropped.size());
+        shed(dropped, tenantOf, shed);
+        return latest;
+    }
+
+    private <T> void shed(Collection<T> items, Function<T, String> tenantOf, Map<String, LongAdder> shed) {
+        for (T item : items) {
+            String tenantId = String.valueOf(tenantOf.apply(item));
+            shed.computeIfAbsent(tenantId, t -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * @param tenantId the tenant
+     * @return number of datums shed for the tenant
+     */
+    public long getShedData(String tenantId) {
+        LongAdder counter = shedData.get(tenantId);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * @param tenantId the tenant
+     * @return number of events shed for the tenant
+     */
+    public long getShedEvents(String tenantId) {
+        LongAdder counter = shedEvents.get(tenantId);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    public Map<String, String> getStatus() {
+        Map<String, String> status = new HashMap<>();
+        status.put("ingestion.policy", policy.name());
+        if (incomingPermits != null) {
+            status.put("ingestion.incomingInFlight",
+                    String.valueOf(incomingMaxInFlight - incomingPermits.availablePermits()));
+        }
+        status.put("ingestion.engineSaturated", String.valueOf(engineSaturated));
+        shedData.forEach((tenantId, counter) ->
+                status.put("ingestion.shedData." + tenantId, String.valueOf(counter.sum())));
+        shedEvents.forEach((tenantId, counter) ->
+                status.put("ingestion.shedEvents." + tenantId, String.valueOf(counter.sum())));
+        return status;
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiPredicate;
+
+/**
+ * Multi-producer, single-consumer buffer for incoming Data and Events of the AlertsEngine.
+ *
+ * Producers append whole batches to a lock-free queue, so concurrent ingestion threads never contend on a monitor
+ * nor pay a sorted insert per item. The consumer sorts and deduplicates the pending items once, when the buffer is
+ * drained for a rules cycle, keeping the natural ordering of the items (tenantId, id, timestamp).
+ *
+ * When the same item is added several times before a drain, the first added wins, as it happened with the previous
+ * TreeSet based buffers.
+ */
+public class IngestionBuffer<T extends Comparable<? super T>> {
+
+    private final ConcurrentLinkedQueue<Collection<T>> batches;
+
+    /**
+     * Number of items added and not drained yet. Duplicates are counted until the buffer is drained.
+     */
+    private final AtomicInteger size;
+
+    /**
+     * Producers waiting for capacity are notified on drain.
+     */
+    private final Object capacity = new Object();
+
+    public IngestionBuffer() {
+        batches = new ConcurrentLinkedQueue<>();
+        size = new AtomicInteger(0);
+    }
+
+    /**
+     * Add a batch of items to the buffer. The batch is copied, so the caller can reuse the collection.
+     *
+     * @param items to add
+     * @return the number of pending items after the add
+     */
+    public int addAll(Collection<T> items) {
+        if (items == null || items.isEmpty()) {
+            return size.get();
+        }
+        batches.offer(new ArrayList<>(items));
+        return size.addAndGet(items.size());
+    }
+
+    /**
+     * Add a batch of items to the buffer only if the pending items do not exceed <code>max</code> after the add.
+     * The bound is hard, concurrent producers can not exceed it together. A batch larger than <code>max</code> is
+     * added only to an empty buffer.
+     *
+     * @param items to add
+     * @param max max number of pending items
+     * @return the number of pending items after the add, or -1 if the batch was not added
+     */
+    public int addAll(Collection<T> items, int max) {
+        if (items == null || items.isEmpty()) {
+            return size.get();
+        }
+        int needed = Math.min(items.size(), max);
+        int current;
+        do {
+            current = size.get();
+            if (current + needed > max) {
+                return -1;
+            }
+        } while (!size.compareAndSet(current, current + items.size()));
+        batches.offer(new ArrayList<>(items));
+        return current + items.size();
+    }
+
+    /**
+     * @return the pending items sorted and deduplicated, the buffer is left empty
+     */
+    public TreeSet<T> drain() {
+        TreeSet<T> result = new TreeSet<>();
+        int drained = 0;
+        Collection<T> batch;
+        while ((batch = batches.poll()) != null) {
+            result.addAll(batch);
+            drained += batch.size();
+        }
+        if (drained > 0) {
+            size.addAndGet(-drained);
+            synchronized (capacity) {
+                capacity.notifyAll();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Wait until the buffer can hold <code>items</code> more items without exceeding <code>max</code>.
+     * The bound is soft, several producers can be released by the same drain.
+     *
+     * @param items number of items to add
+     * @param max max number of pending items
+     * @param timeout max time to wait in milliseconds
+     * @return true if there is capacity, false if the timeout expired or the thread was interrupted
+     */
+    public boolean awaitCapacity(int items, int max, long timeout) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        synchronized (capacity) {
+            while (size.get() + items > max) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    capacity.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Drain keeping only the most recent pending item for each group of same items. As {@link #drain()}, it is
+     * called only by the consumer, so items are never re-queued behind items already drained.
+     *
+     * @param same predicate that defines items of the same group (i.e. same tenantId and dataId)
+     * @param dropped list where the dropped items are added
+     * @return the most recent pending item of each group, the buffer is left empty
+     */
+    public TreeSet<T> drainLatest(BiPredicate<T, T> same, List<T> dropped) {
+        return keepLatest(drain(), same, dropped);
+    }
+
+    /**
+     * @param sorted items sorted by its natural ordering, so same items are contiguous and time ordered
+     * @param same predicate that defines items of the same group (i.e. same tenantId and dataId)
+     * @param dropped list where the dropped items are added
+     * @return the most recent item of each group
+     */
+    public static <T> TreeSet<T> keepLatest(TreeSet<T> sorted, BiPredicate<T, T> same, List<T> dropped) {
+        TreeSet<T> latest = new TreeSet<>(sorted.comparator());
+        T previous = null;
+        for (T item : sorted) {
+            if (previous != null) {
+                if (same.test(item, previous)) {
+                    dropped.add(previous);
+                } else {
+                    latest.add(previous);
+                }
+            }
+            previous = item;
+        }
+        if (previous != null) {
+            latest.add(previous);
+        }
+        return latest;
+    }
+
+    /**
+     * @return a sorted and deduplicated copy of the pending items, the buffer is not modified
+     */
+    public TreeSet<T> snapshot() {
+        TreeSet<T> result = new TreeSet<>();
+        for (Collection<T> batch : batches) {
+            result.addAll(batch);
+        }
+        return result;
+    }
+
+    public boolean isEmpty() {
+        return batches.isEmpty();
+    }
+
+    /**
+     * @return the number of pending items, duplicates included
+     */
+    public int size() {
+        return size.get();
+    }
+
+    public void clear() {
+        batches.clear();
+        size.set(0);
+    }
+}
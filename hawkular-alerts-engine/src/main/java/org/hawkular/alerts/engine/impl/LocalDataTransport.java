@@ -0,0 +1,67 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.hawkular.alerts.engine.impl.PartitionManagerImpl.NotifyData;
+import org.jboss.logging.Logger;
+
+/**
+ * In-JVM {@link DataTransport}, the receiver of the target node is invoked on the sender thread.
+ * Used to test several nodes on the same JVM.
+ */
+public class LocalDataTransport implements DataTransport {
+    private final Logger log = Logger.getLogger(LocalDataTransport.class);
+
+    private final Map<Integer, Consumer<NotifyData>> receivers = new ConcurrentHashMap<>();
+    private final AtomicLong failedSends = new AtomicLong();
+
+    @Override
+    public void register(Integer node, Consumer<NotifyData> receiver) {
+        receivers.put(node, receiver);
+    }
+
+    @Override
+    public void unregister(Integer node) {
+        receivers.remove(node);
+    }
+
+    @Override
+    public void send(Integer toNode, NotifyData notifyData) {
+        Consumer<NotifyData> receiver = receivers.get(toNode);
+        if (receiver == null) {
+            failedSends.incrementAndGet();
+            log.debugf("Node [%s] is not registered, discarding [%s]", toNode, notifyData);
+            return;
+        }
+        receiver.accept(notifyData);
+    }
+
+    @Override
+    public long getFailedSends() {
+        return failedSends.get();
+    }
+
+    @Override
+    public void shutdown() {
+        receivers.clear();
+    }
+}
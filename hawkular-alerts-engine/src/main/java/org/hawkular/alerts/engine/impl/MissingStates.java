@@ -0,0 +1,209 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.util.EngineClock;
+import org.hawkular.alerts.engine.impl.AlertsEngineCache.DataId;
+import org.hawkular.alerts.engine.util.MissingState;
+import org.hawkular.alerts.engine.util.TimingWheel;
+
+/**
+ * MissingStates of the triggers loaded on this node.
+ *
+ * Each MissingState is scheduled on a {@link TimingWheel} with the deadline of its MissingCondition, so the engine only
+ * evaluates the states whose interval may have expired. MissingStates are indexed by dataId, to find the states
+ * touched by the incoming data of a rules cycle, and by trigger, to remove them without a full scan.
+ */
+public class MissingStates {
+
+    private final Set<MissingState> states;
+    private final Set<MissingState> touched;
+    private final TimingWheel<MissingState> wheel;
+    private final Map<DataId, Set<MissingState>> byDataId;
+    private final Map<DataId, Set<MissingState>> byTrigger;
+
+    public MissingStates(long tickMs, int wheelSize) {
+        states = new HashSet<>();
+        touched = new LinkedHashSet<>();
+        wheel = new TimingWheel<>(tickMs, wheelSize, EngineClock.currentTimeMillis());
+        byDataId = new HashMap<>();
+        byTrigger = new HashMap<>();
+    }
+
+    /**
+     * Add a MissingState, replacing a previous one for the same condition, and schedule it on its deadline.
+     *
+     * @param missingState to add
+     */
+    public synchronized void add(MissingState missingState) {
+        remove(missingState);
+        states.add(missingState);
+        touched.add(missingState);
+        index(byDataId, new DataId(missingState.getTenantId(), missingState.getDataId()), missingState);
+        index(byTrigger, new DataId(missingState.getTenantId(), missingState.getTriggerId()), missingState);
+        wheel.schedule(missingState, deadline(missingState));
+    }
+
+    /**
+     * Remove all MissingStates of a trigger.
+     *
+     * @return the removed MissingStates
+     */
+    public synchronized Collection<MissingState> removeTrigger(String tenantId, String triggerId) {
+        Set<MissingState> triggerStates = byTrigger.get(new DataId(tenantId, triggerId));
+        if (triggerStates == null) {
+            return Collections.emptyList();
+        }
+        List<MissingState> removed = new ArrayList<>(triggerStates);
+        removed.forEach(this::remove);
+        return removed;
+    }
+
+    /**
+     * Schedule again a MissingState. It is ignored if the MissingState has been removed.
+     *
+     * @param missingState to schedule
+     * @param deadline time in milliseconds
+     */
+    public synchronized void schedule(MissingState missingState, long deadline) {
+        if (states.contains(missingState)) {
+            wheel.schedule(missingState, deadline);
+        }
+    }
+
+    /**
+     * Expired MissingStates are kept, callers must schedule them again after the evaluation.
+     *
+     * @param now time in milliseconds
+     * @return the MissingStates whose deadline has expired
+     */
+    public synchronized List<MissingState> expire(long now) {
+        return wheel.expire(now);
+    }
+
+    /**
+     * Mark the MissingStates that can be updated by the given data and events, so they are armed again on the next
+     * check. MissingStates not updated by data are only visited on its deadline.
+     *
+     * @param data incoming data of a rules cycle
+     * @param events incoming events of a rules cycle
+     */
+    public synchronized void touch(Collection<Data> data, Collection<Event> events) {
+        if (states.isEmpty()) {
+            return;
+        }
+        if (data != null) {
+            for (Data d : data) {
+                touch(d.getTenantId(), d.getId());
+            }
+        }
+        if (events != null) {
+            for (Event e : events) {
+                touch(e.getTenantId(), e.getDataId());
+            }
+        }
+    }
+
+    /**
+     * Mark a MissingState to be armed again on the next check.
+     *
+     * @param missingState to mark
+     */
+    public synchronized void touch(MissingState missingState) {
+        if (states.contains(missingState)) {
+            touched.add(missingState);
+        }
+    }
+
+    /**
+     * @return the MissingStates touched since the last call
+     */
+    public synchronized List<MissingState> drainTouched() {
+        List<MissingState> drained = new ArrayList<>(touched);
+        touched.clear();
+        return drained;
+    }
+
+    public synchronized boolean isEmpty() {
+        return states.isEmpty();
+    }
+
+    public synchronized int size() {
+        return states.size();
+    }
+
+    public synchronized void clear() {
+        states.clear();
+        touched.clear();
+        wheel.clear();
+        byDataId.clear();
+        byTrigger.clear();
+    }
+
+    /**
+     * A MissingCondition matches when <code>previousTime + interval < time</code>.
+     *
+     * @return the first time in milliseconds the MissingState can match
+     */
+    public static long deadline(MissingState missingState) {
+        return missingState.getPreviousTime() + missingState.getCondition().getInterval() + 1;
+    }
+
+    private void remove(MissingState missingState) {
+        states.remove(missingState);
+        touched.remove(missingState);
+        wheel.cancel(missingState);
+        unindex(byDataId, new DataId(missingState.getTenantId(), missingState.getDataId()), missingState);
+        unindex(byTrigger, new DataId(missingState.getTenantId(), missingState.getTriggerId()), missingState);
+    }
+
+    private void touch(String tenantId, String dataId) {
+        if (tenantId == null || dataId == null) {
+            return;
+        }
+        Set<MissingState> dataIdStates = byDataId.get(new DataId(tenantId, dataId));
+        if (dataIdStates != null) {
+            touched.addAll(dataIdStates);
+        }
+    }
+
+    private static void index(Map<DataId, Set<MissingState>> index, DataId key, MissingState missingState) {
+        index.computeIfAbsent(key, k -> new HashSet<>()).add(missingState);
+    }
+
+    private static void unindex(Map<DataId, Set<MissingState>> index, DataId key, MissingState missingState) {
+        Set<MissingState> indexed = index.get(key);
+        if (indexed != null) {
+            indexed.remove(missingState);
+            if (indexed.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+}
@@ -16,12 +16,17 @@
  */
 package org.hawkular.alerts.engine.impl;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -38,6 +43,7 @@ import org.hawkular.alerts.engine.service.PartitionDataListener;
 import org.hawkular.alerts.engine.service.PartitionManager;
 import org.hawkular.alerts.engine.service.PartitionTriggerListener;
 import org.hawkular.alerts.log.MsgLogger;
+import org.hawkular.alerts.properties.AlertProperties;
 import org.infinispan.Cache;
 import org.infinispan.context.Flag;
 import org.infinispan.manager.EmbeddedCacheManager;
@@ -59,6 +65,13 @@ import com.google.common.hash.Hashing;
  * This implementation uses a consistent hashing strategy {@see https://en.wikipedia.org/wiki/Consistent_hashing}
  * as a method to partition triggers across nodes.
  *
+ * Each node publishes the dataIds of its triggers on the "partition" cache. Data and events received by a node are
+ * sent only to the nodes using their dataIds through a {@link DataTransport}, unless hawkular-alerts.data-routing is
+ * false, in which case they are broadcasted to all nodes with the "data" cache.
+ *
+ * On a partition change, the previous owners of the moved triggers hand off their evaluation state to the new owners
+ * through the "partition" cache.
+ *
  * It needs three caches added into Wildfly/JBoss configuration files.
  *
  * standalone.xml:
@@ -106,6 +119,51 @@ public class PartitionManagerImpl implements PartitionManager {
     public static final String PREVIOUS = "previousPartition";
     public static final String CURRENT = "currentPartition";
     public static final String PARTITION_CHANGE = "partitionChangeFlag";
+    public static final String DATA_IDS = "dataIds-";
+    public static final String COSTS = "costs-";
+    public static final String HANDOFF = "handoff-";
+
+    /*
+        Max time in milliseconds a node waits on a partition change for the previous owners of its new triggers to
+        hand off their evaluation state. <= 0 disables the handoff of the state.
+     */
+    private static final String PARTITION_HANDOFF_TIMEOUT = "hawkular-alerts.partition-handoff-timeout";
+    private static final String PARTITION_HANDOFF_TIMEOUT_ENV = "HAWKULAR_PARTITION_HANDOFF_TIMEOUT";
+    private static final String PARTITION_HANDOFF_TIMEOUT_DEFAULT = "5000";
+
+    /*
+        Time in milliseconds a handed off state is kept on the "partition" cache
+     */
+    private static final long HANDOFF_LIFESPAN = 60000;
+
+    /*
+        Max imbalance allowed between the cost of the triggers of a node and the mean cost per node, as a fraction of
+        the mean. The coordinator rebalances the partition when it is exceeded. <= 0 disables the weighted balance and
+        the partition is based only on consistent hashing.
+     */
+    private static final String PARTITION_BALANCE_TOLERANCE = "hawkular-alerts.partition-balance-tolerance";
+    private static final String PARTITION_BALANCE_TOLERANCE_ENV = "HAWKULAR_PARTITION_BALANCE_TOLERANCE";
+    private static final String PARTITION_BALANCE_TOLERANCE_DEFAULT = "0.2";
+
+    /*
+        Max number of triggers moved by a rebalance caused by a change of the costs, as a fraction of the triggers.
+     */
+    private static final String PARTITION_MAX_MOVES = "hawkular-alerts.partition-max-moves";
+    private static final String PARTITION_MAX_MOVES_ENV = "HAWKULAR_PARTITION_MAX_MOVES";
+    private static final String PARTITION_MAX_MOVES_DEFAULT = "0.05";
+
+    /*
+        Cost of a trigger without an estimation yet
+     */
+    public static final double DEFAULT_COST = 1.0 / 60;
+
+    /*
+        If true data and events are sent only to the nodes holding triggers for their dataIds.
+        If false they are broadcasted to all nodes through the "data" cache.
+     */
+    private static final String DATA_ROUTING = "hawkular-alerts.data-routing";
+    private static final String DATA_ROUTING_ENV = "HAWKULAR_DATA_ROUTING";
+    private static final String DATA_ROUTING_DEFAULT = "true";
 
     private final MsgLogger msgLog = MsgLogger.LOGGER;
     private final Logger log = Logger.getLogger(PartitionManagerImpl.class);
@@ -171,11 +229,60 @@ public class PartitionManagerImpl implements PartitionManager {
     private NewTriggerListener newTriggerListener = new NewTriggerListener();
     private NewDataListener newDataListener = new NewDataListener();
 
+    private boolean dataRouting = Boolean.parseBoolean(AlertProperties.getProperty(DATA_ROUTING, DATA_ROUTING_ENV,
+            DATA_ROUTING_DEFAULT));
+
+    /**
+     * Nodes using each dataId, published by each node on the "partition" cache under DATA_IDS + node.
+     */
+    private final DataRouter dataRouter = new DataRouter();
+
+    /**
+     * Direct channel used to send data and events to the nodes using them.
+     */
+    private DataTransport dataTransport;
+
+    private double balanceTolerance = Double.parseDouble(AlertProperties.getProperty(PARTITION_BALANCE_TOLERANCE,
+            PARTITION_BALANCE_TOLERANCE_ENV, PARTITION_BALANCE_TOLERANCE_DEFAULT));
+
+    private double maxMoves = Double.parseDouble(AlertProperties.getProperty(PARTITION_MAX_MOVES,
+            PARTITION_MAX_MOVES_ENV, PARTITION_MAX_MOVES_DEFAULT));
+
+    /**
+     * Estimated cost of the triggers, published by each node on the "partition" cache under COSTS + node.
+     * Only used by the coordinator.
+     */
+    private final Map<Integer, Map<String, Map<String, Double>>> nodeCosts = new HashMap<>();
+
+    private long handoffTimeout = Long.parseLong(AlertProperties.getProperty(PARTITION_HANDOFF_TIMEOUT,
+            PARTITION_HANDOFF_TIMEOUT_ENV, PARTITION_HANDOFF_TIMEOUT_DEFAULT));
+
+    /**
+     * Hash of the partition of the last partition change, used to match the states handed off for that change.
+     */
+    private volatile int handoffPartition;
+
+    /**
+     * Notified when a node publishes a handoff on the "partition" cache under HANDOFF + node.
+     */
+    private final Object handoffs = new Object();
 
     public void setDefinitionsService(DefinitionsService definitionsService) {
         this.definitionsService = definitionsService;
     }
 
+    public void setDataTransport(DataTransport dataTransport) {
+        this.dataTransport = dataTransport;
+    }
+
+    public void setDataRouting(boolean dataRouting) {
+        this.dataRouting = dataRouting;
+    }
+
+    public DataRouter getDataRouter() {
+        return dataRouter;
+    }
+
     @Override
     public boolean isDistributed() {
         return distributed;
@@ -190,6 +297,9 @@ public class PartitionManagerImpl implements PartitionManager {
             status.put("members", cacheManager.getMembers().stream()
                     .map(Object::toString)
                     .collect(Collectors.joining(", ")));
+            if (dataRouting && dataTransport != null) {
+                status.put("dataRoutingFailedSends", String.valueOf(dataTransport.getFailedSends()));
+            }
         }
         return status;
     }
@@ -208,6 +318,16 @@ public class PartitionManagerImpl implements PartitionManager {
             partitionCache.addListener(partitionChangeListener);
             triggersCache.addListener(newTriggerListener);
             dataCache.addListener(newDataListener);
+            status.put("dataRouting", dataRouting ? "point-to-point" : "broadcast");
+            if (dataRouting) {
+                if (dataTransport == null) {
+                    dataTransport = new InfinispanDataTransport(dataCache);
+                }
+                dataTransport.register(currentNode, newDataListener::processNotifyData);
+                for (Object key : partitionCache.keySet()) {
+                    updateDataRoutes(key);
+                }
+            }
             /*
                 Initial partition
              */
@@ -225,6 +345,11 @@ public class PartitionManagerImpl implements PartitionManager {
             partitionCache.removeListener(partitionChangeListener);
             triggersCache.removeListener(newTriggerListener);
             dataCache.removeListener(newDataListener);
+            if (dataTransport != null) {
+                dataTransport.unregister(currentNode);
+                dataTransport.shutdown();
+                partitionCache.remove(DATA_IDS + currentNode);
+            }
 
             dataCache.stop();
             triggersCache.stop();
@@ -237,7 +362,14 @@ public class PartitionManagerImpl implements PartitionManager {
     public void notifyTrigger(Operation operation, String tenantId, String triggerId) {
         if (distributed) {
             PartitionEntry newEntry = new PartitionEntry(tenantId, triggerId);
-            int toNode = calculateNewEntry(newEntry, (Map<Integer, Integer>)partitionCache.get(BUCKETS));
+            /*
+                A trigger already placed stays on its node, it may have been moved by a weighted balance
+             */
+            Map<PartitionEntry, Integer> current = (Map<PartitionEntry, Integer>) partitionCache.get(CURRENT);
+            Integer toNode = current != null ? current.get(newEntry) : null;
+            if (toNode == null) {
+                toNode = calculateNewEntry(newEntry, (Map<Integer, Integer>) partitionCache.get(BUCKETS));
+            }
             NotifyTrigger nTrigger = new NotifyTrigger(currentNode, toNode, operation, tenantId, triggerId);
             Integer key = nTrigger.hashCode();
             triggersCache.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES)
@@ -252,23 +384,138 @@ public class PartitionManagerImpl implements PartitionManager {
 
     @Override
     public void notifyData(Collection<Data> data) {
-        if (distributed) {
-            NotifyData nData = new NotifyData(currentNode, data, Data.class);
-            Integer key = nData.hashCode();
-            log.debugf("Sending data [%s]", nData);
-            dataCache.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES)
-                    .putAsync(key, nData, LIFESPAN, TimeUnit.MILLISECONDS);
+        if (distributed && dataRouting) {
+            List<Data> unrouted = new ArrayList<>();
+            dataRouter.route(data, Data::getTenantId, Data::getId, currentNode, unrouted).forEach((node, nodeData) ->
+                    dataTransport.send(node, new NotifyData(currentNode, nodeData, Data.class)));
+            if (!unrouted.isEmpty()) {
+                broadcast(new NotifyData(currentNode, unrouted, Data.class));
+            }
+        } else if (distributed) {
+            broadcast(new NotifyData(currentNode, data, Data.class));
         }
     }
 
     @Override
     public void notifyEvents(Collection<Event> events) {
-        if (distributed) {
-            NotifyData nEvent = new NotifyData(currentNode, events, Event.class);
-            Integer key = nEvent.hashCode();
-            log.debugf("Sending events [%s]", nEvent);
-            dataCache.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES)
-                    .putAsync(key, nEvent, LIFESPAN, TimeUnit.MILLISECONDS);
+        if (distributed && dataRouting) {
+            List<Event> unrouted = new ArrayList<>();
+            dataRouter.route(events, Event::getTenantId, Event::getDataId, currentNode, unrouted)
+                    .forEach((node, nodeEvents) ->
+                            dataTransport.send(node, new NotifyData(currentNode, nodeEvents, Event.class)));
+            if (!unrouted.isEmpty()) {
+                broadcast(new NotifyData(currentNode, unrouted, Event.class));
+            }
+        } else if (distributed) {
+            broadcast(new NotifyData(currentNode, events, Event.class));
+        }
+    }
+
+    /*
+        Send data or events to all nodes through the "data" cache. With data routing it is used for the dataIds with
+        no known route, i.e. of a trigger whose node has not published its dataIds yet.
+     */
+    private void broadcast(NotifyData notifyData) {
+        Integer key = notifyData.hashCode();
+        log.debugf("Sending [%s]", notifyData);
+        dataCache.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES)
+                .putAsync(key, notifyData, LIFESPAN, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void notifyDataIds(Map<String, Set<String>> dataIds) {
+        if (distributed && dataRouting) {
+            dataRouter.updateNode(currentNode, dataIds);
+            partitionCache.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES)
+                    .putAsync(DATA_IDS + currentNode, new HashMap<>(dataIds));
+        }
+    }
+
+    @Override
+    public void notifyTriggerCosts(Map<String, Map<String, Double>> costs) {
+        if (distributed && balanceTolerance > 0) {
+            partitionCache.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES)
+                    .putAsync(COSTS + currentNode, new HashMap<>(costs));
+        }
+    }
+
+    @Override
+    public void notifyTriggerStates(Map<String, Map<String, byte[]>> states) {
+        if (distributed && handoffTimeout > 0) {
+            partitionCache.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES).put(HANDOFF + currentNode,
+                    new HandoffStates(handoffPartition, states), HANDOFF_LIFESPAN, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /*
+        The previous owners of the added triggers publish their handoff while processing the same partition change.
+        Nodes that left the cluster are not expected, the state of their triggers is lost.
+     */
+    @Override
+    public Map<String, Map<String, byte[]>> getTriggerStates(Map<String, List<String>> added) {
+        Map<String, Map<String, byte[]>> states = new HashMap<>();
+        if (!distributed || handoffTimeout <= 0 || added.isEmpty()) {
+            return states;
+        }
+        Map<PartitionEntry, Integer> previous = (Map<PartitionEntry, Integer>) partitionCache.get(PREVIOUS);
+        Map<Integer, Integer> buckets = (Map<Integer, Integer>) partitionCache.get(BUCKETS);
+        if (previous == null || buckets == null) {
+            return states;
+        }
+        Set<Integer> pending = new HashSet<>();
+        for (Entry<String, List<String>> tenant : added.entrySet()) {
+            for (String triggerId : tenant.getValue()) {
+                Integer owner = previous.get(new PartitionEntry(tenant.getKey(), triggerId));
+                if (owner != null && !owner.equals(currentNode) && buckets.containsValue(owner)) {
+                    pending.add(owner);
+                }
+            }
+        }
+        long deadline = System.currentTimeMillis() + handoffTimeout;
+        synchronized (handoffs) {
+            while (!pending.isEmpty()) {
+                for (Iterator<Integer> i = pending.iterator(); i.hasNext();) {
+                    HandoffStates handoff = (HandoffStates) partitionCache.get(HANDOFF + i.next());
+                    if (handoff != null && handoff.getPartition() == handoffPartition) {
+                        for (Entry<String, List<String>> tenant : added.entrySet()) {
+                            Map<String, byte[]> tenantStates = handoff.getStates().get(tenant.getKey());
+                            if (tenantStates == null) {
+                                continue;
+                            }
+                            for (String triggerId : tenant.getValue()) {
+                                byte[] state = tenantStates.get(triggerId);
+                                if (state != null) {
+                                    states.computeIfAbsent(tenant.getKey(), t -> new HashMap<>()).put(triggerId,
+                                            state);
+                                }
+                            }
+                        }
+                        i.remove();
+                    }
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (pending.isEmpty() || remaining <= 0) {
+                    break;
+                }
+                try {
+                    handoffs.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        if (!pending.isEmpty()) {
+            log.warnf("Handoff of trigger states not received from nodes %s in [%s] ms", pending, handoffTimeout);
+        }
+        return states;
+    }
+
+    private void updateHandoffs(Object key) {
+        if (key instanceof String && ((String) key).startsWith(HANDOFF)) {
+            synchronized (handoffs) {
+                handoffs.notifyAll();
+            }
         }
     }
 
@@ -277,6 +524,71 @@ public class PartitionManagerImpl implements PartitionManager {
         dataListeners.add(dataListener);
     }
 
+    /*
+        The coordinator keeps the costs published by the nodes and rebalances the partition if the cost per node
+        exceeds the tolerance. The number of triggers moved on each rebalance is bounded.
+     */
+    private void updateCosts(Object key) {
+        if (!(key instanceof String) || !((String) key).startsWith(COSTS) || !cacheManager.isCoordinator()) {
+            return;
+        }
+        Integer node = Integer.valueOf(((String) key).substring(COSTS.length()));
+        synchronized (nodeCosts) {
+            nodeCosts.put(node, (Map<String, Map<String, Double>>) partitionCache.get(key));
+            Map<PartitionEntry, Integer> current = (Map<PartitionEntry, Integer>) partitionCache.get(CURRENT);
+            Map<Integer, Integer> buckets = (Map<Integer, Integer>) partitionCache.get(BUCKETS);
+            if (current == null || buckets == null) {
+                return;
+            }
+            List<Integer> members = new ArrayList<>(buckets.values());
+            Map<PartitionEntry, Double> costs = getTriggerCosts();
+            double imbalance = imbalance(current, costs, members);
+            status.put("partitionImbalance", String.format("%.3f", imbalance));
+            if (imbalance <= balanceTolerance) {
+                return;
+            }
+            Map<PartitionEntry, Integer> newPartition = balancePartition(current, costs, members, balanceTolerance,
+                    (int) Math.ceil(current.size() * maxMoves));
+            log.debugf("Rebalancing partition with imbalance %s, new imbalance %s", imbalance,
+                    imbalance(newPartition, costs, members));
+            partitionCache.startBatch();
+            partitionCache.put(PREVIOUS, current);
+            partitionCache.put(CURRENT, newPartition);
+            partitionCache.endBatch(true);
+            partitionCache.put(PARTITION_CHANGE, new Date(), LIFESPAN, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private Map<PartitionEntry, Double> getTriggerCosts() {
+        Map<PartitionEntry, Double> costs = new HashMap<>();
+        synchronized (nodeCosts) {
+            for (Map<String, Map<String, Double>> node : nodeCosts.values()) {
+                if (node == null) {
+                    continue;
+                }
+                for (Entry<String, Map<String, Double>> tenant : node.entrySet()) {
+                    for (Entry<String, Double> trigger : tenant.getValue().entrySet()) {
+                        costs.put(new PartitionEntry(tenant.getKey(), trigger.getKey()), trigger.getValue());
+                    }
+                }
+            }
+        }
+        return costs;
+    }
+
+    /*
+        Update the routes of a node from its DATA_IDS entry on the "partition" cache
+     */
+    private void updateDataRoutes(Object key) {
+        if (!(key instanceof String) || !((String) key).startsWith(DATA_IDS)) {
+            return;
+        }
+        Integer node = Integer.valueOf(((String) key).substring(DATA_IDS.length()));
+        if (!node.equals(currentNode)) {
+            dataRouter.updateNode(node, (Map<String, Set<String>>) partitionCache.get(key));
+        }
+    }
+
     /*
         Calculate a new partition based on the current topology.
         It should be invoked as a result of a topology event and it is executed by the coordinator node.
@@ -325,6 +637,15 @@ public class PartitionManagerImpl implements PartitionManager {
             }
 
             newPartition = calculatePartition(entries, newBuckets);
+            if (balanceTolerance > 0) {
+                /*
+                    Consistent hashing bounds the triggers moved by the topology change and keeps the number of
+                    triggers per node even, the balance only moves the triggers needed to even the cost per node
+                 */
+                nodeCosts.keySet().retainAll(members);
+                newPartition = balancePartition(newPartition, getTriggerCosts(), members, balanceTolerance,
+                        newPartition.size());
+            }
             if (log.isDebugEnabled()) {
                 log.debug("Old partition: " + oldPartition);
                 log.debug("New partition: " + newPartition);
@@ -437,6 +758,128 @@ public class PartitionManagerImpl implements PartitionManager {
         return buckets.get(Hashing.consistentHash(md5.hashInt(newEntry.hashCode()), numBuckets));
     }
 
+    /**
+     * Move entries from the nodes with more cost to the nodes with less cost until the cost of every node is within
+     * the tolerance of the mean cost per node, or the max number of moves is reached.
+     *
+     * On each step an entry of the most loaded node is moved to the least loaded node, choosing the entry with the
+     * cost closest to the half of the difference between both nodes, so the difference is reduced on each move.
+     *
+     * @param partition the partition to balance, entries placed on nodes not present on nodes are ignored
+     * @param costs estimated cost of the entries, {@link #DEFAULT_COST} for entries without an estimation
+     * @param nodes the nodes of the cluster
+     * @param tolerance max imbalance allowed, as a fraction of the mean cost per node
+     * @param maxMoves max number of entries moved
+     * @return a new balanced partition
+     */
+    public Map<PartitionEntry, Integer> balancePartition(Map<PartitionEntry, Integer> partition,
+            Map<PartitionEntry, Double> costs, List<Integer> nodes, double tolerance, int maxMoves) {
+        if (partition == null) {
+            throw new IllegalArgumentException("partition must be not null");
+        }
+        if (nodes == null || nodes.isEmpty()) {
+            throw new IllegalArgumentException("nodes must be not null");
+        }
+        Map<PartitionEntry, Integer> newPartition = new HashMap<>(partition);
+        Map<Integer, List<CostEntry>> nodeEntries = new HashMap<>();
+        Map<Integer, Double> loads = new HashMap<>();
+        for (Integer node : nodes) {
+            nodeEntries.put(node, new ArrayList<>());
+            loads.put(node, 0.0);
+        }
+        double total = 0;
+        for (Entry<PartitionEntry, Integer> entry : partition.entrySet()) {
+            List<CostEntry> entries = nodeEntries.get(entry.getValue());
+            if (entries == null) {
+                continue;
+            }
+            double cost = costs.getOrDefault(entry.getKey(), DEFAULT_COST);
+            entries.add(new CostEntry(entry.getKey(), cost));
+            loads.merge(entry.getValue(), cost, Double::sum);
+            total += cost;
+        }
+        for (List<CostEntry> entries : nodeEntries.values()) {
+            entries.sort(null);
+        }
+        double limit = (total / nodes.size()) * (1 + tolerance);
+        for (int moves = 0; moves < maxMoves; moves++) {
+            Integer maxNode = nodes.get(0);
+            Integer minNode = nodes.get(0);
+            for (Integer node : nodes) {
+                if (loads.get(node) > loads.get(maxNode)) {
+                    maxNode = node;
+                }
+                if (loads.get(node) < loads.get(minNode)) {
+                    minNode = node;
+                }
+            }
+            double gap = loads.get(maxNode) - loads.get(minNode);
+            if (loads.get(maxNode) <= limit) {
+                break;
+            }
+            List<CostEntry> candidates = nodeEntries.get(maxNode);
+            int index = closest(candidates, gap / 2);
+            if (index < 0 || candidates.get(index).cost >= gap) {
+                break;
+            }
+            CostEntry moved = candidates.remove(index);
+            List<CostEntry> target = nodeEntries.get(minNode);
+            int position = Collections.binarySearch(target, moved);
+            target.add(position < 0 ? -position - 1 : position, moved);
+            loads.merge(maxNode, -moved.cost, Double::sum);
+            loads.merge(minNode, moved.cost, Double::sum);
+            newPartition.put(moved.entry, minNode);
+        }
+        return newPartition;
+    }
+
+    /**
+     * @param partition a partition of entries across nodes
+     * @param costs estimated cost of the entries, {@link #DEFAULT_COST} for entries without an estimation
+     * @param nodes the nodes of the cluster
+     * @return max cost of a node divided by the mean cost per node, minus 1. 0 is a perfect balance.
+     */
+    public static double imbalance(Map<PartitionEntry, Integer> partition, Map<PartitionEntry, Double> costs,
+            List<Integer> nodes) {
+        Map<Integer, Double> loads = new HashMap<>();
+        double total = 0;
+        for (Entry<PartitionEntry, Integer> entry : partition.entrySet()) {
+            if (nodes.contains(entry.getValue())) {
+                double cost = costs.getOrDefault(entry.getKey(), DEFAULT_COST);
+                loads.merge(entry.getValue(), cost, Double::sum);
+                total += cost;
+            }
+        }
+        if (total == 0) {
+            return 0;
+        }
+        double max = loads.values().stream().mapToDouble(Double::doubleValue).max().orElse(0);
+        return max / (total / nodes.size()) - 1;
+    }
+
+    /*
+        Index of the entry with the cost closest to the given cost, entries are sorted by cost
+     */
+    private static int closest(List<CostEntry> entries, double cost) {
+        if (entries.isEmpty()) {
+            return -1;
+        }
+        int low = 0;
+        int high = entries.size() - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (entries.get(mid).cost < cost) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if (low > 0 && Math.abs(entries.get(low - 1).cost - cost) <= Math.abs(entries.get(low).cost - cost)) {
+            return low - 1;
+        }
+        return low;
+    }
+
     /**
      * Return the entries assigned for a node into a partition.
      * The returned entries are represented by a Map<String, List<String>> where:
@@ -521,6 +964,7 @@ public class PartitionManagerImpl implements PartitionManager {
             Map<PartitionEntry, Integer> current = (Map<PartitionEntry, Integer>) partitionCache.get(CURRENT);
             Map<PartitionEntry, Integer> previous = (Map<PartitionEntry, Integer>) partitionCache.get(PREVIOUS);
 
+            handoffPartition = current == null ? 0 : current.hashCode();
             Map<String, List<String>> partition = getNodePartition(current, currentNode);
             Map<String, Map<String, List<String>>> addedRemoved =
                     getAddedRemovedPartition(previous, current, currentNode);
@@ -549,6 +993,14 @@ public class PartitionManagerImpl implements PartitionManager {
                 When a node is joining/leaving the cluster partition needs to be re-calculated and updated
              */
             processTopologyChange();
+            /*
+                Data is no longer routed to the nodes that left the cluster
+             */
+            if (dataRouting) {
+                dataRouter.retainNodes(cacheEvent.getNewMembers().stream()
+                        .map(Object::hashCode)
+                        .collect(Collectors.toList()));
+            }
         }
     }
 
@@ -567,6 +1019,34 @@ public class PartitionManagerImpl implements PartitionManager {
              */
             if (cacheEvent.getKey().equals(PARTITION_CHANGE)) {
                 invokePartitionChangeListener();
+            } else {
+                updateHandoffs(cacheEvent.getKey());
+                if (dataRouting) {
+                    updateDataRoutes(cacheEvent.getKey());
+                }
+                if (balanceTolerance > 0) {
+                    updateCosts(cacheEvent.getKey());
+                }
+            }
+        }
+
+        @CacheEntryModified
+        public void onDataIdsModified(CacheEntryModifiedEvent cacheEvent) {
+            if (cacheEvent.isPre()) {
+                if (log.isTraceEnabled()) {
+                    log.trace("Discarding pre onDataIdsModified(@CacheEntryModified) event");
+                }
+                return;
+            }
+            /*
+                A node has published the dataIds, the costs or the handoff of its triggers
+             */
+            updateHandoffs(cacheEvent.getKey());
+            if (dataRouting) {
+                updateDataRoutes(cacheEvent.getKey());
+            }
+            if (balanceTolerance > 0) {
+                updateCosts(cacheEvent.getKey());
             }
         }
     }
@@ -837,8 +1317,17 @@ public class PartitionManagerImpl implements PartitionManager {
     /**
      * Auxiliary class to store in the cache an operation for a Data/Event
      * Used internally in the context of the PartitionManager services.
+     * Data and events are serialized with the {@link DataCodec} instead of the default Java serialization.
      */
     public static class NotifyData implements Serializable {
+        private static final DataCodec CODEC = new DataCodec();
+
+        private static final byte NONE = 0;
+        private static final byte DATA = 1;
+        private static final byte EVENT = 2;
+        private static final byte DATA_COLLECTION = 3;
+        private static final byte EVENT_COLLECTION = 4;
+
         private Integer fromNode = null;
         private Data data = null;
         private Event event = null;
@@ -931,6 +1420,55 @@ public class PartitionManagerImpl implements PartitionManager {
             return result;
         }
 
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            out.writeObject(fromNode);
+            byte[] bytes = null;
+            if (data != null) {
+                out.writeByte(DATA);
+                bytes = CODEC.encodeData(Collections.singletonList(data));
+            } else if (event != null) {
+                out.writeByte(EVENT);
+                bytes = CODEC.encodeEvents(Collections.singletonList(event));
+            } else if (dataCollection != null) {
+                out.writeByte(DATA_COLLECTION);
+                bytes = CODEC.encodeData(dataCollection);
+            } else if (eventCollection != null) {
+                out.writeByte(EVENT_COLLECTION);
+                bytes = CODEC.encodeEvents(eventCollection);
+            } else {
+                out.writeByte(NONE);
+                return;
+            }
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+            fromNode = (Integer) in.readObject();
+            byte type = in.readByte();
+            if (type == NONE) {
+                return;
+            }
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            switch (type) {
+                case DATA:
+                    data = CODEC.decodeData(bytes).get(0);
+                    break;
+                case EVENT:
+                    event = CODEC.decodeEvents(bytes).get(0);
+                    break;
+                case DATA_COLLECTION:
+                    dataCollection = CODEC.decodeData(bytes);
+                    break;
+                case EVENT_COLLECTION:
+                    eventCollection = CODEC.decodeEvents(bytes);
+                    break;
+                default:
+                    throw new IOException("Unknown NotifyData type [" + type + "]");
+            }
+        }
+
         @Override
         public String toString() {
             return "NotifyData" + '[' +
@@ -999,4 +1537,51 @@ public class PartitionManagerImpl implements PartitionManager {
                     ']';
         }
     }
+
+    /**
+     * Auxiliary class to store in the cache the evaluation state of the triggers handed off by a node.
+     */
+    public static class HandoffStates implements Serializable {
+        private final int partition;
+        private final HashMap<String, Map<String, byte[]>> states;
+
+        public HandoffStates(int partition, Map<String, Map<String, byte[]>> states) {
+            this.partition = partition;
+            this.states = new HashMap<>(states);
+        }
+
+        public int getPartition() {
+            return partition;
+        }
+
+        public Map<String, Map<String, byte[]>> getStates() {
+            return states;
+        }
+
+        @Override
+        public String toString() {
+            return "HandoffStates" + '[' +
+                    "partition=" + partition +
+                    ", tenants=" + states.keySet() +
+                    ']';
+        }
+    }
+
+    /*
+        Entry with its estimated cost, used to balance a partition
+     */
+    private static class CostEntry implements Comparable<CostEntry> {
+        private final PartitionEntry entry;
+        private final double cost;
+
+        CostEntry(PartitionEntry entry, double cost) {
+            this.entry = entry;
+            this.cost = cost;
+        }
+
+        @Override
+        public int compareTo(CostEntry o) {
+            return Double.compare(cost, o.cost);
+        }
+    }
 }
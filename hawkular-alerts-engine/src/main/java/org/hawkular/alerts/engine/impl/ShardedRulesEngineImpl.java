@@ -0,0 +1,590 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+
+import org.hawkular.alerts.api.model.condition.CompareCondition;
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.condition.ConditionEval;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.engine.impl.AlertsEngineCache.DataId;
+import org.hawkular.alerts.engine.service.RulesEngine;
+import org.hawkular.alerts.engine.util.CompareData;
+import org.hawkular.alerts.engine.util.MissingState;
+import org.hawkular.alerts.engine.util.NelsonData;
+import org.hawkular.alerts.engine.util.RateData;
+import org.jboss.logging.Logger;
+
+/**
+ * An implementation of RulesEngine that partitions the working memory in several independent
+ * {@link DroolsRulesEngineImpl} sessions (shards) that are fired in parallel.
+ *
+ * Trigger related facts (Trigger, Condition, Dampening, MissingState, ConditionEval) are assigned to a shard by a hash
+ * of (tenantId, triggerId), so all facts needed to evaluate a trigger live in the same session.
+ * Data and Events are routed only to the shards owning a condition on their dataId.
+ *
+ * List globals (i.e. alerts, events) are buffered per shard and merged into the provided global after each firing,
+ * generated Events are also routed to the rest of shards to keep chained triggers working across shards.
+ * Set and Map globals (i.e. pendingTimeouts, autoResolvedTriggers, disabledTriggers) are shared between shards through
+ * a synchronized view, as rules both add and remove entries on them.
+ *
+ * As the base implementation, this is invoked only by the AlertsEngine and is not invoked concurrently.
+ */
+public class ShardedRulesEngineImpl implements RulesEngine {
+    private final Logger log = Logger.getLogger(ShardedRulesEngineImpl.class);
+
+    private final int numShards;
+    private final List<DroolsRulesEngineImpl> shards;
+    private final ExecutorService shardExecutor;
+
+    /*
+        dataId -> number of conditions per shard using that dataId
+     */
+    private final Map<DataId, int[]> dataIdShards;
+
+    /*
+        name -> global provided by the caller, and name -> global buffer per shard for List globals
+     */
+    private final Map<String, List> listGlobals;
+    private final Map<String, List<List>> shardListGlobals;
+
+    public ShardedRulesEngineImpl(int numShards) {
+        if (numShards < 1) {
+            throw new IllegalArgumentException("numShards must be greater than 0");
+        }
+        log.debugf("Creating instance with [%s] shards.", numShards);
+        this.numShards = numShards;
+        shards = new ArrayList<>(numShards);
+        for (int i = 0; i < numShards; i++) {
+            shards.add(new DroolsRulesEngineImpl());
+        }
+        shardExecutor = Executors.newFixedThreadPool(numShards, new ShardThreadFactory());
+        dataIdShards = new HashMap<>();
+        listGlobals = new HashMap<>();
+        shardListGlobals = new HashMap<>();
+    }
+
+    public int getNumShards() {
+        return numShards;
+    }
+
+    public void setIngestionBackpressure(IngestionBackpressure backpressure) {
+        for (DroolsRulesEngineImpl shard : shards) {
+            shard.setIngestionBackpressure(backpressure);
+        }
+    }
+
+    public void setMetrics(EngineMetrics metrics) {
+        for (DroolsRulesEngineImpl shard : shards) {
+            shard.setMetrics(metrics);
+        }
+    }
+
+    @Override
+    public void addGlobal(String name, Object global) {
+        if (global instanceof List) {
+            List<List> buffers = new ArrayList<>(numShards);
+            for (int i = 0; i < numShards; i++) {
+                List buffer = new ArrayList();
+                buffers.add(buffer);
+                shards.get(i).addGlobal(name, buffer);
+            }
+            listGlobals.put(name, (List) global);
+            shardListGlobals.put(name, buffers);
+            return;
+        }
+        Object shared = global;
+        if (global instanceof Set) {
+            shared = Collections.synchronizedSet((Set) global);
+        } else if (global instanceof Map) {
+            shared = Collections.synchronizedMap((Map) global);
+        }
+        for (DroolsRulesEngineImpl shard : shards) {
+            shard.addGlobal(name, shared);
+        }
+    }
+
+    @Override
+    public void removeGlobal(String name) {
+        listGlobals.remove(name);
+        shardListGlobals.remove(name);
+        for (DroolsRulesEngineImpl shard : shards) {
+            shard.removeGlobal(name);
+        }
+    }
+
+    @Override
+    public void addFact(Object fact) {
+        if (fact instanceof Data || fact instanceof Event) {
+            throw new IllegalArgumentException(fact.toString());
+        }
+        int shard = shardOf(fact);
+        if (shard < 0) {
+            for (DroolsRulesEngineImpl s : shards) {
+                s.addFact(shardCopy(fact));
+            }
+            return;
+        }
+        shards.get(shard).addFact(fact);
+        if (fact instanceof Condition) {
+            indexCondition((Condition) fact, shard, 1);
+        }
+    }
+
+    @Override
+    public void addFacts(Collection facts) {
+        for (Object fact : facts) {
+            if (fact instanceof Data || fact instanceof Event) {
+                throw new IllegalArgumentException(fact.toString());
+            }
+        }
+        List<List<Object>> factsByShard = new ArrayList<>(numShards);
+        for (int i = 0; i < numShards; i++) {
+            factsByShard.add(new ArrayList<>());
+        }
+        for (Object fact : facts) {
+            int shard = shardOf(fact);
+            if (shard < 0) {
+                factsByShard.forEach(f -> f.add(shardCopy(fact)));
+                continue;
+            }
+            factsByShard.get(shard).add(fact);
+            if (fact instanceof Condition) {
+                indexCondition((Condition) fact, shard, 1);
+            }
+        }
+        for (int i = 0; i < numShards; i++) {
+            if (!factsByShard.get(i).isEmpty()) {
+                shards.get(i).addFacts(factsByShard.get(i));
+            }
+        }
+    }
+
+    @Override
+    public Object getFact(Object fact) {
+        int shard = shardOf(fact);
+        if (shard >= 0) {
+            return shards.get(shard).getFact(fact);
+        }
+        for (DroolsRulesEngineImpl s : shards) {
+            Object result = s.getFact(fact);
+            if (result != null) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Collection<Object> getFacts(Predicate<Object> factFilter) {
+        List<Object> facts = new ArrayList<>();
+        for (DroolsRulesEngineImpl s : shards) {
+            facts.addAll(s.getFacts(factFilter));
+        }
+        return facts;
+    }
+
+    @Override
+    public void removeFact(Object fact) {
+        int shard = shardOf(fact);
+        if (shard < 0) {
+            for (DroolsRulesEngineImpl s : shards) {
+                s.removeFact(fact);
+            }
+            return;
+        }
+        DroolsRulesEngineImpl s = shards.get(shard);
+        if (fact instanceof Condition && s.getFact(fact) != null) {
+            indexCondition((Condition) fact, shard, -1);
+        }
+        s.removeFact(fact);
+    }
+
+    @Override
+    public void updateFact(Object fact) {
+        int shard = shardOf(fact);
+        if (shard < 0) {
+            for (DroolsRulesEngineImpl s : shards) {
+                s.updateFact(fact);
+            }
+            return;
+        }
+        shards.get(shard).updateFact(fact);
+    }
+
+    @Override
+    public void removeFacts(Collection facts) {
+        for (Object fact : facts) {
+            removeFact(fact);
+        }
+    }
+
+    @Override
+    public void removeFacts(Predicate<Object> factFilter) {
+        for (int i = 0; i < numShards; i++) {
+            final int shard = i;
+            shards.get(i).removeFacts(f -> {
+                boolean remove = factFilter.test(f);
+                if (remove && f instanceof Condition) {
+                    indexCondition((Condition) f, shard, -1);
+                }
+                return remove;
+            });
+        }
+    }
+
+    @Override
+    public Collection<Object> removeTriggerFacts(String tenantId, String triggerId) {
+        int shard = shardOf(tenantId, triggerId);
+        Collection<Object> removed = shards.get(shard).removeTriggerFacts(tenantId, triggerId);
+        unindexConditions(removed, shard);
+        return removed;
+    }
+
+    /*
+        Removals and insertions are grouped by shard and applied on each shard in parallel.
+     */
+    @Override
+    public Collection<Object> updateTriggers(Map<String, ? extends Collection<String>> removed, Collection<?> added) {
+        List<Map<String, List<String>>> removedByShard = new ArrayList<>(numShards);
+        List<List<Object>> addedByShard = new ArrayList<>(numShards);
+        for (int i = 0; i < numShards; i++) {
+            removedByShard.add(new HashMap<>());
+            addedByShard.add(new ArrayList<>());
+        }
+        if (removed != null) {
+            for (Map.Entry<String, ? extends Collection<String>> entry : removed.entrySet()) {
+                String tenantId = entry.getKey();
+                for (String triggerId : entry.getValue()) {
+                    removedByShard.get(shardOf(tenantId, triggerId))
+                            .computeIfAbsent(tenantId, t -> new ArrayList<>())
+                            .add(triggerId);
+                }
+            }
+        }
+        if (added != null) {
+            for (Object fact : added) {
+                if (fact instanceof Data || fact instanceof Event) {
+                    throw new IllegalArgumentException(fact.toString());
+                }
+                int shard = shardOf(fact);
+                if (shard < 0) {
+                    addedByShard.forEach(f -> f.add(shardCopy(fact)));
+                } else {
+                    addedByShard.get(shard).add(fact);
+                }
+            }
+        }
+
+        List<Collection<Object>> removedFacts = invokeShards(i -> {
+            if (removedByShard.get(i).isEmpty() && addedByShard.get(i).isEmpty()) {
+                return Collections.emptyList();
+            }
+            return shards.get(i).updateTriggers(removedByShard.get(i), addedByShard.get(i));
+        });
+
+        List<Object> result = new ArrayList<>();
+        for (int i = 0; i < numShards; i++) {
+            unindexConditions(removedFacts.get(i), i);
+            for (Object fact : addedByShard.get(i)) {
+                if (fact instanceof Condition) {
+                    indexCondition((Condition) fact, i, 1);
+                }
+            }
+            result.addAll(removedFacts.get(i));
+        }
+        return result;
+    }
+
+    @Override
+    public void addData(TreeSet<Data> data) {
+        List<TreeSet<Data>> dataByShard = new ArrayList<>(numShards);
+        for (int i = 0; i < numShards; i++) {
+            dataByShard.add(null);
+        }
+        for (Data d : data) {
+            int[] owners = dataIdShards.get(new DataId(d.getTenantId(), d.getId()));
+            if (owners == null) {
+                log.tracef("Data without conditions, discarded: %s", d);
+                continue;
+            }
+            for (int i = 0; i < numShards; i++) {
+                if (owners[i] > 0) {
+                    if (dataByShard.get(i) == null) {
+                        dataByShard.set(i, new TreeSet<>());
+                    }
+                    dataByShard.get(i).add(d);
+                }
+            }
+        }
+        for (int i = 0; i < numShards; i++) {
+            if (dataByShard.get(i) != null) {
+                shards.get(i).addData(dataByShard.get(i));
+            }
+        }
+    }
+
+    @Override
+    public void addEvents(TreeSet<Event> events) {
+        routeEvents(events, -1);
+    }
+
+    /*
+        Route events to the shards owning conditions on their dataId, skipping the shard where they were generated.
+     */
+    private boolean routeEvents(Collection<Event> events, int originShard) {
+        List<TreeSet<Event>> eventsByShard = new ArrayList<>(numShards);
+        for (int i = 0; i < numShards; i++) {
+            eventsByShard.add(null);
+        }
+        boolean routed = false;
+        for (Event e : events) {
+            int[] owners = dataIdShards.get(new DataId(e.getTenantId(), e.getDataId()));
+            if (owners == null) {
+                log.tracef("Event without conditions, discarded: %s", e);
+                continue;
+            }
+            for (int i = 0; i < numShards; i++) {
+                if (owners[i] > 0 && i != originShard) {
+                    if (eventsByShard.get(i) == null) {
+                        eventsByShard.set(i, new TreeSet<>());
+                    }
+                    eventsByShard.get(i).add(e);
+                }
+            }
+        }
+        for (int i = 0; i < numShards; i++) {
+            if (eventsByShard.get(i) != null) {
+                shards.get(i).addEvents(eventsByShard.get(i));
+                routed = true;
+            }
+        }
+        return routed;
+    }
+
+    @Override
+    public void fire() {
+        fireShards(DroolsRulesEngineImpl::fire);
+        while (mergeListGlobals()) {
+            fireShards(DroolsRulesEngineImpl::fire);
+        }
+    }
+
+    @Override
+    public void fireNoData() {
+        fireShards(DroolsRulesEngineImpl::fireNoData);
+        while (mergeListGlobals()) {
+            fireShards(DroolsRulesEngineImpl::fire);
+        }
+    }
+
+    private void fireShards(Consumer<DroolsRulesEngineImpl> firing) {
+        invokeShards(i -> {
+            firing.accept(shards.get(i));
+            return null;
+        });
+    }
+
+    /*
+        Run a task per shard in parallel, results are returned in shard order.
+     */
+    private <T> List<T> invokeShards(IntFunction<T> task) {
+        List<T> results = new ArrayList<>(numShards);
+        if (numShards == 1) {
+            results.add(task.apply(0));
+            return results;
+        }
+        List<Callable<T>> tasks = new ArrayList<>(numShards);
+        for (int i = 0; i < numShards; i++) {
+            final int shard = i;
+            tasks.add(() -> task.apply(shard));
+        }
+        try {
+            for (Future<T> result : shardExecutor.invokeAll(tasks)) {
+                results.add(result.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted on shards", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error on shards: " + e.getCause().getMessage(), e.getCause());
+        }
+        return results;
+    }
+
+    /*
+        Move the List globals generated by each shard into the globals provided by the caller.
+        Events generated on a shard are routed to the rest of shards for chained triggers.
+
+        Return true if any generated Event was routed to a shard, so a new firing is needed.
+     */
+    private boolean mergeListGlobals() {
+        boolean routed = false;
+        for (Map.Entry<String, List<List>> entry : shardListGlobals.entrySet()) {
+            List global = listGlobals.get(entry.getKey());
+            List<List> buffers = entry.getValue();
+            for (int i = 0; i < numShards; i++) {
+                List buffer = buffers.get(i);
+                if (buffer.isEmpty()) {
+                    continue;
+                }
+                List<Event> generated = new ArrayList<>();
+                for (Object o : buffer) {
+                    if (o instanceof Event) {
+                        generated.add((Event) o);
+                    }
+                }
+                global.addAll(buffer);
+                buffer.clear();
+                if (numShards > 1 && !generated.isEmpty()) {
+                    routed |= routeEvents(generated, i);
+                }
+            }
+        }
+        return routed;
+    }
+
+    @Override
+    public void clear() {
+        for (DroolsRulesEngineImpl shard : shards) {
+            shard.clear();
+        }
+        dataIdShards.clear();
+    }
+
+    @Override
+    public void reset() {
+        for (DroolsRulesEngineImpl shard : shards) {
+            shard.reset();
+        }
+        dataIdShards.clear();
+        listGlobals.clear();
+        shardListGlobals.clear();
+    }
+
+    public void shutdown() {
+        shardExecutor.shutdown();
+    }
+
+    private void unindexConditions(Collection<Object> removed, int shard) {
+        for (Object fact : removed) {
+            if (fact instanceof Condition) {
+                indexCondition((Condition) fact, shard, -1);
+            }
+        }
+    }
+
+    private void indexCondition(Condition c, int shard, int delta) {
+        indexDataId(new DataId(c.getTenantId(), c.getDataId()), shard, delta);
+        if (c instanceof CompareCondition) {
+            indexDataId(new DataId(c.getTenantId(), ((CompareCondition) c).getData2Id()), shard, delta);
+        }
+    }
+
+    private void indexDataId(DataId dataId, int shard, int delta) {
+        int[] owners = dataIdShards.get(dataId);
+        if (owners == null) {
+            if (delta < 0) {
+                return;
+            }
+            owners = new int[numShards];
+            dataIdShards.put(dataId, owners);
+        }
+        owners[shard] = Math.max(0, owners[shard] + delta);
+        for (int count : owners) {
+            if (count > 0) {
+                return;
+            }
+        }
+        dataIdShards.remove(dataId);
+    }
+
+    /**
+     * @param fact a fact of the rules engine
+     * @return the shard owning the fact, or -1 if the fact is not related to a specific trigger
+     */
+    int shardOf(Object fact) {
+        if (fact instanceof Trigger) {
+            return shardOf(((Trigger) fact).getTenantId(), ((Trigger) fact).getId());
+        } else if (fact instanceof Condition) {
+            return shardOf(((Condition) fact).getTenantId(), ((Condition) fact).getTriggerId());
+        } else if (fact instanceof Dampening) {
+            return shardOf(((Dampening) fact).getTenantId(), ((Dampening) fact).getTriggerId());
+        } else if (fact instanceof MissingState) {
+            return shardOf(((MissingState) fact).getTenantId(), ((MissingState) fact).getTriggerId());
+        } else if (fact instanceof ConditionEval) {
+            return shardOf(((ConditionEval) fact).getTenantId(), ((ConditionEval) fact).getTriggerId());
+        } else if (fact instanceof NelsonData) {
+            Condition c = ((NelsonData) fact).getCondition();
+            return shardOf(c.getTenantId(), c.getTriggerId());
+        }
+        return -1;
+    }
+
+    /*
+        CompareData and RateData are modified by the rules, each shard receiving a broadcast value gets its own copy.
+     */
+    private static Object shardCopy(Object fact) {
+        if (fact instanceof CompareData) {
+            return new CompareData(((CompareData) fact).getData());
+        } else if (fact instanceof RateData) {
+            return new RateData(((RateData) fact).getData());
+        }
+        return fact;
+    }
+
+    /**
+     * @param tenantId the tenant of the trigger
+     * @param triggerId the trigger id
+     * @return the shard owning the trigger and all its related facts
+     */
+    public int shardOf(String tenantId, String triggerId) {
+        int hash = 31 * (tenantId == null ? 0 : tenantId.hashCode()) + (triggerId == null ? 0 : triggerId.hashCode());
+        return Math.floorMod(hash, numShards);
+    }
+
+    private static class ShardThreadFactory implements ThreadFactory {
+        private int count = 0;
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "HawkularAlerts-RulesShard-" + (++count));
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -16,9 +16,11 @@
  */
 package org.hawkular.alerts.engine.impl;
 
+import java.util.Collections;
 import java.util.Map;
 
 import org.hawkular.alerts.api.services.StatusService;
+import org.hawkular.alerts.engine.service.AlertsEngine;
 import org.hawkular.alerts.engine.service.PartitionManager;
 
 import com.datastax.driver.core.Session;
@@ -33,16 +35,28 @@ public class StatusServiceImpl implements StatusService {
 
     PartitionManager partitionManager;
 
+    AlertsEngine alertsEngine;
+
     Session session;
 
+    EngineMetrics metrics;
+
     public void setPartitionManager(PartitionManager partitionManager) {
         this.partitionManager = partitionManager;
     }
 
+    public void setAlertsEngine(AlertsEngine alertsEngine) {
+        this.alertsEngine = alertsEngine;
+    }
+
     public void setSession(Session session) {
         this.session = session;
     }
 
+    public void setMetrics(EngineMetrics metrics) {
+        this.metrics = metrics;
+    }
+
     @Override
     public boolean isStarted() {
         return session != null && !session.isClosed();
@@ -57,4 +71,14 @@ public class StatusServiceImpl implements StatusService {
     public Map<String, String> getDistributedStatus() {
         return partitionManager.getStatus();
     }
+
+    @Override
+    public Map<String, String> getEngineStatus() {
+        return alertsEngine.getStatus();
+    }
+
+    @Override
+    public Map<String, String> getMetrics() {
+        return metrics != null ? metrics.getStatus() : Collections.emptyMap();
+    }
 }
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hawkular.alerts.api.model.condition.CompareCondition;
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.engine.impl.AlertsEngineCache.DataId;
+import org.hawkular.alerts.properties.AlertProperties;
+
+/**
+ * Estimate the cost of the triggers loaded on this node, used to balance the partition of triggers across the nodes
+ * of the cluster.
+ *
+ * The cost of a trigger is the sum, for each condition, of the weight of the condition type multiplied by the
+ * observed rate of its dataId (data or events per second). A trigger costs at least as if its dataIds received one
+ * datum per minute. Rates are measured on each window as an exponentially weighted moving average.
+ */
+public class TriggerCostEstimator {
+
+    /*
+        Window in milliseconds to measure the rates of the dataIds and publish the costs of the triggers.
+     */
+    private static final String PARTITION_COST_WINDOW = "hawkular-alerts.partition-cost-window";
+    private static final String PARTITION_COST_WINDOW_ENV = "HAWKULAR_PARTITION_COST_WINDOW";
+    private static final String PARTITION_COST_WINDOW_DEFAULT = "60000";
+
+    private static final double MIN_RATE = 1.0 / 60;
+
+    /*
+        Weight of the last window on the moving average of the rates.
+     */
+    private static final double ALPHA = 0.5;
+
+    private final long window;
+
+    /*
+        tenantId -> dataId -> rate, only for the dataIds used by the loaded triggers
+     */
+    private final Map<String, Map<String, DataRate>> rates = new HashMap<>();
+
+    /*
+        (tenantId, triggerId) -> cost of the conditions of the trigger
+     */
+    private final Map<DataId, List<ConditionCost>> triggers = new HashMap<>();
+
+    private long windowStart;
+
+    public TriggerCostEstimator() {
+        this(Long.parseLong(AlertProperties.getProperty(PARTITION_COST_WINDOW, PARTITION_COST_WINDOW_ENV,
+                PARTITION_COST_WINDOW_DEFAULT)));
+    }
+
+    public TriggerCostEstimator(long window) {
+        this.window = window;
+        this.windowStart = System.currentTimeMillis();
+    }
+
+    /**
+     * Relative cost of evaluating a datum for a condition type.
+     *
+     * @param type the condition type
+     * @return the weight of the condition type
+     */
+    public static double weight(Condition.Type type) {
+        switch (type) {
+            case NELSON:
+                // Nelson rules keep a sample window and evaluate 8 rules per datum
+                return 10;
+            case RATE:
+            case COMPARE:
+            case MISSING:
+                return 2;
+            case EXTERNAL:
+            case EVENT:
+                return 1.5;
+            default:
+                return 1;
+        }
+    }
+
+    public synchronized void addTrigger(Trigger trigger, Collection<Condition> conditions) {
+        removeTrigger(trigger.getTenantId(), trigger.getId());
+        List<ConditionCost> costs = new ArrayList<>(conditions.size());
+        for (Condition c : conditions) {
+            double weight = weight(c.getType());
+            costs.add(new ConditionCost(rate(c.getTenantId(), c.getDataId()), weight));
+            if (c instanceof CompareCondition) {
+                costs.add(new ConditionCost(rate(c.getTenantId(), ((CompareCondition) c).getData2Id()), weight));
+            }
+        }
+        triggers.put(new DataId(trigger.getTenantId(), trigger.getId()), costs);
+    }
+
+    public synchronized void removeTrigger(String tenantId, String triggerId) {
+        List<ConditionCost> costs = triggers.remove(new DataId(tenantId, triggerId));
+        if (costs == null) {
+            return;
+        }
+        for (ConditionCost cost : costs) {
+            if (--cost.rate.refs == 0) {
+                Map<String, DataRate> tenantRates = rates.get(tenantId);
+                tenantRates.remove(cost.rate.dataId);
+                if (tenantRates.isEmpty()) {
+                    rates.remove(tenantId);
+                }
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        rates.clear();
+        triggers.clear();
+    }
+
+    /**
+     * Count the data of a rules cycle.
+     *
+     * @param data the data processed on the cycle
+     * @param events the events processed on the cycle
+     */
+    public synchronized void record(Collection<Data> data, Collection<Event> events) {
+        if (rates.isEmpty()) {
+            return;
+        }
+        for (Data d : data) {
+            count(d.getTenantId(), d.getId());
+        }
+        for (Event e : events) {
+            count(e.getTenantId(), e.getDataId());
+        }
+    }
+
+    /**
+     * Close the current window if it has expired, updating the rates of the dataIds.
+     *
+     * @param now current time in milliseconds
+     * @return true if the window has been closed and there are new costs to publish
+     */
+    public synchronized boolean roll(long now) {
+        long elapsed = now - windowStart;
+        if (elapsed < window) {
+            return false;
+        }
+        double seconds = elapsed / 1000.0;
+        for (Map<String, DataRate> tenantRates : rates.values()) {
+            for (DataRate rate : tenantRates.values()) {
+                rate.perSecond = ALPHA * (rate.count / seconds) + (1 - ALPHA) * rate.perSecond;
+                rate.count = 0;
+            }
+        }
+        windowStart = now;
+        return true;
+    }
+
+    /**
+     * @return tenantId -> triggerId -> estimated cost of the triggers loaded on this node
+     */
+    public synchronized Map<String, Map<String, Double>> getCosts() {
+        Map<String, Map<String, Double>> costs = new HashMap<>();
+        for (Map.Entry<DataId, List<ConditionCost>> trigger : triggers.entrySet()) {
+            double cost = 0;
+            for (ConditionCost c : trigger.getValue()) {
+                cost += c.weight * Math.max(c.rate.perSecond, MIN_RATE);
+            }
+            costs.computeIfAbsent(trigger.getKey().getTenantId(), t -> new HashMap<>())
+                    .put(trigger.getKey().getDataId(), cost);
+        }
+        return costs;
+    }
+
+    private DataRate rate(String tenantId, String dataId) {
+        DataRate rate = rates.computeIfAbsent(tenantId, t -> new HashMap<>())
+                .computeIfAbsent(dataId, DataRate::new);
+        rate.refs++;
+        return rate;
+    }
+
+    private void count(String tenantId, String dataId) {
+        Map<String, DataRate> tenantRates = rates.get(tenantId);
+        DataRate rate = tenantRates == null ? null : tenantRates.get(dataId);
+        if (rate != null) {
+            rate.count++;
+        }
+    }
+
+    private static class DataRate {
+        final String dataId;
+        long count;
+        double perSecond;
+        int refs;
+
+        DataRate(String dataId) {
+            this.dataId = dataId;
+        }
+    }
+
+    private static class ConditionCost {
+        final DataRate rate;
+        final double weight;
+
+        ConditionCost(DataRate rate, double weight) {
+            this.rate = rate;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.engine.impl.AlertsEngineCache.DataId;
+import org.hawkular.alerts.engine.util.MissingState;
+import org.kie.api.event.rule.ObjectDeletedEvent;
+import org.kie.api.event.rule.ObjectInsertedEvent;
+import org.kie.api.event.rule.ObjectUpdatedEvent;
+import org.kie.api.event.rule.RuleRuntimeEventListener;
+import org.kie.api.runtime.rule.FactHandle;
+
+/**
+ * Index of the FactHandles of a rules session by (tenantId, triggerId).
+ *
+ * It listens the insertions and deletions of the session, so it also tracks the facts inserted by the rules.
+ * Indexed facts are the Trigger, its Conditions, Dampenings and MissingStates. This allows to remove a trigger from
+ * the session without filtering all the facts of the working memory.
+ *
+ * RateData and CompareData are keyed by dataId and shared by all the triggers using the same dataId, so they are not
+ * owned by a trigger and are not indexed.
+ *
+ * NelsonData is not indexed either. It holds the learned baseline of a NelsonCondition and it is retracted by the
+ * RetractNelsonData rule once its condition is gone, so a trigger reload inserting an equal condition keeps it.
+ */
+public class TriggerFactIndex implements RuleRuntimeEventListener {
+
+    private final Map<DataId, Set<FactHandle>> handles = new HashMap<>();
+
+    @Override
+    public synchronized void objectInserted(ObjectInsertedEvent event) {
+        DataId key = keyOf(event.getObject());
+        if (key != null) {
+            handles.computeIfAbsent(key, k -> new HashSet<>()).add(event.getFactHandle());
+        }
+    }
+
+    @Override
+    public void objectUpdated(ObjectUpdatedEvent event) {
+        // tenantId and triggerId of a fact are not modified by the rules
+    }
+
+    @Override
+    public synchronized void objectDeleted(ObjectDeletedEvent event) {
+        DataId key = keyOf(event.getOldObject());
+        if (key != null) {
+            Set<FactHandle> triggerHandles = handles.get(key);
+            if (triggerHandles != null) {
+                triggerHandles.remove(event.getFactHandle());
+                if (triggerHandles.isEmpty()) {
+                    handles.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param tenantId the tenant of the trigger
+     * @param triggerId the trigger id
+     * @return a copy of the FactHandles of the trigger
+     */
+    public synchronized Collection<FactHandle> get(String tenantId, String triggerId) {
+        Set<FactHandle> triggerHandles = handles.get(new DataId(tenantId, triggerId));
+        return triggerHandles == null ? Collections.emptyList() : new ArrayList<>(triggerHandles);
+    }
+
+    /**
+     * @return number of triggers with facts in the index
+     */
+    public synchronized int size() {
+        return handles.size();
+    }
+
+    public synchronized void clear() {
+        handles.clear();
+    }
+
+    /**
+     * @param fact a fact of the rules session
+     * @return the (tenantId, triggerId) of the trigger owning the fact, or null if the fact is not owned by a trigger
+     */
+    public static DataId keyOf(Object fact) {
+        if (fact instanceof Trigger) {
+            return new DataId(((Trigger) fact).getTenantId(), ((Trigger) fact).getId());
+        } else if (fact instanceof Condition) {
+            return new DataId(((Condition) fact).getTenantId(), ((Condition) fact).getTriggerId());
+        } else if (fact instanceof Dampening) {
+            return new DataId(((Dampening) fact).getTenantId(), ((Dampening) fact).getTriggerId());
+        } else if (fact instanceof MissingState) {
+            return new DataId(((MissingState) fact).getTenantId(), ((MissingState) fact).getTriggerId());
+        }
+        return null;
+    }
+}
@@ -0,0 +1,653 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hawkular.alerts.api.model.condition.CompareCondition;
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.condition.ConditionEval;
+import org.hawkular.alerts.api.model.condition.NelsonCondition;
+import org.hawkular.alerts.api.model.condition.RateCondition;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.trigger.Mode;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.engine.impl.AlertsEngineCache.DataId;
+import org.hawkular.alerts.engine.util.CompareData;
+import org.hawkular.alerts.engine.util.MissingState;
+import org.hawkular.alerts.engine.util.NelsonData;
+import org.hawkular.alerts.engine.util.RateData;
+import org.hawkular.alerts.properties.AlertProperties;
+import org.jboss.logging.Logger;
+
+/**
+ * Checkpoint of the evaluation state held in the rules engine working memory, keyed by trigger.
+ *
+ * The state of a trigger is the progress of its Dampenings, the last seen time of its MissingStates, the baseline of
+ * its NelsonData and the last values of the dataIds used by its Compare and Rate conditions. None of it is part of the
+ * definitions, so it is lost on a restart or when a trigger moves between partitions.
+ *
+ * The rules thread captures the state periodically. Only the triggers whose state changed since the previous
+ * checkpoint are appended to a local file, one record per trigger, and a trigger without state is appended as an
+ * empty record. The file is compacted on startup and when it holds too many outdated records.
+ *
+ * When a trigger is loaded into a session where it was not present (a full reload after a restart, or a trigger added
+ * to the partition of the node) its last checkpointed state is restored on the new facts, as far as the definitions
+ * are still compatible with it.
+ *
+ * In distributed scenarios the state of the triggers removed from the node on a partition change is exported and
+ * handed off to their new owner, where it takes precedence over its checkpointed state. The handoff does not depend
+ * on the checkpoint file.
+ */
+public class WorkingMemoryCheckpoint {
+    private final Logger log = Logger.getLogger(WorkingMemoryCheckpoint.class);
+
+    /*
+        Local file where the checkpoint is written. An empty value disables the checkpoint.
+     */
+    private static final String CHECKPOINT_FILE = "hawkular-alerts.engine-checkpoint-file";
+    private static final String CHECKPOINT_FILE_ENV = "HAWKULAR_ENGINE_CHECKPOINT_FILE";
+    private static final String CHECKPOINT_FILE_DEFAULT = "";
+
+    /*
+        Period in milliseconds between checkpoints.
+     */
+    private static final String CHECKPOINT_PERIOD = "hawkular-alerts.engine-checkpoint-period";
+    private static final String CHECKPOINT_PERIOD_ENV = "HAWKULAR_ENGINE_CHECKPOINT_PERIOD";
+    private static final String CHECKPOINT_PERIOD_DEFAULT = "60000";
+
+    private static final int MAGIC = 0x48414350;
+    private static final int VERSION = 1;
+
+    /*
+        The file is compacted when it holds more than COMPACT_FACTOR records per trigger, plus COMPACT_MIN_RECORDS.
+     */
+    private static final int COMPACT_FACTOR = 2;
+    private static final int COMPACT_MIN_RECORDS = 1000;
+
+    private File file;
+    private long period;
+
+    /*
+        Last written state of each trigger, as stored in the file.
+     */
+    private final Map<DataId, byte[]> states = new HashMap<>();
+
+    /*
+        Triggers loaded from the file that have not been restored nor captured yet.
+     */
+    private final Set<DataId> unclaimed = new HashSet<>();
+
+    /*
+        CompareData and RateData are shared by the triggers using the same dataId. These are the ones restored or seen
+        on the current session, a shared value is restored only once and never over a live one.
+     */
+    private final Set<List<String>> sessionData = new HashSet<>();
+
+    /*
+        States handed off by the previous owners of the triggers being added to the node, restored only once.
+     */
+    private final Map<DataId, byte[]> handedOff = new HashMap<>();
+
+    private DataOutputStream out;
+    private int records;
+    private long nextCheckpoint;
+
+    private final AtomicLong checkpoints = new AtomicLong(0);
+    private final AtomicLong restoredTriggers = new AtomicLong(0);
+    private volatile int liveTriggers = 0;
+    private volatile int fileRecords = 0;
+    private volatile long lastCheckpointTime = 0;
+    private volatile long lastCheckpointDuration = 0;
+    private volatile int lastWritten = 0;
+    private volatile int lastRemoved = 0;
+
+    public WorkingMemoryCheckpoint() {
+        String fileName = AlertProperties.getProperty(CHECKPOINT_FILE, CHECKPOINT_FILE_ENV, CHECKPOINT_FILE_DEFAULT);
+        file = fileName == null || fileName.trim().isEmpty() ? null : new File(fileName.trim());
+        period = Long.parseLong(AlertProperties.getProperty(CHECKPOINT_PERIOD, CHECKPOINT_PERIOD_ENV,
+                CHECKPOINT_PERIOD_DEFAULT));
+    }
+
+    public WorkingMemoryCheckpoint(File file, long period) {
+        this.file = file;
+        this.period = period;
+    }
+
+    public boolean isEnabled() {
+        return file != null;
+    }
+
+    /**
+     * Load the states of the checkpoint file and compact it.
+     */
+    public synchronized void init() {
+        if (file == null) {
+            return;
+        }
+        load();
+        try {
+            compact();
+        } catch (IOException e) {
+            log.errorf("Checkpoint file [%s] can not be written, checkpoints are disabled: %s", file, e.getMessage());
+        }
+        nextCheckpoint = System.currentTimeMillis() + period;
+        log.infof("Working memory checkpoint on [%s] every [%s] ms, [%s] triggers with state", file, period,
+                states.size());
+    }
+
+    public synchronized void shutdown() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                log.debug(e.getMessage(), e);
+            }
+            out = null;
+        }
+    }
+
+    /**
+     * @param now current time in milliseconds
+     * @return true if a checkpoint should be taken
+     */
+    public boolean isDue(long now) {
+        return out != null && now >= nextCheckpoint;
+    }
+
+    /**
+     * @param fact a fact of the rules engine
+     * @return true if the fact is needed to capture the state of a trigger
+     */
+    public static boolean isStateFact(Object fact) {
+        return fact instanceof Dampening || fact instanceof MissingState || fact instanceof NelsonData
+                || fact instanceof CompareData || fact instanceof RateData
+                || fact instanceof CompareCondition || fact instanceof RateCondition;
+    }
+
+    /**
+     * Capture the state of the triggers and write the triggers whose state changed since the previous checkpoint.
+     * It must be invoked from the rules thread, between rules cycles.
+     *
+     * @param facts state facts of the rules engine, as defined by {@link #isStateFact(Object)}
+     */
+    public synchronized void checkpoint(Collection<Object> facts) {
+        if (out == null) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        nextCheckpoint = start + period;
+        Map<DataId, TriggerState> captured = capture(facts, true);
+        int written = 0;
+        int removed = 0;
+        try {
+            for (Entry<DataId, TriggerState> entry : captured.entrySet()) {
+                DataId key = entry.getKey();
+                byte[] bytes = serialize(entry.getValue());
+                unclaimed.remove(key);
+                if (!Arrays.equals(bytes, states.get(key))) {
+                    append(key, bytes);
+                    states.put(key, bytes);
+                    written++;
+                }
+            }
+            for (Iterator<DataId> i = states.keySet().iterator(); i.hasNext();) {
+                DataId key = i.next();
+                if (!captured.containsKey(key) && !unclaimed.contains(key)) {
+                    append(key, null);
+                    i.remove();
+                    removed++;
+                }
+            }
+            out.flush();
+            if (records > COMPACT_FACTOR * states.size() + COMPACT_MIN_RECORDS) {
+                compact();
+            }
+        } catch (IOException e) {
+            log.errorf("Error writing checkpoint file [%s]: %s", file, e.getMessage());
+        }
+        checkpoints.incrementAndGet();
+        liveTriggers = states.size();
+        fileRecords = records;
+        lastWritten = written;
+        lastRemoved = removed;
+        lastCheckpointTime = start;
+        lastCheckpointDuration = System.currentTimeMillis() - start;
+        log.debugf("Checkpoint of [%s] triggers, [%s] written, [%s] removed in [%s] ms", captured.size(), written,
+                removed, lastCheckpointDuration);
+    }
+
+    /**
+     * Capture the state of the triggers removed from the session, to be handed off to their new owner.
+     *
+     * @param facts the facts removed from the rules engine
+     * @return (tenantId, triggerId) -> serialized state of the removed triggers with state
+     */
+    public synchronized Map<DataId, byte[]> export(Collection<Object> facts) {
+        Map<DataId, byte[]> exported = new HashMap<>();
+        for (Entry<DataId, TriggerState> entry : capture(facts, false).entrySet()) {
+            try {
+                exported.put(entry.getKey(), serialize(entry.getValue()));
+            } catch (IOException e) {
+                log.warnf("State of trigger [%s/%s] can not be exported: %s", entry.getKey().getTenantId(),
+                        entry.getKey().getDataId(), e.getMessage());
+            }
+        }
+        return exported;
+    }
+
+    /**
+     * Set the states handed off by the previous owners of the triggers about to be added to the session. A handed
+     * off state is restored instead of the checkpointed one, it replaces the states of a previous handoff.
+     *
+     * @param states (tenantId, triggerId) -> serialized state
+     */
+    public synchronized void handoff(Map<DataId, byte[]> states) {
+        handedOff.clear();
+        handedOff.putAll(states);
+    }
+
+    /**
+     * Restore the checkpointed state of a trigger loaded into the session. Dampenings and MissingStates are updated
+     * in place, before they are inserted into the rules engine.
+     *
+     * @param trigger the trigger loaded
+     * @param conditions the conditions of the trigger
+     * @param dampenings the dampenings of the trigger
+     * @param missingStates the MissingStates created for the MissingConditions of the trigger
+     * @return additional facts to insert: the NelsonData of the trigger, and the CompareData and RateData of its
+     *         dataIds not present on the session
+     */
+    public synchronized List<Object> restore(Trigger trigger, Collection<Condition> conditions,
+            Collection<Dampening> dampenings, Collection<MissingState> missingStates) {
+        DataId key = new DataId(trigger.getTenantId(), trigger.getId());
+        unclaimed.remove(key);
+        byte[] bytes = handedOff.remove(key);
+        if (bytes == null) {
+            bytes = states.get(key);
+        }
+        if (bytes == null) {
+            return Collections.emptyList();
+        }
+        TriggerState state;
+        try {
+            state = deserialize(bytes);
+        } catch (IOException | ClassNotFoundException e) {
+            log.warnf("Checkpointed state of trigger [%s/%s] can not be restored: %s", trigger.getTenantId(),
+                    trigger.getId(), e.getMessage());
+            return Collections.emptyList();
+        }
+
+        for (DampeningState dampeningState : state.dampenings) {
+            for (Dampening d : dampenings) {
+                if (dampeningState.matches(d)) {
+                    dampeningState.applyTo(d);
+                }
+            }
+        }
+        for (MissingState missingState : missingStates) {
+            Long previousTime = state.missing.get(missingState.getCondition().getConditionId());
+            if (previousTime != null && previousTime <= missingState.getTime()) {
+                missingState.setPreviousTime(previousTime);
+            }
+        }
+        List<Object> facts = new ArrayList<>();
+        Set<String> compareDataIds = new HashSet<>();
+        Set<String> rateDataIds = new HashSet<>();
+        for (Condition c : conditions) {
+            if (c instanceof NelsonCondition) {
+                NelsonData.State nelsonState = state.nelson.get(c.getConditionId());
+                if (nelsonState != null) {
+                    NelsonData nelsonData = new NelsonData((NelsonCondition) c);
+                    if (nelsonData.setState(nelsonState)) {
+                        facts.add(nelsonData);
+                    }
+                }
+            } else if (c instanceof CompareCondition) {
+                compareDataIds.add(c.getDataId());
+                compareDataIds.add(((CompareCondition) c).getData2Id());
+            } else if (c instanceof RateCondition) {
+                rateDataIds.add(c.getDataId());
+            }
+        }
+        for (Data d : state.compareData) {
+            if (compareDataIds.contains(d.getId()) && sessionData.add(sharedKey(CompareData.class, d))) {
+                facts.add(new CompareData(d));
+            }
+        }
+        for (Data d : state.rateData) {
+            if (rateDataIds.contains(d.getId()) && sessionData.add(sharedKey(RateData.class, d))) {
+                facts.add(new RateData(d));
+            }
+        }
+        restoredTriggers.incrementAndGet();
+        return facts;
+    }
+
+    /**
+     * The rules engine session was reset, shared values can be restored again.
+     */
+    public synchronized void newSession() {
+        sessionData.clear();
+        handedOff.clear();
+    }
+
+    /**
+     * Remove the checkpointed states of the triggers not loaded since the checkpoint file was read. It is invoked
+     * after a full load of the triggers, when the states not claimed belong to triggers that no longer exist.
+     */
+    public synchronized void removeUnclaimed() {
+        if (out == null || unclaimed.isEmpty()) {
+            unclaimed.clear();
+            return;
+        }
+        try {
+            for (DataId key : unclaimed) {
+                states.remove(key);
+                append(key, null);
+            }
+            out.flush();
+        } catch (IOException e) {
+            log.errorf("Error writing checkpoint file [%s]: %s", file, e.getMessage());
+        }
+        log.debugf("Removed checkpointed state of [%s] triggers not loaded", unclaimed.size());
+        unclaimed.clear();
+        liveTriggers = states.size();
+        fileRecords = records;
+    }
+
+    public Map<String, String> getStatus() {
+        Map<String, String> status = new HashMap<>();
+        status.put("engine.checkpoint.triggers", String.valueOf(liveTriggers));
+        status.put("engine.checkpoint.fileRecords", String.valueOf(fileRecords));
+        status.put("engine.checkpoint.checkpoints", String.valueOf(checkpoints.get()));
+        status.put("engine.checkpoint.restoredTriggers", String.valueOf(restoredTriggers.get()));
+        status.put("engine.checkpoint.lastTime", String.valueOf(lastCheckpointTime));
+        status.put("engine.checkpoint.lastDuration", String.valueOf(lastCheckpointDuration));
+        status.put("engine.checkpoint.lastWritten", String.valueOf(lastWritten));
+        status.put("engine.checkpoint.lastRemoved", String.valueOf(lastRemoved));
+        return status;
+    }
+
+    /*
+        If session is true the shared values captured are marked as present on the session.
+     */
+    private Map<DataId, TriggerState> capture(Collection<Object> facts, boolean session) {
+        Map<DataId, TriggerState> captured = new HashMap<>();
+        // (tenantId, dataId) -> most recent value per source, shards may hold their own copy of a shared value
+        Map<DataId, List<Data>> compareData = new HashMap<>();
+        Map<DataId, List<Data>> rateData = new HashMap<>();
+        List<Condition> sharedConditions = new ArrayList<>();
+        for (Object fact : facts) {
+            if (fact instanceof Dampening) {
+                Dampening d = (Dampening) fact;
+                if (d.getNumEvals() > 0 || d.getNumTrueEvals() > 0 || !d.getCurrentEvals().isEmpty()) {
+                    stateOf(captured, d.getTenantId(), d.getTriggerId()).dampenings.add(new DampeningState(d));
+                }
+            } else if (fact instanceof MissingState) {
+                MissingState m = (MissingState) fact;
+                stateOf(captured, m.getTenantId(), m.getTriggerId()).missing
+                        .put(m.getCondition().getConditionId(), m.getPreviousTime());
+            } else if (fact instanceof NelsonData) {
+                NelsonCondition c = ((NelsonData) fact).getCondition();
+                NelsonData.State nelsonState = ((NelsonData) fact).getState();
+                if (!nelsonState.isEmpty()) {
+                    stateOf(captured, c.getTenantId(), c.getTriggerId()).nelson.put(c.getConditionId(), nelsonState);
+                }
+            } else if (fact instanceof CompareData) {
+                addLatest(compareData, ((CompareData) fact).getData());
+                if (session) {
+                    sessionData.add(sharedKey(CompareData.class, ((CompareData) fact).getData()));
+                }
+            } else if (fact instanceof RateData) {
+                addLatest(rateData, ((RateData) fact).getData());
+                if (session) {
+                    sessionData.add(sharedKey(RateData.class, ((RateData) fact).getData()));
+                }
+            } else if (fact instanceof CompareCondition || fact instanceof RateCondition) {
+                sharedConditions.add((Condition) fact);
+            }
+        }
+        for (Condition c : sharedConditions) {
+            if (c instanceof CompareCondition) {
+                addShared(captured, c, compareData.get(new DataId(c.getTenantId(), c.getDataId())), true);
+                addShared(captured, c,
+                        compareData.get(new DataId(c.getTenantId(), ((CompareCondition) c).getData2Id())), true);
+            } else {
+                addShared(captured, c, rateData.get(new DataId(c.getTenantId(), c.getDataId())), false);
+            }
+        }
+        return captured;
+    }
+
+    private static TriggerState stateOf(Map<DataId, TriggerState> captured, String tenantId, String triggerId) {
+        return captured.computeIfAbsent(new DataId(tenantId, triggerId), k -> new TriggerState());
+    }
+
+    private static void addLatest(Map<DataId, List<Data>> shared, Data data) {
+        if (data == null) {
+            return;
+        }
+        List<Data> values = shared.computeIfAbsent(new DataId(data.getTenantId(), data.getId()),
+                k -> new ArrayList<>(1));
+        for (int i = 0; i < values.size(); i++) {
+            Data value = values.get(i);
+            if (value.same(data)) {
+                if (value.getTimestamp() < data.getTimestamp()) {
+                    values.set(i, data);
+                }
+                return;
+            }
+        }
+        values.add(data);
+    }
+
+    private static void addShared(Map<DataId, TriggerState> captured, Condition c, List<Data> values,
+            boolean compare) {
+        if (values == null) {
+            return;
+        }
+        List<Data> triggerValues = compare ? stateOf(captured, c.getTenantId(), c.getTriggerId()).compareData
+                : stateOf(captured, c.getTenantId(), c.getTriggerId()).rateData;
+        for (Data value : values) {
+            if (!triggerValues.contains(value)) {
+                triggerValues.add(value);
+            }
+        }
+    }
+
+    private static List<String> sharedKey(Class<?> type, Data data) {
+        return Arrays.asList(type.getSimpleName(), data.getTenantId(), data.getSource(), data.getId());
+    }
+
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                log.warnf("Checkpoint file [%s] has an unknown format, it is ignored", file);
+                return;
+            }
+            while (true) {
+                String tenantId;
+                try {
+                    tenantId = in.readUTF();
+                } catch (EOFException e) {
+                    break;
+                }
+                String triggerId = in.readUTF();
+                int length = in.readInt();
+                DataId key = new DataId(tenantId, triggerId);
+                if (length == 0) {
+                    states.remove(key);
+                } else {
+                    byte[] bytes = new byte[length];
+                    in.readFully(bytes);
+                    states.put(key, bytes);
+                }
+            }
+        } catch (EOFException e) {
+            log.warnf("Checkpoint file [%s] is truncated, the last record is ignored", file);
+        } catch (IOException e) {
+            log.errorf("Error reading checkpoint file [%s]: %s", file, e.getMessage());
+        }
+        unclaimed.addAll(states.keySet());
+    }
+
+    /*
+        Rewrite the file with only the last state of each trigger, and reopen it for append.
+     */
+    private void compact() throws IOException {
+        shutdown();
+        File tmp = new File(file.getPath() + ".tmp");
+        records = 0;
+        try (DataOutputStream tmpOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            tmpOut.writeInt(MAGIC);
+            tmpOut.writeInt(VERSION);
+            out = tmpOut;
+            for (Entry<DataId, byte[]> entry : states.entrySet()) {
+                append(entry.getKey(), entry.getValue());
+            }
+        } finally {
+            out = null;
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        liveTriggers = states.size();
+        fileRecords = records;
+    }
+
+    private void append(DataId key, byte[] bytes) throws IOException {
+        out.writeUTF(key.getTenantId());
+        out.writeUTF(key.getDataId());
+        if (bytes == null) {
+            out.writeInt(0);
+        } else {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        records++;
+    }
+
+    private static byte[] serialize(TriggerState state) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream objects = new ObjectOutputStream(bytes)) {
+            objects.writeObject(state);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static TriggerState deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (TriggerState) objects.readObject();
+        }
+    }
+
+    /*
+        State of a trigger. MissingStates and NelsonData are keyed by conditionId.
+     */
+    static class TriggerState implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final List<DampeningState> dampenings = new ArrayList<>(1);
+        final Map<String, Long> missing = new HashMap<>(1);
+        final Map<String, NelsonData.State> nelson = new HashMap<>(1);
+        final List<Data> compareData = new ArrayList<>(1);
+        final List<Data> rateData = new ArrayList<>(1);
+    }
+
+    /*
+        Progress of a Dampening, restored only on a Dampening with the same settings.
+     */
+    static class DampeningState implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final Mode triggerMode;
+        private final Dampening.Type type;
+        private final int evalTrueSetting;
+        private final int evalTotalSetting;
+        private final long evalTimeSetting;
+        private final int numTrueEvals;
+        private final int numEvals;
+        private final long trueEvalsStartTime;
+        private final HashMap<Integer, ConditionEval> currentEvals;
+        private final ArrayList<Set<ConditionEval>> satisfyingEvals;
+
+        DampeningState(Dampening d) {
+            triggerMode = d.getTriggerMode();
+            type = d.getType();
+            evalTrueSetting = d.getEvalTrueSetting();
+            evalTotalSetting = d.getEvalTotalSetting();
+            evalTimeSetting = d.getEvalTimeSetting();
+            numTrueEvals = d.getNumTrueEvals();
+            numEvals = d.getNumEvals();
+            trueEvalsStartTime = d.getTrueEvalsStartTime();
+            currentEvals = new HashMap<>(d.getCurrentEvals());
+            satisfyingEvals = new ArrayList<>();
+            for (Set<ConditionEval> evals : d.getSatisfyingEvals()) {
+                satisfyingEvals.add(new HashSet<>(evals));
+            }
+        }
+
+        boolean matches(Dampening d) {
+            return triggerMode == d.getTriggerMode() && type == d.getType()
+                    && evalTrueSetting == d.getEvalTrueSetting() && evalTotalSetting == d.getEvalTotalSetting()
+                    && evalTimeSetting == d.getEvalTimeSetting();
+        }
+
+        void applyTo(Dampening d) {
+            d.setNumTrueEvals(numTrueEvals);
+            d.setNumEvals(numEvals);
+            d.setTrueEvalsStartTime(trueEvalsStartTime);
+            d.getCurrentEvals().putAll(currentEvals);
+            List<Set<ConditionEval>> evals = new ArrayList<>();
+            for (Set<ConditionEval> set : satisfyingEvals) {
+                evals.add(new HashSet<>(set));
+            }
+            d.setSatisfyingEvals(evals);
+        }
+    }
+}
@@ -0,0 +1,424 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hawkular.alerts.api.model.event.Alert;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.services.AlertsService;
+import org.hawkular.alerts.engine.service.PartitionManager;
+import org.hawkular.alerts.log.MsgLogger;
+import org.hawkular.alerts.properties.AlertProperties;
+import org.jboss.logging.Logger;
+
+/**
+ * Write-behind stage for the alerts and events generated by the rules cycles.
+ *
+ * The rules thread enqueues the output of a cycle and continues with the next cycle. A single writer thread persists
+ * the queued cycles in order, grouping them by size or time, and retries on failures.
+ *
+ * Ordering guarantees of the previous synchronous persistence are kept:
+ * - Alerts are persisted before the events of the same cycles.
+ * - Generated events are notified to other nodes (for chained triggers) only after they are persisted,
+ *   in the same order the cycles generated them.
+ *
+ * The queue is bounded, the rules thread waits for capacity when the writer can not keep up. If the writer thread is
+ * not running anymore the queued cycles and the new ones are persisted synchronously on the rules thread.
+ */
+public class WriteBehindPersistence {
+    private final MsgLogger msgLog = MsgLogger.LOGGER;
+    private final Logger log = Logger.getLogger(WriteBehindPersistence.class);
+
+    /*
+        If disabled alerts and events are persisted synchronously on the rules thread.
+     */
+    private static final String WRITE_BEHIND = "hawkular-alerts.write-behind";
+    private static final String WRITE_BEHIND_ENV = "HAWKULAR_WRITE_BEHIND";
+    private static final String WRITE_BEHIND_DEFAULT = "true";
+
+    /*
+        Max number of alerts and events queued or being persisted.
+     */
+    private static final String WRITE_BEHIND_MAX_QUEUED = "hawkular-alerts.write-behind-max-queued";
+    private static final String WRITE_BEHIND_MAX_QUEUED_ENV = "HAWKULAR_WRITE_BEHIND_MAX_QUEUED";
+    private static final String WRITE_BEHIND_MAX_QUEUED_DEFAULT = "10000";
+
+    /*
+        Number of queued alerts and events that triggers a flush.
+     */
+    private static final String WRITE_BEHIND_FLUSH_SIZE = "hawkular-alerts.write-behind-flush-size";
+    private static final String WRITE_BEHIND_FLUSH_SIZE_ENV = "HAWKULAR_WRITE_BEHIND_FLUSH_SIZE";
+    private static final String WRITE_BEHIND_FLUSH_SIZE_DEFAULT = "500";
+
+    /*
+        Max time in milliseconds an enqueued cycle waits before a flush.
+     */
+    private static final String WRITE_BEHIND_FLUSH_INTERVAL = "hawkular-alerts.write-behind-flush-interval";
+    private static final String WRITE_BEHIND_FLUSH_INTERVAL_ENV = "HAWKULAR_WRITE_BEHIND_FLUSH_INTERVAL";
+    private static final String WRITE_BEHIND_FLUSH_INTERVAL_DEFAULT = "100";
+
+    /*
+        Attempts to persist a flush before discarding it. Waits retry-timeout milliseconds between attempts.
+     */
+    private static final String WRITE_BEHIND_RETRY_ATTEMPTS = "hawkular-alerts.write-behind-retry-attempts";
+    private static final String WRITE_BEHIND_RETRY_ATTEMPTS_ENV = "HAWKULAR_WRITE_BEHIND_RETRY_ATTEMPTS";
+    private static final String WRITE_BEHIND_RETRY_ATTEMPTS_DEFAULT = "3";
+
+    private static final String WRITE_BEHIND_RETRY_TIMEOUT = "hawkular-alerts.write-behind-retry-timeout";
+    private static final String WRITE_BEHIND_RETRY_TIMEOUT_ENV = "HAWKULAR_WRITE_BEHIND_RETRY_TIMEOUT";
+    private static final String WRITE_BEHIND_RETRY_TIMEOUT_DEFAULT = "500";
+
+    private boolean enabled;
+    private int maxQueued;
+    private int flushSize;
+    private long flushInterval;
+    private int retryAttempts;
+    private long retryTimeout;
+
+    AlertsService alertsService;
+
+    PartitionManager partitionManager;
+
+    private final Object lock = new Object();
+    private final Deque<CycleOutput> queue = new ArrayDeque<>();
+    private int queuedItems = 0;
+    private int flushRequests = 0;
+    private boolean running = false;
+    private boolean writing = false;
+    private Thread writer;
+
+    private final AtomicLong persistedAlerts = new AtomicLong(0);
+    private final AtomicLong persistedEvents = new AtomicLong(0);
+    private final AtomicLong failedItems = new AtomicLong(0);
+    private final AtomicLong failedNotifications = new AtomicLong(0);
+    private final AtomicLong retries = new AtomicLong(0);
+    private final AtomicLong flushes = new AtomicLong(0);
+    private volatile long lastLag = 0;
+    private volatile long maxLag = 0;
+
+    public WriteBehindPersistence() {
+        enabled = Boolean.parseBoolean(AlertProperties.getProperty(WRITE_BEHIND, WRITE_BEHIND_ENV,
+                WRITE_BEHIND_DEFAULT));
+        maxQueued = Integer.parseInt(AlertProperties.getProperty(WRITE_BEHIND_MAX_QUEUED,
+                WRITE_BEHIND_MAX_QUEUED_ENV, WRITE_BEHIND_MAX_QUEUED_DEFAULT));
+        flushSize = Integer.parseInt(AlertProperties.getProperty(WRITE_BEHIND_FLUSH_SIZE,
+                WRITE_BEHIND_FLUSH_SIZE_ENV, WRITE_BEHIND_FLUSH_SIZE_DEFAULT));
+        flushInterval = Long.parseLong(AlertProperties.getProperty(WRITE_BEHIND_FLUSH_INTERVAL,
+                WRITE_BEHIND_FLUSH_INTERVAL_ENV, WRITE_BEHIND_FLUSH_INTERVAL_DEFAULT));
+        retryAttempts = Integer.parseInt(AlertProperties.getProperty(WRITE_BEHIND_RETRY_ATTEMPTS,
+                WRITE_BEHIND_RETRY_ATTEMPTS_ENV, WRITE_BEHIND_RETRY_ATTEMPTS_DEFAULT));
+        retryTimeout = Long.parseLong(AlertProperties.getProperty(WRITE_BEHIND_RETRY_TIMEOUT,
+                WRITE_BEHIND_RETRY_TIMEOUT_ENV, WRITE_BEHIND_RETRY_TIMEOUT_DEFAULT));
+    }
+
+    public WriteBehindPersistence(boolean enabled, int maxQueued, int flushSize, long flushInterval,
+            int retryAttempts, long retryTimeout) {
+        this.enabled = enabled;
+        this.maxQueued = maxQueued;
+        this.flushSize = flushSize;
+        this.flushInterval = flushInterval;
+        this.retryAttempts = retryAttempts;
+        this.retryTimeout = retryTimeout;
+    }
+
+    public void setAlertsService(AlertsService alertsService) {
+        this.alertsService = alertsService;
+    }
+
+    public void setPartitionManager(PartitionManager partitionManager) {
+        this.partitionManager = partitionManager;
+    }
+
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (lock) {
+            running = true;
+            writing = true;
+        }
+        writer = new Thread(this::write, "HawkularAlerts-WriteBehind");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enqueue the output of a rules cycle. If the write-behind is disabled the output is persisted synchronously.
+     *
+     * @param alerts alerts generated on the cycle
+     * @param events events generated on the cycle
+     * @param notify true if events must be notified to other nodes once persisted
+     * @throws Exception on synchronous persistence errors
+     */
+    public void enqueue(Collection<Alert> alerts, Collection<Event> events, boolean notify) throws Exception {
+        if (alerts.isEmpty() && events.isEmpty()) {
+            return;
+        }
+        CycleOutput output = new CycleOutput(new ArrayList<>(alerts), new ArrayList<>(events), notify);
+        if (!enabled || writer == null) {
+            persist(output.alerts, output.events);
+            notifyEvents(output);
+            return;
+        }
+        List<CycleOutput> outputs;
+        synchronized (lock) {
+            while (running && writing && queuedItems > 0 && queuedItems + output.size() > maxQueued) {
+                log.debugf("Write-behind queue is full [%d], waiting", queuedItems);
+                lock.wait();
+            }
+            if (!running) {
+                throw new IllegalStateException("Write-behind is shut down");
+            }
+            if (writing) {
+                queue.addLast(output);
+                queuedItems += output.size();
+                lock.notifyAll();
+                return;
+            }
+            // The writer thread has died, pending cycles are taken in order by the caller
+            outputs = new ArrayList<>(queue);
+            outputs.add(output);
+            queue.clear();
+            queuedItems = 0;
+            lock.notifyAll();
+        }
+        log.warnf("Write-behind writer is not running, persisting [%d] cycles synchronously", outputs.size());
+        for (CycleOutput pending : outputs) {
+            persist(pending.alerts, pending.events);
+            notifyEvents(pending);
+        }
+    }
+
+    /**
+     * Wait until all enqueued alerts and events are persisted.
+     *
+     * @param timeout max time to wait in milliseconds
+     * @return true if the queue was flushed, false on timeout or if the writer thread is not running
+     */
+    public boolean flush(long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        synchronized (lock) {
+            flushRequests++;
+            lock.notifyAll();
+            try {
+                while (queuedItems > 0) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0 || !writing) {
+                        return false;
+                    }
+                    lock.wait(remaining);
+                }
+                return true;
+            } finally {
+                flushRequests--;
+            }
+        }
+    }
+
+    public void shutdown() {
+        synchronized (lock) {
+            running = false;
+            lock.notifyAll();
+        }
+        if (writer != null) {
+            try {
+                writer.join(retryAttempts * retryTimeout + flushInterval + 10000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void write() {
+        try {
+            while (true) {
+                List<CycleOutput> outputs;
+                try {
+                    outputs = nextFlush();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (outputs == null) {
+                    return;
+                }
+                int items = 0;
+                for (CycleOutput output : outputs) {
+                    items += output.size();
+                }
+                try {
+                    flush(outputs);
+                } catch (Exception e) {
+                    log.errorf(e, "Unexpected error on write-behind flush of [%d] alerts and events", items);
+                } finally {
+                    synchronized (lock) {
+                        queuedItems -= items;
+                        lock.notifyAll();
+                    }
+                }
+            }
+        } finally {
+            // Producers waiting for capacity must not wait for a writer that is gone
+            synchronized (lock) {
+                writing = false;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /*
+        Wait until the flush policy is met: enough queued items, oldest queued cycle exceeding the flush interval,
+        an explicit flush request or shutdown. It returns null when the stage is shut down and the queue is empty.
+     */
+    private List<CycleOutput> nextFlush() throws InterruptedException {
+        synchronized (lock) {
+            while (queue.isEmpty()) {
+                if (!running) {
+                    return null;
+                }
+                lock.wait();
+            }
+            long deadline = queue.peekFirst().enqueueTime + flushInterval;
+            while (running && flushRequests == 0 && queuedItems < flushSize) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                lock.wait(remaining);
+            }
+            List<CycleOutput> outputs = new ArrayList<>(queue);
+            queue.clear();
+            return outputs;
+        }
+    }
+
+    private void flush(List<CycleOutput> outputs) {
+        List<Alert> alerts = new ArrayList<>();
+        List<Event> events = new ArrayList<>();
+        for (CycleOutput output : outputs) {
+            alerts.addAll(output.alerts);
+            events.addAll(output.events);
+        }
+        boolean persisted = false;
+        for (int attempt = 1; !persisted && attempt <= retryAttempts; attempt++) {
+            try {
+                persist(alerts, events);
+                persisted = true;
+            } catch (Exception e) {
+                log.debugf("Write-behind attempt [%d] failed: %s", attempt, e.getMessage());
+                if (attempt < retryAttempts) {
+                    retries.incrementAndGet();
+                    try {
+                        Thread.sleep(retryTimeout);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                } else {
+                    msgLog.errorDatabaseException(e.getMessage());
+                }
+            }
+        }
+        if (!persisted) {
+            log.errorf("Discarding [%d] alerts and [%d] events after [%d] attempts", alerts.size(), events.size(),
+                    retryAttempts);
+            failedItems.addAndGet(alerts.size() + events.size());
+            return;
+        }
+        flushes.incrementAndGet();
+        persistedAlerts.addAndGet(alerts.size());
+        persistedEvents.addAndGet(events.size());
+        long lag = System.currentTimeMillis() - outputs.get(0).enqueueTime;
+        lastLag = lag;
+        if (lag > maxLag) {
+            maxLag = lag;
+        }
+        for (CycleOutput output : outputs) {
+            try {
+                notifyEvents(output);
+            } catch (Exception e) {
+                log.errorf(e, "Failed notification of [%d] persisted events", output.events.size());
+                failedNotifications.addAndGet(output.events.size());
+            }
+        }
+    }
+
+    private void persist(List<Alert> alerts, List<Event> events) throws Exception {
+        if (!alerts.isEmpty()) {
+            alertsService.addAlerts(alerts);
+        }
+        if (!events.isEmpty()) {
+            alertsService.persistEvents(events);
+        }
+    }
+
+    private void notifyEvents(CycleOutput output) {
+        /*
+            Generated events on a node should be notified to other nodes for chained triggers
+         */
+        if (output.notify && !output.events.isEmpty()) {
+            partitionManager.notifyEvents(output.events);
+        }
+    }
+
+    public Map<String, String> getStatus() {
+        Map<String, String> status = new HashMap<>();
+        status.put("persistence.writeBehind", String.valueOf(enabled));
+        synchronized (lock) {
+            status.put("persistence.queued", String.valueOf(queuedItems));
+        }
+        status.put("persistence.persistedAlerts", String.valueOf(persistedAlerts.get()));
+        status.put("persistence.persistedEvents", String.valueOf(persistedEvents.get()));
+        status.put("persistence.failed", String.valueOf(failedItems.get()));
+        status.put("persistence.failedNotifications", String.valueOf(failedNotifications.get()));
+        status.put("persistence.retries", String.valueOf(retries.get()));
+        status.put("persistence.flushes", String.valueOf(flushes.get()));
+        status.put("persistence.lastLag", String.valueOf(lastLag));
+        status.put("persistence.maxLag", String.valueOf(maxLag));
+        return status;
+    }
+
+    private static class CycleOutput {
+        final List<Alert> alerts;
+        final List<Event> events;
+        final boolean notify;
+        final long enqueueTime;
+
+        CycleOutput(List<Alert> alerts, List<Event> events, boolean notify) {
+            this.alerts = alerts;
+            this.events = events;
+            this.notify = notify;
+            this.enqueueTime = System.currentTimeMillis();
+        }
+
+        int size() {
+            return alerts.size() + events.size();
+        }
+    }
+}
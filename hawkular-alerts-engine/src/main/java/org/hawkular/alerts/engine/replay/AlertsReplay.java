@@ -0,0 +1,359 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.replay;
+
+import static org.hawkular.alerts.api.json.JsonUtil.collectionFromJson;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hawkular.alerts.api.json.JsonUtil;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Alert;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.trigger.FullTrigger;
+import org.hawkular.alerts.api.util.EngineClock;
+import org.hawkular.alerts.engine.impl.AlertsEngineImpl;
+import org.hawkular.alerts.engine.impl.AlertsImportManager;
+import org.hawkular.alerts.engine.impl.DataDrivenGroupCacheManager;
+import org.hawkular.alerts.engine.impl.DroolsRulesEngineImpl;
+import org.hawkular.alerts.engine.impl.EngineMetrics;
+import org.hawkular.alerts.engine.impl.ExtensionsServiceImpl;
+import org.hawkular.alerts.engine.impl.IncomingDataManagerImpl;
+import org.hawkular.alerts.engine.impl.IncomingDataManagerImpl.IncomingData;
+import org.hawkular.alerts.engine.impl.IncomingDataManagerImpl.IncomingEvents;
+import org.hawkular.alerts.engine.util.Histogram;
+import org.jboss.logging.Logger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Offline replay of recorded data and events through the AlertsEngine.
+ *
+ * The engine runs on a single thread with in-memory services and a simulated clock. The clock follows the time of
+ * the replayed records, and the periodic rules cycles are run each engine period of simulated time, so dampening
+ * timeouts and missing data conditions behave as in a live engine, but a replay runs as fast as the engine can
+ * evaluate the data. It is intended to tune trigger definitions against historical data and to measure the engine
+ * throughput and latencies without a backend.
+ *
+ * Records are read as newline-delimited json, one object per line with the same content of a REST call:
+ * <pre>
+ * {"tenantId":"my-tenant", "data":[{"id":"cpu", "timestamp":1000, "value":"95.0"}]}
+ * {"tenantId":"my-tenant", "time":2000, "events":[{"id":"e1", "ctime":2000, "dataId":"app", "category":"LOG",
+ *  "text":"ERROR"}]}
+ * </pre>
+ * The tenantId is optional and defaults to the tenant of the replay. The time of a record is the optional "time"
+ * field or the most recent timestamp of its data or events. Records are expected in time order, a record older than
+ * the simulated clock is processed at the current simulated time.
+ */
+public class AlertsReplay {
+    private static final Logger log = Logger.getLogger(AlertsReplay.class);
+
+    private final String tenantId;
+    private final ReplayServices services;
+    private AlertsEngineImpl engine;
+    private IncomingDataManagerImpl incoming;
+    private final EngineMetrics metrics;
+    private final Histogram ingestionTimes;
+    private final AtomicLong clock;
+
+    /*
+        Simulated time replayed after the last record, so timeouts and missing data conditions can be evaluated.
+        A negative value means one engine period.
+     */
+    private long drainTime = -1;
+
+    private long numRecords;
+    private long numData;
+    private long numEvents;
+    private long numCycles;
+    private long pendingItems;
+    private long nextCycle;
+    private long firstTime = -1;
+    private long wallTime;
+
+    public AlertsReplay(String tenantId) {
+        if (tenantId == null || tenantId.isEmpty()) {
+            throw new IllegalArgumentException("TenantId must be not null");
+        }
+        this.tenantId = tenantId;
+        services = new ReplayServices();
+        metrics = new EngineMetrics();
+        ingestionTimes = metrics.histogram("replay.ingestionTimeMicros");
+        clock = new AtomicLong(0);
+    }
+
+    /*
+        The engine is created once the simulated clock is set, as its timeouts are tracked from its creation time
+     */
+    private void createEngine() {
+        ExecutorService direct = new DirectExecutorService();
+
+        DroolsRulesEngineImpl rules = new DroolsRulesEngineImpl();
+        rules.setMetrics(metrics);
+
+        ExtensionsServiceImpl extensions = new ExtensionsServiceImpl();
+        extensions.init();
+
+        engine = new AlertsEngineImpl();
+        engine.setScheduledCycles(false);
+        engine.setRules(rules);
+        engine.setDefinitions(services.definitionsService());
+        engine.setActions(services.actionsService());
+        engine.setAlertsService(services.alertsService());
+        engine.setPartitionManager(services.partitionManager());
+        engine.setExtensionsService(extensions);
+        engine.setExecutor(direct);
+        engine.setMetrics(metrics);
+        services.setAlertsEngine(engine);
+
+        incoming = new IncomingDataManagerImpl();
+        incoming.setExecutor(direct);
+        incoming.setDataDrivenGroupCacheManager(new DataDrivenGroupCacheManager());
+        incoming.setDefinitionsService(services.definitionsService());
+        incoming.setPartitionManager(services.partitionManager());
+        incoming.setAlertsEngine(engine);
+        incoming.init();
+    }
+
+    /**
+     * @param drainTime simulated time in milliseconds replayed after the last record, by default one engine period
+     */
+    public void setDrainTime(long drainTime) {
+        this.drainTime = drainTime;
+    }
+
+    /**
+     * Load the triggers of an import json file, with the same format used on the engine start-up import.
+     *
+     * @param definitions json file with the triggers definitions
+     * @throws Exception on any problem
+     */
+    public void addDefinitions(File definitions) throws Exception {
+        List<FullTrigger> fullTriggers = new AlertsImportManager(definitions).getFullTriggers();
+        if (fullTriggers != null) {
+            fullTriggers.forEach(this::addTrigger);
+        }
+    }
+
+    public void addTrigger(FullTrigger fullTrigger) {
+        if (firstTime >= 0) {
+            throw new IllegalStateException("Triggers must be added before the replay");
+        }
+        services.addTrigger(tenantId, fullTrigger);
+    }
+
+    /**
+     * Replay the records of a reader. The reader is closed at the end of the replay.
+     *
+     * @param records newline-delimited json records
+     * @throws IOException on a read or parse problem
+     */
+    public void replay(Reader records) throws IOException {
+        long startWall = System.nanoTime();
+        try (BufferedReader reader = new BufferedReader(records)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    replayRecord(JsonUtil.getMapper().readTree(line));
+                }
+            }
+            if (firstTime >= 0) {
+                advance(clock.get() + (drainTime < 0 ? engine.getPeriod() : drainTime));
+            }
+        } finally {
+            if (engine != null) {
+                engine.shutdown();
+            }
+            EngineClock.setClock(null);
+            wallTime += TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startWall);
+        }
+    }
+
+    private void replayRecord(JsonNode record) throws IOException {
+        String recordTenantId = record.hasNonNull("tenantId") ? record.get("tenantId").asText() : tenantId;
+        Collection<Data> data = record.hasNonNull("data")
+                ? collectionFromJson(record.get("data").toString(), Data.class) : Collections.emptyList();
+        Collection<Event> events = record.hasNonNull("events")
+                ? collectionFromJson(record.get("events").toString(), Event.class) : Collections.emptyList();
+
+        long time = record.hasNonNull("time") ? record.get("time").asLong() : -1;
+        for (Data d : data) {
+            d.setTenantId(recordTenantId);
+            time = Math.max(time, d.getTimestamp());
+        }
+        for (Event e : events) {
+            e.setTenantId(recordTenantId);
+            time = Math.max(time, e.getCtime());
+        }
+        if (time < 0) {
+            throw new IOException("Record without time: " + record);
+        }
+
+        if (firstTime < 0) {
+            start(time);
+        } else {
+            advance(time);
+        }
+
+        long start = System.nanoTime();
+        if (!data.isEmpty()) {
+            incoming.bufferData(new IncomingData(data, false));
+        }
+        if (!events.isEmpty()) {
+            incoming.bufferEvents(new IncomingEvents(events, false));
+        }
+        ingestionTimes.record((System.nanoTime() - start) / 1000);
+
+        numRecords++;
+        numData += data.size();
+        numEvents += events.size();
+        pendingItems += data.size() + events.size();
+        if (engine.getBatchSize() > 0 && pendingItems >= engine.getBatchSize()) {
+            runCycle();
+        }
+    }
+
+    /*
+        The simulated clock starts on the time of the first record, triggers are loaded at that time
+     */
+    private void start(long time) {
+        firstTime = time;
+        clock.set(time);
+        EngineClock.setClock(clock::get);
+        createEngine();
+        engine.initServices();
+        nextCycle = time + engine.getPeriod();
+    }
+
+    /*
+        Move the simulated clock up to time, running the periodic cycles due on the way
+     */
+    private void advance(long time) {
+        while (nextCycle <= time) {
+            clock.set(nextCycle);
+            runCycle();
+            nextCycle += engine.getPeriod();
+        }
+        if (time > clock.get()) {
+            clock.set(time);
+        }
+    }
+
+    private void runCycle() {
+        engine.runCycle();
+        numCycles++;
+        pendingItems = 0;
+    }
+
+    public List<Alert> getAlerts() {
+        return services.getAlerts();
+    }
+
+    public List<Event> getEvents() {
+        return services.getEvents();
+    }
+
+    /**
+     * @return counters of the replay, speedup against the simulated time and the metrics of the engine
+     */
+    public Map<String, String> getReport() {
+        Map<String, String> report = new TreeMap<>(metrics.getStatus());
+        long simulatedTime = firstTime < 0 ? 0 : clock.get() - firstTime;
+        report.put("replay.records", String.valueOf(numRecords));
+        report.put("replay.data", String.valueOf(numData));
+        report.put("replay.events", String.valueOf(numEvents));
+        report.put("replay.cycles", String.valueOf(numCycles));
+        report.put("replay.alerts", String.valueOf(services.getAlerts().size()));
+        report.put("replay.generatedEvents", String.valueOf(services.getEvents().size()));
+        report.put("replay.actions", String.valueOf(services.getActions()));
+        report.put("replay.simulatedTime", String.valueOf(simulatedTime));
+        report.put("replay.wallTime", String.valueOf(wallTime));
+        report.put("replay.speedup", String.format("%.1f", (double) simulatedTime / Math.max(1, wallTime)));
+        report.put("replay.throughput",
+                String.format("%.1f", (numData + numEvents) * 1000d / Math.max(1, wallTime)));
+        return report;
+    }
+
+    /**
+     * Usage: AlertsReplay definitions.json tenantId records.ndjson [drainTime]
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: AlertsReplay <definitions.json> <tenantId> <records.ndjson> [drainTime]");
+            System.exit(1);
+        }
+        AlertsReplay replay = new AlertsReplay(args[1]);
+        replay.addDefinitions(new File(args[0]));
+        if (args.length > 3) {
+            replay.setDrainTime(Long.parseLong(args[3]));
+        }
+        replay.replay(new FileReader(args[2]));
+        replay.getReport().forEach((k, v) -> System.out.println(k + " = " + v));
+        log.debugf("Replay alerts: %s", replay.getAlerts());
+    }
+
+    /*
+        Runs the tasks on the caller thread, so the replay is deterministic
+     */
+    private static class DirectExecutorService extends AbstractExecutorService {
+        private volatile boolean shutdown;
+
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.replay;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.condition.ConditionEval;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.event.Alert;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.trigger.FullTrigger;
+import org.hawkular.alerts.api.model.trigger.Mode;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.api.services.ActionsService;
+import org.hawkular.alerts.api.services.AlertsService;
+import org.hawkular.alerts.api.services.DefinitionsService;
+import org.hawkular.alerts.api.util.EngineClock;
+import org.hawkular.alerts.engine.impl.AlertsEngineCache.DataId;
+import org.hawkular.alerts.engine.service.AlertsEngine;
+import org.hawkular.alerts.engine.service.PartitionManager;
+
+/**
+ * In-memory stand-ins of the services used by the AlertsEngine, so a replay runs without a backend.
+ *
+ * Only the operations invoked by the engine on a rules cycle and on a trigger load are supported, the rest of the
+ * operations throw an UnsupportedOperationException. Generated alerts and events are kept in memory and the
+ * actions are only counted.
+ */
+public class ReplayServices {
+
+    private final Map<DataId, FullTrigger> triggers = new LinkedHashMap<>();
+    private final List<Alert> alerts = Collections.synchronizedList(new ArrayList<>());
+    private final List<Event> events = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicLong actions = new AtomicLong(0);
+
+    private AlertsEngine alertsEngine;
+
+    public void setAlertsEngine(AlertsEngine alertsEngine) {
+        this.alertsEngine = alertsEngine;
+    }
+
+    /**
+     * Add the definitions of a trigger for a tenant. Conditions and dampenings are completed with the ids of the
+     * trigger as it is done when they are stored.
+     *
+     * @param tenantId of the trigger
+     * @param fullTrigger trigger, dampenings and conditions
+     */
+    public void addTrigger(String tenantId, FullTrigger fullTrigger) {
+        Trigger trigger = fullTrigger.getTrigger();
+        if (trigger == null) {
+            throw new IllegalArgumentException("Trigger must be not null");
+        }
+        trigger.setTenantId(tenantId);
+        for (Dampening d : fullTrigger.getDampenings()) {
+            d.setTenantId(tenantId);
+            d.setTriggerId(trigger.getId());
+        }
+        for (Mode mode : Mode.values()) {
+            List<Condition> conditionSet = fullTrigger.getConditions().stream()
+                    .filter(c -> c.getTriggerMode() == mode)
+                    .collect(Collectors.toList());
+            int index = 0;
+            for (Condition c : conditionSet) {
+                c.setTenantId(tenantId);
+                c.setTriggerId(trigger.getId());
+                c.setConditionSetSize(conditionSet.size());
+                c.setConditionSetIndex(++index);
+            }
+        }
+        triggers.put(new DataId(tenantId, trigger.getId()), fullTrigger);
+    }
+
+    public List<Alert> getAlerts() {
+        return alerts;
+    }
+
+    public List<Event> getEvents() {
+        return events;
+    }
+
+    public long getActions() {
+        return actions.get();
+    }
+
+    public DefinitionsService definitionsService() {
+        return proxy(DefinitionsService.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getAllTriggers":
+                    return triggers.values().stream().map(FullTrigger::getTrigger).collect(Collectors.toList());
+                case "getAllConditions":
+                    return triggers.values().stream().flatMap(ft -> ft.getConditions().stream())
+                            .collect(Collectors.toList());
+                case "getAllDampenings":
+                    return triggers.values().stream().flatMap(ft -> ft.getDampenings().stream())
+                            .collect(Collectors.toList());
+                case "getTrigger":
+                    return fullTrigger(args).map(FullTrigger::getTrigger).orElse(null);
+                case "getTriggerConditions":
+                    return fullTrigger(args).map(ft -> ft.getConditions().stream()
+                            .filter(c -> args[2] == null || c.getTriggerMode() == args[2])
+                            .collect(Collectors.<Condition>toList()))
+                            .orElse(Collections.emptyList());
+                case "getTriggerDampenings":
+                    return fullTrigger(args).map(ft -> ft.getDampenings().stream()
+                            .filter(d -> args[2] == null || d.getTriggerMode() == args[2])
+                            .collect(Collectors.<Dampening>toList()))
+                            .orElse(Collections.emptyList());
+                case "updateTriggerEnablement":
+                    for (String triggerId : ((String) args[1]).split(",")) {
+                        fullTrigger(new Object[] { args[0], triggerId.trim() })
+                                .ifPresent(ft -> ft.getTrigger().setEnabled((Boolean) args[2]));
+                    }
+                    return null;
+                default:
+                    return unsupported(method.getName());
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    public AlertsService alertsService() {
+        return proxy(AlertsService.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "addAlerts":
+                    alerts.addAll((Collection<Alert>) args[0]);
+                    return null;
+                case "persistEvents":
+                    events.addAll((Collection<Event>) args[0]);
+                    return null;
+                case "resolveAlertsForTrigger":
+                    resolveAlertsForTrigger((String) args[0], (String) args[1], (String) args[2],
+                            (String) args[3], (List<Set<ConditionEval>>) args[4]);
+                    return null;
+                default:
+                    return unsupported(method.getName());
+            }
+        });
+    }
+
+    public ActionsService actionsService() {
+        return proxy(ActionsService.class, (proxy, method, args) -> {
+            if ("send".equals(method.getName())) {
+                actions.incrementAndGet();
+                return null;
+            }
+            return unsupported(method.getName());
+        });
+    }
+
+    public PartitionManager partitionManager() {
+        return proxy(PartitionManager.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "isDistributed":
+                    return false;
+                case "getStatus":
+                    return Collections.emptyMap();
+                default:
+                    // Notifications and listeners are not used on a single node
+                    return null;
+            }
+        });
+    }
+
+    /*
+        Same behaviour as the backend: open alerts of the trigger are resolved, and the trigger is reloaded in firing
+        mode when it is configured to auto-resolve.
+     */
+    private void resolveAlertsForTrigger(String tenantId, String triggerId, String resolvedBy, String resolvedNotes,
+            List<Set<ConditionEval>> resolvedEvalSets) {
+        List<Alert> resolved = new ArrayList<>();
+        synchronized (alerts) {
+            for (Alert a : alerts) {
+                if (a.getTenantId().equals(tenantId) && a.getTriggerId().equals(triggerId)
+                        && a.getStatus() != Alert.Status.RESOLVED) {
+                    a.addNote(resolvedBy, resolvedNotes);
+                    a.setResolvedEvalSets(resolvedEvalSets);
+                    a.addLifecycle(Alert.Status.RESOLVED, resolvedBy, EngineClock.currentTimeMillis());
+                    resolved.add(a);
+                }
+            }
+        }
+        // An action is sent per resolved alert
+        actions.addAndGet(resolved.size());
+        Trigger trigger = fullTrigger(new Object[] { tenantId, triggerId }).map(FullTrigger::getTrigger)
+                .orElse(null);
+        if (trigger != null && trigger.isAutoResolve() && alertsEngine != null) {
+            Trigger loaded = alertsEngine.getLoadedTrigger(trigger);
+            if (loaded == null || loaded.getMode() != Mode.FIRING) {
+                alertsEngine.reloadTrigger(tenantId, triggerId);
+            }
+        }
+    }
+
+    private Optional<FullTrigger> fullTrigger(Object[] args) {
+        return Optional.ofNullable(triggers.get(new DataId((String) args[0], (String) args[1])));
+    }
+
+    private static Object unsupported(String method) {
+        throw new UnsupportedOperationException(method + " is not supported on a replay");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> service, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(ReplayServices.class.getClassLoader(), new Class<?>[] { service },
+                (proxy, method, args) -> {
+                    if (method.getDeclaringClass() == Object.class) {
+                        switch (method.getName()) {
+                            case "equals":
+                                return proxy == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            default:
+                                return service.getSimpleName() + "[replay]";
+                        }
+                    }
+                    return handler.invoke(proxy, method, args);
+                });
+    }
+}
@@ -16,6 +16,7 @@
  */
 package org.hawkular.alerts.engine.service;
 
+import java.util.Map;
 import java.util.TreeSet;
 
 import org.hawkular.alerts.api.model.data.Data;
@@ -89,4 +90,14 @@ public interface AlertsEngine {
      * @param triggerId Trigger id to be removed
      */
     void removeTrigger(String tenantId, String triggerId);
+
+    /**
+     * Show information about the rules cycles executed by the engine.
+     *  - getStatus().get("engine.lastCycleTrigger") returns the reason of the last rules cycle
+     *  - getStatus().get("engine.lastCycleLatency") returns the time in ms since the oldest datum/event evaluated
+     *    in the last cycle was received until the cycle finished
+     *
+     * @return Map with the engine status
+     */
+    Map<String, String> getStatus();
 }
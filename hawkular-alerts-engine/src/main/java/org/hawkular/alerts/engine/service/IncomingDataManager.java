@@ -27,8 +27,60 @@ import org.hawkular.alerts.engine.impl.IncomingDataManagerImpl.IncomingEvents;
  */
 public interface IncomingDataManager {
 
+    /*
+        Policy applied when an ingestion stage is full: reject, drop-oldest (per dataId) or block.
+     */
+    String INGESTION_POLICY = "hawkular-alerts.ingestion-policy";
+    String INGESTION_POLICY_ENV = "HAWKULAR_INGESTION_POLICY";
+    String INGESTION_POLICY_DEFAULT = "reject";
+
+    /*
+        Max number of datums and events accepted and not yet processed by the incoming executor. 0 means unbounded.
+     */
+    String INCOMING_MAX_IN_FLIGHT = "hawkular-alerts.incoming-max-in-flight";
+    String INCOMING_MAX_IN_FLIGHT_ENV = "HAWKULAR_INCOMING_MAX_IN_FLIGHT";
+    String INCOMING_MAX_IN_FLIGHT_DEFAULT = "100000";
+
+    /*
+        Max number of datums (and max number of events) pending on the engine for the next rules cycle.
+        0 means unbounded.
+     */
+    String ENGINE_MAX_PENDING = "hawkular-alerts.engine-max-pending";
+    String ENGINE_MAX_PENDING_ENV = "HAWKULAR_ENGINE_MAX_PENDING";
+    String ENGINE_MAX_PENDING_DEFAULT = "100000";
+
+    /*
+        Max number of datums (and max number of events) deferred by the rules engine to subsequent firings of the
+        same cycle. 0 means unbounded.
+     */
+    String RULES_ENGINE_MAX_DEFERRED = "hawkular-alerts.rules-engine-max-deferred";
+    String RULES_ENGINE_MAX_DEFERRED_ENV = "HAWKULAR_RULES_ENGINE_MAX_DEFERRED";
+    String RULES_ENGINE_MAX_DEFERRED_DEFAULT = "100000";
+
+    /*
+        Max time in milliseconds a producer waits for capacity under the block policy.
+     */
+    String INGESTION_BLOCK_TIMEOUT = "hawkular-alerts.ingestion-block-timeout";
+    String INGESTION_BLOCK_TIMEOUT_ENV = "HAWKULAR_INGESTION_BLOCK_TIMEOUT";
+    String INGESTION_BLOCK_TIMEOUT_DEFAULT = "1000";
+
+    /*
+        Seconds suggested to clients on the Retry-After header when a request is not accepted.
+     */
+    String INGESTION_RETRY_AFTER = "hawkular-alerts.ingestion-retry-after";
+    String INGESTION_RETRY_AFTER_ENV = "HAWKULAR_INGESTION_RETRY_AFTER";
+    String INGESTION_RETRY_AFTER_DEFAULT = "2";
+
+    /**
+     * @param incomingData data to be processed by the engine
+     * @throws org.hawkular.alerts.api.exception.OverloadedException if the data is not accepted due to overload
+     */
     void bufferData(IncomingData incomingData);
 
+    /**
+     * @param incomingEvents events to be processed by the engine
+     * @throws org.hawkular.alerts.api.exception.OverloadedException if the events are not accepted due to overload
+     */
     void bufferEvents(IncomingEvents incomingEvents);
 
 }
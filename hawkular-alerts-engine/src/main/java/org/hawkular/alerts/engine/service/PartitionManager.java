@@ -17,7 +17,9 @@
 package org.hawkular.alerts.engine.service;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.hawkular.alerts.api.model.data.Data;
 import org.hawkular.alerts.api.model.event.Event;
@@ -115,6 +117,39 @@ public interface PartitionManager {
      */
     void notifyEvents(Collection<Event> events);
 
+    /**
+     * Notify partition manager when the dataIds used by the triggers loaded on this node have changed.
+     * In distributed scenarios data and events are sent only to the nodes using their dataIds.
+     *
+     * @param dataIds tenantId -> dataIds used by the triggers loaded on this node
+     */
+    void notifyDataIds(Map<String, Set<String>> dataIds);
+
+    /**
+     * Notify partition manager with the estimated cost of the triggers loaded on this node.
+     * In distributed scenarios the coordinator balances the total cost of the triggers across the nodes.
+     *
+     * @param costs tenantId -> triggerId -> estimated cost of the triggers loaded on this node
+     */
+    void notifyTriggerCosts(Map<String, Map<String, Double>> costs);
+
+    /**
+     * Notify partition manager with the evaluation state of the triggers removed from this node on a partition change.
+     * In distributed scenarios the state is handed off to the new owners of the triggers.
+     *
+     * @param states tenantId -> triggerId -> serialized evaluation state of the removed triggers
+     */
+    void notifyTriggerStates(Map<String, Map<String, byte[]>> states);
+
+    /**
+     * Get the evaluation state of the triggers added to this node on a partition change, as handed off by their
+     * previous owners. It waits a bounded time for the previous owners that are still members of the cluster.
+     *
+     * @param added tenantId -> triggerIds added to this node
+     * @return tenantId -> triggerId -> serialized evaluation state of the added triggers handed off
+     */
+    Map<String, Map<String, byte[]>> getTriggerStates(Map<String, List<String>> added);
+
     /**
      * Register a listener to process partition events linked with data or events.
      *
@@ -17,6 +17,7 @@
 package org.hawkular.alerts.engine.service;
 
 import java.util.Collection;
+import java.util.Map;
 import java.util.TreeSet;
 import java.util.function.Predicate;
 
@@ -40,6 +41,21 @@ public interface RulesEngine {
     String MIN_REPORTING_INTERVAL_EVENTS_ENV = "HAWKULAR_MIN_REPORTING_INTERVAL_EVENTS";
     String MIN_REPORTING_INTERVAL_EVENTS_DEFAULT = "0";
 
+    /*
+        Number of independent rules sessions used to evaluate triggers in parallel. A value of 1 uses a single session.
+     */
+    String RULES_ENGINE_SHARDS = "hawkular-alerts.rules-engine-shards";
+    String RULES_ENGINE_SHARDS_ENV = "HAWKULAR_RULES_ENGINE_SHARDS";
+    String RULES_ENGINE_SHARDS_DEFAULT = "1";
+
+    /*
+        Evaluate triggers with a single Threshold, ThresholdRange, Availability or String condition out of the rules
+        sessions. The rest of triggers are evaluated by the rules.
+     */
+    String RULES_ENGINE_FAST_PATH = "hawkular-alerts.rules-engine-fast-path";
+    String RULES_ENGINE_FAST_PATH_ENV = "HAWKULAR_RULES_ENGINE_FAST_PATH";
+    String RULES_ENGINE_FAST_PATH_DEFAULT = "false";
+
     void addGlobal(String name, Object global);
 
     void removeGlobal(String name);
@@ -59,6 +75,12 @@ public interface RulesEngine {
      */
     Object getFact(Object fact);
 
+    /**
+     * @param factFilter the factFilter
+     * @return the facts in the rules engine matching the <code>factFilter</code>
+     */
+    Collection<Object> getFacts(Predicate<Object> factFilter);
+
     /**
      * Retrieves the FactHandle for <code>fact</code> and then deletes the fact from the rules engine.
      * @param fact the fact
@@ -92,6 +114,26 @@ public interface RulesEngine {
      */
     void removeFacts(Predicate<Object> factFilter);
 
+    /**
+     * Deletes from the rules engine all the facts of a trigger: the Trigger, its Conditions, Dampenings, MissingStates
+     * and the facts derived from them by the rules. The cost does not depend on the number of facts in the rules
+     * engine.
+     * @param tenantId the tenant of the trigger
+     * @param triggerId the trigger id
+     * @return the deleted facts
+     */
+    Collection<Object> removeTriggerFacts(String tenantId, String triggerId);
+
+    /**
+     * Apply a batch of trigger changes in one pass. The facts of the <code>removed</code> triggers are deleted as in
+     * {@link #removeTriggerFacts(String, String)}, then the <code>added</code> facts are inserted. A reload of a
+     * trigger is expressed as a removal of the trigger plus the insertion of its new facts.
+     * @param removed tenantId -> triggerIds whose facts are deleted
+     * @param added facts to insert, not appropriate for <code>Data</code> or <code>Event</code>
+     * @return the deleted facts
+     */
+    Collection<Object> updateTriggers(Map<String, ? extends Collection<String>> removed, Collection<?> added);
+
     /**
      * Add to the accumulated <code>Data</code> to be processed the next time {@link #fire()} is called. After the
      * rules are fired on the accumulated <code>Data</code> it will be cleared.
@@ -98,6 +98,27 @@ public class ExpressionTagQueryParser extends TagQueryBaseListener implements AN
         Set<String> resolve(List<String> tokens) throws Exception;
     }
 
+    /**
+     * Evaluation of an expression over a custom result type (i.e. bitmaps of ids).
+     * The evaluator resolves the terms of the expression (tag, not tag, tag op value) and combines the partial
+     * results of the logical operators.
+     *
+     * @param <T> type of the result
+     */
+    public interface ExpressionTagEvaluator<T> {
+        default T resolve(String tagExpression) throws Exception {
+            return resolve(getTokens(tagExpression));
+        }
+
+        T resolve(List<String> tokens) throws Exception;
+
+        T and(T left, T right);
+
+        T or(T left, T right);
+
+        boolean isEmpty(T result);
+    }
+
     public ExpressionTagQueryParser(ExpressionTagResolver resolver) {
         if (resolver == null) {
             throw new IllegalArgumentException("Resolver must be not null");
@@ -105,15 +126,55 @@ public class ExpressionTagQueryParser extends TagQueryBaseListener implements AN
         this.resolver = resolver;
     }
 
+    /**
+     * Parser for expressions evaluated with {@link #evaluate(String, ExpressionTagEvaluator)} only.
+     */
+    public ExpressionTagQueryParser() {
+    }
+
     public Set<String> resolve(String expression) throws Exception {
+        if (resolver == null) {
+            throw new IllegalStateException("Parser created without resolver");
+        }
+        return evaluate(expression, new ExpressionTagEvaluator<Set<String>>() {
+            @Override
+            public Set<String> resolve(String tagExpression) throws Exception {
+                return resolver.resolve(tagExpression);
+            }
+
+            @Override
+            public Set<String> resolve(List<String> tokens) throws Exception {
+                return resolver.resolve(tokens);
+            }
+
+            @Override
+            public Set<String> and(Set<String> left, Set<String> right) {
+                left.retainAll(right);
+                return left;
+            }
+
+            @Override
+            public Set<String> or(Set<String> left, Set<String> right) {
+                left.addAll(right);
+                return left;
+            }
+
+            @Override
+            public boolean isEmpty(Set<String> result) {
+                return result == null || result.isEmpty();
+            }
+        });
+    }
+
+    public <T> T evaluate(String expression, ExpressionTagEvaluator<T> evaluator) throws Exception {
         String prefix = parse(expression);
-        Set<String> result;
+        T result;
         if (prefix.startsWith(AND)) {
-            result = and(left(prefix), right(prefix));
+            result = andOr(evaluator, true, left(prefix), right(prefix));
         } else if (prefix.startsWith(OR)) {
-            result = or(left(prefix), right(prefix));
+            result = andOr(evaluator, false, left(prefix), right(prefix));
         } else {
-            result = resolver.resolve(getTokens(prefix));
+            result = evaluator.resolve(getTokens(prefix));
         }
         return result;
     }
@@ -311,41 +372,29 @@ public class ExpressionTagQueryParser extends TagQueryBaseListener implements AN
         return -1;
     }
 
-    private Set<String> and(String left, String right) throws Exception {
-        return andOr(true, left, right);
-    }
-
-    private Set<String> or(String left, String right) throws Exception {
-        return andOr(false, left, right);
-    }
-
-    private Set<String> andOr(boolean isAnd, String left, String right) throws Exception {
-        Set<String> leftResult;
+    private <T> T andOr(ExpressionTagEvaluator<T> evaluator, boolean isAnd, String left, String right)
+            throws Exception {
+        T leftResult;
         if (left.startsWith(AND)) {
-            leftResult = andOr(true, left(left), right(left));
+            leftResult = andOr(evaluator, true, left(left), right(left));
         } else if (left.startsWith(OR)) {
-            leftResult = andOr(false, left(left), right(left));
+            leftResult = andOr(evaluator, false, left(left), right(left));
         } else {
-            leftResult = resolver.resolve(left);
+            leftResult = evaluator.resolve(left);
         }
         // Shorcutting the AND operator
-        if (isAnd && (leftResult == null || leftResult.isEmpty())) {
+        if (isAnd && evaluator.isEmpty(leftResult)) {
             return leftResult;
         }
-        Set<String> rightResult;
+        T rightResult;
         if (right.startsWith(AND)) {
-            rightResult = andOr(true, left(right), right(right));
+            rightResult = andOr(evaluator, true, left(right), right(right));
         } else if (right.startsWith(OR)) {
-            rightResult = andOr(false, left(right), right(right));
-        } else {
-            rightResult = resolver.resolve(right);
-        }
-        if (isAnd) {
-            leftResult.retainAll(rightResult);
+            rightResult = andOr(evaluator, false, left(right), right(right));
         } else {
-            leftResult.addAll(rightResult);
+            rightResult = evaluator.resolve(right);
         }
-        return leftResult;
+        return isAnd ? evaluator.and(leftResult, rightResult) : evaluator.or(leftResult, rightResult);
     }
 
 }
@@ -0,0 +1,418 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.tags;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hawkular.alerts.engine.tags.ExpressionTagQueryParser.ExpressionTagEvaluator;
+
+import com.googlecode.javaewah.EWAHCompressedBitmap;
+import com.googlecode.javaewah.IntIterator;
+
+/**
+ * In-memory inverted index of the tags of alerts or events, used to resolve tag queries without a read of the tags
+ * table per term.
+ *
+ * Per tenant and tag type, the ids are mapped to consecutive ints and each tag name is indexed as
+ * value -> compressed bitmap of ids. The logical operators of a tag query are evaluated as bitmap operations, and the
+ * "not tag" terms as the complement over the bitmap of all the ids of the tenant.
+ *
+ * The tag names and the ids of a tenant are loaded on first use and the tenant entry is discarded after the
+ * expiration. The writes done on this node are applied to the loaded entries through the add and remove methods, once
+ * they are persisted. The writes done on other nodes are not seen until the entry expires, so the index is meant to
+ * be used only on a standalone node.
+ *
+ * The index holds up to a max size of ids and tag values over all the tenants. The oldest tenants are discarded to
+ * keep the index under the max size, and a tenant that does not fit alone is not indexed until its expiration, its
+ * queries return null and must be resolved by the caller.
+ */
+public class TagIndex {
+
+    public interface Loader {
+        /**
+         * @return all the ids of the tenant, tagged or not
+         */
+        Collection<String> ids(String tenantId, String type) throws Exception;
+
+        /**
+         * @return the ids of each value of the tag name
+         */
+        Map<String, Collection<String>> values(String tenantId, String type, String name) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface ValueFilter {
+        /**
+         * @param op operator of the term (=, !=, in, notin)
+         * @param regexps value or array of values of the term
+         * @param value tag value to test
+         * @return true if the tag value matches the term
+         */
+        boolean test(String op, String regexps, String value);
+    }
+
+    private final Loader loader;
+    private final long expiration;
+    private final int maxSize;
+    private final Map<String, TenantTags> tenants = new ConcurrentHashMap<>();
+    private final Map<String, Long> oversized = new ConcurrentHashMap<>();
+
+    /**
+     * @param loader of the ids and tags of a tenant
+     * @param expiration time in milliseconds a loaded tenant is used
+     * @param maxSize max number of ids and tag values held by the index
+     */
+    public TagIndex(Loader loader, long expiration, int maxSize) {
+        if (loader == null) {
+            throw new IllegalArgumentException("Loader must be not null");
+        }
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("MaxSize must be positive");
+        }
+        this.loader = loader;
+        this.expiration = expiration;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Resolve a tag query with the same semantics of the query on the tags table.
+     *
+     * @param tenantId the tenant
+     * @param type the tag type (ALERT or EVENT)
+     * @param tagQuery the tag query expression
+     * @param filter for the values of the terms with operator
+     * @return the ids matching the query or null if the tenant does not fit in the index
+     */
+    public Set<String> query(String tenantId, String type, String tagQuery, ValueFilter filter) throws Exception {
+        long now = System.currentTimeMillis();
+        tenants.values().removeIf(tags -> now - tags.created > expiration);
+        oversized.values().removeIf(created -> now - created > expiration);
+        String key = key(tenantId, type);
+        if (oversized.containsKey(key)) {
+            return null;
+        }
+        TenantTags tags = tenants.computeIfAbsent(key, k -> new TenantTags(tenantId, type, now));
+        Set<String> ids;
+        synchronized (tags) {
+            EWAHCompressedBitmap result = new ExpressionTagQueryParser().evaluate(tagQuery,
+                    new ExpressionTagEvaluator<EWAHCompressedBitmap>() {
+                        @Override
+                        public EWAHCompressedBitmap resolve(List<String> tokens) throws Exception {
+                            return tags.resolve(tokens, filter);
+                        }
+
+                        @Override
+                        public EWAHCompressedBitmap and(EWAHCompressedBitmap left, EWAHCompressedBitmap right) {
+                            return left.and(right);
+                        }
+
+                        @Override
+                        public EWAHCompressedBitmap or(EWAHCompressedBitmap left, EWAHCompressedBitmap right) {
+                            return left.or(right);
+                        }
+
+                        @Override
+                        public boolean isEmpty(EWAHCompressedBitmap result) {
+                            return result.cardinality() == 0;
+                        }
+                    });
+            ids = tags.toIds(result);
+            tags.size = tags.ids.size() + tags.values;
+        }
+        if (tags.size > maxSize) {
+            tenants.remove(key, tags);
+            oversized.put(key, tags.created);
+        } else {
+            evict(tags);
+        }
+        return ids;
+    }
+
+    /**
+     * New ids of the tenant, tagged or not.
+     */
+    public void addIds(String tenantId, String type, Collection<String> ids) {
+        TenantTags tags = tenants.get(key(tenantId, type));
+        if (tags != null) {
+            synchronized (tags) {
+                tags.addIds(ids);
+            }
+        }
+    }
+
+    /**
+     * Removed ids of the tenant, with all their tags.
+     */
+    public void removeIds(String tenantId, String type, Collection<String> ids) {
+        TenantTags tags = tenants.get(key(tenantId, type));
+        if (tags != null) {
+            synchronized (tags) {
+                tags.removeIds(ids);
+            }
+        }
+    }
+
+    /**
+     * @param tags name -> value of the tags added to the id
+     */
+    public void addTags(String tenantId, String type, String id, Map<String, String> tags) {
+        TenantTags tenantTags = tenants.get(key(tenantId, type));
+        if (tenantTags != null && tags != null) {
+            synchronized (tenantTags) {
+                tags.entrySet().forEach(tag -> tenantTags.addTag(tag.getKey(), tag.getValue(), id));
+            }
+        }
+    }
+
+    /**
+     * @param tags name -> value of the tags removed from the id
+     */
+    public void removeTags(String tenantId, String type, String id, Map<String, String> tags) {
+        TenantTags tenantTags = tenants.get(key(tenantId, type));
+        if (tenantTags != null && tags != null) {
+            synchronized (tenantTags) {
+                tags.entrySet().forEach(tag -> tenantTags.removeTag(tag.getKey(), tag.getValue(), id));
+            }
+        }
+    }
+
+    /**
+     * Discard the loaded tenants, i.e. after a failed write.
+     */
+    public void reset() {
+        tenants.clear();
+        oversized.clear();
+    }
+
+    /**
+     * @return number of ids and tag values held by the index, as measured on the last query of each tenant
+     */
+    public int size() {
+        return tenants.values().stream().mapToInt(tags -> tags.size).sum();
+    }
+
+    /*
+        Discard the oldest tenants, other than the one just queried, until the index fits in the max size
+     */
+    private void evict(TenantTags queried) {
+        while (size() > maxSize) {
+            TenantTags oldest = null;
+            for (TenantTags tags : tenants.values()) {
+                if (tags != queried && (oldest == null || tags.created < oldest.created)) {
+                    oldest = tags;
+                }
+            }
+            if (oldest == null) {
+                return;
+            }
+            tenants.remove(key(oldest.tenantId, oldest.type), oldest);
+        }
+    }
+
+    private static String key(String tenantId, String type) {
+        return tenantId + ":" + type;
+    }
+
+    private static EWAHCompressedBitmap union(Collection<EWAHCompressedBitmap> bitmaps) {
+        if (bitmaps.isEmpty()) {
+            return new EWAHCompressedBitmap();
+        }
+        if (bitmaps.size() == 1) {
+            return bitmaps.iterator().next();
+        }
+        return EWAHCompressedBitmap.or(bitmaps.toArray(new EWAHCompressedBitmap[bitmaps.size()]));
+    }
+
+    /*
+        Bitmaps are modified in place only to append ids after the last set bit, otherwise a new bitmap is created.
+        All the access to the bitmaps of a tenant is done holding the TenantTags monitor.
+     */
+    private class TenantTags {
+        private final String tenantId;
+        private final String type;
+        private final long created;
+
+        private final Map<String, Integer> ints = new HashMap<>();
+        private final List<String> ids = new ArrayList<>();
+        private EWAHCompressedBitmap all;
+        private final Map<String, Map<String, EWAHCompressedBitmap>> names = new HashMap<>();
+        private int values;
+        private volatile int size;
+
+        TenantTags(String tenantId, String type, long created) {
+            this.tenantId = tenantId;
+            this.type = type;
+            this.created = created;
+        }
+
+        EWAHCompressedBitmap resolve(List<String> tokens, ValueFilter filter) throws Exception {
+            if (tokens == null) {
+                return new EWAHCompressedBitmap();
+            }
+            if (tokens.size() == 1) {
+                // tag
+                return union(values(tokens.get(0)).values());
+            }
+            if (tokens.size() == 2) {
+                // not tag
+                return all().andNot(union(values(tokens.get(1)).values()));
+            }
+            String op;
+            String regexp;
+            if (tokens.size() == 3) {
+                op = tokens.get(1);
+                regexp = tokens.get(2);
+            } else {
+                // not in [array]
+                op = tokens.get(1) + tokens.get(2);
+                regexp = tokens.get(3);
+            }
+            List<EWAHCompressedBitmap> matched = new ArrayList<>();
+            values(tokens.get(0)).entrySet().stream()
+                    .filter(value -> filter.test(op, regexp, value.getKey()))
+                    .forEach(value -> matched.add(value.getValue()));
+            return union(matched);
+        }
+
+        Set<String> toIds(EWAHCompressedBitmap bitmap) {
+            Set<String> result = new HashSet<>();
+            IntIterator it = bitmap.intIterator();
+            while (it.hasNext()) {
+                String id = ids.get(it.next());
+                if (id != null) {
+                    result.add(id);
+                }
+            }
+            return result;
+        }
+
+        void addIds(Collection<String> added) {
+            if (all != null) {
+                added.forEach(id -> all = add(all, toInt(id)));
+            }
+        }
+
+        void removeIds(Collection<String> removed) {
+            Set<String> known = new HashSet<>();
+            removed.stream().filter(ints::containsKey).forEach(known::add);
+            if (known.isEmpty()) {
+                return;
+            }
+            EWAHCompressedBitmap bitmap = toBitmap(known);
+            if (all != null) {
+                all = all.andNot(bitmap);
+            }
+            names.values().forEach(nameValues -> {
+                nameValues.replaceAll((value, valueIds) -> valueIds.andNot(bitmap));
+                nameValues.values().removeIf(valueIds -> valueIds.cardinality() == 0);
+            });
+            values = names.values().stream().mapToInt(Map::size).sum();
+            known.forEach(id -> ids.set(ints.remove(id), null));
+        }
+
+        void addTag(String name, String value, String id) {
+            Map<String, EWAHCompressedBitmap> values = names.get(name);
+            if (values != null) {
+                int i = toInt(id);
+                EWAHCompressedBitmap bitmap = values.get(value);
+                if (bitmap == null) {
+                    this.values++;
+                }
+                values.put(value, bitmap == null ? EWAHCompressedBitmap.bitmapOf(i) : add(bitmap, i));
+            }
+        }
+
+        void removeTag(String name, String value, String id) {
+            Map<String, EWAHCompressedBitmap> values = names.get(name);
+            Integer i = ints.get(id);
+            if (values != null && i != null && values.containsKey(value)) {
+                EWAHCompressedBitmap bitmap = values.get(value).andNot(EWAHCompressedBitmap.bitmapOf(i));
+                if (bitmap.cardinality() == 0) {
+                    values.remove(value);
+                    this.values--;
+                } else {
+                    values.put(value, bitmap);
+                }
+            }
+        }
+
+        private EWAHCompressedBitmap all() throws Exception {
+            if (all == null) {
+                all = toBitmap(loader.ids(tenantId, type));
+            }
+            return all;
+        }
+
+        private Map<String, EWAHCompressedBitmap> values(String name) throws Exception {
+            Map<String, EWAHCompressedBitmap> values = names.get(name);
+            if (values == null) {
+                values = new HashMap<>();
+                for (Map.Entry<String, Collection<String>> value : loader.values(tenantId, type, name).entrySet()) {
+                    values.put(value.getKey(), toBitmap(value.getValue()));
+                }
+                names.put(name, values);
+                this.values += values.size();
+            }
+            return values;
+        }
+
+        private int toInt(String id) {
+            Integer i = ints.get(id);
+            if (i == null) {
+                i = ids.size();
+                ids.add(id);
+                ints.put(id, i);
+            }
+            return i;
+        }
+
+        /*
+            Ids not mapped yet are mapped to new ints
+         */
+        private EWAHCompressedBitmap toBitmap(Collection<String> idsToMap) {
+            int[] sorted = new int[idsToMap.size()];
+            int n = 0;
+            Iterator<String> it = idsToMap.iterator();
+            while (it.hasNext()) {
+                sorted[n++] = toInt(it.next());
+            }
+            Arrays.sort(sorted);
+            EWAHCompressedBitmap bitmap = new EWAHCompressedBitmap();
+            for (int i : sorted) {
+                bitmap.set(i);
+            }
+            return bitmap;
+        }
+
+        private EWAHCompressedBitmap add(EWAHCompressedBitmap bitmap, int i) {
+            if (i >= bitmap.sizeInBits()) {
+                bitmap.set(i);
+                return bitmap;
+            }
+            return bitmap.get(i) ? bitmap : bitmap.or(EWAHCompressedBitmap.bitmapOf(i));
+        }
+    }
+}
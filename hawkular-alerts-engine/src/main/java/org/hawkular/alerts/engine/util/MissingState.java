@@ -19,6 +19,7 @@ package org.hawkular.alerts.engine.util;
 import org.hawkular.alerts.api.model.condition.MissingCondition;
 import org.hawkular.alerts.api.model.trigger.Mode;
 import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.api.util.EngineClock;
 
 /**
  * MissingConditions detect missing data or events within a defined time interval.  Each MissingCondition
@@ -56,7 +57,7 @@ public class MissingState {
         this.triggerMode = condition.getTriggerMode();
         this.dataId = condition.getDataId();
 
-        long now = System.currentTimeMillis();
+        long now = EngineClock.currentTimeMillis();
         this.previousTime = now;
         this.time = now;
     }
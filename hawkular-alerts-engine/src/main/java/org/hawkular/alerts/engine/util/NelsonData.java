@@ -16,6 +16,7 @@
  */
 package org.hawkular.alerts.engine.util;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
@@ -107,13 +108,11 @@ public class NelsonData {
             return;
         }
 
-        Double sample;
-        try {
-            sample = Double.valueOf(data.getValue());
-        } catch (Exception e) {
+        if (!data.isNumeric()) {
             // not a valid numeric data
             return;
         }
+        Double sample = data.getNumericValue();
 
         if (!isValid(sample)) {
             // not a valid Double
@@ -389,6 +388,109 @@ public class NelsonData {
         return oneDeviation;
     }
 
+    /**
+     * @return a copy of the baseline and the rules evaluation state, to be restored on a new NelsonData for the same
+     *         condition
+     */
+    public State getState() {
+        State state = new State();
+        state.sampleSize = condition.getSampleSize();
+        state.violations = new ArrayList<>(violations);
+        state.violationsData = new LinkedList<>(violationsData);
+        state.mean = mean.copy();
+        state.standardDeviation = standardDeviation.copy();
+        state.oneDeviation = oneDeviation;
+        state.twoDeviations = twoDeviations;
+        state.threeDeviations = threeDeviations;
+        state.rule2Count = rule2Count;
+        state.rule3Count = rule3Count;
+        state.rule3PreviousSample = rule3PreviousSample;
+        state.rule4Count = rule4Count;
+        state.rule4PreviousSample = rule4PreviousSample;
+        state.rule4PreviousDirection = rule4PreviousDirection;
+        state.rule5LastThree = new LinkedList<>(rule5LastThree);
+        state.rule5Above = rule5Above;
+        state.rule5Below = rule5Below;
+        state.rule6LastFive = new LinkedList<>(rule6LastFive);
+        state.rule6Above = rule6Above;
+        state.rule6Below = rule6Below;
+        state.rule7Count = rule7Count;
+        state.rule8Count = rule8Count;
+        return state;
+    }
+
+    /**
+     * Restore a state taken from a NelsonData of the same condition. The state is ignored if the sample size of the
+     * condition has changed, so the baseline is re-established.
+     *
+     * @param state to restore
+     * @return true if the state was restored
+     */
+    public boolean setState(State state) {
+        if (state == null || state.sampleSize != condition.getSampleSize()) {
+            return false;
+        }
+        violations = new ArrayList<>(state.violations);
+        violationsData = new LinkedList<>(state.violationsData);
+        mean = state.mean.copy();
+        standardDeviation = state.standardDeviation.copy();
+        oneDeviation = state.oneDeviation;
+        twoDeviations = state.twoDeviations;
+        threeDeviations = state.threeDeviations;
+        rule2Count = state.rule2Count;
+        rule3Count = state.rule3Count;
+        rule3PreviousSample = state.rule3PreviousSample;
+        rule4Count = state.rule4Count;
+        rule4PreviousSample = state.rule4PreviousSample;
+        rule4PreviousDirection = state.rule4PreviousDirection;
+        rule5LastThree = new LinkedList<>(state.rule5LastThree);
+        rule5Above = state.rule5Above;
+        rule5Below = state.rule5Below;
+        rule6LastFive = new LinkedList<>(state.rule6LastFive);
+        rule6Above = state.rule6Above;
+        rule6Below = state.rule6Below;
+        rule7Count = state.rule7Count;
+        rule8Count = state.rule8Count;
+        return true;
+    }
+
+    /**
+     * Evaluation state of a NelsonData, detached from the condition.
+     */
+    public static class State implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private int sampleSize;
+        private ArrayList<NelsonRule> violations;
+        private LinkedList<Data> violationsData;
+        private Mean mean;
+        private StandardDeviation standardDeviation;
+        private double oneDeviation;
+        private double twoDeviations;
+        private double threeDeviations;
+        private int rule2Count;
+        private int rule3Count;
+        private Double rule3PreviousSample;
+        private int rule4Count;
+        private Double rule4PreviousSample;
+        private String rule4PreviousDirection;
+        private LinkedList<String> rule5LastThree;
+        private int rule5Above;
+        private int rule5Below;
+        private LinkedList<String> rule6LastFive;
+        private int rule6Above;
+        private int rule6Below;
+        private int rule7Count;
+        private int rule8Count;
+
+        /**
+         * @return true if no sample has been added yet
+         */
+        public boolean isEmpty() {
+            return violationsData.isEmpty();
+        }
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
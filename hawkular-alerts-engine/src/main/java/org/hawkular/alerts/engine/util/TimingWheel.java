@@ -0,0 +1,192 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hashed timing wheel used to track deadlines of engine entries (i.e. STRICT_TIMEOUT dampenings, MissingStates).
+ *
+ * Entries are hashed by its deadline into a circular array of slots, each slot covering <code>tickMs</code>
+ * milliseconds. Scheduling, rescheduling and cancelling an entry are O(1). Expiring visits only the slots of the
+ * elapsed ticks, so entries not yet due are not touched, except when a deadline is further than a full revolution of
+ * the wheel, in which case the entry is skipped once per revolution.
+ *
+ * This class is not thread safe, callers must synchronize the access.
+ */
+public class TimingWheel<T> {
+
+    private final long tickMs;
+    private final int mask;
+    private final Entry<T>[] slots;
+    private final Map<T, Entry<T>> entries;
+
+    /**
+     * All entries with a tick lower or equal than this have been expired.
+     */
+    private long currentTick;
+
+    /**
+     * @param tickMs resolution of the wheel in milliseconds
+     * @param wheelSize number of slots, rounded up to a power of two
+     * @param startTime time in milliseconds of the wheel start
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMs, int wheelSize, long startTime) {
+        if (tickMs <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("tickMs and wheelSize must be positive");
+        }
+        int size = Integer.highestOneBit(wheelSize);
+        if (size < wheelSize) {
+            size <<= 1;
+        }
+        this.tickMs = tickMs;
+        this.mask = size - 1;
+        this.slots = new Entry[size];
+        this.entries = new HashMap<>();
+        this.currentTick = startTime / tickMs - 1;
+    }
+
+    /**
+     * Schedule an entry, or reschedule it if it was already scheduled.
+     *
+     * @param key entry to schedule
+     * @param deadline time in milliseconds when the entry expires
+     */
+    public void schedule(T key, long deadline) {
+        cancel(key);
+        Entry<T> entry = new Entry<>(key, deadline, Math.max(deadline / tickMs, currentTick + 1));
+        link(entry);
+        entries.put(key, entry);
+    }
+
+    /**
+     * @param key entry to cancel
+     * @return true if the entry was scheduled
+     */
+    public boolean cancel(T key) {
+        Entry<T> entry = entries.remove(key);
+        if (entry == null) {
+            return false;
+        }
+        unlink(entry);
+        return true;
+    }
+
+    /**
+     * @param key entry to check
+     * @return the deadline of the entry or -1 if it is not scheduled
+     */
+    public long deadline(T key) {
+        Entry<T> entry = entries.get(key);
+        return entry == null ? -1 : entry.deadline;
+    }
+
+    public boolean contains(T key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Remove and return the entries with a deadline lower or equal than <code>now</code>.
+     *
+     * @param now time in milliseconds
+     * @return expired entries
+     */
+    public List<T> expire(long now) {
+        List<T> expired = new ArrayList<>();
+        long nowTick = now / tickMs;
+        if (nowTick <= currentTick || entries.isEmpty()) {
+            currentTick = Math.max(currentTick, nowTick - 1);
+            return expired;
+        }
+        long lastTick = Math.min(nowTick, currentTick + slots.length);
+        for (long tick = currentTick + 1; tick <= lastTick; tick++) {
+            Entry<T> entry = slots[(int) (tick & mask)];
+            while (entry != null) {
+                Entry<T> next = entry.next;
+                if (entry.deadline <= now) {
+                    unlink(entry);
+                    entries.remove(entry.key);
+                    expired.add(entry.key);
+                }
+                entry = next;
+            }
+        }
+        // nowTick can be partially expired, it is visited again on next call
+        currentTick = nowTick - 1;
+        return expired;
+    }
+
+    public Set<T> keys() {
+        return entries.keySet();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public void clear() {
+        entries.clear();
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = null;
+        }
+    }
+
+    private void link(Entry<T> entry) {
+        int slot = (int) (entry.tick & mask);
+        entry.next = slots[slot];
+        if (entry.next != null) {
+            entry.next.prev = entry;
+        }
+        slots[slot] = entry;
+    }
+
+    private void unlink(Entry<T> entry) {
+        if (entry.prev != null) {
+            entry.prev.next = entry.next;
+        } else {
+            slots[(int) (entry.tick & mask)] = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.prev = entry.prev;
+        }
+        entry.prev = null;
+        entry.next = null;
+    }
+
+    private static class Entry<T> {
+        final T key;
+        final long deadline;
+        final long tick;
+        Entry<T> prev;
+        Entry<T> next;
+
+        Entry(T key, long deadline, long tick) {
+            this.key = key;
+            this.deadline = deadline;
+            this.tick = tick;
+        }
+    }
+}
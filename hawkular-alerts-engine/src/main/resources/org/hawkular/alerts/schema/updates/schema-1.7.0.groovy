@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+setKeyspace keyspace
+
+// The time indexes of alerts and events are partitioned by (tenantId, bucket), where bucket is the start of the day
+// of the indexed time, and the payloads are partitioned by (tenantId, id). The previous tables, partitioned only by
+// tenantId, are copied into the new ones by CassBucketMigration at startup and are kept until a later update.
+
+schemaChange {
+  version '6.0'
+  author 'lponce'
+  tags '1.7.x'
+  cql """
+CREATE TABLE index_buckets (
+    tenantId text,
+    indexName text,
+    bucket bigint,
+    PRIMARY KEY ((tenantId, indexName), bucket)
+)
+"""
+  verify { tableExists(keyspace, "index_buckets") }
+}
+
+schemaChange {
+  version '6.1'
+  author 'lponce'
+  tags '1.7.x'
+  cql """
+CREATE TABLE alerts_by_id (
+    tenantId text,
+    alertId text,
+    payload text,
+    PRIMARY KEY ((tenantId, alertId))
+)
+"""
+  verify { tableExists(keyspace, "alerts_by_id") }
+}
+
+schemaChange {
+  version '6.2'
+  author 'lponce'
+  tags '1.7.x'
+  cql """
+CREATE TABLE alerts_ctimes_by_day (
+    tenantId text,
+    bucket bigint,
+    alertId text,
+    ctime bigint,
+    PRIMARY KEY ((tenantId, bucket), ctime, alertId)
+)
+"""
+  verify { tableExists(keyspace, "alerts_ctimes_by_day") }
+}
+
+schemaChange {
+  version '6.3'
+  author 'lponce'
+  tags '1.7.x'
+  cql """
+CREATE TABLE alerts_stimes_by_day (
+    tenantId text,
+    bucket bigint,
+    alertId text,
+    stime bigint,
+    PRIMARY KEY ((tenantId, bucket), stime, alertId)
+)
+"""
+  verify { tableExists(keyspace, "alerts_stimes_by_day") }
+}
+
+schemaChange {
+  version '6.4'
+  author 'lponce'
+  tags '1.7.x'
+  cql """
+CREATE TABLE alerts_lifecycle_by_day (
+    tenantId text,
+    bucket bigint,
+    alertId text,
+    status text,
+    stime bigint,
+    PRIMARY KEY ((tenantId, bucket), status, stime, alertId)
+)
+"""
+  verify { tableExists(keyspace, "alerts_lifecycle_by_day") }
+}
+
+schemaChange {
+  version '6.5'
+  author 'lponce'
+  tags '1.7.x'
+  cql """
+CREATE TABLE events_by_id (
+    tenantId text,
+    id text,
+    payload text,
+    PRIMARY KEY ((tenantId, id))
+)
+"""
+  verify { tableExists(keyspace, "events_by_id") }
+}
+
+schemaChange {
+  version '6.6'
+  author 'lponce'
+  tags '1.7.x'
+  cql """
+CREATE TABLE events_ctimes_by_day (
+    tenantId text,
+    bucket bigint,
+    id text,
+    ctime bigint,
+    PRIMARY KEY ((tenantId, bucket), ctime, id)
+)
+"""
+  verify { tableExists(keyspace, "events_ctimes_by_day") }
+}
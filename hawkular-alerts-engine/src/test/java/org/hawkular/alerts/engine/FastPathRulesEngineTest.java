@@ -0,0 +1,317 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import org.hawkular.alerts.api.model.condition.AvailabilityCondition;
+import org.hawkular.alerts.api.model.condition.ConditionEval;
+import org.hawkular.alerts.api.model.condition.EventCondition;
+import org.hawkular.alerts.api.model.condition.StringCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdRangeCondition;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.data.AvailabilityType;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Alert;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.event.EventCategory;
+import org.hawkular.alerts.api.model.event.EventType;
+import org.hawkular.alerts.api.model.trigger.Mode;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.engine.impl.DroolsRulesEngineImpl;
+import org.hawkular.alerts.engine.impl.FastPathRulesEngineImpl;
+import org.hawkular.alerts.engine.service.RulesEngine;
+import org.jboss.logging.Logger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test of the fast path RulesEngine implementation.
+ */
+public class FastPathRulesEngineTest {
+    private static final Logger log = Logger.getLogger(FastPathRulesEngineTest.class);
+
+    FastPathRulesEngineImpl rulesEngine = new FastPathRulesEngineImpl(new DroolsRulesEngineImpl());
+    List<Alert> alerts = new ArrayList<>();
+    Set<Dampening> pendingTimeouts = new HashSet<>();
+    Map<Trigger, List<Set<ConditionEval>>> autoResolvedTriggers = new HashMap<>();
+    Set<Trigger> disabledTriggers = new CopyOnWriteArraySet<>();
+    TreeSet<Data> datums = new TreeSet<Data>();
+    TreeSet<Event> inputEvents = new TreeSet<>();
+    List<Event> outputEvents = new ArrayList<>();
+
+    @Before
+    public void before() {
+        addGlobals(rulesEngine, alerts, outputEvents, disabledTriggers);
+    }
+
+    @After
+    public void after() {
+        rulesEngine.reset();
+        alerts.clear();
+        pendingTimeouts.clear();
+        disabledTriggers.clear();
+        datums.clear();
+        inputEvents.clear();
+        outputEvents.clear();
+    }
+
+    private void addGlobals(RulesEngine rules, List<Alert> alerts, List<Event> events, Set<Trigger> disabled) {
+        rules.addGlobal("log", log);
+        rules.addGlobal("alerts", alerts);
+        rules.addGlobal("events", events);
+        rules.addGlobal("pendingTimeouts", pendingTimeouts);
+        rules.addGlobal("autoResolvedTriggers", autoResolvedTriggers);
+        rules.addGlobal("disabledTriggers", disabled);
+    }
+
+    /*
+        Simple triggers, evaluated on the fast path, mixed with triggers that must stay in the rules.
+     */
+    private List<Object> definitions() {
+        List<Object> definitions = new ArrayList<>();
+
+        Trigger t1 = trigger("trigger-1");
+        definitions.add(t1);
+        definitions.add(new ThresholdCondition("tenant", "trigger-1", "NumericData-01",
+                ThresholdCondition.Operator.GT, 10.0));
+
+        Trigger t2 = trigger("trigger-2");
+        definitions.add(t2);
+        definitions.add(new ThresholdRangeCondition("tenant", "trigger-2", "NumericData-01",
+                ThresholdRangeCondition.Operator.INCLUSIVE, ThresholdRangeCondition.Operator.INCLUSIVE,
+                5.0, 15.0, true));
+        definitions.add(Dampening.forRelaxedCount("tenant", "trigger-2", Mode.FIRING, 2, 3));
+
+        Trigger t3 = trigger("trigger-3");
+        t3.setEventType(EventType.EVENT);
+        definitions.add(t3);
+        definitions.add(new AvailabilityCondition("tenant", "trigger-3", "Availability-01",
+                AvailabilityCondition.Operator.DOWN));
+
+        Trigger t4 = trigger("trigger-4");
+        t4.setAutoDisable(true);
+        definitions.add(t4);
+        definitions.add(new StringCondition("tenant", "trigger-4", "StringData-01",
+                StringCondition.Operator.STARTS_WITH, "Fail", false));
+
+        Trigger t5 = trigger("trigger-5");
+        definitions.add(t5);
+        definitions.add(Dampening.forStrict("tenant", "trigger-5", Mode.FIRING, 2));
+        definitions.add(new ThresholdCondition("tenant", "trigger-5", "NumericData-01",
+                ThresholdCondition.Operator.GT, 10.0));
+
+        // Two conditions, evaluated by the rules
+        Trigger t6 = trigger("trigger-6");
+        definitions.add(t6);
+        definitions.add(new ThresholdCondition("tenant", "trigger-6", 2, 1, "NumericData-01",
+                ThresholdCondition.Operator.GT, 10.0));
+        definitions.add(new ThresholdCondition("tenant", "trigger-6", 2, 2, "NumericData-02",
+                ThresholdCondition.Operator.GT, 10.0));
+
+        // AutoResolve, evaluated by the rules
+        Trigger t7 = trigger("trigger-7");
+        t7.setAutoResolve(true);
+        definitions.add(t7);
+        definitions.add(new ThresholdCondition("tenant", "trigger-7", "NumericData-02",
+                ThresholdCondition.Operator.GT, 10.0));
+        definitions.add(new ThresholdCondition("tenant", "trigger-7", Mode.AUTORESOLVE, "NumericData-02",
+                ThresholdCondition.Operator.LTE, 10.0));
+
+        // Chained on the events of trigger-3, evaluated by the rules
+        Trigger t8 = trigger("trigger-8");
+        definitions.add(t8);
+        definitions.add(new EventCondition("tenant", "trigger-8", Mode.FIRING, "trigger-3"));
+
+        return definitions;
+    }
+
+    private Trigger trigger(String triggerId) {
+        Trigger t = new Trigger("tenant", triggerId, triggerId);
+        t.setEnabled(true);
+        return t;
+    }
+
+    private TreeSet<Data> data(int round) {
+        TreeSet<Data> data = new TreeSet<>();
+        long timestamp = 1000L + (round * 3000L);
+        double value = (round % 3 == 0) ? 5.0 : 12.0;
+        data.add(Data.forNumeric("tenant", "NumericData-01", timestamp, value));
+        // Deferred by the rules, evaluated in order by the fast path
+        data.add(Data.forNumeric("tenant", "NumericData-01", timestamp + 1500L, value + 1.0));
+        // MinReportingInterval violation
+        data.add(Data.forNumeric("tenant", "NumericData-01", timestamp + 1600L, 100.0));
+        data.add(Data.forNumeric("tenant", "NumericData-02", timestamp, value));
+        data.add(Data.forAvailability("tenant", "Availability-01", timestamp,
+                (round % 2 == 0) ? AvailabilityType.DOWN : AvailabilityType.UP));
+        data.add(Data.forString("tenant", "StringData-01", timestamp, (round == 4) ? "Failed" : "Success"));
+        return data;
+    }
+
+    private static Map<String, Integer> countByTrigger(List<? extends Event> events) {
+        Map<String, Integer> counts = new TreeMap<>();
+        for (Event e : events) {
+            counts.merge(e.getTrigger().getId(), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    @Test
+    public void sameResultsAsRulesTest() {
+        DroolsRulesEngineImpl expectedEngine = new DroolsRulesEngineImpl();
+        List<Alert> expectedAlerts = new ArrayList<>();
+        List<Event> expectedEvents = new ArrayList<>();
+        Set<Trigger> expectedDisabled = new HashSet<>();
+        addGlobals(expectedEngine, expectedAlerts, expectedEvents, expectedDisabled);
+
+        expectedEngine.addFacts(definitions());
+        rulesEngine.updateTriggers(null, definitions());
+        assertEquals(5, rulesEngine.getNumFastPathTriggers());
+
+        try {
+            for (int round = 0; round < 10; round++) {
+                expectedEngine.addData(data(round));
+                expectedEngine.fire();
+                rulesEngine.addData(data(round));
+                rulesEngine.fire();
+            }
+
+            assertTrue(expectedAlerts.size() > 0);
+            assertEquals(countByTrigger(expectedAlerts), countByTrigger(alerts));
+            assertEquals(countByTrigger(expectedEvents), countByTrigger(outputEvents));
+            assertEquals(expectedDisabled, disabledTriggers);
+            assertTrue(countByTrigger(alerts).containsKey("trigger-8"));
+            assertEquals(4, rulesEngine.getNumFastPathTriggers());
+
+            for (Alert a : alerts) {
+                assertEquals(a.toString(), a.getTrigger().getId(), a.getDataId());
+                if (!a.getTriggerId().equals("trigger-6")) {
+                    assertEquals(a.toString(), 1, a.getEvalSets().get(0).size());
+                }
+            }
+        } finally {
+            expectedEngine.reset();
+        }
+    }
+
+    @Test
+    public void chainedEventsTest() {
+        Trigger t1 = trigger("trigger-1");
+        t1.setEventType(EventType.EVENT);
+        Trigger t2 = trigger("trigger-2");
+        List<Object> definitions = new ArrayList<>();
+        definitions.add(t1);
+        definitions.add(new ThresholdCondition("tenant", "trigger-1", "NumericData-01",
+                ThresholdCondition.Operator.LT, 10.0));
+        definitions.add(t2);
+        definitions.add(new EventCondition("tenant", "trigger-2", Mode.FIRING, "trigger-1"));
+        rulesEngine.addFacts(definitions);
+        assertEquals(1, rulesEngine.getNumFastPathTriggers());
+
+        datums.add(Data.forNumeric("tenant", "NumericData-01", 1000, 5.0));
+        rulesEngine.addData(datums);
+        inputEvents.add(new Event("tenant", UUID.randomUUID().toString(), 1000, "A.war",
+                EventCategory.DEPLOYMENT.name(), "DOWN"));
+        rulesEngine.addEvents(inputEvents);
+        rulesEngine.fire();
+
+        assertEquals(outputEvents.toString(), 1, outputEvents.size());
+        assertEquals(alerts.toString(), 1, alerts.size());
+        assertEquals("trigger-2", alerts.get(0).getTriggerId());
+    }
+
+    @Test
+    public void moveToRulesTest() {
+        Trigger t1 = trigger("trigger-1");
+        ThresholdCondition t1c1 = new ThresholdCondition("tenant", "trigger-1", "NumericData-01",
+                ThresholdCondition.Operator.LT, 10.0);
+        Dampening t1d = Dampening.forStrict("tenant", "trigger-1", Mode.FIRING, 2);
+        List<Object> definitions = new ArrayList<>();
+        definitions.add(t1);
+        definitions.add(t1c1);
+        definitions.add(t1d);
+        rulesEngine.addFacts(definitions);
+        assertEquals(1, rulesEngine.getNumFastPathTriggers());
+        assertNotNull(rulesEngine.getFact(t1));
+        assertEquals(3, rulesEngine.getFacts(f -> true).size());
+
+        datums.add(Data.forNumeric("tenant", "NumericData-01", 1000, 5.0));
+        rulesEngine.addData(datums);
+        rulesEngine.fire();
+        assertEquals(0, alerts.size());
+        assertEquals(1, t1d.getNumTrueEvals());
+
+        // The trigger moves to the rules keeping its dampening state
+        rulesEngine.updateFact(t1d);
+        assertEquals(0, rulesEngine.getNumFastPathTriggers());
+        assertNotNull(rulesEngine.getFact(t1));
+
+        datums.clear();
+        datums.add(Data.forNumeric("tenant", "NumericData-01", 2000, 5.0));
+        rulesEngine.addData(datums);
+        rulesEngine.fire();
+        assertEquals(alerts.toString(), 1, alerts.size());
+    }
+
+    @Test
+    public void removeTriggerFactsTest() {
+        List<Object> definitions = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            definitions.add(trigger("trigger-" + i));
+            definitions.add(new ThresholdCondition("tenant", "trigger-" + i, "NumericData-01",
+                    ThresholdCondition.Operator.LT, 10.0));
+            if (i % 2 == 0) {
+                removed.add("trigger-" + i);
+            }
+        }
+        rulesEngine.updateTriggers(null, definitions);
+        assertEquals(10, rulesEngine.getNumFastPathTriggers());
+
+        Map<String, List<String>> removedByTenant = new HashMap<>();
+        removedByTenant.put("tenant", removed);
+        // Trigger, condition and default dampening
+        assertEquals(15, rulesEngine.updateTriggers(removedByTenant, null).size());
+        assertEquals(3, rulesEngine.removeTriggerFacts("tenant", "trigger-1").size());
+        assertNull(rulesEngine.getFact(trigger("trigger-1")));
+
+        datums.add(Data.forNumeric("tenant", "NumericData-01", 1000, 5.0));
+        rulesEngine.addData(datums);
+        rulesEngine.fire();
+
+        assertEquals(alerts.toString(), 4, alerts.size());
+        for (Alert a : alerts) {
+            assertEquals(1, Integer.parseInt(a.getTriggerId().substring("trigger-".length())) % 2);
+        }
+    }
+}
@@ -17,11 +17,15 @@
 package org.hawkular.alerts.engine;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
@@ -70,6 +74,7 @@ import org.hawkular.alerts.api.model.trigger.Trigger;
 import org.hawkular.alerts.engine.impl.DroolsRulesEngineImpl;
 import org.hawkular.alerts.engine.service.RulesEngine;
 import org.hawkular.alerts.engine.util.MissingState;
+import org.hawkular.alerts.engine.util.NelsonData;
 import org.jboss.logging.Logger;
 import org.junit.After;
 import org.junit.Before;
@@ -2297,4 +2302,64 @@ public class RulesEngineTest {
         assertEquals(e.getViolations().toString(), 1, e.getViolations().size());
     }
 
+    @Test
+    public void removeTriggerFactsTest() {
+        Trigger t1 = new Trigger("tenant", "trigger-1", "Nelson");
+        NelsonCondition t1c1 = new NelsonCondition("tenant", "trigger-1", "NumericData-01",
+                EnumSet.allOf(NelsonRule.class), 10);
+        MissingCondition t1c2 = new MissingCondition("tenant", "trigger-1", "NumericData-02", 1000L);
+        Dampening t1d = Dampening.forStrict("tenant", "trigger-1", Mode.FIRING, 2);
+        Trigger t2 = new Trigger("tenant", "trigger-2", "Threshold");
+        ThresholdCondition t2c1 = new ThresholdCondition("tenant", "trigger-2", "NumericData-01",
+                ThresholdCondition.Operator.LT, 10.0);
+
+        t1.setEnabled(true);
+        t2.setEnabled(true);
+
+        rulesEngine.addFacts(Arrays.asList(t1, t1c1, t1c2, t1d, new MissingState(t1, t1c2), t2, t2c1));
+
+        // NelsonData is inserted by the rules on the first datum
+        datums.add(Data.forNumeric("tenant", "NumericData-01", 1000, 15.0));
+        rulesEngine.addData(datums);
+        rulesEngine.fire();
+        assertEquals(alerts.toString(), 0, alerts.size());
+
+        assertEquals(1, rulesEngine.getFacts(f -> f instanceof NelsonData).size());
+
+        // A reload inserting an equal condition keeps the learned NelsonData
+        Map<String, List<String>> reloadedT1 = new HashMap<>();
+        reloadedT1.put("tenant", Collections.singletonList("trigger-1"));
+        Collection<Object> removed = rulesEngine.updateTriggers(reloadedT1,
+                Arrays.asList(t1, t1c1, t1c2, t1d, new MissingState(t1, t1c2)));
+        assertFalse(removed.stream().anyMatch(f -> f instanceof NelsonData));
+        rulesEngine.fireNoData();
+        assertEquals(1, rulesEngine.getFacts(f -> f instanceof NelsonData).size());
+
+        // NelsonData is not owned by the trigger, it is retracted by the rules once its condition is gone
+        removed = rulesEngine.removeTriggerFacts("tenant", "trigger-1");
+        assertEquals(removed.toString(), 5, removed.size());
+        assertFalse(removed.stream().anyMatch(f -> f instanceof NelsonData));
+        assertNull(rulesEngine.getFact(t1));
+        assertNull(rulesEngine.getFact(t1c1));
+        assertNull(rulesEngine.getFact(t1d));
+        assertNotNull(rulesEngine.getFact(t2));
+        assertTrue(rulesEngine.removeTriggerFacts("tenant", "trigger-1").isEmpty());
+        rulesEngine.fireNoData();
+        assertTrue(rulesEngine.getFacts(f -> f instanceof NelsonData).isEmpty());
+
+        // Reload trigger-2 and remove trigger-1 in a single batch
+        Map<String, List<String>> reloaded = new HashMap<>();
+        reloaded.put("tenant", Arrays.asList("trigger-1", "trigger-2"));
+        removed = rulesEngine.updateTriggers(reloaded, Arrays.asList(t2, t2c1));
+        // Trigger, Condition and the default Dampening inserted by the rules
+        assertEquals(removed.toString(), 3, removed.size());
+        assertNotNull(rulesEngine.getFact(t2c1));
+
+        datums.clear();
+        datums.add(Data.forNumeric("tenant", "NumericData-01", 2000, 5.0));
+        rulesEngine.addData(datums);
+        rulesEngine.fire();
+        assertEquals(alerts.toString(), 1, alerts.size());
+        assertEquals("trigger-2", alerts.get(0).getTriggerId());
+    }
 }
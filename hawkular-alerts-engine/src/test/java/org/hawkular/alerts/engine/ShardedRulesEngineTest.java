@@ -0,0 +1,233 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.condition.ConditionEval;
+import org.hawkular.alerts.api.model.condition.EventCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Alert;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.event.EventCategory;
+import org.hawkular.alerts.api.model.event.EventType;
+import org.hawkular.alerts.api.model.trigger.Mode;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.engine.impl.ShardedRulesEngineImpl;
+import org.jboss.logging.Logger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test of the sharded RulesEngine implementation.
+ */
+public class ShardedRulesEngineTest {
+    private static final Logger log = Logger.getLogger(ShardedRulesEngineTest.class);
+
+    ShardedRulesEngineImpl rulesEngine = new ShardedRulesEngineImpl(4);
+    List<Alert> alerts = new ArrayList<>();
+    Set<Dampening> pendingTimeouts = new HashSet<>();
+    Map<Trigger, List<Set<ConditionEval>>> autoResolvedTriggers = new HashMap<>();
+    Set<Trigger> disabledTriggers = new CopyOnWriteArraySet<>();
+    TreeSet<Data> datums = new TreeSet<Data>();
+    TreeSet<Event> inputEvents = new TreeSet<>();
+    List<Event> outputEvents = new ArrayList<>();
+
+    @Before
+    public void before() {
+        rulesEngine.addGlobal("log", log);
+        rulesEngine.addGlobal("alerts", alerts);
+        rulesEngine.addGlobal("events", outputEvents);
+        rulesEngine.addGlobal("pendingTimeouts", pendingTimeouts);
+        rulesEngine.addGlobal("autoResolvedTriggers", autoResolvedTriggers);
+        rulesEngine.addGlobal("disabledTriggers", disabledTriggers);
+    }
+
+    @After
+    public void after() {
+        rulesEngine.reset();
+        rulesEngine.shutdown();
+        alerts.clear();
+        pendingTimeouts.clear();
+        datums.clear();
+        inputEvents.clear();
+        outputEvents.clear();
+    }
+
+    @Test
+    public void thresholdAcrossShardsTest() {
+        int numTriggers = 100;
+        List<Object> definitions = new ArrayList<>();
+        for (int i = 0; i < numTriggers; i++) {
+            Trigger t = new Trigger("tenant", "trigger-" + i, "Threshold-LT");
+            t.setEnabled(true);
+            definitions.add(t);
+            // All triggers share the same dataId, data must be routed to all shards
+            definitions.add(new ThresholdCondition("tenant", "trigger-" + i, "NumericData-01",
+                    ThresholdCondition.Operator.LT, 10.0));
+            // One dataId per trigger, data must be routed only to the owner shard
+            definitions.add(new ThresholdCondition("tenant", "trigger-" + i, 2, 2, "NumericData-" + i,
+                    ThresholdCondition.Operator.LT, 10.0));
+        }
+        rulesEngine.addFacts(definitions);
+
+        datums.add(Data.forNumeric("tenant", "NumericData-01", 1000, 5.0));
+        for (int i = 0; i < numTriggers; i++) {
+            datums.add(Data.forNumeric("tenant", "NumericData-" + i, 1000, 5.0));
+        }
+        // Data not used by any condition
+        datums.add(Data.forNumeric("tenant", "NumericData-unknown", 1000, 5.0));
+
+        rulesEngine.addData(datums);
+        rulesEngine.fire();
+
+        assertEquals(alerts.toString(), numTriggers, alerts.size());
+    }
+
+    @Test
+    public void chainedEventsAcrossShardsTest() {
+        Trigger t1 = new Trigger("tenant", "trigger-1", "A.war");
+        t1.setEventType(EventType.EVENT);
+        EventCondition t1c1 = new EventCondition("tenant", "trigger-1", Mode.FIRING, "A.war", "text == 'DOWN'");
+
+        // Look for a trigger placed on a different shard than trigger-1
+        String chainedTriggerId = null;
+        for (int i = 2; chainedTriggerId == null; i++) {
+            if (rulesEngine.getNumShards() > 1
+                    && rulesEngineShardOf("trigger-" + i) != rulesEngineShardOf("trigger-1")) {
+                chainedTriggerId = "trigger-" + i;
+            }
+        }
+        Trigger t2 = new Trigger("tenant", chainedTriggerId, "A.war DOWN chained");
+        EventCondition t2c1 = new EventCondition("tenant", chainedTriggerId, Mode.FIRING, "trigger-1");
+
+        t1.setEnabled(true);
+        t2.setEnabled(true);
+
+        rulesEngine.addFact(t1);
+        rulesEngine.addFact(t1c1);
+        rulesEngine.addFact(t2);
+        rulesEngine.addFact(t2c1);
+
+        inputEvents.add(new Event("tenant", UUID.randomUUID().toString(), 1000, "A.war",
+                EventCategory.DEPLOYMENT.name(), "DOWN"));
+        rulesEngine.addEvents(inputEvents);
+
+        rulesEngine.fire();
+
+        assertEquals(outputEvents.toString(), 1, outputEvents.size());
+        assertEquals(alerts.toString(), 1, alerts.size());
+        assertEquals(chainedTriggerId, alerts.get(0).getTriggerId());
+    }
+
+    @Test
+    public void removeFactsTest() {
+        Trigger t1 = new Trigger("tenant", "trigger-1", "Threshold-LT");
+        ThresholdCondition t1c1 = new ThresholdCondition("tenant", "trigger-1", "NumericData-01",
+                ThresholdCondition.Operator.LT, 10.0);
+        t1.setEnabled(true);
+
+        rulesEngine.addFact(t1);
+        rulesEngine.addFact(t1c1);
+        assertNotNull(rulesEngine.getFact(t1));
+
+        rulesEngine.removeFact(t1);
+        rulesEngine.removeFacts(f -> f instanceof Condition && ((Condition) f).getTriggerId().equals("trigger-1"));
+        assertNull(rulesEngine.getFact(t1));
+        assertNull(rulesEngine.getFact(t1c1));
+
+        datums.add(Data.forNumeric("tenant", "NumericData-01", 1000, 5.0));
+        rulesEngine.addData(datums);
+        rulesEngine.fire();
+
+        assertEquals(alerts.toString(), 0, alerts.size());
+    }
+
+    @Test
+    public void updateTriggersAcrossShardsTest() {
+        int numTriggers = 20;
+        List<Object> definitions = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        for (int i = 0; i < numTriggers; i++) {
+            Trigger t = new Trigger("tenant", "trigger-" + i, "Threshold-LT");
+            t.setEnabled(true);
+            definitions.add(t);
+            definitions.add(new ThresholdCondition("tenant", "trigger-" + i, "NumericData-01",
+                    ThresholdCondition.Operator.LT, 10.0));
+            if (i % 2 == 0) {
+                removed.add("trigger-" + i);
+            }
+        }
+        Map<String, List<String>> removedByTenant = new HashMap<>();
+        removedByTenant.put("tenant", removed);
+
+        assertEquals(0, rulesEngine.updateTriggers(null, definitions).size());
+        assertEquals(numTriggers, rulesEngine.updateTriggers(removedByTenant, null).size());
+
+        datums.add(Data.forNumeric("tenant", "NumericData-01", 1000, 5.0));
+        rulesEngine.addData(datums);
+        rulesEngine.fire();
+
+        assertEquals(alerts.toString(), numTriggers / 2, alerts.size());
+        for (Alert a : alerts) {
+            assertEquals(1, Integer.parseInt(a.getTriggerId().substring("trigger-".length())) % 2);
+        }
+
+        // Removing all triggers also removes the routing of their dataIds
+        for (int i = 0; i < numTriggers; i++) {
+            rulesEngine.removeTriggerFacts("tenant", "trigger-" + i);
+        }
+        alerts.clear();
+        datums.clear();
+        datums.add(Data.forNumeric("tenant", "NumericData-01", 2000, 5.0));
+        rulesEngine.addData(datums);
+        rulesEngine.fire();
+        assertEquals(alerts.toString(), 0, alerts.size());
+    }
+
+    @Test
+    public void shardOfTest() {
+        Set<Integer> used = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            int shard = rulesEngineShardOf("trigger-" + i);
+            assertNotEquals(-1, shard);
+            used.add(shard);
+        }
+        assertEquals(rulesEngine.getNumShards(), used.size());
+    }
+
+    private int rulesEngineShardOf(String triggerId) {
+        return rulesEngine.shardOf("tenant", triggerId);
+    }
+}
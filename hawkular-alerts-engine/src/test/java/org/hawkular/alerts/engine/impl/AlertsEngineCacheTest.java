@@ -55,4 +55,45 @@ public class AlertsEngineCacheTest {
         assertFalse(cache.isDataIdActive("o1", "d3"));
     }
 
+    @Test
+    public void referenceCountTest() {
+        AlertsEngineCache cache = new AlertsEngineCache();
+
+        // Same entry registered twice, i.e. two conditions of a trigger on the same dataId
+        cache.add(new DataEntry("o1", "t1", "d1"));
+        cache.add(new DataEntry("o1", "t1", "d1"));
+        cache.add(new DataEntry("o2", "t1", "d1"));
+        assertTrue(cache.isDataIdActive("o1", "d1"));
+        assertTrue(cache.isDataIdActive("o2", "d1"));
+        assertFalse(cache.isDataIdActive("o3", "d1"));
+        assertFalse(cache.isDataIdActive(null, "d1"));
+        assertFalse(cache.isDataIdActive("o1", null));
+
+        cache.remove("o1", "t1");
+        assertFalse(cache.isDataIdActive("o1", "d1"));
+        assertTrue(cache.isDataIdActive("o2", "d1"));
+
+        // Unknown triggers are ignored
+        cache.remove("o1", "t1");
+        cache.remove("o3", "t1");
+
+        int numTriggers = 10000;
+        for (int i = 0; i < numTriggers; i++) {
+            cache.add(new DataEntry("o1", "t" + i, "d" + (i % 100)));
+        }
+        for (int i = 0; i < numTriggers - 100; i++) {
+            cache.remove("o1", "t" + i);
+        }
+        for (int i = 0; i < 100; i++) {
+            assertTrue(cache.isDataIdActive("o1", "d" + i));
+        }
+        for (int i = numTriggers - 100; i < numTriggers; i++) {
+            cache.remove("o1", "t" + i);
+        }
+        assertFalse(cache.isDataIdActive("o1", "d0"));
+
+        cache.clear();
+        assertFalse(cache.isDataIdActive("o2", "d1"));
+    }
+
 }
@@ -0,0 +1,285 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.condition.MissingCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Alert;
+import org.hawkular.alerts.api.model.paging.Page;
+import org.hawkular.alerts.api.model.trigger.Mode;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.api.services.AlertsService;
+import org.hawkular.alerts.api.services.DefinitionsService;
+import org.hawkular.alerts.api.services.ExtensionsService;
+import org.hawkular.alerts.engine.service.PartitionManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Testing the bulk load of triggers on AlertsEngine reload and on partition changes.
+ */
+public class AlertsEngineReloadTest {
+
+    List<Trigger> triggers = new ArrayList<>();
+    List<Condition> conditions = new ArrayList<>();
+    List<Dampening> dampenings = new ArrayList<>();
+    List<String> calls = Collections.synchronizedList(new ArrayList<>());
+    boolean bulkAvailable = true;
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    AlertsEngineImpl engine;
+
+    @Before
+    public void before() {
+        for (int i = 0; i < 10; i++) {
+            Trigger t = new Trigger("tenant", "trigger-" + i, "Trigger " + i);
+            // trigger-0 is disabled, it is not loaded
+            t.setEnabled(i > 0);
+            triggers.add(t);
+            conditions.add(new ThresholdCondition("tenant", "trigger-" + i, "NumericData-" + i,
+                    ThresholdCondition.Operator.LT, 10.0));
+            dampenings.add(Dampening.forStrict("tenant", "trigger-" + i, Mode.FIRING, 2));
+        }
+        conditions.add(new MissingCondition("tenant", "trigger-1", Mode.FIRING, 2, 2, "NumericData-1", 1000L));
+
+        engine = new AlertsEngineImpl();
+        engine.setRules(new DroolsRulesEngineImpl());
+        engine.setDefinitions(definitions());
+        engine.setExecutor(executor);
+    }
+
+    @After
+    public void after() {
+        engine.shutdown();
+        executor.shutdown();
+    }
+
+    private AlertsEngineImpl distributedEngine(Map<String, Map<String, byte[]>> handoff, List<Alert> alerts)
+            throws Exception {
+        AlertsEngineImpl distributedEngine = new AlertsEngineImpl();
+        distributedEngine.setRules(new DroolsRulesEngineImpl());
+        distributedEngine.setDefinitions(definitions());
+        distributedEngine.setExecutor(executor);
+        distributedEngine.setScheduledCycles(false);
+        distributedEngine.setCheckpoint(new WorkingMemoryCheckpoint(null, 60000));
+        distributedEngine.setPartitionManager((PartitionManager) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[] { PartitionManager.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "isDistributed":
+                            return true;
+                        case "notifyTriggerStates":
+                            handoff.putAll((Map<String, Map<String, byte[]>>) args[0]);
+                            return null;
+                        case "getTriggerStates":
+                            return handoff;
+                        default:
+                            return null;
+                    }
+                }));
+        distributedEngine.setExtensionsService((ExtensionsService) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class[] { ExtensionsService.class },
+                (proxy, method, args) -> Collections.emptySet()));
+        distributedEngine.setAlertsService((AlertsService) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[] { AlertsService.class }, (proxy, method, args) -> {
+                    if (method.getName().equals("addAlerts")) {
+                        alerts.addAll((Collection<Alert>) args[0]);
+                    }
+                    return null;
+                }));
+        distributedEngine.initServices();
+        // Wait for the initial reload
+        executor.submit(() -> { }).get();
+        return distributedEngine;
+    }
+
+    private DefinitionsService definitions() {
+        return (DefinitionsService) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[] { DefinitionsService.class }, (proxy, method, args) -> {
+                    calls.add(method.getName());
+                    switch (method.getName()) {
+                        case "getAllTriggers":
+                            return triggers;
+                        case "getAllConditions":
+                            if (!bulkAvailable) {
+                                throw new Exception("Bulk query not available");
+                            }
+                            return conditions;
+                        case "getAllDampenings":
+                            return dampenings;
+                        case "getTriggerConditions":
+                            return filter(conditions, (String) args[1]);
+                        case "getTriggerDampenings":
+                            return filter(dampenings, (String) args[1]);
+                        case "getTrigger":
+                            return triggers.stream().filter(t -> t.getId().equals(args[1])).findFirst()
+                                    .orElse(null);
+                        case "getTriggers":
+                            return new Page<>(triggers, null, triggers.size());
+                        case "getConditions":
+                            return conditions;
+                        case "getDampenings":
+                            return dampenings;
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    private <T> List<T> filter(List<T> definitions, String triggerId) {
+        List<T> result = new ArrayList<>();
+        for (T definition : definitions) {
+            String definitionTriggerId = definition instanceof Condition ? ((Condition) definition).getTriggerId()
+                    : ((Dampening) definition).getTriggerId();
+            if (definitionTriggerId.equals(triggerId)) {
+                result.add(definition);
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void bulkReloadTest() {
+        engine.reload();
+
+        assertNull(engine.getLoadedTrigger(triggers.get(0)));
+        for (int i = 1; i < triggers.size(); i++) {
+            assertNotNull(engine.getLoadedTrigger(triggers.get(i)));
+        }
+        assertEquals(0, calls.stream().filter(c -> c.startsWith("getTrigger")).count());
+
+        Map<String, String> status = engine.getStatus();
+        assertEquals("bulk", status.get("engine.load.mode"));
+        assertEquals("9", status.get("engine.load.triggers"));
+        // Trigger, Condition and Dampening per trigger, plus the MissingCondition and its MissingState
+        assertEquals("29", status.get("engine.load.facts"));
+        for (String phase : Arrays.asList("fetchTriggersTime", "fetchDefinitionsTime", "groupTime", "insertTime",
+                "totalTime")) {
+            assertTrue(phase, Long.parseLong(status.get("engine.load." + phase)) >= 0);
+        }
+    }
+
+    @Test
+    public void partitionHandoffTest() throws Exception {
+        Map<String, Map<String, byte[]>> handoff = new HashMap<>();
+        List<Alert> alertsA = new ArrayList<>();
+        List<Alert> alertsB = new ArrayList<>();
+        AlertsEngineImpl engineA = distributedEngine(handoff, alertsA);
+        AlertsEngineImpl engineB = distributedEngine(handoff, alertsB);
+
+        Map<String, List<String>> partition = new HashMap<>();
+        partition.put("tenant", triggers.stream().map(Trigger::getId).collect(Collectors.toList()));
+        try {
+            engineA.onPartitionChange(partition, Collections.emptyMap(), partition);
+            assertEquals("10", engineA.getStatus().get("engine.handoff.added"));
+            assertEquals("9", engineA.getStatus().get("engine.handoff.loaded"));
+            assertEquals(9, calls.stream().filter(c -> c.equals("getTriggerConditions")).count());
+
+            // First of the two evaluations needed by the strict dampening of trigger-2
+            TreeSet<Data> data = new TreeSet<>();
+            data.add(Data.forNumeric("tenant", "NumericData-2", 1000, 5.0));
+            engineA.sendData(data);
+            engineA.runCycle();
+            assertTrue(alertsA.isEmpty());
+
+            engineA.onPartitionChange(Collections.emptyMap(), partition, Collections.emptyMap());
+            assertNull(engineA.getLoadedTrigger(triggers.get(2)));
+            assertEquals("10", engineA.getStatus().get("engine.handoff.removed"));
+            assertTrue(handoff.get("tenant").containsKey("trigger-2"));
+
+            // Definitions fetched by the new owner come without evaluation state
+            dampenings.forEach(Dampening::reset);
+            engineB.onPartitionChange(partition, Collections.emptyMap(), partition);
+            Map<String, String> status = engineB.getStatus();
+            assertEquals(String.valueOf(handoff.get("tenant").size()), status.get("engine.handoff.receivedStates"));
+            for (String phase : Arrays.asList("removeTime", "stateWaitTime", "fetchTime", "insertTime",
+                    "duration")) {
+                assertTrue(phase, Long.parseLong(status.get("engine.handoff." + phase)) >= 0);
+            }
+
+            // The dampening state was handed off, the second evaluation fires on the new owner
+            data.clear();
+            data.add(Data.forNumeric("tenant", "NumericData-2", 2000, 5.0));
+            engineB.sendData(data);
+            engineB.runCycle();
+            assertEquals(alertsB.toString(), 1, alertsB.size());
+            assertEquals("trigger-2", alertsB.get(0).getTriggerId());
+        } finally {
+            engineA.shutdown();
+            engineB.shutdown();
+        }
+    }
+
+    @Test
+    public void partitionHandoffByTenantTest() throws Exception {
+        for (int i = 10; i < 60; i++) {
+            Trigger t = new Trigger("tenant", "trigger-" + i, "Trigger " + i);
+            t.setEnabled(true);
+            triggers.add(t);
+            conditions.add(new ThresholdCondition("tenant", "trigger-" + i, "NumericData-" + i,
+                    ThresholdCondition.Operator.LT, 10.0));
+        }
+        AlertsEngineImpl engineA = distributedEngine(new HashMap<>(), new ArrayList<>());
+        Map<String, List<String>> partition = new HashMap<>();
+        partition.put("tenant", triggers.stream().map(Trigger::getId).collect(Collectors.toList()));
+        try {
+            engineA.onPartitionChange(partition, Collections.emptyMap(), partition);
+            for (int i = 1; i < triggers.size(); i++) {
+                assertNotNull(engineA.getLoadedTrigger(triggers.get(i)));
+            }
+            assertEquals("59", engineA.getStatus().get("engine.handoff.loaded"));
+            assertEquals(1, calls.stream().filter(c -> c.equals("getConditions")).count());
+            assertEquals(0, calls.stream().filter(c -> c.startsWith("getTrigger")
+                    && !c.equals("getTriggers")).count());
+        } finally {
+            engineA.shutdown();
+        }
+    }
+
+    @Test
+    public void perTriggerReloadTest() {
+        bulkAvailable = false;
+        engine.reload();
+
+        for (int i = 1; i < triggers.size(); i++) {
+            assertNotNull(engine.getLoadedTrigger(triggers.get(i)));
+        }
+        assertEquals(9, calls.stream().filter(c -> c.equals("getTriggerConditions")).count());
+        assertEquals("perTrigger", engine.getStatus().get("engine.load.mode"));
+    }
+}
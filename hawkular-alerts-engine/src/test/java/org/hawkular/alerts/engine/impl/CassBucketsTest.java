@@ -0,0 +1,54 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import static org.hawkular.alerts.engine.impl.CassBuckets.BUCKET_SIZE;
+import static org.hawkular.alerts.engine.impl.CassBuckets.bucketOf;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Testing the day buckets of the time indexes.
+ */
+public class CassBucketsTest {
+
+    @Test
+    public void bucketBoundaries() {
+        assertEquals(0, bucketOf(0));
+        assertEquals(0, bucketOf(BUCKET_SIZE - 1));
+        assertEquals(BUCKET_SIZE, bucketOf(BUCKET_SIZE));
+        assertEquals(BUCKET_SIZE, bucketOf(BUCKET_SIZE + 1));
+
+        long now = 1500000000000L;
+        long bucket = bucketOf(now);
+        assertEquals(0, bucket % BUCKET_SIZE);
+        assertEquals(bucket, bucketOf(bucket));
+        assertEquals(bucket - BUCKET_SIZE, bucketOf(bucket - 1));
+    }
+
+    @Test
+    public void negativeTimes() {
+        assertEquals(-BUCKET_SIZE, bucketOf(-1));
+        assertEquals(-BUCKET_SIZE, bucketOf(-BUCKET_SIZE));
+        assertEquals(-2 * BUCKET_SIZE, bucketOf(-BUCKET_SIZE - 1));
+        // Open ranges are read from Long.MIN_VALUE
+        assertEquals(Long.MIN_VALUE, bucketOf(Long.MIN_VALUE));
+        long firstBucket = Long.MIN_VALUE / BUCKET_SIZE * BUCKET_SIZE;
+        assertEquals(firstBucket, bucketOf(firstBucket));
+    }
+}
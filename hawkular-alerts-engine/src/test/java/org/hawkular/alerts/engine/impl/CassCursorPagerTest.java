@@ -0,0 +1,201 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.hawkular.alerts.api.model.paging.Order;
+import org.hawkular.alerts.api.model.paging.Page;
+import org.hawkular.alerts.api.model.paging.Pager;
+import org.hawkular.alerts.engine.impl.CassCursorPager.Cursor;
+import org.hawkular.alerts.engine.impl.CassCursorPager.IndexReader;
+import org.junit.Test;
+
+/**
+ * Testing the cursor paging of the CassCursorPager against an in-memory ctime index.
+ */
+public class CassCursorPagerTest {
+
+    private static final Comparator<Cursor> ORDER = Comparator.comparingLong(Cursor::getCtime)
+            .thenComparing(Cursor::getId);
+
+    /*
+        In-memory ctime index, it counts the rows read
+     */
+    private static class MemIndex implements IndexReader {
+        TreeSet<Cursor> rows = new TreeSet<>(ORDER);
+        int read = 0;
+
+        @Override
+        public List<Cursor> ties(long ctime, String id, boolean ascending, int limit) {
+            return read(rows.stream().filter(r -> r.getCtime() == ctime
+                    && (ascending ? r.getId().compareTo(id) > 0 : r.getId().compareTo(id) < 0)), ascending, limit);
+        }
+
+        @Override
+        public List<Cursor> range(long from, long to, boolean ascending, int limit) {
+            return read(rows.stream().filter(r -> r.getCtime() >= from && r.getCtime() < to), ascending, limit);
+        }
+
+        private List<Cursor> read(Stream<Cursor> matching, boolean ascending, int limit) {
+            List<Cursor> result = matching.sorted(ascending ? ORDER : ORDER.reversed()).limit(limit)
+                    .collect(Collectors.toList());
+            read += result.size();
+            return result;
+        }
+    }
+
+    private static MemIndex index(int size) {
+        MemIndex index = new MemIndex();
+        for (int i = 0; i < size; i++) {
+            // Three rows per ctime, so pages are cut in the middle of the ties
+            index.rows.add(new Cursor(1000 + (i / 3), "id-" + String.format("%03d", i)));
+        }
+        return index;
+    }
+
+    private static Pager pager(int pageSize, String cursor, Order order) {
+        return new Pager(pageSize, cursor, Collections.singletonList(order));
+    }
+
+    @Test
+    public void codecTest() {
+        Cursor cursor = new Cursor(1234567890L, "trigger-1:alert:x");
+        String token = cursor.encode();
+        assertTrue(token, token.matches("[A-Za-z0-9_-]+"));
+        Cursor decoded = Cursor.decode(token);
+        assertEquals(cursor.getCtime(), decoded.getCtime());
+        assertEquals(cursor.getId(), decoded.getId());
+        assertNull(Cursor.decode(""));
+        try {
+            Cursor.decode("not a cursor");
+            fail("Invalid cursor should fail");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void readPagesTest() throws Exception {
+        for (Order.Direction direction : Order.Direction.values()) {
+            MemIndex index = index(25);
+            List<String> expected = index.rows.stream().map(Cursor::getId).collect(Collectors.toList());
+            if (direction == Order.Direction.DESCENDING) {
+                Collections.reverse(expected);
+            }
+            List<String> read = readAll(index, null, null, Order.by("ctime", direction), 4);
+            assertEquals(expected, read);
+        }
+    }
+
+    @Test
+    public void readPagesInRangeTest() throws Exception {
+        MemIndex index = index(30);
+        // ctimes 1002..1005 -> ids 6..17
+        List<String> expected = index.rows.stream()
+                .filter(r -> r.getCtime() >= 1002 && r.getCtime() <= 1005)
+                .map(Cursor::getId)
+                .collect(Collectors.toList());
+        Collections.reverse(expected);
+        assertEquals(12, expected.size());
+        assertEquals(expected, readAll(index, 1002L, 1005L, Order.unspecified(), 5));
+    }
+
+    @Test
+    public void boundedReadTest() throws Exception {
+        MemIndex index = index(100000);
+        Page<String> page = CassCursorPager.readPage(index, null, null,
+                pager(20, "", Order.by("ctime", Order.Direction.DESCENDING)), ids -> ids);
+        assertEquals(20, page.size());
+        assertEquals("id-99999", page.get(0));
+        assertEquals(Page.UNKNOWN_TOTAL_SIZE, page.getTotalSize());
+        assertTrue(String.valueOf(index.read), index.read <= 21);
+
+        index.read = 0;
+        page = CassCursorPager.readPage(index, null, null,
+                pager(20, page.getNextCursor(), Order.by("ctime", Order.Direction.DESCENDING)), ids -> ids);
+        assertEquals(20, page.size());
+        assertEquals("id-99979", page.get(0));
+        assertTrue(String.valueOf(index.read), index.read <= 21);
+    }
+
+    @Test
+    public void inMemoryPageTest() throws Exception {
+        MemIndex index = index(25);
+        for (Order.Direction direction : Order.Direction.values()) {
+            Order order = Order.by("ctime", direction);
+            List<String> expected = readAll(index, null, null, order, 4);
+
+            List<String> read = new ArrayList<>();
+            String cursor = "";
+            do {
+                List<Cursor> items = new ArrayList<>(index.rows);
+                Collections.shuffle(items);
+                Page<Cursor> page = CassCursorPager.page(items, Cursor::getCtime, Cursor::getId,
+                        pager(4, cursor, order));
+                assertEquals(25, page.getTotalSize());
+                page.forEach(c -> read.add(c.getId()));
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+            assertEquals(expected, read);
+        }
+    }
+
+    @Test
+    public void invalidOrderTest() throws Exception {
+        try {
+            CassCursorPager.readPage(index(1), null, null, pager(4, "", Order.by("severity",
+                    Order.Direction.ASCENDING)), ids -> ids);
+            fail("Cursor paging by severity should fail");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            CassCursorPager.readPage(index(1), null, null, pager(-1, "", Order.unspecified()), ids -> ids);
+            fail("Unlimited cursor paging should fail");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private List<String> readAll(MemIndex index, Long start, Long end, Order order, int pageSize)
+            throws Exception {
+        List<String> read = new ArrayList<>();
+        String cursor = "";
+        do {
+            index.read = 0;
+            Page<String> page = CassCursorPager.readPage(index, start, end, pager(pageSize, cursor, order),
+                    ids -> ids);
+            assertTrue(page.size() <= pageSize);
+            assertTrue(String.valueOf(index.read), index.read <= pageSize + 1);
+            read.addAll(page);
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return read;
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.engine.impl.CassQueryPlanner.Filter;
+import org.hawkular.alerts.engine.impl.CassQueryPlanner.Plan;
+import org.junit.Test;
+
+/**
+ * Testing the ordering and the strategies of the CassQueryPlanner.
+ */
+public class CassQueryPlannerTest {
+
+    @Test
+    public void selectiveFilterFirstTest() throws Exception {
+        CassQueryPlanner planner = new CassQueryPlanner();
+        // A broad ctime filter and a very selective tag filter
+        Set<Integer> ctime = range(0, 100000);
+        Set<Integer> tag = new HashSet<>(Arrays.asList(7, 70, 700, 200000));
+        AtomicInteger ctimeRows = new AtomicInteger();
+
+        List<Filter<Integer, Integer>> filters = new ArrayList<>();
+        filters.add(new Filter<Integer, Integer>("ctime", ctime.size(), ids -> ctime.forEach(id -> {
+            ctimeRows.incrementAndGet();
+            ids.accept(id);
+        })).withItemsCheck(items -> items.removeIf(i -> !ctime.contains(i))));
+        filters.add(new Filter<Integer, Integer>("tag", tag.size(), tag::forEach)
+                .withItemsCheck(items -> items.removeIf(i -> !tag.contains(i))));
+
+        Plan<Integer, Integer> plan = planner.execute(filters);
+        assertEquals(Arrays.asList("scan:tag", "defer:ctime"), plan.getSteps());
+        assertEquals(tag, plan.getCandidates());
+        assertEquals(0, ctimeRows.get());
+
+        List<Integer> items = new ArrayList<>(plan.getCandidates());
+        plan.filter(items);
+        assertEquals(new HashSet<>(Arrays.asList(7, 70, 700)), new HashSet<>(items));
+    }
+
+    @Test
+    public void streamingIntersectionTest() throws Exception {
+        CassQueryPlanner planner = new CassQueryPlanner();
+        Set<Integer> even = range(0, 1000).stream().filter(i -> i % 2 == 0).collect(Collectors.toSet());
+        Set<Integer> small = range(0, 100);
+
+        List<Filter<Integer, Integer>> filters = new ArrayList<>();
+        // Unknown estimations keep the default order, and are intersected
+        filters.add(new Filter<Integer, Integer>("even", CassQueryPlanner.UNKNOWN, even::forEach)
+                .withItemsCheck(items -> items.removeIf(i -> i % 2 != 0)));
+        filters.add(new Filter<Integer, Integer>("small", CassQueryPlanner.UNKNOWN, small::forEach)
+                .withItemsCheck(items -> items.removeIf(i -> i >= 100)));
+        // A filter without items check is always intersected
+        filters.add(new Filter<>("third", CassQueryPlanner.UNKNOWN, ids -> range(0, 2000).stream()
+                .filter(i -> i % 3 == 0).forEach(ids)));
+
+        Plan<Integer, Integer> plan = planner.execute(filters);
+        assertEquals(Arrays.asList("scan:even", "intersect:small", "intersect:third"), plan.getSteps());
+        assertEquals(range(0, 100).stream().filter(i -> i % 6 == 0).collect(Collectors.toSet()),
+                plan.getCandidates());
+    }
+
+    @Test
+    public void idCheckTest() throws Exception {
+        CassQueryPlanner planner = new CassQueryPlanner();
+        AtomicInteger scans = new AtomicInteger();
+        List<Filter<Integer, Integer>> filters = new ArrayList<>();
+        filters.add(new Filter<Integer, Integer>("odd", 50, ids -> {
+            scans.incrementAndGet();
+            range(0, 100).stream().filter(i -> i % 2 != 0).forEach(ids);
+        }).withIdCheck(i -> i % 2 != 0));
+        filters.add(new Filter<Integer, Integer>("ids", 3, Arrays.asList(1, 2, 3)::forEach));
+
+        Plan<Integer, Integer> plan = planner.execute(filters);
+        assertEquals(Arrays.asList("scan:ids", "check:odd"), plan.getSteps());
+        assertEquals(new HashSet<>(Arrays.asList(1, 3)), plan.getCandidates());
+        assertEquals(0, scans.get());
+    }
+
+    @Test
+    public void noQuerySizeTest() throws Exception {
+        CassQueryPlanner planner = new CassQueryPlanner();
+        List<Filter<Integer, Integer>> filters = new ArrayList<>();
+        filters.add(new Filter<Integer, Integer>("ids", 10, range(0, 10)::forEach));
+        filters.add(new Filter<Integer, Integer>("category", CassQueryPlanner.UNKNOWN, range(5, 20)::forEach)
+                .withItemsCheck(items -> items.removeIf(i -> i < 5)));
+
+        assertEquals(Arrays.asList("scan:ids", "intersect:category"), planner.execute(filters).getSteps());
+        Plan<Integer, Integer> plan = planner.execute(filters, 10);
+        assertEquals(Arrays.asList("scan:ids", "defer:category"), plan.getSteps());
+        List<Integer> items = new ArrayList<>(plan.getCandidates());
+        plan.filter(items);
+        assertEquals(range(5, 10), new HashSet<>(items));
+    }
+
+    @Test
+    public void emptyCandidatesTest() throws Exception {
+        CassQueryPlanner planner = new CassQueryPlanner();
+        AtomicInteger scans = new AtomicInteger();
+        List<Filter<Integer, Integer>> filters = new ArrayList<>();
+        filters.add(new Filter<Integer, Integer>("none", 0, ids -> { }));
+        filters.add(new Filter<Integer, Integer>("all", 10, ids -> scans.incrementAndGet()));
+
+        Plan<Integer, Integer> plan = planner.execute(filters);
+        assertTrue(plan.getCandidates().isEmpty());
+        assertEquals(0, scans.get());
+    }
+
+    @Test
+    public void estimationsTest() {
+        CassQueryPlanner planner = new CassQueryPlanner();
+        assertEquals(CassQueryPlanner.UNKNOWN, planner.estimate("tenant", "alerts_triggers",
+                Arrays.asList("trigger-1", "trigger-2")));
+        planner.record("tenant", "alerts_triggers", "trigger-1", 10);
+        assertEquals(CassQueryPlanner.UNKNOWN, planner.estimate("tenant", "alerts_triggers",
+                Arrays.asList("trigger-1", "trigger-2")));
+        planner.record("tenant", "alerts_triggers", "trigger-2", 5);
+        assertEquals(15, planner.estimate("tenant", "alerts_triggers", Arrays.asList("trigger-1", "trigger-2")));
+        assertEquals(CassQueryPlanner.UNKNOWN, planner.estimate("tenant2", "alerts_triggers",
+                Arrays.asList("trigger-1")));
+
+        assertEquals(CassQueryPlanner.UNKNOWN, planner.estimateRange("tenant", "alerts_ctimes", 0L, 1000L));
+        // 1000 rows from 1000 to 10999, 1 row every 10 ms
+        planner.recordRange("tenant", "alerts_ctimes", null, null, 1000, 1000, 10999);
+        assertEquals(100, planner.estimateRange("tenant", "alerts_ctimes", 2000L, 2999L));
+        assertEquals(100, planner.estimateRange("tenant", "alerts_ctimes", null, 1999L));
+        assertEquals(0, planner.estimateRange("tenant", "alerts_ctimes", 0L, 500L));
+        // Newer rows are expected up to now at the same density
+        long now = System.currentTimeMillis();
+        assertTrue(planner.estimateRange("tenant", "alerts_ctimes", now - 10000, null) >= 1000);
+    }
+
+    @Test
+    public void tagQueryCheckTest() throws Exception {
+        List<Event> events = new ArrayList<>();
+        events.add(event("e1", "tagA", "abc", "tagB", "def"));
+        events.add(event("e2", "tagA", "xyz"));
+        events.add(event("e3", "tagB", "abc"));
+        events.add(event("e4"));
+
+        assertEquals(Arrays.asList("e1", "e2"), check("tagA", events));
+        assertEquals(Arrays.asList("e3", "e4"), check("not tagA", events));
+        assertEquals(Arrays.asList("e1"), check("tagA = 'abc'", events));
+        assertEquals(Arrays.asList("e2"), check("tagA != 'abc'", events));
+        assertEquals(Arrays.asList("e1", "e2"), check("tagA = '*'", events));
+        assertEquals(Arrays.asList("e2"), check("tagA = 'x.*'", events));
+        assertEquals(Arrays.asList("e1", "e3"), check("tagA = abc or tagB = abc", events));
+        assertEquals(Arrays.asList("e2"), check("tagA and not tagB", events));
+        assertEquals(Arrays.asList("e1"), check("tagA in ['abc', 'def']", events));
+        assertEquals(Arrays.asList("e2"), check("tagA not in ['abc', 'def']", events));
+    }
+
+    private static List<String> check(String tagQuery, List<Event> events) throws Exception {
+        List<Event> items = new ArrayList<>(events);
+        CassAlertsServiceImpl.filterByTagQuery(tagQuery, items);
+        return items.stream().map(Event::getId).sorted().collect(Collectors.toList());
+    }
+
+    private static Event event(String id, String... tags) {
+        Map<String, String> tagMap = new HashMap<>();
+        for (int i = 0; i < tags.length; i += 2) {
+            tagMap.put(tags[i], tags[i + 1]);
+        }
+        return new Event("tenant", id, 1000, "source", "dataId", "category", "text", null, tagMap);
+    }
+
+    private static Set<Integer> range(int from, int to) {
+        return IntStream.range(from, to).boxed().collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hawkular.alerts.api.json.JsonUtil;
+import org.hawkular.alerts.api.model.condition.ConditionEval;
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdConditionEval;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Alert;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.trigger.Mode;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.junit.Test;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Testing the grouping and the concurrency of the CassWritePlanner.
+ */
+public class CassWritePlannerTest {
+
+    @Test
+    public void partitionBatchesTest() {
+        CassWritePlanner writes = new CassWritePlanner(null, 3, 1);
+        for (int i = 0; i < 7; i++) {
+            writes.add("alerts", new SimpleStatement("alert-" + i), "tenant1");
+        }
+        writes.add("alerts", new SimpleStatement("alert-t2"), "tenant2");
+        writes.add("tags", new SimpleStatement("tag-1"), "tenant1", "ALERT", "tag1");
+        writes.add("tags", new SimpleStatement("tag-2"), "tenant1", "ALERT", "tag1");
+        writes.add("tags", new SimpleStatement("tag-3"), "tenant1", "ALERT", "tag2");
+
+        assertEquals(11, writes.getStatements());
+        assertEquals(4, writes.getPartitions());
+
+        List<Statement> batches = writes.getBatches();
+        // tenant1 alerts: 3 + 3 + 1, tenant2 alerts: 1, tag1: 2, tag2: 1
+        assertEquals(6, batches.size());
+        int[] sizes = new int[] { 3, 3, 1, 1, 2, 1 };
+        for (int i = 0; i < sizes.length; i++) {
+            Statement batch = batches.get(i);
+            if (sizes[i] == 1) {
+                assertTrue(batch instanceof SimpleStatement);
+            } else {
+                assertTrue(batch instanceof BatchStatement);
+                assertEquals(sizes[i], ((BatchStatement) batch).size());
+            }
+        }
+    }
+
+    @Test
+    public void maxInFlightTest() throws Exception {
+        ScheduledExecutorService executor = Executors.newScheduledThreadPool(4);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        AtomicInteger executed = new AtomicInteger();
+        try {
+            Session session = session(statement -> {
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                SettableFuture<Object> future = SettableFuture.create();
+                executor.schedule(() -> {
+                    inFlight.decrementAndGet();
+                    executed.incrementAndGet();
+                    future.set(null);
+                }, 5, TimeUnit.MILLISECONDS);
+                return future;
+            });
+            CassWritePlanner writes = new CassWritePlanner(session, 2, 3);
+            for (int i = 0; i < 40; i++) {
+                writes.add("events_categories", new SimpleStatement("event-" + i), "tenant", "category-" + (i % 10));
+            }
+            writes.execute();
+
+            assertEquals(10, writes.getPartitions());
+            assertEquals(20, executed.get());
+            assertTrue(String.valueOf(maxInFlight.get()), maxInFlight.get() <= 3);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void failedWriteTest() throws Exception {
+        AtomicInteger executed = new AtomicInteger();
+        Session session = session(statement -> {
+            executed.incrementAndGet();
+            SettableFuture<Object> future = SettableFuture.create();
+            if (statement instanceof SimpleStatement
+                    && ((SimpleStatement) statement).getQueryString().equals("alert-t1")) {
+                future.setException(new IllegalStateException("write failed"));
+            } else {
+                future.set(null);
+            }
+            return future;
+        });
+        CassWritePlanner writes = new CassWritePlanner(session, 10, 1);
+        for (int i = 0; i < 5; i++) {
+            writes.add("alerts", new SimpleStatement("alert-t" + i), "tenant" + i);
+        }
+        try {
+            writes.execute();
+            fail("A failed write must be reported");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        // The rest of writes are not discarded
+        assertEquals(5, executed.get());
+    }
+
+    @Test
+    public void eventJsonTest() throws Exception {
+        Trigger trigger = new Trigger("tenant", "trigger-1", "Trigger 1");
+        Map<String, String> tags = new HashMap<>();
+        tags.put("app", "war");
+        trigger.setTags(tags);
+        ThresholdCondition condition = new ThresholdCondition("tenant", "trigger-1", Mode.FIRING, "NumericData-01",
+                ThresholdCondition.Operator.LT, 10.0);
+        Set<ConditionEval> evals = new HashSet<>();
+        evals.add(new ThresholdConditionEval(condition, Data.forNumeric("tenant", "NumericData-01", 1000, 5.0)));
+        List<Set<ConditionEval>> evalSets = new ArrayList<>();
+        evalSets.add(evals);
+        Dampening dampening = Dampening.forStrict("tenant", "trigger-1", Mode.FIRING, 1);
+        Alert alert = new Alert("tenant", trigger, dampening, evalSets);
+        alert.setContext(Collections.singletonMap("k", "v"));
+
+        ObjectNode alertJson = JsonUtil.getMapper().valueToTree(alert);
+        assertEquals(JsonUtil.getMapper().readTree(JsonUtil.toJson(alert)), alertJson);
+
+        Event event = new Event(alert);
+        String eventJson = CassAlertsServiceImpl.toEventJson(event, alertJson);
+        assertEquals(JsonUtil.getMapper().readTree(JsonUtil.toJson(event)), JsonUtil.getMapper().readTree(eventJson));
+        // The event is left untouched
+        assertTrue(event.getTrigger() == trigger);
+        assertTrue(event.getDampening() == dampening);
+        assertEquals(evalSets, event.getEvalSets());
+    }
+
+    private interface Executor {
+        SettableFuture<Object> execute(Statement statement);
+    }
+
+    private static Session session(Executor executor) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getName().equals("executeAsync") && args[0] instanceof Statement) {
+                return resultSetFuture(executor.execute((Statement) args[0]));
+            }
+            throw new UnsupportedOperationException(method.getName());
+        };
+        return (Session) Proxy.newProxyInstance(Session.class.getClassLoader(), new Class[] { Session.class },
+                handler);
+    }
+
+    private static ResultSetFuture resultSetFuture(SettableFuture<Object> future) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getDeclaringClass().isInstance(future)) {
+                try {
+                    return method.invoke(future, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+            throw new UnsupportedOperationException(method.getName());
+        };
+        return (ResultSetFuture) Proxy.newProxyInstance(ResultSetFuture.class.getClassLoader(),
+                new Class[] { ResultSetFuture.class }, handler);
+    }
+}
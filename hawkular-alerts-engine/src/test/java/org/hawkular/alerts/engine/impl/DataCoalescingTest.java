@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.hawkular.alerts.api.model.condition.CompareCondition;
+import org.hawkular.alerts.api.model.condition.RateCondition;
+import org.hawkular.alerts.api.model.condition.StringCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.engine.impl.DataCoalescing.Policy;
+import org.junit.Test;
+
+/**
+ * Testing DataCoalescing policies resolution and coalescing of a rules cycle data.
+ */
+public class DataCoalescingTest {
+
+    @Test
+    public void policyResolutionTest() {
+        Map<String, Policy> tenantPolicies = DataCoalescing.parseTenantPolicies("tenant1:latest, tenant2:max");
+        assertEquals(Policy.LATEST, tenantPolicies.get("tenant1"));
+        assertEquals(Policy.MAX, tenantPolicies.get("tenant2"));
+
+        DataCoalescing coalescing = new DataCoalescing(Policy.KEEP_ALL, tenantPolicies);
+
+        coalescing.addTrigger(new Trigger("tenant1", "t1", "t1"), Collections.singletonList(
+                new ThresholdCondition("tenant1", "t1", "d1", ThresholdCondition.Operator.GT, 10.0)));
+        assertEquals(Policy.LATEST, coalescing.getPolicy("tenant1", "d1"));
+
+        // Trigger context overrides the tenant policy
+        Trigger t2 = new Trigger("tenant2", "t2", "t2");
+        t2.addContext(DataCoalescing.CONTEXT_POLICY, "avg");
+        coalescing.addTrigger(t2, Arrays.asList(
+                new CompareCondition("tenant2", "t2", "d1", CompareCondition.Operator.GT, 1.0, "d2"),
+                new RateCondition("tenant2", "t2", "d3", RateCondition.Direction.INCREASING,
+                        RateCondition.Period.MINUTE, RateCondition.Operator.GT, 10.0)));
+        assertEquals(Policy.AVG, coalescing.getPolicy("tenant2", "d1"));
+        assertEquals(Policy.AVG, coalescing.getPolicy("tenant2", "d2"));
+        // Rate conditions need every sample
+        assertEquals(Policy.KEEP_ALL, coalescing.getPolicy("tenant2", "d3"));
+
+        // Triggers of the same dataId with different policies keep all the data
+        coalescing.addTrigger(new Trigger("tenant2", "t3", "t3"), Collections.singletonList(
+                new ThresholdCondition("tenant2", "t3", "d1", ThresholdCondition.Operator.GT, 10.0)));
+        assertEquals(Policy.KEEP_ALL, coalescing.getPolicy("tenant2", "d1"));
+        coalescing.removeTrigger("tenant2", "t3");
+        assertEquals(Policy.AVG, coalescing.getPolicy("tenant2", "d1"));
+
+        // Reloading a trigger replaces its previous policies
+        t2.addContext(DataCoalescing.CONTEXT_POLICY, "keep-all");
+        coalescing.addTrigger(t2, Collections.singletonList(
+                new ThresholdCondition("tenant2", "t2", "d1", ThresholdCondition.Operator.GT, 10.0)));
+        assertEquals(Policy.KEEP_ALL, coalescing.getPolicy("tenant2", "d1"));
+        assertEquals(Policy.KEEP_ALL, coalescing.getPolicy("tenant2", "d2"));
+
+        coalescing.clear();
+        assertEquals(Policy.KEEP_ALL, coalescing.getPolicy("tenant1", "d1"));
+    }
+
+    @Test
+    public void coalesceTest() {
+        DataCoalescing coalescing = new DataCoalescing(Policy.KEEP_ALL, new HashMap<>());
+        EngineMetrics metrics = new EngineMetrics();
+        coalescing.setMetrics(metrics);
+
+        TreeSet<Data> data = new TreeSet<>();
+        data.add(Data.forNumeric("tenant", "d1", 1000, 5.0));
+        data.add(Data.forNumeric("tenant", "d1", 2000, 1.0));
+        data.add(Data.forNumeric("tenant", "d1", 3000, 3.0));
+        data.add(Data.forNumeric("tenant", "d2", 1000, 5.0));
+        data.add(Data.forNumeric("tenant", "d2", 2000, 1.0));
+        data.add(Data.forNumeric("tenant", "d2", 3000, 3.0));
+        data.add(Data.forString("tenant", "d3", 1000, "UP"));
+        data.add(Data.forString("tenant", "d3", 2000, "DOWN"));
+        data.add(Data.forNumeric("tenant", "d4", 1000, 5.0));
+        data.add(Data.forNumeric("tenant", "d4", 2000, 1.0));
+
+        // No coalesced dataIds
+        assertSame(data, coalescing.coalesce(data));
+
+        addTrigger(coalescing, "t1", "d1", "min");
+        addTrigger(coalescing, "t2", "d2", "avg");
+        addTrigger(coalescing, "t3", "d3", "max");
+        coalescing.addTrigger(new Trigger("tenant", "t4", "t4"), Collections.singletonList(
+                new ThresholdCondition("tenant", "t4", "d4", ThresholdCondition.Operator.GT, 10.0)));
+
+        TreeSet<Data> result = coalescing.coalesce(data);
+        assertEquals(result.toString(), 5, result.size());
+        Iterator<Data> it = result.iterator();
+        Data d1 = it.next();
+        assertEquals(2000, d1.getTimestamp());
+        assertEquals(1.0, d1.getNumericValue(), 0.001);
+        Data d2 = it.next();
+        assertEquals(3000, d2.getTimestamp());
+        assertEquals(3.0, d2.getNumericValue(), 0.001);
+        // Non numeric data falls back to the latest value
+        Data d3 = it.next();
+        assertEquals("DOWN", d3.getValue());
+        // Default policy keeps all the data
+        assertEquals("d4", it.next().getId());
+        assertEquals("d4", it.next().getId());
+
+        assertEquals(5, metrics.counter(EngineMetrics.ENGINE_COALESCED_DATA).sum());
+    }
+
+    private void addTrigger(DataCoalescing coalescing, String triggerId, String dataId, String policy) {
+        Trigger t = new Trigger("tenant", triggerId, triggerId);
+        t.addContext(DataCoalescing.CONTEXT_POLICY, policy);
+        coalescing.addTrigger(t, Collections.singletonList(
+                new StringCondition("tenant", triggerId, dataId, StringCondition.Operator.EQUAL, "DOWN", false)));
+    }
+}
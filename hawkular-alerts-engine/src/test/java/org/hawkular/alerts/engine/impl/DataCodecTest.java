@@ -0,0 +1,121 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hawkular.alerts.api.model.data.AvailabilityType;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.engine.impl.PartitionManagerImpl.NotifyData;
+import org.junit.Test;
+
+/**
+ * Testing DataCodec round trip and size against Java serialization.
+ */
+public class DataCodecTest {
+
+    @Test
+    public void dataRoundTripTest() {
+        Map<String, String> context = new HashMap<>();
+        context.put("unit", "ms");
+        List<Data> data = new ArrayList<>();
+        data.add(Data.forNumeric("tenant", "source", "d1", 2000, 1.5, context));
+        data.add(Data.forNumeric("tenant", "d1", 1000, -3.0));
+        // Not the canonical double representation, the value is kept as it is
+        data.add(Data.forString("tenant", "d2", 1000, "1"));
+        data.add(Data.forAvailability("tenant", "d3", 1000, AvailabilityType.DOWN));
+        data.add(Data.forString("tenant2", "d4", 500, "text with ñ"));
+
+        for (DataCodec codec : new DataCodec[] { new DataCodec(0), new DataCodec(1) }) {
+            List<Data> decoded = codec.decodeData(codec.encodeData(data));
+            assertEquals(data.size(), decoded.size());
+            for (int i = 0; i < data.size(); i++) {
+                Data expected = data.get(i);
+                Data actual = decoded.get(i);
+                assertEquals(expected, actual);
+                assertEquals(expected.getSource(), actual.getSource());
+                assertEquals(expected.getValue(), actual.getValue());
+                assertEquals(expected.getValueType(), actual.getValueType());
+                assertEquals(expected.getContext(), actual.getContext());
+            }
+        }
+    }
+
+    @Test
+    public void eventsRoundTripTest() {
+        Map<String, String> tags = new HashMap<>();
+        tags.put("app", "war");
+        Event e1 = new Event("tenant", "e1", 1000, "source", "A.war", "DEPLOYMENT", "DOWN", null, tags);
+        Trigger trigger = new Trigger("tenant", "trigger-1", "Trigger 1");
+        Event e2 = new Event("tenant", trigger, null, Collections.emptyList());
+        List<Event> events = new ArrayList<>();
+        events.add(e1);
+        events.add(e2);
+
+        DataCodec codec = new DataCodec(0);
+        List<Event> decoded = codec.decodeEvents(codec.encodeEvents(events));
+        assertEquals(events, decoded);
+        assertEquals(e1.getDataSource(), decoded.get(0).getDataSource());
+        assertEquals(e1.getDataId(), decoded.get(0).getDataId());
+        assertEquals(e1.getCtime(), decoded.get(0).getCtime());
+        assertEquals(tags, decoded.get(0).getTags());
+        assertNull(decoded.get(0).getTrigger());
+        // Events generated by a trigger keep the trigger definition
+        assertEquals(trigger, decoded.get(1).getTrigger());
+    }
+
+    @Test
+    public void notifyDataSizeTest() throws Exception {
+        List<Data> data = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            data.add(Data.forNumeric("tenant", "source", "dataId-" + (i % 10), 1500000000000L + i * 1000, 1.0 * i));
+        }
+        byte[] javaSerialized = serialize(new ArrayList<>(data));
+        NotifyData notifyData = new NotifyData(1, data, Data.class);
+        byte[] codecSerialized = serialize(notifyData);
+        assertTrue(codecSerialized.length + " vs " + javaSerialized.length,
+                codecSerialized.length * 4 < javaSerialized.length);
+
+        NotifyData decoded = (NotifyData) new ObjectInputStream(new ByteArrayInputStream(codecSerialized))
+                .readObject();
+        assertEquals(Integer.valueOf(1), decoded.getFromNode());
+        assertEquals(data, decoded.getDataCollection());
+        assertNull(decoded.getEventCollection());
+    }
+
+    private byte[] serialize(Object o) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(o);
+        }
+        return bytes.toByteArray();
+    }
+}
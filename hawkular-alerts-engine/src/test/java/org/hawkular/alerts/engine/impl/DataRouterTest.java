@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.engine.impl.AlertsEngineCache.DataEntry;
+import org.hawkular.alerts.engine.impl.PartitionManagerImpl.NotifyData;
+import org.junit.Test;
+
+/**
+ * Testing DataRouter routes data only to the nodes using its dataIds.
+ */
+public class DataRouterTest {
+
+    @Test
+    public void routeTest() {
+        int numNodes = 3;
+        DataRouter router = new DataRouter();
+        LocalDataTransport transport = new LocalDataTransport();
+        Map<Integer, List<Data>> received = new HashMap<>();
+        List<AlertsEngineCache> caches = new ArrayList<>();
+        for (int node = 0; node < numNodes; node++) {
+            List<Data> nodeReceived = new ArrayList<>();
+            received.put(node, nodeReceived);
+            transport.register(node, notifyData -> nodeReceived.addAll(notifyData.getDataCollection()));
+
+            // Each node uses its own dataId and the shared one
+            AlertsEngineCache cache = new AlertsEngineCache();
+            cache.add(new DataEntry("tenant", "trigger-" + node, "data-" + node));
+            cache.add(new DataEntry("tenant", "trigger-" + node, "shared"));
+            caches.add(cache);
+            router.updateNode(node, cache.getActiveDataIds());
+        }
+
+        List<Data> data = new ArrayList<>();
+        for (int node = 0; node < numNodes; node++) {
+            data.add(Data.forNumeric("tenant", "data-" + node, 1000, 1.0));
+        }
+        data.add(Data.forNumeric("tenant", "shared", 1000, 1.0));
+        data.add(Data.forNumeric("tenant", "unknown", 1000, 1.0));
+        data.add(Data.forNumeric("other-tenant", "shared", 1000, 1.0));
+
+        // Node 0 receives the data, it is already processed locally, data with no route is left to broadcast
+        List<Data> unrouted = send(router, transport, 0, data);
+        assertTrue(received.get(0).isEmpty());
+        assertEquals(unrouted.toString(), 2, unrouted.size());
+        assertTrue(unrouted.contains(data.get(4)));
+        assertTrue(unrouted.contains(data.get(5)));
+        assertEquals(0, transport.getFailedSends());
+        for (int node = 1; node < numNodes; node++) {
+            assertEquals(received.get(node).toString(), 2, received.get(node).size());
+            for (Data d : received.get(node)) {
+                assertTrue(d.getId().equals("data-" + node) || d.getId().equals("shared"));
+            }
+        }
+
+        // A node publishes its dataIds only when they change
+        AlertsEngineCache cache = caches.get(1);
+        long version = cache.getVersion();
+        cache.add(new DataEntry("tenant", "trigger-x", "shared"));
+        assertEquals(version, cache.getVersion());
+        cache.remove("tenant", "trigger-1");
+        assertNotEquals(version, cache.getVersion());
+        router.updateNode(1, cache.getActiveDataIds());
+        assertEquals(0, router.getNodes("tenant", "data-1").length);
+        assertEquals(numNodes, router.getNodes("tenant", "shared").length);
+
+        // Nodes leaving the cluster are not routed
+        router.retainNodes(Arrays.asList(0, 1));
+        assertEquals(2, router.getNodes("tenant", "shared").length);
+        assertEquals(0, router.getNodes("tenant", "data-2").length);
+    }
+
+    private List<Data> send(DataRouter router, DataTransport transport, Integer fromNode, Collection<Data> data) {
+        List<Data> unrouted = new ArrayList<>();
+        router.route(data, Data::getTenantId, Data::getId, fromNode, unrouted).forEach((node, nodeData) ->
+                transport.send(node, new NotifyData(fromNode, nodeData, Data.class)));
+        return unrouted;
+    }
+}
@@ -16,11 +16,15 @@
  */
 package org.hawkular.alerts.engine.impl;
 
+import static org.junit.Assert.assertTrue;
+
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
+import org.hawkular.alerts.api.model.condition.Condition;
 import org.hawkular.alerts.engine.impl.PartitionManagerImpl.PartitionEntry;
 import org.junit.Test;
 import org.slf4j.Logger;
@@ -186,5 +190,64 @@ public class DistributionTest {
         }
     }
 
+    /*
+        Skewed costs: 0.3% of Nelson triggers on 5 Hz feeds, 5% of threshold triggers on 1 Hz feeds and the rest of
+        threshold triggers on feeds of one datum per minute.
+     */
+    public static Map<PartitionEntry, Double> generateCosts(List<PartitionEntry> entries, long seed) {
+        Random random = new Random(seed);
+        Map<PartitionEntry, Double> costs = new HashMap<>();
+        for (PartitionEntry entry : entries) {
+            int p = random.nextInt(1000);
+            costs.put(entry, p < 3 ? TriggerCostEstimator.weight(Condition.Type.NELSON) * 5
+                    : p < 53 ? 1.0 : PartitionManagerImpl.DEFAULT_COST);
+        }
+        return costs;
+    }
+
+    @Test
+    public void weightedBalanceTest() {
+        PartitionManagerImpl pm = new PartitionManagerImpl();
+        List<PartitionEntry> entries = generateTriggers(3, 1000);
+        Map<PartitionEntry, Double> costs = generateCosts(entries, 1);
+        double tolerance = 0.2;
+
+        Map<Integer, Integer> buckets = new HashMap<>();
+        buckets.put(0, 1000);
+        Map<PartitionEntry, Integer> weighted = pm.calculatePartition(entries, buckets);
+
+        for (int numNodes = 2; numNodes < 10; numNodes++) {
+            buckets.put(numNodes - 1, numNodes - 1 + 1000);
+            List<Integer> nodes = new ArrayList<>(buckets.values());
+
+            Map<PartitionEntry, Integer> hashed = pm.calculatePartition(entries, buckets);
+            double hashedImbalance = PartitionManagerImpl.imbalance(hashed, costs, nodes);
+
+            // As on a topology change, the consistent hashing partition is balanced by cost
+            Map<PartitionEntry, Integer> previous = weighted;
+            weighted = pm.balancePartition(hashed, costs, nodes, tolerance, entries.size());
+            double weightedImbalance = PartitionManagerImpl.imbalance(weighted, costs, nodes);
+            int moved = comparePartitions(previous, weighted);
+
+            print(numNodes + " servers - imbalance hashed: " + String.format("%.3f", hashedImbalance)
+                    + " weighted: " + String.format("%.3f", weightedImbalance)
+                    + " moved: " + moved + " of " + entries.size());
+            assertTrue(weightedImbalance <= Math.max(tolerance, hashedImbalance));
+        }
+
+        // A change of the costs is rebalanced with a bounded number of moves
+        List<Integer> nodes = new ArrayList<>(buckets.values());
+        Map<PartitionEntry, Double> newCosts = generateCosts(entries, 2);
+        double before = PartitionManagerImpl.imbalance(weighted, newCosts, nodes);
+        int maxMoves = (int) Math.ceil(entries.size() * 0.05);
+        Map<PartitionEntry, Integer> rebalanced = pm.balancePartition(weighted, newCosts, nodes, tolerance, maxMoves);
+        double after = PartitionManagerImpl.imbalance(rebalanced, newCosts, nodes);
+        int moved = comparePartitions(weighted, rebalanced);
+        print("cost change - imbalance before: " + String.format("%.3f", before)
+                + " after: " + String.format("%.3f", after) + " moved: " + moved + " of " + entries.size());
+        assertTrue(moved <= maxMoves);
+        assertTrue(after <= before);
+    }
+
 
 }
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Alert;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.jboss.logging.Logger;
+import org.junit.Test;
+
+/**
+ * Testing EngineMetrics counters, gauges and latencies.
+ */
+public class EngineMetricsTest {
+
+    @Test
+    public void statusAndPrometheusTest() {
+        EngineMetrics metrics = new EngineMetrics();
+        metrics.counter(EngineMetrics.RULES_DEFERRED_DATA).add(3);
+        metrics.gauge(EngineMetrics.ENGINE_PENDING_DATA, () -> 7);
+        metrics.histogram(EngineMetrics.RULES_FIRING_TIME).record(20);
+        metrics.histogram(EngineMetrics.RULES_FIRING_TIME).record(40);
+
+        Map<String, String> status = metrics.getStatus();
+        assertEquals("3", status.get("metrics.rules.deferredData"));
+        assertEquals("7", status.get("metrics.engine.pendingData"));
+        assertEquals("2", status.get("metrics.rules.firingTimeMicros.count"));
+        assertEquals("30.0", status.get("metrics.rules.firingTimeMicros.mean"));
+        assertEquals("40", status.get("metrics.rules.firingTimeMicros.max"));
+        assertEquals("20", status.get("metrics.rules.firingTimeMicros.p50"));
+
+        String text = metrics.toPrometheus();
+        assertTrue(text, text.contains("# TYPE hawkular_alerts_rules_deferred_data counter\n"
+                + "hawkular_alerts_rules_deferred_data 3\n"));
+        assertTrue(text, text.contains("hawkular_alerts_engine_pending_data 7\n"));
+        assertTrue(text, text.contains("# TYPE hawkular_alerts_rules_firing_time_micros summary\n"));
+        assertTrue(text, text.contains("hawkular_alerts_rules_firing_time_micros{quantile=\"0.99\"} 40\n"));
+        assertTrue(text, text.contains("hawkular_alerts_rules_firing_time_micros_count 2\n"));
+    }
+
+    @Test
+    public void rulesEngineMetricsTest() {
+        EngineMetrics metrics = new EngineMetrics();
+        DroolsRulesEngineImpl rules = new DroolsRulesEngineImpl();
+        rules.setMetrics(metrics);
+        List<Alert> alerts = new ArrayList<>();
+        rules.addGlobal("log", Logger.getLogger(EngineMetricsTest.class));
+        rules.addGlobal("alerts", alerts);
+        rules.addGlobal("events", new ArrayList<>());
+        rules.addGlobal("pendingTimeouts", new HashSet<>());
+        rules.addGlobal("autoResolvedTriggers", new HashMap<>());
+        rules.addGlobal("disabledTriggers", new CopyOnWriteArraySet<>());
+
+        Trigger t1 = new Trigger("tenant", "trigger-1", "Threshold");
+        t1.setEnabled(true);
+        rules.addFact(t1);
+        rules.addFact(new ThresholdCondition("tenant", "trigger-1", "NumericData-01",
+                ThresholdCondition.Operator.LT, 10.0));
+
+        TreeSet<Data> data = new TreeSet<>();
+        data.add(Data.forNumeric("tenant", "NumericData-01", 1000, 5.0));
+        // Both deferred to a second firing cycle, where the last one violates the min reporting interval
+        data.add(Data.forNumeric("tenant", "NumericData-01", 5000, 5.0));
+        data.add(Data.forNumeric("tenant", "NumericData-01", 5500, 5.0));
+        rules.addData(data);
+        rules.fire();
+
+        Map<String, String> status = metrics.getStatus();
+        assertEquals("2", status.get("metrics.rules.deferredData"));
+        assertEquals("1", status.get("metrics.rules.minReportingIntervalDroppedData"));
+        assertEquals("1", status.get("metrics.rules.firingTimeMicros.count"));
+        assertEquals("2", status.get("metrics.rules.fireCycles.max"));
+        assertEquals("1", status.get("metrics.rules.facts.Trigger"));
+        assertEquals("1", status.get("metrics.rules.facts.ThresholdCondition"));
+        // Data is retracted after each firing cycle
+        assertEquals("0", status.get("metrics.rules.facts.Data"));
+
+        rules.reset();
+        assertEquals("0", metrics.getStatus().get("metrics.rules.facts.Trigger"));
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.hawkular.alerts.api.exception.OverloadedException;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.engine.impl.IngestionBackpressure.Policy;
+import org.junit.Test;
+
+/**
+ * Testing IngestionBackpressure policies on the ingestion stages.
+ */
+public class IngestionBackpressureTest {
+
+    private List<Data> data(String tenantId, int numDataIds, int numTimestamps) {
+        List<Data> data = new ArrayList<>();
+        for (int i = 0; i < numDataIds; i++) {
+            for (int j = 0; j < numTimestamps; j++) {
+                data.add(Data.forNumeric(tenantId, "data-" + i, (j + 1) * 1000, (double) j));
+            }
+        }
+        return data;
+    }
+
+    @Test
+    public void policyFromStringTest() {
+        assertEquals(Policy.REJECT, Policy.fromString("reject"));
+        assertEquals(Policy.DROP_OLDEST, Policy.fromString("drop-oldest"));
+        assertEquals(Policy.BLOCK, Policy.fromString(" BLOCK "));
+    }
+
+    @Test
+    public void rejectTest() {
+        IngestionBackpressure backpressure = new IngestionBackpressure(Policy.REJECT, 10, 10, 10, 100, 2);
+
+        List<Data> batch1 = data("tenant1", 2, 4);
+        assertSame(batch1, backpressure.admitData(batch1));
+
+        try {
+            backpressure.admitData(data("tenant2", 2, 2));
+            fail("It should throw an OverloadedException");
+        } catch (OverloadedException e) {
+            assertFalse(e.isUnavailable());
+            assertEquals(2, e.getRetryAfter());
+        }
+        assertEquals(0, backpressure.getShedData("tenant1"));
+        assertEquals(4, backpressure.getShedData("tenant2"));
+
+        backpressure.release(batch1.size());
+        assertEquals(4, backpressure.admitData(data("tenant2", 2, 2)).size());
+    }
+
+    @Test
+    public void dropOldestTest() {
+        IngestionBackpressure backpressure = new IngestionBackpressure(Policy.DROP_OLDEST, 10, 10, 10, 100, 2);
+
+        assertEquals(8, backpressure.admitData(data("tenant1", 2, 4)).size());
+
+        // Only the most recent datum per dataId fits
+        Collection<Data> admitted = backpressure.admitData(data("tenant2", 2, 3));
+        assertEquals(2, admitted.size());
+        for (Data d : admitted) {
+            assertEquals(3000, d.getTimestamp());
+        }
+        assertEquals(4, backpressure.getShedData("tenant2"));
+
+        try {
+            backpressure.admitData(data("tenant3", 1, 1));
+            fail("It should throw an OverloadedException");
+        } catch (OverloadedException e) {
+            assertFalse(e.isUnavailable());
+        }
+        assertEquals(1, backpressure.getShedData("tenant3"));
+    }
+
+    @Test
+    public void blockTest() {
+        IngestionBackpressure backpressure = new IngestionBackpressure(Policy.BLOCK, 10, 10, 10, 50, 2);
+
+        backpressure.admitData(data("tenant1", 2, 5));
+        long start = System.currentTimeMillis();
+        try {
+            backpressure.admitData(data("tenant1", 1, 1));
+            fail("It should throw an OverloadedException");
+        } catch (OverloadedException e) {
+            assertTrue(e.isUnavailable());
+        }
+        assertTrue(System.currentTimeMillis() - start >= 50);
+        assertEquals(1, backpressure.getShedData("tenant1"));
+    }
+
+    @Test
+    public void oversizedBatchTest() {
+        for (Policy policy : Policy.values()) {
+            IngestionBackpressure backpressure = new IngestionBackpressure(policy, 10, 0, 10, 50, 2);
+
+            // A batch larger than the bound takes all the permits, once nothing else is in flight
+            List<Data> batch1 = data("tenant1", 1, 1);
+            assertEquals(1, backpressure.admitData(batch1).size());
+            try {
+                backpressure.admitData(data("tenant2", 15, 1));
+                fail("It should throw an OverloadedException");
+            } catch (OverloadedException e) {
+                assertEquals(policy.name(), policy == Policy.BLOCK, e.isUnavailable());
+            }
+            backpressure.release(batch1.size());
+            Collection<Data> admitted = backpressure.admitData(data("tenant2", 15, 1));
+            assertEquals(policy.name(), 15, admitted.size());
+            backpressure.release(admitted.size());
+            assertEquals(1, backpressure.admitData(batch1).size());
+        }
+    }
+
+    @Test
+    public void engineStageOversizedBatchTest() {
+        for (Policy policy : Policy.values()) {
+            IngestionBackpressure backpressure = new IngestionBackpressure(policy, 0, 10, 10, 50, 2);
+            IngestionBuffer<Data> buffer = new IngestionBuffer<>();
+
+            // A batch larger than the max pending and the hard cap is added to an empty buffer
+            assertEquals(policy.name(), 25, backpressure.offerData(buffer, new TreeSet<>(data("tenant1", 25, 1))));
+            assertEquals(policy.name(), 25, backpressure.drainData(buffer).size());
+            assertFalse(backpressure.isEngineSaturated());
+        }
+    }
+
+    @Test
+    public void engineStageRejectTest() {
+        IngestionBackpressure backpressure = new IngestionBackpressure(Policy.REJECT, 0, 10, 10, 100, 2);
+        IngestionBuffer<Data> buffer = new IngestionBuffer<>();
+
+        assertEquals(8, backpressure.offerData(buffer, new TreeSet<>(data("tenant1", 2, 4))));
+        assertEquals(-1, backpressure.offerData(buffer, new TreeSet<>(data("tenant1", 2, 2))));
+        assertEquals(4, backpressure.getShedData("tenant1"));
+        assertTrue(backpressure.isEngineSaturated());
+
+        // Saturated engine is signalled to the incoming stage
+        try {
+            backpressure.admitData(data("tenant2", 1, 1));
+            fail("It should throw an OverloadedException");
+        } catch (OverloadedException e) {
+            assertTrue(e.isUnavailable());
+        }
+
+        buffer.drain();
+        backpressure.engineDrained();
+        assertFalse(backpressure.isEngineSaturated());
+        assertEquals(1, backpressure.admitData(data("tenant2", 1, 1)).size());
+    }
+
+    @Test
+    public void engineStageDropOldestTest() {
+        IngestionBackpressure backpressure = new IngestionBackpressure(Policy.DROP_OLDEST, 0, 10, 10, 100, 2);
+        IngestionBuffer<Data> buffer = new IngestionBuffer<>();
+
+        assertEquals(8, backpressure.offerData(buffer, new TreeSet<>(data("tenant1", 2, 4))));
+        // Over the max pending only the latest datum per dataId of the batch is added, up to the hard cap
+        assertEquals(10, backpressure.offerData(buffer, new TreeSet<>(data("tenant1", 2, 5))));
+        assertEquals(8, backpressure.getShedData("tenant1"));
+        for (int i = 0; i < 5; i++) {
+            assertEquals(12 + 2 * i, backpressure.offerData(buffer, new TreeSet<>(data("tenant1", 2, 6))));
+        }
+        assertEquals(-1, backpressure.offerData(buffer, new TreeSet<>(data("tenant1", 2, 6))));
+        assertEquals(20, buffer.size());
+        assertEquals(8 + 5 * 10 + 12, backpressure.getShedData("tenant1"));
+
+        // The consumer compacts the buffer on drain
+        TreeSet<Data> pending = backpressure.drainData(buffer);
+        assertEquals(2, pending.size());
+        for (Data d : pending) {
+            assertEquals(6000, d.getTimestamp());
+        }
+        // Duplicated datums are deduplicated, 12 distinct datums are pending
+        assertEquals(8 + 5 * 10 + 12 + 10, backpressure.getShedData("tenant1"));
+
+        // Under the max pending the buffer is drained as is
+        backpressure.offerData(buffer, new TreeSet<>(data("tenant1", 2, 4)));
+        assertEquals(8, backpressure.drainData(buffer).size());
+    }
+
+    @Test
+    public void deferredStageTest() {
+        IngestionBackpressure backpressure = new IngestionBackpressure(Policy.REJECT, 0, 0, 5, 100, 2);
+
+        TreeSet<Data> deferred = new TreeSet<>(data("tenant1", 2, 2));
+        assertSame(deferred, backpressure.boundDeferredData(deferred));
+
+        deferred = new TreeSet<>(data("tenant1", 2, 3));
+        TreeSet<Data> bounded = backpressure.boundDeferredData(deferred);
+        assertEquals(2, bounded.size());
+        assertEquals(4, backpressure.getShedData("tenant1"));
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.alerts.api.model.data.Data;
+import org.junit.Test;
+
+/**
+ * Testing IngestionBuffer sorting and deduplication on drain.
+ */
+public class IngestionBufferTest {
+
+    @Test
+    public void sortAndDedupeTest() {
+        IngestionBuffer<Data> buffer = new IngestionBuffer<>();
+        assertTrue(buffer.isEmpty());
+
+        TreeSet<Data> batch1 = new TreeSet<>();
+        batch1.add(Data.forNumeric("tenant", "d2", 2000, 2.0));
+        batch1.add(Data.forNumeric("tenant", "d1", 2000, 1.0));
+        assertEquals(2, buffer.addAll(batch1));
+
+        TreeSet<Data> batch2 = new TreeSet<>();
+        batch2.add(Data.forNumeric("tenant", "d1", 1000, 1.0));
+        // Duplicated (tenantId, id, timestamp), first added wins
+        batch2.add(Data.forNumeric("tenant", "d2", 2000, 20.0));
+        assertEquals(4, buffer.addAll(batch2));
+
+        // The caller can reuse its collection
+        batch1.clear();
+
+        TreeSet<Data> drained = buffer.drain();
+        assertTrue(buffer.isEmpty());
+        assertEquals(0, buffer.size());
+
+        List<Data> result = new ArrayList<>(drained);
+        assertEquals(3, result.size());
+        assertEquals("d1", result.get(0).getId());
+        assertEquals(1000, result.get(0).getTimestamp());
+        assertEquals("d1", result.get(1).getId());
+        assertEquals(2000, result.get(1).getTimestamp());
+        assertEquals("d2", result.get(2).getId());
+        assertEquals("2.0", result.get(2).getValue());
+    }
+
+    @Test
+    public void concurrentProducersTest() throws Exception {
+        IngestionBuffer<Data> buffer = new IngestionBuffer<>();
+        int numProducers = 8;
+        int numBatches = 500;
+        ExecutorService producers = Executors.newFixedThreadPool(numProducers);
+        CountDownLatch done = new CountDownLatch(numProducers);
+        for (int p = 0; p < numProducers; p++) {
+            final String dataId = "producer-" + p;
+            producers.submit(() -> {
+                for (int i = 0; i < numBatches; i++) {
+                    TreeSet<Data> batch = new TreeSet<>();
+                    batch.add(Data.forNumeric("tenant", dataId, i, (double) i));
+                    buffer.addAll(batch);
+                }
+                done.countDown();
+            });
+        }
+
+        TreeSet<Data> drained = new TreeSet<>();
+        while (!done.await(1, TimeUnit.MILLISECONDS)) {
+            drained.addAll(buffer.drain());
+        }
+        drained.addAll(buffer.drain());
+        producers.shutdown();
+
+        assertEquals(numProducers * numBatches, drained.size());
+        assertEquals(0, buffer.size());
+    }
+}
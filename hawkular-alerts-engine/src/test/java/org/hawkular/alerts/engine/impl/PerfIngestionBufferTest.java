@@ -0,0 +1,178 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.Collection;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hawkular.alerts.api.model.data.Data;
+import org.jboss.logging.Logger;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+
+/**
+ * Contention benchmark of the AlertsEngine ingestion buffers.
+ *
+ * It compares the previous synchronized TreeSet buffer against the lock-free IngestionBuffer with 1, 8 and 32
+ * producer threads adding small batches while a single consumer drains the buffer, as the rules cycle does.
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class PerfIngestionBufferTest {
+    private static final Logger log = Logger.getLogger(PerfIngestionBufferTest.class);
+
+    private static final int NUM_DATA = 1_000_000;
+    private static final int BATCH_SIZE = 10;
+    private static final int NUM_DATA_IDS = 1000;
+
+    private interface Buffer {
+        void addAll(Collection<Data> data);
+        int drain();
+    }
+
+    private static class SynchronizedTreeSetBuffer implements Buffer {
+        private TreeSet<Data> pending = new TreeSet<>();
+
+        @Override
+        public void addAll(Collection<Data> data) {
+            synchronized (this) {
+                pending.addAll(data);
+            }
+        }
+
+        @Override
+        public int drain() {
+            TreeSet<Data> result;
+            synchronized (this) {
+                result = pending;
+                pending = new TreeSet<>();
+            }
+            return result.size();
+        }
+    }
+
+    private static class LockFreeBuffer implements Buffer {
+        private IngestionBuffer<Data> pending = new IngestionBuffer<>();
+
+        @Override
+        public void addAll(Collection<Data> data) {
+            pending.addAll(data);
+        }
+
+        @Override
+        public int drain() {
+            return pending.drain().size();
+        }
+    }
+
+    private void perfIngestion(String test, Buffer buffer, int numProducers) throws Exception {
+        int batchesPerProducer = NUM_DATA / numProducers / BATCH_SIZE;
+        ExecutorService producers = Executors.newFixedThreadPool(numProducers);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(numProducers);
+        AtomicBoolean consuming = new AtomicBoolean(true);
+        AtomicLong drained = new AtomicLong(0);
+
+        Thread consumer = new Thread(() -> {
+            while (consuming.get()) {
+                drained.addAndGet(buffer.drain());
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            drained.addAndGet(buffer.drain());
+        });
+        consumer.start();
+
+        for (int p = 0; p < numProducers; p++) {
+            final int producer = p;
+            producers.submit(() -> {
+                try {
+                    start.await();
+                    long timestamp = 0;
+                    for (int i = 0; i < batchesPerProducer; i++) {
+                        TreeSet<Data> batch = new TreeSet<>();
+                        for (int j = 0; j < BATCH_SIZE; j++) {
+                            String dataId = "data-" + ((i * BATCH_SIZE + j) % NUM_DATA_IDS);
+                            batch.add(Data.forNumeric("tenant", dataId, producer * NUM_DATA + timestamp++, (double) j));
+                        }
+                        buffer.addAll(batch);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        long startTime = System.nanoTime();
+        start.countDown();
+        done.await();
+        long stopTime = System.nanoTime();
+        consuming.set(false);
+        consumer.join();
+        producers.shutdown();
+        producers.awaitTermination(10, TimeUnit.SECONDS);
+
+        report(test, numProducers, drained.get(), startTime, stopTime);
+    }
+
+    private void report(String description, int numProducers, long numData, long start, long stop) {
+        long ms = TimeUnit.NANOSECONDS.toMillis(stop - start);
+        log.info("Report: " + description + " -- Producers: " + numProducers + " -- Data: " + numData + " -- " +
+                "Total: " + ms + " ms -- Throughput: " + (ms > 0 ? (numData * 1000 / ms) : numData) + " data/s");
+    }
+
+    @Test
+    public void perf000SynchronizedTreeSet1Producer() throws Exception {
+        perfIngestion("perf000SynchronizedTreeSet1Producer", new SynchronizedTreeSetBuffer(), 1);
+    }
+
+    @Test
+    public void perf001SynchronizedTreeSet8Producers() throws Exception {
+        perfIngestion("perf001SynchronizedTreeSet8Producers", new SynchronizedTreeSetBuffer(), 8);
+    }
+
+    @Test
+    public void perf002SynchronizedTreeSet32Producers() throws Exception {
+        perfIngestion("perf002SynchronizedTreeSet32Producers", new SynchronizedTreeSetBuffer(), 32);
+    }
+
+    @Test
+    public void perf003LockFree1Producer() throws Exception {
+        perfIngestion("perf003LockFree1Producer", new LockFreeBuffer(), 1);
+    }
+
+    @Test
+    public void perf004LockFree8Producers() throws Exception {
+        perfIngestion("perf004LockFree8Producers", new LockFreeBuffer(), 8);
+    }
+
+    @Test
+    public void perf005LockFree32Producers() throws Exception {
+        perfIngestion("perf005LockFree32Producers", new LockFreeBuffer(), 32);
+    }
+}
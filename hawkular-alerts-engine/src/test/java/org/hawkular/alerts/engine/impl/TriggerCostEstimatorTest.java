@@ -0,0 +1,83 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.hawkular.alerts.api.model.condition.NelsonCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.junit.Test;
+
+/**
+ * Testing TriggerCostEstimator cost windows.
+ */
+public class TriggerCostEstimatorTest {
+
+    @Test
+    public void costsTest() {
+        TriggerCostEstimator estimator = new TriggerCostEstimator(1000);
+        long start = System.currentTimeMillis();
+
+        Trigger threshold = new Trigger("tenant", "threshold", "Threshold");
+        Trigger nelson = new Trigger("tenant", "nelson", "Nelson");
+        Trigger idle = new Trigger("tenant", "idle", "Idle");
+        estimator.addTrigger(threshold, Collections.singletonList(new ThresholdCondition("tenant", "threshold",
+                "data-1", ThresholdCondition.Operator.GT, 10.0)));
+        estimator.addTrigger(nelson, Collections.singletonList(new NelsonCondition("tenant", "nelson", "data-1")));
+        estimator.addTrigger(idle, Collections.singletonList(new ThresholdCondition("tenant", "idle",
+                "data-2", ThresholdCondition.Operator.GT, 10.0)));
+
+        // Before the first window all triggers cost the minimum rate
+        Map<String, Map<String, Double>> costs = estimator.getCosts();
+        assertEquals(costs.get("tenant").get("idle"), costs.get("tenant").get("threshold"), 0.0001);
+
+        List<Data> data = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            data.add(Data.forNumeric("tenant", "data-1", start + i, 5.0));
+        }
+        // Unknown dataIds are ignored
+        data.add(Data.forNumeric("tenant", "data-3", start, 5.0));
+        estimator.record(data, Collections.emptyList());
+
+        assertFalse(estimator.roll(start + 500));
+        assertTrue(estimator.roll(start + 1000));
+
+        costs = estimator.getCosts();
+        double thresholdCost = costs.get("tenant").get("threshold");
+        double nelsonCost = costs.get("tenant").get("nelson");
+        double idleCost = costs.get("tenant").get("idle");
+        // ~10 data per second on the first window, halved by the moving average
+        assertEquals(5.0, thresholdCost, 0.5);
+        assertEquals(10 * thresholdCost, nelsonCost, 0.0001);
+        assertEquals(1.0 / 60, idleCost, 0.0001);
+
+        estimator.removeTrigger("tenant", "threshold");
+        estimator.removeTrigger("tenant", "nelson");
+        costs = estimator.getCosts();
+        assertEquals(Arrays.asList("idle"), new ArrayList<>(costs.get("tenant").keySet()));
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import org.hawkular.alerts.api.model.condition.CompareCondition;
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.condition.NelsonCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Alert;
+import org.hawkular.alerts.api.model.trigger.Mode;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.engine.util.NelsonData;
+import org.jboss.logging.Logger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Testing WorkingMemoryCheckpoint export and restore of the evaluation state of triggers.
+ */
+public class WorkingMemoryCheckpointTest {
+
+    File file;
+
+    @Before
+    public void before() throws IOException {
+        file = Files.createTempFile("hawkular-alerts-checkpoint", ".bin").toFile();
+        file.delete();
+    }
+
+    @After
+    public void after() {
+        file.delete();
+        new File(file.getPath() + ".tmp").delete();
+    }
+
+    @Test
+    public void restoreAfterRestartTest() {
+        List<Alert> alerts = new ArrayList<>();
+        DroolsRulesEngineImpl rules = newRules(alerts);
+        rules.addFacts(definitions());
+
+        // Two of the three consecutive true evaluations needed by the dampening
+        TreeSet<Data> data = new TreeSet<>();
+        data.add(Data.forNumeric("tenant", "NumericData-01", 1000, 5.0));
+        data.add(Data.forNumeric("tenant", "NumericData-01", 3000, 5.0));
+        // Only one side of the comparison
+        data.add(Data.forNumeric("tenant", "Data-B", 1000, 100.0));
+        rules.addData(data);
+        rules.fire();
+        assertEquals(alerts.toString(), 0, alerts.size());
+
+        WorkingMemoryCheckpoint checkpoint = new WorkingMemoryCheckpoint(file, 0);
+        checkpoint.init();
+        checkpoint.checkpoint(rules.getFacts(WorkingMemoryCheckpoint::isStateFact));
+        checkpoint.shutdown();
+        assertEquals("2", checkpoint.getStatus().get("engine.checkpoint.triggers"));
+        rules.reset();
+
+        // Restart with fresh definitions
+        List<Alert> restartAlerts = new ArrayList<>();
+        DroolsRulesEngineImpl restartRules = newRules(restartAlerts);
+        WorkingMemoryCheckpoint restartCheckpoint = new WorkingMemoryCheckpoint(file, 0);
+        restartCheckpoint.init();
+        List<Object> facts = definitions();
+        for (Object fact : new ArrayList<>(facts)) {
+            if (fact instanceof Trigger) {
+                Trigger t = (Trigger) fact;
+                facts.addAll(restartCheckpoint.restore(t, conditionsOf(facts, t), dampeningsOf(facts, t),
+                        Collections.emptyList()));
+            }
+        }
+        restartRules.addFacts(facts);
+
+        data.clear();
+        data.add(Data.forNumeric("tenant", "NumericData-01", 5000, 5.0));
+        data.add(Data.forNumeric("tenant", "Data-A", 5000, 10.0));
+        restartRules.addData(data);
+        restartRules.fire();
+
+        assertEquals(restartAlerts.toString(), 2, restartAlerts.size());
+        for (Alert a : restartAlerts) {
+            if ("trigger-1".equals(a.getTriggerId())) {
+                assertEquals(3, a.getEvalSets().size());
+            } else {
+                assertEquals("trigger-2", a.getTriggerId());
+            }
+        }
+        assertEquals("2", restartCheckpoint.getStatus().get("engine.checkpoint.restoredTriggers"));
+        restartCheckpoint.shutdown();
+        restartRules.reset();
+    }
+
+    @Test
+    public void fileRecordsTest() throws IOException {
+        DroolsRulesEngineImpl rules = newRules(new ArrayList<>());
+        rules.addFacts(definitions());
+        TreeSet<Data> data = new TreeSet<>();
+        data.add(Data.forNumeric("tenant", "NumericData-01", 1000, 5.0));
+        rules.addData(data);
+        rules.fire();
+
+        WorkingMemoryCheckpoint checkpoint = new WorkingMemoryCheckpoint(file, 0);
+        checkpoint.init();
+        Collection<Object> facts = rules.getFacts(WorkingMemoryCheckpoint::isStateFact);
+        checkpoint.checkpoint(facts);
+        // Nothing changed, nothing written
+        checkpoint.checkpoint(facts);
+        assertEquals("1", checkpoint.getStatus().get("engine.checkpoint.triggers"));
+        assertEquals("1", checkpoint.getStatus().get("engine.checkpoint.fileRecords"));
+        assertEquals("0", checkpoint.getStatus().get("engine.checkpoint.lastWritten"));
+
+        // The trigger is gone, its state is removed
+        checkpoint.checkpoint(Collections.emptyList());
+        assertEquals("0", checkpoint.getStatus().get("engine.checkpoint.triggers"));
+        assertEquals("1", checkpoint.getStatus().get("engine.checkpoint.lastRemoved"));
+        checkpoint.checkpoint(facts);
+        checkpoint.shutdown();
+        rules.reset();
+
+        // A partial record at the end of the file is ignored
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(new byte[] { 0, 6, 't', 'e' });
+        }
+        WorkingMemoryCheckpoint restart = new WorkingMemoryCheckpoint(file, 0);
+        restart.init();
+        assertEquals("1", restart.getStatus().get("engine.checkpoint.triggers"));
+        assertEquals("1", restart.getStatus().get("engine.checkpoint.fileRecords"));
+
+        // States of triggers not loaded after a full reload are removed
+        restart.removeUnclaimed();
+        assertEquals("0", restart.getStatus().get("engine.checkpoint.triggers"));
+        restart.shutdown();
+    }
+
+    @Test
+    public void nelsonStateTest() {
+        NelsonCondition condition = new NelsonCondition("tenant", "trigger-3", "Data-N", null, 10);
+        NelsonData nelsonData = new NelsonData(condition);
+        long timestamp = 1000;
+        for (int i = 0; i < 12; i++) {
+            nelsonData.addData(Data.forNumeric("tenant", "Data-N", timestamp++, (double) (i % 3)));
+        }
+        NelsonData restored = new NelsonData(condition);
+        assertTrue(restored.setState(nelsonData.getState()));
+        assertTrue(restored.hasMean());
+        assertEquals(nelsonData.getMeanResult(), restored.getMeanResult(), 0.0);
+
+        for (int i = 0; i < 10; i++) {
+            Data d = Data.forNumeric("tenant", "Data-N", timestamp++, 5.0);
+            nelsonData.addData(d);
+            restored.addData(d);
+            assertEquals(nelsonData.getViolations(), restored.getViolations());
+        }
+        assertTrue(restored.hasViolations());
+
+        // A different sample size re-establishes the baseline
+        NelsonData resized = new NelsonData(new NelsonCondition("tenant", "trigger-3", "Data-N", null, 20));
+        assertFalse(resized.setState(nelsonData.getState()));
+    }
+
+    private DroolsRulesEngineImpl newRules(List<Alert> alerts) {
+        DroolsRulesEngineImpl rules = new DroolsRulesEngineImpl();
+        rules.addGlobal("log", Logger.getLogger(WorkingMemoryCheckpointTest.class));
+        rules.addGlobal("alerts", alerts);
+        rules.addGlobal("events", new ArrayList<>());
+        rules.addGlobal("pendingTimeouts", new CopyOnWriteArraySet<>());
+        rules.addGlobal("autoResolvedTriggers", new HashMap<>());
+        rules.addGlobal("disabledTriggers", new CopyOnWriteArraySet<>());
+        return rules;
+    }
+
+    private List<Object> definitions() {
+        List<Object> facts = new ArrayList<>();
+        Trigger t1 = new Trigger("tenant", "trigger-1", "Threshold with dampening");
+        t1.setEnabled(true);
+        facts.add(t1);
+        facts.add(new ThresholdCondition("tenant", "trigger-1", "NumericData-01", ThresholdCondition.Operator.LT,
+                10.0));
+        facts.add(Dampening.forStrict("tenant", "trigger-1", Mode.FIRING, 3));
+
+        Trigger t2 = new Trigger("tenant", "trigger-2", "Compare");
+        t2.setEnabled(true);
+        facts.add(t2);
+        facts.add(new CompareCondition("tenant", "trigger-2", "Data-A", CompareCondition.Operator.LT, 0.5,
+                "Data-B"));
+        return facts;
+    }
+
+    private List<Condition> conditionsOf(List<Object> facts, Trigger t) {
+        List<Condition> conditions = new ArrayList<>();
+        for (Object fact : facts) {
+            if (fact instanceof Condition && ((Condition) fact).getTriggerId().equals(t.getId())) {
+                conditions.add((Condition) fact);
+            }
+        }
+        return conditions;
+    }
+
+    private List<Dampening> dampeningsOf(List<Object> facts, Trigger t) {
+        List<Dampening> dampenings = new ArrayList<>();
+        for (Object fact : facts) {
+            if (fact instanceof Dampening && ((Dampening) fact).getTriggerId().equals(t.getId())) {
+                dampenings.add((Dampening) fact);
+            }
+        }
+        return dampenings;
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hawkular.alerts.api.model.event.Alert;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.services.AlertsService;
+import org.hawkular.alerts.engine.service.PartitionManager;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Testing WriteBehindPersistence ordering, flush policy and retries.
+ */
+public class WriteBehindPersistenceTest {
+
+    List<String> calls = Collections.synchronizedList(new ArrayList<>());
+    AtomicInteger failures = new AtomicInteger(0);
+    AtomicInteger notifyFailures = new AtomicInteger(0);
+    boolean notifyError = false;
+    WriteBehindPersistence writeBehind;
+
+    private AlertsService alertsService() {
+        return (AlertsService) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[] { AlertsService.class }, (proxy, method, args) -> {
+                    if (failures.get() > 0) {
+                        failures.decrementAndGet();
+                        throw new Exception("Database not available");
+                    }
+                    if (method.getName().equals("addAlerts") || method.getName().equals("persistEvents")) {
+                        for (Object o : (Collection) args[0]) {
+                            calls.add(method.getName() + ":" + ((Event) o).getId());
+                        }
+                    }
+                    return null;
+                });
+    }
+
+    private PartitionManager partitionManager() {
+        return (PartitionManager) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[] { PartitionManager.class }, (proxy, method, args) -> {
+                    if (method.getName().equals("notifyEvents")) {
+                        if (notifyError) {
+                            throw new AssertionError("Writer thread killed");
+                        }
+                        if (notifyFailures.get() > 0) {
+                            notifyFailures.decrementAndGet();
+                            throw new IllegalStateException("Cluster not available");
+                        }
+                        for (Object o : (Collection) args[0]) {
+                            calls.add("notifyEvents:" + ((Event) o).getId());
+                        }
+                    }
+                    return null;
+                });
+    }
+
+    private WriteBehindPersistence writeBehind(int maxQueued, int flushSize, long flushInterval) {
+        WriteBehindPersistence writeBehind = new WriteBehindPersistence(true, maxQueued, flushSize, flushInterval,
+                3, 10);
+        writeBehind.setAlertsService(alertsService());
+        writeBehind.setPartitionManager(partitionManager());
+        writeBehind.init();
+        return writeBehind;
+    }
+
+    private Alert alert(String id) {
+        Alert alert = new Alert();
+        alert.setTenantId("tenant");
+        alert.setId(id);
+        return alert;
+    }
+
+    private Event event(String id) {
+        return new Event("tenant", id, "dataId", "category", "text");
+    }
+
+    @After
+    public void after() {
+        if (writeBehind != null) {
+            writeBehind.shutdown();
+        }
+    }
+
+    @Test
+    public void orderingTest() throws Exception {
+        writeBehind = writeBehind(100, 100, 60000);
+
+        writeBehind.enqueue(Collections.singletonList(alert("a1")), Collections.singletonList(event("e1")), true);
+        writeBehind.enqueue(Collections.singletonList(alert("a2")), Collections.singletonList(event("e2")), true);
+        writeBehind.enqueue(Collections.emptyList(), Collections.singletonList(event("e3")), false);
+
+        assertTrue(writeBehind.flush(5000));
+
+        List<String> expected = new ArrayList<>();
+        expected.add("addAlerts:a1");
+        expected.add("addAlerts:a2");
+        expected.add("persistEvents:e1");
+        expected.add("persistEvents:e2");
+        expected.add("persistEvents:e3");
+        expected.add("notifyEvents:e1");
+        expected.add("notifyEvents:e2");
+        assertEquals(expected, calls);
+        assertEquals("2", writeBehind.getStatus().get("persistence.persistedAlerts"));
+        assertEquals("3", writeBehind.getStatus().get("persistence.persistedEvents"));
+        assertEquals("0", writeBehind.getStatus().get("persistence.queued"));
+    }
+
+    @Test
+    public void flushIntervalTest() throws Exception {
+        writeBehind = writeBehind(100, 100, 50);
+
+        writeBehind.enqueue(Collections.emptyList(), Collections.singletonList(event("e1")), false);
+        long start = System.currentTimeMillis();
+        while (calls.isEmpty() && System.currentTimeMillis() - start < 5000) {
+            Thread.sleep(10);
+        }
+        assertEquals(Collections.singletonList("persistEvents:e1"), calls);
+        assertTrue(System.currentTimeMillis() - start >= 40);
+    }
+
+    @Test
+    public void retryTest() throws Exception {
+        writeBehind = writeBehind(100, 1, 60000);
+        failures.set(2);
+
+        writeBehind.enqueue(Collections.emptyList(), Collections.singletonList(event("e1")), true);
+        assertTrue(writeBehind.flush(5000));
+
+        List<String> expected = new ArrayList<>();
+        expected.add("persistEvents:e1");
+        expected.add("notifyEvents:e1");
+        assertEquals(expected, calls);
+        assertEquals("2", writeBehind.getStatus().get("persistence.retries"));
+        assertEquals("0", writeBehind.getStatus().get("persistence.failed"));
+
+        failures.set(3);
+        writeBehind.enqueue(Collections.emptyList(), Collections.singletonList(event("e2")), true);
+        assertTrue(writeBehind.flush(5000));
+        assertEquals(expected, calls);
+        assertEquals("1", writeBehind.getStatus().get("persistence.failed"));
+    }
+
+    @Test
+    public void synchronousTest() throws Exception {
+        WriteBehindPersistence sync = new WriteBehindPersistence(false, 100, 100, 100, 3, 10);
+        sync.setAlertsService(alertsService());
+        sync.setPartitionManager(partitionManager());
+
+        sync.enqueue(Collections.singletonList(alert("a1")), Collections.singletonList(event("e1")), true);
+
+        List<String> expected = new ArrayList<>();
+        expected.add("addAlerts:a1");
+        expected.add("persistEvents:e1");
+        expected.add("notifyEvents:e1");
+        assertEquals(expected, calls);
+    }
+
+    @Test
+    public void notifyFailureTest() throws Exception {
+        writeBehind = writeBehind(100, 1, 60000);
+        notifyFailures.set(1);
+
+        writeBehind.enqueue(Collections.emptyList(), Collections.singletonList(event("e1")), true);
+        assertTrue(writeBehind.flush(5000));
+        writeBehind.enqueue(Collections.emptyList(), Collections.singletonList(event("e2")), true);
+        assertTrue(writeBehind.flush(5000));
+
+        List<String> expected = new ArrayList<>();
+        expected.add("persistEvents:e1");
+        expected.add("persistEvents:e2");
+        expected.add("notifyEvents:e2");
+        assertEquals(expected, calls);
+        assertEquals("1", writeBehind.getStatus().get("persistence.failedNotifications"));
+    }
+
+    @Test
+    public void writerDiedTest() throws Exception {
+        writeBehind = writeBehind(2, 1, 60000);
+        notifyError = true;
+
+        writeBehind.enqueue(Collections.emptyList(), Collections.singletonList(event("e1")), true);
+        writeBehind.flush(5000);
+        notifyError = false;
+
+        // Cycles are persisted on the caller thread instead of waiting for capacity forever
+        for (int i = 2; i <= 4; i++) {
+            writeBehind.enqueue(Collections.emptyList(), Collections.singletonList(event("e" + i)), true);
+        }
+
+        List<String> expected = new ArrayList<>();
+        expected.add("persistEvents:e1");
+        for (int i = 2; i <= 4; i++) {
+            expected.add("persistEvents:e" + i);
+            expected.add("notifyEvents:e" + i);
+        }
+        assertEquals(expected, calls);
+        assertEquals("0", writeBehind.getStatus().get("persistence.queued"));
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.replay;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.Map;
+
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.condition.MissingCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.event.Alert;
+import org.hawkular.alerts.api.model.trigger.FullTrigger;
+import org.hawkular.alerts.api.model.trigger.Mode;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.junit.Test;
+
+/**
+ * Replay of recorded data on a simulated clock.
+ */
+public class AlertsReplayTest {
+
+    private static final long START = 1500000000000L;
+
+    @Test
+    public void missingDataTest() throws Exception {
+        Trigger t = new Trigger("trigger-missing", "Heartbeat missing");
+        t.setEnabled(true);
+        Condition c = new MissingCondition("trigger-missing", Mode.FIRING, "heartbeat", 60000L);
+
+        AlertsReplay replay = new AlertsReplay("tenant");
+        replay.addTrigger(new FullTrigger(t, Collections.emptyList(), Collections.singletonList(c)));
+
+        // A heartbeat each 10 seconds for 5 minutes, a gap of 2 minutes, and 3 more minutes of heartbeats
+        StringBuilder records = new StringBuilder();
+        for (long time = START; time <= START + 600000L; time += 10000L) {
+            if (time > START + 300000L && time < START + 420000L) {
+                continue;
+            }
+            records.append(dataRecord("heartbeat", time, "1.0")).append('\n');
+        }
+        long start = System.currentTimeMillis();
+        replay.replay(new StringReader(records.toString()));
+        long wallTime = System.currentTimeMillis() - start;
+
+        assertEquals(replay.getAlerts().toString(), 1, replay.getAlerts().size());
+        Alert a = replay.getAlerts().get(0);
+        assertEquals("tenant", a.getTenantId());
+        // The alert is raised on simulated time, once the interval has expired inside the gap
+        assertTrue(a.toString(), a.getCtime() >= START + 360000L && a.getCtime() < START + 420000L);
+        // 10 minutes of simulated time are replayed much faster
+        assertTrue(String.valueOf(wallTime), wallTime < 60000L);
+
+        Map<String, String> report = replay.getReport();
+        assertEquals(report.toString(), "50", report.get("replay.data"));
+        assertEquals(report.toString(), "1", report.get("replay.alerts"));
+        assertTrue(report.toString(), Long.parseLong(report.get("replay.simulatedTime")) >= 600000L);
+    }
+
+    @Test
+    public void strictTimeoutTest() throws Exception {
+        Trigger t = new Trigger("trigger-cpu", "High CPU for 30 seconds");
+        t.setEnabled(true);
+        Condition c = new ThresholdCondition("trigger-cpu", Mode.FIRING, "cpu", ThresholdCondition.Operator.GT,
+                90.0);
+        Dampening d = Dampening.forStrictTimeout("tenant", "trigger-cpu", Mode.FIRING, 30000L);
+
+        AlertsReplay replay = new AlertsReplay("tenant");
+        replay.addTrigger(new FullTrigger(t, Collections.singletonList(d), Collections.singletonList(c)));
+
+        // Only 2 high values separated by 20 seconds, the timeout expires with no more data
+        String records = dataRecord("cpu", START, "50.0") + "\n"
+                + dataRecord("cpu", START + 10000L, "95.0") + "\n"
+                + dataRecord("cpu", START + 30000L, "96.0") + "\n";
+        replay.setDrainTime(60000L);
+        replay.replay(new StringReader(records));
+
+        assertEquals(replay.getAlerts().toString(), 1, replay.getAlerts().size());
+        long ctime = replay.getAlerts().get(0).getCtime();
+        assertTrue(String.valueOf(ctime), ctime >= START + 40000L && ctime <= START + 50000L);
+    }
+
+    private static String dataRecord(String dataId, long timestamp, String value) {
+        return "{\"data\":[{\"id\":\"" + dataId + "\",\"timestamp\":" + timestamp + ",\"value\":\"" + value
+                + "\"}]}";
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.tags;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.hawkular.alerts.engine.tags.TagIndex.ValueFilter;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Testing tag queries on the in-memory tag index.
+ */
+public class TagIndexTest {
+
+    static final String TENANT = "tenant";
+    static final String TYPE = "ALERT";
+
+    // Exact values only, enough to test the bitmap evaluation
+    static final ValueFilter FILTER = (op, regexps, value) -> {
+        Set<String> items = new HashSet<>(Arrays.asList(regexps.replaceAll("[\\[\\]']", "").split(",")));
+        boolean matches = items.contains("*") || items.contains(value);
+        return op.equals("=") || op.equals("in") ? matches : !matches;
+    };
+
+    // id -> tags
+    Map<String, Map<String, String>> store = new HashMap<>();
+    int loads;
+    TagIndex index;
+
+    @Before
+    public void before() {
+        store.clear();
+        loads = 0;
+        for (int i = 0; i < 10; i++) {
+            Map<String, String> tags = new HashMap<>();
+            if (i % 2 == 0) {
+                tags.put("even", "true");
+            }
+            if (i < 5) {
+                tags.put("group", "low");
+            } else if (i < 8) {
+                tags.put("group", "high");
+            }
+            store.put("id-" + i, tags);
+        }
+        index = newIndex(1000);
+    }
+
+    private TagIndex newIndex(int maxSize) {
+        return new TagIndex(new TagIndex.Loader() {
+            @Override
+            public Collection<String> ids(String tenantId, String type) {
+                loads++;
+                return new ArrayList<>(store.keySet());
+            }
+
+            @Override
+            public Map<String, Collection<String>> values(String tenantId, String type, String name) {
+                loads++;
+                Map<String, Collection<String>> values = new HashMap<>();
+                store.entrySet().stream().filter(e -> e.getValue().containsKey(name)).forEach(e -> values
+                        .computeIfAbsent(e.getValue().get(name), v -> new ArrayList<>()).add(e.getKey()));
+                return values;
+            }
+        }, 60000, maxSize);
+    }
+
+    @Test
+    public void queries() throws Exception {
+        assertEquals(ids(0, 2, 4, 6, 8), query("even"));
+        assertEquals(ids(1, 3, 5, 7, 9), query("not even"));
+        assertEquals(ids(0, 2, 4), query("even and group = low"));
+        assertEquals(ids(0, 1, 2, 3, 4, 6, 8), query("even or group = low"));
+        assertEquals(ids(5, 7), query("group != low and not even"));
+        assertEquals(ids(0, 1, 2, 3, 4, 5, 6, 7), query("group in [low, high]"));
+        assertEquals(ids(8, 9), query("not group"));
+        assertEquals(ids(), query("group = none and even"));
+        assertEquals(ids(), query("unknown"));
+        // One load for the ids and one per tag name
+        assertEquals(4, loads);
+    }
+
+    @Test
+    public void updates() throws Exception {
+        assertEquals(ids(0, 2, 4, 6, 8), query("even"));
+        assertEquals(ids(8, 9), query("not group"));
+
+        // New ids are appended, existing ids are tagged out of order
+        index.addIds(TENANT, TYPE, Arrays.asList("id-10", "id-11"));
+        index.addTags(TENANT, TYPE, "id-10", Collections.singletonMap("even", "true"));
+        index.addTags(TENANT, TYPE, "id-9", Collections.singletonMap("group", "high"));
+        assertEquals(ids(0, 2, 4, 6, 8, 10), query("even"));
+        assertEquals(ids(8, 10, 11), query("not group"));
+        assertEquals(ids(5, 6, 7, 9), query("group = high"));
+
+        index.removeTags(TENANT, TYPE, "id-0", Collections.singletonMap("even", "true"));
+        index.removeIds(TENANT, TYPE, Arrays.asList("id-2", "id-11", "id-unknown"));
+        assertEquals(ids(4, 6, 8, 10), query("even"));
+        assertEquals(ids(0, 1, 3, 5, 7, 9), query("not even"));
+        assertEquals(3, loads);
+
+        // Tags of other nodes are seen after a reload
+        store.get("id-1").put("even", "false");
+        assertEquals(ids(4, 6, 8, 10), query("even = true"));
+        index.reset();
+        assertEquals(ids(1), query("even = false"));
+    }
+
+    @Test
+    public void maxSize() throws Exception {
+        // 5 ids and 1 value of the even tag
+        index = newIndex(6);
+        assertEquals(ids(0, 2, 4, 6, 8), query("even"));
+        assertEquals(6, index.size());
+
+        // The oldest tenant is discarded to make room for another one
+        assertEquals(ids(0, 2, 4, 6, 8), index.query("other", TYPE, "even", FILTER));
+        assertEquals(6, index.size());
+        assertEquals(2, loads);
+        assertEquals(ids(0, 2, 4, 6, 8), query("even"));
+        assertEquals(3, loads);
+
+        // A tenant that does not fit alone is resolved once and then left to the caller
+        assertEquals(ids(0, 1, 2, 3, 4), query("group = low"));
+        assertEquals(0, index.size());
+        assertNull(query("even"));
+        index.reset();
+        assertEquals(ids(0, 2, 4, 6, 8), query("even"));
+    }
+
+    private Set<String> query(String tagQuery) throws Exception {
+        return index.query(TENANT, TYPE, tagQuery, FILTER);
+    }
+
+    private static Set<String> ids(int... ids) {
+        Set<String> result = new HashSet<>();
+        for (int id : ids) {
+            result.add("id-" + id);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Testing Histogram recording and percentiles.
+ */
+public class HistogramTest {
+
+    @Test
+    public void exactSmallValuesTest() {
+        Histogram h = new Histogram();
+        for (int i = 1; i <= 50; i++) {
+            h.record(i);
+        }
+        assertEquals(50, h.getCount());
+        assertEquals(25, h.getValueAtPercentile(50));
+        assertEquals(50, h.getValueAtPercentile(100));
+        assertEquals(50, h.getMax());
+        assertEquals(25.5, h.getMean(), 0.001);
+    }
+
+    @Test
+    public void relativeErrorTest() {
+        Histogram h = new Histogram();
+        for (long i = 1; i <= 100000; i++) {
+            h.record(i);
+        }
+        for (double p : new double[] { 50, 90, 99, 99.9 }) {
+            long expected = (long) (p / 100 * 100000);
+            long value = h.getValueAtPercentile(p);
+            assertTrue(p + " -> " + value, Math.abs(value - expected) <= expected / 32 + 1);
+        }
+        assertEquals(100000, h.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void bucketsTest() {
+        long[] values = { 0, 63, 64, 65, 127, 128, 1000, 123456789, Long.MAX_VALUE };
+        for (long value : values) {
+            int index = Histogram.index(value);
+            long highest = Histogram.highestEquivalentValue(index);
+            assertTrue(value + " -> " + highest, highest >= value);
+            assertTrue(value + " -> " + highest, highest - value <= Math.max(0, value / 32));
+            if (index > 0) {
+                assertTrue(Histogram.highestEquivalentValue(index - 1) < value);
+            }
+        }
+    }
+
+    @Test
+    public void emptyAndResetTest() {
+        Histogram h = new Histogram();
+        assertEquals(0, h.getValueAtPercentile(99));
+        h.record(-5);
+        h.record(10);
+        assertEquals(2, h.getCount());
+        assertEquals(0, h.getValueAtPercentile(50));
+        h.reset();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getMax());
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Testing TimingWheel scheduling and expiration of deadlines.
+ */
+public class TimingWheelTest {
+
+    @Test
+    public void scheduleAndExpireTest() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 8, 0);
+        wheel.schedule("a", 250);
+        wheel.schedule("b", 420);
+        wheel.schedule("c", 430);
+        assertEquals(3, wheel.size());
+
+        assertTrue(wheel.expire(200).isEmpty());
+        // Same tick than the deadline, but not reached yet
+        assertTrue(wheel.expire(249).isEmpty());
+        assertEquals(Arrays.asList("a"), wheel.expire(250));
+        assertEquals(new HashSet<>(Arrays.asList("b", "c")), new HashSet<>(wheel.expire(1000)));
+        assertTrue(wheel.isEmpty());
+    }
+
+    @Test
+    public void cancelAndRescheduleTest() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 8, 0);
+        wheel.schedule("a", 300);
+        wheel.schedule("b", 300);
+        assertTrue(wheel.cancel("a"));
+        assertFalse(wheel.cancel("a"));
+        assertFalse(wheel.contains("a"));
+
+        wheel.schedule("b", 600);
+        assertEquals(600, wheel.deadline("b"));
+        assertTrue(wheel.expire(500).isEmpty());
+        assertEquals(Arrays.asList("b"), wheel.expire(600));
+        assertEquals(-1, wheel.deadline("b"));
+    }
+
+    @Test
+    public void deadlineBeyondRevolutionTest() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 4, 0);
+        // A revolution is 400 ms, both entries share the same slot
+        wheel.schedule("near", 200);
+        wheel.schedule("far", 1000);
+
+        assertEquals(Arrays.asList("near"), wheel.expire(300));
+        assertTrue(wheel.expire(700).isEmpty());
+        assertTrue(wheel.contains("far"));
+        assertEquals(Arrays.asList("far"), wheel.expire(1000));
+    }
+
+    @Test
+    public void longPauseTest() {
+        TimingWheel<Integer> wheel = new TimingWheel<>(10, 16, 0);
+        for (int i = 1; i <= 1000; i++) {
+            wheel.schedule(i, i * 10);
+        }
+        // Expire after many revolutions without ticks
+        List<Integer> expired = wheel.expire(5000);
+        assertEquals(500, expired.size());
+        assertEquals(500, wheel.size());
+        assertEquals(500, wheel.expire(100000).size());
+        assertTrue(wheel.isEmpty());
+    }
+
+    @Test
+    public void pastDeadlineTest() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 8, 1000);
+        wheel.expire(2000);
+        // A deadline already reached expires on the next call
+        wheel.schedule("late", 500);
+        assertEquals(Arrays.asList("late"), wheel.expire(2000));
+    }
+}
@@ -0,0 +1,25 @@
+package org.hawkular.alerts.netty;
+
+import java.util.Map;
+
+import org.hawkular.alerts.engine.impl.EngineMetrics;
+
+/**
+ * JMX view of the hot-path metrics of the alerting engine.
+ */
+public class AlertingMetrics implements AlertingMetricsMBean {
+
+    private final EngineMetrics metrics;
+
+    public AlertingMetrics(EngineMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public Map<String, String> getMetrics() {
+        return metrics.getStatus();
+    }
+
+    public String getPrometheusMetrics() {
+        return metrics.toPrometheus();
+    }
+}
@@ -0,0 +1,11 @@
+package org.hawkular.alerts.netty;
+
+import java.util.Map;
+
+/**
+ * JMX interface of {@link AlertingMetrics}.
+ */
+public interface AlertingMetricsMBean {
+    Map<String, String> getMetrics();
+    String getPrometheusMetrics();
+}
@@ -25,6 +25,7 @@ public class AlertingServer implements AlertingServerMBean {
     private static final String PORT = "hawkular-alerts.port";
     private static final String PORT_DEFAULT = "8080";
     private static final String JMX_NAME = "org.hawkular.alerting:name=AlertingServer";
+    private static final String METRICS_JMX_NAME = "org.hawkular.alerting:name=AlertingMetrics";
 
     private NettyContext context;
     private HandlersManager handlers;
@@ -35,6 +36,7 @@ public class AlertingServer implements AlertingServerMBean {
 
         try {
             StandaloneAlerts.start();
+            registerMetricsMBean(new AlertingMetrics(StandaloneAlerts.getEngineMetrics()));
             StandaloneActionPluginRegister.start();
             handlers = new HandlersManager();
             handlers.start();
@@ -76,6 +78,15 @@ public class AlertingServer implements AlertingServerMBean {
         }
     }
 
+    public static void registerMetricsMBean(AlertingMetrics metrics) {
+        try {
+            ObjectName jmxName = new ObjectName(METRICS_JMX_NAME);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, jmxName);
+        } catch (Exception exception) {
+            log.error("Unable to register metrics JMX Bean");
+        }
+    }
+
     public static void main(String[] args) {
         AlertingServer server = new AlertingServer();
         registerMBean(server);
@@ -26,6 +26,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.hawkular.alerts.api.exception.OverloadedException;
 import org.hawkular.alerts.api.model.data.Data;
 import org.hawkular.alerts.api.model.event.Alert;
 import org.hawkular.alerts.api.model.paging.Page;
@@ -490,6 +491,8 @@ public class AlertsHandler implements RestHandler {
                         alertsService.sendData(datums);
                         log.debugf("Datums: ", datums);
                         return ok(resp);
+                    } catch (OverloadedException e) {
+                        throw e;
                     } catch (IllegalArgumentException e) {
                         throw new BadRequestException("Bad arguments: " + e.getMessage());
                     } catch (Exception e) {
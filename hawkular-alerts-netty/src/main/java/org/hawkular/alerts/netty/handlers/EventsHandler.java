@@ -26,6 +26,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.hawkular.alerts.api.exception.OverloadedException;
 import org.hawkular.alerts.api.model.event.Event;
 import org.hawkular.alerts.api.model.paging.Page;
 import org.hawkular.alerts.api.model.paging.Pager;
@@ -211,6 +212,8 @@ public class EventsHandler implements RestHandler {
                         alertsService.sendEvents(events);
                         log.debugf("Events: ", events);
                         return ok(resp);
+                    } catch (OverloadedException e) {
+                        throw e;
                     } catch (IllegalArgumentException e) {
                         throw new BadRequestException("Bad arguments: " + e.getMessage());
                     } catch (Exception e) {
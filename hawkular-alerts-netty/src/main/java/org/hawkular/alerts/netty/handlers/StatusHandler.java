@@ -2,7 +2,9 @@ package org.hawkular.alerts.netty.handlers;
 
 import static io.netty.handler.codec.http.HttpResponseStatus.OK;
 import static org.hawkular.alerts.api.json.JsonUtil.toJson;
+import static org.hawkular.alerts.netty.util.ResponseUtil.PROMETHEUS_TEXT;
 import static org.hawkular.alerts.netty.util.ResponseUtil.ok;
+import static org.hawkular.alerts.netty.util.ResponseUtil.okText;
 import static reactor.core.publisher.Mono.just;
 
 import java.util.HashMap;
@@ -31,6 +33,8 @@ public class StatusHandler implements RestHandler {
     static final String STARTED = "STARTED";
     static final String FAILED = "FAILED";
     static final String DISTRIBUTED = "distributed";
+    static final String METRICS = "/metrics";
+    static final String PROMETHEUS = "/prometheus";
 
     StatusService statusService;
     ManifestUtil manifestUtil;
@@ -46,6 +50,20 @@ public class StatusHandler implements RestHandler {
                                    String tenantId,
                                    String subpath,
                                    Map<String, List<String>> params) {
+        if (subpath.equals(METRICS)) {
+            return req
+                    .receive()
+                    .publishOn(Schedulers.elastic())
+                    .thenMany(Mono.fromSupplier(() -> statusService.getMetrics()))
+                    .flatMap(metrics -> ok(resp, metrics));
+        }
+        if (subpath.equals(PROMETHEUS)) {
+            return req
+                    .receive()
+                    .publishOn(Schedulers.elastic())
+                    .thenMany(Mono.fromSupplier(() -> StandaloneAlerts.getEngineMetrics().toPrometheus()))
+                    .flatMap(text -> okText(resp, PROMETHEUS_TEXT, text));
+        }
         return req
                 .receive()
                 .publishOn(Schedulers.elastic())
@@ -62,6 +80,7 @@ public class StatusHandler implements RestHandler {
                     if (distributed) {
                         status.putAll(statusService.getDistributedStatus());
                     }
+                    status.putAll(statusService.getEngineStatus());
                     return status;
                 }))
                 .flatMap(status -> ok(resp, status));
@@ -4,6 +4,8 @@ import static io.netty.handler.codec.http.HttpResponseStatus.BAD_REQUEST;
 import static io.netty.handler.codec.http.HttpResponseStatus.INTERNAL_SERVER_ERROR;
 import static io.netty.handler.codec.http.HttpResponseStatus.NOT_FOUND;
 import static io.netty.handler.codec.http.HttpResponseStatus.OK;
+import static io.netty.handler.codec.http.HttpResponseStatus.SERVICE_UNAVAILABLE;
+import static io.netty.handler.codec.http.HttpResponseStatus.TOO_MANY_REQUESTS;
 import static org.hawkular.alerts.api.json.JsonUtil.toJson;
 import static reactor.core.publisher.Mono.just;
 
@@ -17,6 +19,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
+import org.hawkular.alerts.api.exception.OverloadedException;
 import org.hawkular.alerts.api.json.GroupMemberInfo;
 import org.hawkular.alerts.api.json.UnorphanMemberInfo;
 import org.hawkular.alerts.api.model.dampening.Dampening;
@@ -41,6 +44,8 @@ public class ResponseUtil {
     public final static String ACCEPT = "Accept";
     public final static String CONTENT_TYPE = "Content-Type";
     public final static String APPLICATION_JSON = "application/json";
+    public final static String RETRY_AFTER = "Retry-After";
+    public final static String PROMETHEUS_TEXT = "text/plain; version=0.0.4";
 
     public static class ApiError {
         @JsonInclude
@@ -79,6 +84,24 @@ public class ResponseUtil {
                 .sendString(just(toJson(new ApiError(errorMsg))));
     }
 
+    public static Publisher<Void> tooManyRequests(HttpServerResponse resp, String errorMsg, int retryAfter) {
+        return resp
+                .addHeader(ACCEPT, APPLICATION_JSON)
+                .addHeader(CONTENT_TYPE, APPLICATION_JSON)
+                .addHeader(RETRY_AFTER, String.valueOf(retryAfter))
+                .status(TOO_MANY_REQUESTS)
+                .sendString(just(toJson(new ApiError(errorMsg))));
+    }
+
+    public static Publisher<Void> serviceUnavailable(HttpServerResponse resp, String errorMsg, int retryAfter) {
+        return resp
+                .addHeader(ACCEPT, APPLICATION_JSON)
+                .addHeader(CONTENT_TYPE, APPLICATION_JSON)
+                .addHeader(RETRY_AFTER, String.valueOf(retryAfter))
+                .status(SERVICE_UNAVAILABLE)
+                .sendString(just(toJson(new ApiError(errorMsg))));
+    }
+
     public static Publisher<Void> ok(HttpServerResponse resp, Object o) {
         return resp
                 .addHeader(ACCEPT, APPLICATION_JSON)
@@ -87,6 +110,13 @@ public class ResponseUtil {
                 .sendString(just(toJson(o)));
     }
 
+    public static Publisher<Void> okText(HttpServerResponse resp, String contentType, String text) {
+        return resp
+                .addHeader(CONTENT_TYPE, contentType)
+                .status(OK)
+                .sendString(just(text));
+    }
+
     public static Publisher<Void> ok(HttpServerResponse resp) {
         return resp
                 .addHeader(ACCEPT, APPLICATION_JSON)
@@ -107,6 +137,9 @@ public class ResponseUtil {
     public static <T> HttpHeaders createPagingHeaders(HttpHeaders headers, Page<T> resultList, String uri) {
 
         PageContext pc = resultList.getPageContext();
+        if (pc.isCursorPaged()) {
+            return createCursorHeaders(headers, resultList, uri);
+        }
         int page = pc.getPageNumber();
 
         List<Link> links = new ArrayList<>();
@@ -142,6 +175,28 @@ public class ResponseUtil {
         return headers;
     }
 
+    /*
+        Cursor paged results only link to the next page, the total size is not known unless the whole result
+        was fetched to resolve the query.
+     */
+    private static <T> HttpHeaders createCursorHeaders(HttpHeaders headers, Page<T> resultList, String uri) {
+        StringBuilder linkHeader = new StringBuilder(new Link("current", uri).rfc5988String());
+        if (resultList.getNextCursor() != null) {
+            linkHeader.append(", ")
+                    .append(new Link("next", replaceQueryParam(uri, "cursor", resultList.getNextCursor()))
+                            .rfc5988String());
+        }
+
+        headers.remove("Link");
+        headers.add("Link", linkHeader.toString());
+        headers.remove("X-Total-Count");
+        if (resultList.getTotalSize() != Page.UNKNOWN_TOTAL_SIZE) {
+            headers.add("X-Total-Count", resultList.getTotalSize());
+        }
+
+        return headers;
+    }
+
     public static String replaceQueryParam(String uri, String param, String value) {
         boolean isQuestion = uri.indexOf('?') != -1;
         boolean isPresent = uri.indexOf(param + "=") != -1;
@@ -165,6 +220,7 @@ public class ResponseUtil {
         String perPageS = params.get("per_page") == null ? null : params.get("per_page").get(0);
         List<String> sort = params.get("sort");
         List<String> order = params.get("order");
+        String cursor = params.get("cursor") == null ? null : params.get("cursor").get(0);
 
         int page = pageS == null ? 0 : Integer.parseInt(pageS);
         int perPage = perPageS == null ? PageContext.UNLIMITED_PAGE_SIZE : Integer.parseInt(perPageS);
@@ -184,6 +240,9 @@ public class ResponseUtil {
                 ordering.add(Order.by(field, dir));
             }
         }
+        if (cursor != null) {
+            return new Pager(perPage, cursor, ordering);
+        }
         return new Pager(page, perPage, ordering);
     }
 
@@ -309,6 +368,11 @@ public class ResponseUtil {
         if (e instanceof NotFoundException) {
             return notFound(resp, e.getMessage());
         }
+        if (e instanceof OverloadedException) {
+            OverloadedException oe = (OverloadedException) e;
+            return oe.isUnavailable() ? serviceUnavailable(resp, oe.getMessage(), oe.getRetryAfter())
+                    : tooManyRequests(resp, oe.getMessage(), oe.getRetryAfter());
+        }
         return internalServerError(resp, e.toString());
     }
 
@@ -1,10 +1,25 @@
 package org.hawkular.alerts.netty.util;
 
+import static org.hawkular.alerts.netty.util.ResponseUtil.createPagingHeaders;
+import static org.hawkular.alerts.netty.util.ResponseUtil.extractPaging;
 import static org.hawkular.alerts.netty.util.ResponseUtil.replaceQueryParam;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hawkular.alerts.api.model.paging.Page;
+import org.hawkular.alerts.api.model.paging.Pager;
 import org.junit.Test;
 
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaders;
+
 /**
  * @author Jay Shaughnessy
  * @author Lucas Ponce
@@ -23,4 +38,26 @@ public class ResponseUtilTest {
         String expected3 = uri + "?page2=5&page=4";
         assertEquals(expected3, replaceQueryParam(uri3, "page2", "5"));
     }
+
+    @Test
+    public void cursorPaging() {
+        Map<String, List<String>> params = new HashMap<>();
+        params.put("per_page", Collections.singletonList("2"));
+        params.put("cursor", Collections.singletonList(""));
+        Pager pager = extractPaging(params);
+        assertTrue(pager.isCursorPaged());
+        assertEquals(2, pager.getPageSize());
+
+        String uri = "http://server:8080/prefix/url?per_page=2&cursor=";
+        Page<String> page = new Page<>(Arrays.asList("a", "b"), pager, Page.UNKNOWN_TOTAL_SIZE, "abc");
+        HttpHeaders headers = createPagingHeaders(new DefaultHttpHeaders(), page, uri);
+        assertEquals("<" + uri + ">; rel=\"current\", <http://server:8080/prefix/url?per_page=2&cursor=abc>; "
+                + "rel=\"next\"", headers.get("Link"));
+        assertFalse(headers.contains("X-Total-Count"));
+
+        page = new Page<>(Arrays.asList("c"), pager, 3, null);
+        headers = createPagingHeaders(new DefaultHttpHeaders(), page, uri);
+        assertEquals("<" + uri + ">; rel=\"current\"", headers.get("Link"));
+        assertEquals("3", headers.get("X-Total-Count"));
+    }
 }